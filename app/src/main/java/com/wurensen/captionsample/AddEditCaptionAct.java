@@ -15,6 +15,7 @@ import android.widget.FrameLayout;
 import android.widget.RadioGroup;
 
 import com.wurensen.captionlayout.FlexibleCaptionView;
+import com.wurensen.captionlayout.TypefaceRegistry;
 
 /**
  * 新增编辑字幕
@@ -22,8 +23,7 @@ import com.wurensen.captionlayout.FlexibleCaptionView;
  */
 public class AddEditCaptionAct extends Activity {
 
-    public static Typeface[] typefaces = new Typeface[] {Typeface.DEFAULT, Typeface.SANS_SERIF, Typeface.SERIF,
-        Typeface.MONOSPACE};
+    public static String[] typefaceFamilies = new String[] {null, "sans-serif", "serif", "monospace"};
     public static int[] typefaceStyles = new int[] {Typeface.NORMAL, Typeface.BOLD, Typeface.ITALIC,
         Typeface.BOLD_ITALIC};
 
@@ -72,9 +72,6 @@ public class AddEditCaptionAct extends Activity {
         if (TextUtils.isEmpty(text)) {
             text = ediTxtCaption.getHint().toString();
         }
-        Typeface typeface =
-            Typeface.create(AddEditCaptionAct.typefaces[typefaceIndex],
-                AddEditCaptionAct.typefaceStyles[typefaceStyleIndex]);
         // 没有设置边框宽度textBorderWidth，默认为根据文字的宽度和padding来确定，但最大不会超过（字幕宽度-默认间距）；
         captionPreview =
             FlexibleCaptionView.Builder.create(this)
@@ -82,7 +79,7 @@ public class AddEditCaptionAct extends Activity {
                 .textSize(TypedValue.COMPLEX_UNIT_PX, ediTxtCaption.getTextSize())
                 .textColor(ediTxtCaption.getCurrentTextColor())
                 .textBorderColor(Color.BLACK)
-                .textTypeface(typeface)
+                .textTypefaceKey(typefaceKey(typefaceIndex, typefaceStyleIndex))
                 .build();
         // 屏蔽事件
         captionPreview.setEnable(false);
@@ -166,8 +163,7 @@ public class AddEditCaptionAct extends Activity {
                 typefaceIndex = 3;
                 break;
         }
-        ediTxtCaption.setTypeface(typefaces[typefaceIndex], typefaceStyles[typefaceStyleIndex]);
-        captionPreview.setTextTypeface(ediTxtCaption.getTypeface());
+        updateTypeface();
     }
 
     public void setCheckedTypeFaceStyle(int checkedId) {
@@ -185,8 +181,22 @@ public class AddEditCaptionAct extends Activity {
                 typefaceStyleIndex = 3;
                 break;
         }
-        ediTxtCaption.setTypeface(typefaces[typefaceIndex], typefaceStyles[typefaceStyleIndex]);
-        captionPreview.setTextTypeface(ediTxtCaption.getTypeface());
+        updateTypeface();
+    }
+
+    private void updateTypeface() {
+        String key = typefaceKey(typefaceIndex, typefaceStyleIndex);
+        ediTxtCaption.setTypeface(TypefaceRegistry.getInstance(this).get(key));
+        captionPreview.setTextTypefaceKey(key);
+    }
+
+    /**
+     * @param typefaceIndex      字体族的位置
+     * @param typefaceStyleIndex 字体样式的位置
+     * @return 字体在注册表中的key，同一个字体只创建一次
+     */
+    public static String typefaceKey(int typefaceIndex, int typefaceStyleIndex) {
+        return TypefaceRegistry.systemKey(typefaceFamilies[typefaceIndex], typefaceStyles[typefaceStyleIndex]);
     }
 
     public void finish(View view) {
@@ -136,7 +136,7 @@ public class CaptionMainAct extends Activity {
         FlexibleCaptionView captionView = captionLayoutContainer.getCurrentFocusCaptionView();
         if (captionView != null) {
             captionInfo = captionView.exportCaptionInfo(0.5f);
-            imgViewShow.setImageBitmap(captionInfo.captionBitmap);
+            imgViewShow.setImageBitmap(captionInfo.getCaptionBitmap());
             String info = "degree=" + captionInfo.degree;
             labelExportInfo.setText(info);
         } else {
@@ -205,9 +205,6 @@ public class CaptionMainAct extends Activity {
     }
 
     private void addCaptionWithBuilder(CaptionConfig config) {
-        Typeface typeface =
-            Typeface.create(AddEditCaptionAct.typefaces[config.typefaceIndex],
-                AddEditCaptionAct.typefaceStyles[config.typefaceStyleIndex]);
         FlexibleCaptionView addCaptionView =
             FlexibleCaptionView.Builder.create(this)
                 .text(config.text)
@@ -215,7 +212,7 @@ public class CaptionMainAct extends Activity {
                 .maxTextSize(TypedValue.COMPLEX_UNIT_DIP, 30)
                 .layoutTextAlignment(Layout.Alignment.ALIGN_NORMAL)
                 .textColor(config.textColor)
-                .textTypeface(typeface)
+                .textTypefaceKey(AddEditCaptionAct.typefaceKey(config.typefaceIndex, config.typefaceStyleIndex))
                 .icon(android.R.drawable.ic_delete, android.R.drawable.checkbox_on_background,
                     android.R.drawable.ic_menu_crop)
                 .iconSize(TypedValue.COMPLEX_UNIT_DIP, 35)
@@ -232,10 +229,8 @@ public class CaptionMainAct extends Activity {
             // captionView.setTextBorderWidth(config.textBorderWidth);
             // captionView.setTextSize(TypedValue.COMPLEX_UNIT_PX, config.textSize);
             captionView.setTextColor(config.textColor);
-            Typeface typeface =
-                Typeface.create(AddEditCaptionAct.typefaces[config.typefaceIndex],
-                    AddEditCaptionAct.typefaceStyles[config.typefaceStyleIndex]);
-            captionView.setTextTypeface(typeface);
+            captionView.setTextTypefaceKey(
+                AddEditCaptionAct.typefaceKey(config.typefaceIndex, config.typefaceStyleIndex));
         }
     }
 
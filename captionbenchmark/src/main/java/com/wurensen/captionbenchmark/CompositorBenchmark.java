@@ -0,0 +1,157 @@
+package com.wurensen.captionbenchmark;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.wurensen.captioncore.CaptionCompositor;
+import com.wurensen.captioncore.CaptionYuvBlender;
+
+/**
+ * 把字幕图层合成到不同分辨率的视频帧上，结果为每秒能处理的帧数
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompositorBenchmark {
+
+    /**
+     * 帧大小，按16:9的横屏视频
+     */
+    @Param({"720p", "1080p", "2160p"})
+    public String frameSize;
+
+    /**
+     * 字幕数量
+     */
+    @Param({"1", "10", "50"})
+    public int captions;
+
+    /**
+     * 合成使用的线程数，为1时在调用线程中合成
+     */
+    @Param({"1", "4"})
+    public int threads;
+
+    private int mFrameWidth, mFrameHeight;
+
+    private ExecutorService mExecutor;
+    private CaptionCompositor mCompositor;
+    private CaptionYuvBlender mYuvBlender;
+    private ArrayList<CaptionCompositor.Layer> mLayers = new ArrayList<>();
+    private int[] mArgbFrame;
+    private ByteBuffer mNv21Frame; // 直接缓冲区，与编码器的输入一致
+    private ByteBuffer mNv21HeapFrame;
+    private ByteBuffer mI420Frame;
+
+    @Setup
+    public void setup() {
+        if (threads > 1) {
+            mExecutor = Executors.newFixedThreadPool(threads);
+        }
+        mCompositor = new CaptionCompositor(mExecutor, CaptionCompositor.DEFAULT_BAND_HEIGHT);
+        mYuvBlender = new CaptionYuvBlender(mExecutor, CaptionYuvBlender.DEFAULT_BAND_HEIGHT);
+        mFrameHeight = Integer.parseInt(frameSize.substring(0, frameSize.length() - 1));
+        mFrameWidth = mFrameHeight * 16 / 9;
+        createLayers(mFrameHeight / 720f);
+        mArgbFrame = new int[mFrameWidth * mFrameHeight];
+        mNv21Frame = ByteBuffer.allocateDirect(mFrameWidth * mFrameHeight * 3 / 2);
+        mNv21HeapFrame = ByteBuffer.allocate(mFrameWidth * mFrameHeight * 3 / 2);
+        mI420Frame = ByteBuffer.allocateDirect(mFrameWidth * mFrameHeight * 3 / 2);
+    }
+
+    // 轮流生成底部水平字幕、旋转缩放的文字字幕和半透明贴图，位置和角度固定随机，字幕大小随分辨率缩放
+    private void createLayers(float scale) {
+        Random random = new Random(captions);
+        for (int i = 0; i < captions; i++) {
+            CaptionCompositor.Layer layer;
+            switch (i % 3) {
+                case 0:
+                    layer = createLayer(600, 80, 0xffffffff, scale)
+                        .relativeCenter(0.2f + random.nextFloat() * 0.6f, 0.8f + random.nextFloat() * 0.15f);
+                    break;
+                case 1:
+                    layer = createLayer(400, 120, 0xffffcc00, scale)
+                        .relativeCenter(0.2f + random.nextFloat() * 0.6f, 0.2f + random.nextFloat() * 0.6f)
+                        .degree(random.nextFloat() * 90 - 45);
+                    layer.destinationSize(layer.width * 1.3f, layer.height * 1.3f);
+                    break;
+                default:
+                    layer = createLayer(160, 160, 0x80ff0000, scale)
+                        .relativeCenter(0.1f + random.nextFloat() * 0.8f, 0.1f + random.nextFloat() * 0.3f);
+                    break;
+            }
+            mLayers.add(layer);
+        }
+    }
+
+    private static CaptionCompositor.Layer createLayer(int width, int height, int color, float scale) {
+        width = Math.round(width * scale);
+        height = Math.round(height * scale);
+        return new CaptionCompositor.Layer(createPixels(width, height, color), width, height, false);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (mExecutor != null) {
+            mExecutor.shutdown();
+        }
+    }
+
+    // 文字形状的像素：交替的实心和透明竖条，边缘半透明
+    private static int[] createPixels(int width, int height, int color) {
+        int[] pixels = new int[width * height];
+        int alpha = color >>> 24;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int phase = x % 24;
+                int a = phase < 12 ? alpha : (phase < 14 ? alpha / 2 : 0);
+                pixels[y * width + x] = (a << 24) | (color & 0xffffff);
+            }
+        }
+        return pixels;
+    }
+
+    @Benchmark
+    public int[] compositeArgb() throws InterruptedException {
+        mCompositor.composite(mArgbFrame, mFrameWidth, mFrameHeight, mLayers);
+        return mArgbFrame;
+    }
+
+    @Benchmark
+    public ByteBuffer blendNv21() throws InterruptedException {
+        mYuvBlender.blendNv21(mNv21Frame, mFrameWidth, mFrameHeight, mLayers);
+        return mNv21Frame;
+    }
+
+    @Benchmark
+    public ByteBuffer blendNv21Heap() throws InterruptedException {
+        mYuvBlender.blendNv21(mNv21HeapFrame, mFrameWidth, mFrameHeight, mLayers);
+        return mNv21HeapFrame;
+    }
+
+    @Benchmark
+    public ByteBuffer blendI420() throws InterruptedException {
+        mYuvBlender.blendI420(mI420Frame, mFrameWidth, mFrameHeight, mLayers);
+        return mI420Frame;
+    }
+}
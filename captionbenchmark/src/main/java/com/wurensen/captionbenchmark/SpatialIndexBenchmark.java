@@ -0,0 +1,164 @@
+package com.wurensen.captionbenchmark;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.wurensen.captioncore.CaptionSpatialIndex;
+import com.wurensen.captioncore.CaptionTransform;
+
+/**
+ * 字幕数量不同时的触摸点查询、按下事件的分发和拖动时的边界更新。
+ * View的分发本身（坐标转换、View.dispatchTouchEvent）只能在设备上运行，这里的分发只包含每个字幕的点击检测，
+ * 与CaptionLayout和FlexibleCaptionView中的流程一致
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpatialIndexBenchmark {
+
+    private static final int VIEW_WIDTH = 1080, VIEW_HEIGHT = 1920;
+    private static final int POINT_COUNT = 1024; // 2的幂，取下标时直接按位与
+
+    /**
+     * 索引中的字幕数量
+     */
+    @Param({"10", "100", "1000"})
+    public int captions;
+
+    private CaptionSpatialIndex<Integer> mIndex;
+    private float[] mBounds; // 每个字幕的左、上、右、下
+    private CaptionTransform[] mTransforms; // 每个字幕的旋转边框，下标即层级
+    private float[] mPoints;
+    private ArrayList<Integer> mResult = new ArrayList<>();
+    private int mNext;
+
+    @Setup
+    public void setup() {
+        // 固定种子，不同版本的结果可以比较
+        Random random = new Random(42);
+        mIndex = new CaptionSpatialIndex<>();
+        mIndex.resize(VIEW_WIDTH, VIEW_HEIGHT);
+        mBounds = new float[captions * 4];
+        mTransforms = new CaptionTransform[captions];
+        for (int i = 0; i < captions; i++) {
+            float width = 100 + random.nextInt(400), height = 40 + random.nextInt(160);
+            // 一半字幕摆正，其余在±30度内旋转
+            float degree = random.nextBoolean() ? 0 : random.nextFloat() * 60 - 30;
+            float extentX = CaptionTransform.getRotatedExtentX(width, height, degree);
+            float extentY = CaptionTransform.getRotatedExtentY(width, height, degree);
+            float centerX = extentX + random.nextFloat() * (VIEW_WIDTH - extentX * 2);
+            float centerY = extentY + random.nextFloat() * (VIEW_HEIGHT - extentY * 2);
+            CaptionTransform transform = new CaptionTransform();
+            transform.setBounds(VIEW_WIDTH, VIEW_HEIGHT);
+            transform.setCenter(centerX, centerY);
+            transform.setBaseSize(width, height);
+            transform.setDegree(degree);
+            mTransforms[i] = transform;
+            // 索引中保存旋转后的外接矩形
+            float left = centerX - extentX, top = centerY - extentY;
+            float right = centerX + extentX, bottom = centerY + extentY;
+            mBounds[i * 4] = left;
+            mBounds[i * 4 + 1] = top;
+            mBounds[i * 4 + 2] = right;
+            mBounds[i * 4 + 3] = bottom;
+            mIndex.add(i, i);
+            mIndex.update(i, left, top, right, bottom);
+        }
+        mPoints = new float[POINT_COUNT * 2];
+        for (int i = 0; i < POINT_COUNT; i++) {
+            mPoints[i * 2] = random.nextFloat() * VIEW_WIDTH;
+            mPoints[i * 2 + 1] = random.nextFloat() * VIEW_HEIGHT;
+        }
+    }
+
+    @Benchmark
+    public int query() {
+        int i = (mNext++ & (POINT_COUNT - 1)) * 2;
+        return mIndex.query(mPoints[i], mPoints[i + 1], mResult);
+    }
+
+    /**
+     * 线性遍历所有字幕的外接矩形，作为空间索引的对照，不包含按层级排序
+     */
+    @Benchmark
+    public int linearScan() {
+        int i = (mNext++ & (POINT_COUNT - 1)) * 2;
+        float x = mPoints[i], y = mPoints[i + 1];
+        float[] bounds = mBounds;
+        int count = 0;
+        for (int j = 0; j < bounds.length; j += 4) {
+            if (x >= bounds[j] && x <= bounds[j + 2] && y >= bounds[j + 1] && y <= bounds[j + 3]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 按下事件的分发：从索引中取出外接矩形包含按下点的字幕，按层级从上到下做点击检测，第一个命中的字幕处理事件，
+     * 都没有命中时交给容器自身
+     *
+     * @return 处理事件的字幕，-1表示交给容器
+     */
+    @Benchmark
+    public int dispatchDownByIndex() {
+        int i = (mNext++ & (POINT_COUNT - 1)) * 2;
+        float x = mPoints[i], y = mPoints[i + 1];
+        ArrayList<Integer> candidates = mResult;
+        mIndex.query(x, y, candidates);
+        int target = -1;
+        for (int j = 0; j < candidates.size(); j++) {
+            int candidate = candidates.get(j);
+            if (mTransforms[candidate].contains(x, y)) {
+                target = candidate;
+                break;
+            }
+        }
+        candidates.clear();
+        return target;
+    }
+
+    /**
+     * 原来的分发：每个字幕控件都铺满容器，按层级从上到下依次做点击检测，点击空白处时检测所有字幕
+     *
+     * @return 处理事件的字幕，-1表示交给容器
+     */
+    @Benchmark
+    public int dispatchDownAllChildren() {
+        int i = (mNext++ & (POINT_COUNT - 1)) * 2;
+        float x = mPoints[i], y = mPoints[i + 1];
+        for (int j = mTransforms.length - 1; j >= 0; j--) {
+            if (mTransforms[j].contains(x, y)) {
+                return j;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 拖动一个字幕时每帧的边界更新，来回移动一个格子的距离
+     */
+    @Benchmark
+    public void update() {
+        int item = mNext++ % captions;
+        float dx = (mNext & 1) == 0 ? 96 : 0;
+        int i = item * 4;
+        mIndex.update(item, mBounds[i] + dx, mBounds[i + 1], mBounds[i + 2] + dx, mBounds[i + 3]);
+    }
+}
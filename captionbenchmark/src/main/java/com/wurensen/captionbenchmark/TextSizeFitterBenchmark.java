@@ -0,0 +1,122 @@
+package com.wurensen.captionbenchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.wurensen.captioncore.TextSizeFitter;
+
+/**
+ * 适应宽度的字号计算，分别测量没有命中缓存和命中缓存的情况，以及原来每次重新测量所有行的循环作为对照
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextSizeFitterBenchmark {
+
+    /**
+     * 文本的行数
+     */
+    @Param({"1", "8", "50", "200"})
+    public int lines;
+
+    // 1080p容器的1.5倍高度，窄的宽度使所有行数都需要缩小字号
+    private static final float AVAILABLE_WIDTH = 600f, AVAILABLE_HEIGHT = 2880f;
+    private static final float TEXT_SIZE = 120f;
+
+    private final TextSizeFitter.Measurer mMeasurer = new FixedAdvanceMeasurer();
+    private TextSizeFitter mFitter;
+    private String mText;
+
+    @Setup
+    public void setup() {
+        mFitter = new TextSizeFitter(mMeasurer);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            if (i > 0) {
+                builder.append('\n');
+            }
+            // 每行长度不同，最长的一行不在开头
+            for (int j = 0; j < 20 + (i * 7) % 13; j++) {
+                builder.append((char) ('a' + (i + j) % 26));
+            }
+        }
+        mText = builder.toString();
+    }
+
+    @Benchmark
+    public float fitUncached() {
+        mFitter.clear();
+        return mFitter.fit(mText, null, TEXT_SIZE, AVAILABLE_WIDTH, AVAILABLE_HEIGHT);
+    }
+
+    @Benchmark
+    public float fitCached() {
+        return mFitter.fit(mText, null, TEXT_SIZE, AVAILABLE_WIDTH, AVAILABLE_HEIGHT);
+    }
+
+    /**
+     * 原来的做法：每次按当前字号重新排版，测量所有行后按比例缩小，直到放进区域
+     */
+    @Benchmark
+    public float fitBaselineLoop() {
+        String text = mText;
+        float size = TEXT_SIZE;
+        while (true) {
+            float maxWidth = 0;
+            int lineCount = 1;
+            int start = 0;
+            for (int i = 0; i <= text.length(); i++) {
+                if (i == text.length() || text.charAt(i) == '\n') {
+                    maxWidth = Math.max(maxWidth, mMeasurer.measureLineWidth(text, start, i, size));
+                    if (i < text.length()) {
+                        lineCount++;
+                    }
+                    start = i + 1;
+                }
+            }
+            float widthScale = AVAILABLE_WIDTH / maxWidth;
+            float heightScale = AVAILABLE_HEIGHT / (mMeasurer.getLineHeight(size) * lineCount);
+            float resizeScale = Math.min(widthScale, heightScale);
+            float next = size * resizeScale;
+            // 原来的循环在浮点精度内不再变化时不会结束，这里直接返回
+            if (resizeScale >= 1 || next == size) {
+                return size;
+            }
+            size = next;
+        }
+    }
+
+    /**
+     * 字宽与字号成正比，加上少量字距使按比例计算的结果需要修正
+     */
+    private static final class FixedAdvanceMeasurer implements TextSizeFitter.Measurer {
+
+        @Override
+        public float measureLineWidth(CharSequence text, int start, int end, float textSize) {
+            float width = 0;
+            for (int i = start; i < end; i++) {
+                width += textSize * (text.charAt(i) == 'm' || text.charAt(i) == 'w' ? 0.8f : 0.55f) + 1f;
+            }
+            return width;
+        }
+
+        @Override
+        public float getLineHeight(float textSize) {
+            return textSize * 1.17f + 2f;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.wurensen.captionbenchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.wurensen.captioncore.Affine2D;
+import com.wurensen.captioncore.CaptionTransform;
+import com.wurensen.captioncore.OrientedBoundingBox;
+
+/**
+ * 字幕变换的热点路径：一帧手势的平移、缩放、旋转及顶点映射，旋转吸附，点击检测和导出区域计算
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransformBenchmark {
+
+    private static final int VIEW_WIDTH = 1080, VIEW_HEIGHT = 1920;
+    private static final float BASE_WIDTH = 400, BASE_HEIGHT = 120;
+    private static final float TEXT_SIZE = 48, MAX_TEXT_SIZE = 200;
+
+    /**
+     * 字幕的初始角度，0时吸附分支和三角函数的精确值分支都会命中
+     */
+    @Param({"0", "30"})
+    public float degree;
+
+    private CaptionTransform mTransform = new CaptionTransform();
+    private Affine2D mMatrix = new Affine2D();
+    private float[] mSrcPoints;
+    private float[] mDstPoints = new float[8];
+    private int[] mTargetRect = new int[4];
+    private float[] mTouchPoints;
+    private int mTouchIndex;
+    private float mCos, mSin;
+
+    @Setup
+    public void setup() {
+        resetTransform();
+        float left = VIEW_WIDTH / 2f - BASE_WIDTH / 2, top = VIEW_HEIGHT / 2f - BASE_HEIGHT / 2;
+        float right = left + BASE_WIDTH, bottom = top + BASE_HEIGHT;
+        mSrcPoints = new float[]{left, top, right, top, left, bottom, right, bottom};
+        // 一半落在字幕内，一半落在字幕外
+        mTouchPoints = new float[256];
+        for (int i = 0; i < mTouchPoints.length; i += 2) {
+            float spread = i % 4 == 0 ? BASE_WIDTH / 3 : BASE_WIDTH * 2;
+            mTouchPoints[i] = VIEW_WIDTH / 2f + (float) Math.cos(i) * spread;
+            mTouchPoints[i + 1] = VIEW_HEIGHT / 2f + (float) Math.sin(i) * spread / 4;
+        }
+        double radians = Math.toRadians(degree);
+        mCos = (float) Math.cos(radians);
+        mSin = (float) Math.sin(radians);
+    }
+
+    private void resetTransform() {
+        mTransform.setBounds(VIEW_WIDTH, VIEW_HEIGHT);
+        mTransform.setBaseSize(BASE_WIDTH, BASE_HEIGHT);
+        mTransform.setCenter(VIEW_WIDTH / 2f, VIEW_HEIGHT / 2f);
+        mTransform.setScale(1f);
+        mTransform.setDegree(degree);
+    }
+
+    /**
+     * 一帧合并后的手势：平移、缩放、旋转，再把边框顶点映射到新位置
+     */
+    @Benchmark
+    public float gestureFrame() {
+        mTransform.move(3, -2);
+        mTransform.scaleBy(1.01f, TEXT_SIZE, MAX_TEXT_SIZE);
+        mTransform.rotateBy(1.5f);
+        mTransform.toAffine(VIEW_WIDTH / 2f, VIEW_HEIGHT / 2f, mMatrix);
+        mMatrix.mapPoints(mDstPoints, mSrcPoints);
+        float result = mDstPoints[0];
+        if (mTransform.getScale() > 1.5f || mTransform.getCenterX() > VIEW_WIDTH - 10) {
+            // 避免持续缩放后一直命中上限分支
+            resetTransform();
+        }
+        return result;
+    }
+
+    /**
+     * 来回旋转，交替经过吸附范围内外
+     */
+    @Benchmark
+    public float snapRotation() {
+        return mTransform.rotateBy(mTouchIndex++ % 8 < 4 ? 4f : -4f);
+    }
+
+    @Benchmark
+    public void hitTestTransform(Blackhole blackhole) {
+        float[] points = mTouchPoints;
+        for (int i = 0; i < points.length; i += 2) {
+            blackhole.consume(mTransform.contains(points[i], points[i + 1]));
+        }
+    }
+
+    /**
+     * 每次检测都计算三角函数，作为预先计算三角函数的对照
+     */
+    @Benchmark
+    public void hitTestDegree(Blackhole blackhole) {
+        float[] points = mTouchPoints;
+        float cx = mTransform.getCenterX(), cy = mTransform.getCenterY();
+        float halfWidth = mTransform.getBorderWidth() / 2, halfHeight = mTransform.getBorderHeight() / 2;
+        float degree = mTransform.getDegree();
+        for (int i = 0; i < points.length; i += 2) {
+            blackhole.consume(
+                OrientedBoundingBox.contains(cx, cy, halfWidth, halfHeight, degree, points[i], points[i + 1]));
+        }
+    }
+
+    @Benchmark
+    public void hitTestPrecomputed(Blackhole blackhole) {
+        float[] points = mTouchPoints;
+        float cx = mTransform.getCenterX(), cy = mTransform.getCenterY();
+        float halfWidth = mTransform.getBorderWidth() / 2, halfHeight = mTransform.getBorderHeight() / 2;
+        for (int i = 0; i < points.length; i += 2) {
+            blackhole.consume(
+                OrientedBoundingBox.contains(cx, cy, halfWidth, halfHeight, mCos, mSin, points[i], points[i + 1]));
+        }
+    }
+
+    /**
+     * 导出时摆正后的区域和旋转后的外接矩形
+     */
+    @Benchmark
+    public float exportRect() {
+        mTransform.getTargetRect(2f, mTargetRect);
+        float extentX = CaptionTransform.getRotatedExtentX(mTransform.getBorderWidth(), mTransform.getBorderHeight(),
+            mTransform.getDegree());
+        return mTargetRect[0] + mTargetRect[3] + extentX;
+    }
+
+    @Benchmark
+    public float inverseMap() {
+        mTransform.toAffine(VIEW_WIDTH / 2f, VIEW_HEIGHT / 2f, mMatrix);
+        mMatrix.inverseMapPoints(mDstPoints, 0, mTouchPoints, 0, 4);
+        return mDstPoints[0];
+    }
+}
@@ -0,0 +1,290 @@
+package com.wurensen.captioncore;
+
+/**
+ * 2x3仿射变换，与android.graphics.Matrix的仿射部分一致：
+ * <pre>
+ * | scaleX skewX  transX |
+ * | skewY  scaleY transY |
+ * </pre>
+ * post开头的方法把新的变换作用在当前变换之后。逆矩阵在第一次使用时计算并缓存，修改后重新计算。
+ * 除了第一次使用逆矩阵时创建缓存对象外不创建任何对象，可以在逐帧路径中使用。不是线程安全的
+ */
+public final class Affine2D {
+
+    private float mScaleX = 1, mSkewX, mTransX;
+    private float mSkewY, mScaleY = 1, mTransY;
+
+    private Affine2D mInverse; // 缓存的逆矩阵
+    private boolean mInverseValid;
+    private boolean mInvertible;
+
+    public Affine2D() {
+    }
+
+    public Affine2D(Affine2D src) {
+        set(src);
+    }
+
+    /**
+     * 重置为单位矩阵
+     */
+    public void reset() {
+        setValues(1, 0, 0, 0, 1, 0);
+    }
+
+    public void set(Affine2D src) {
+        setValues(src.mScaleX, src.mSkewX, src.mTransX, src.mSkewY, src.mScaleY, src.mTransY);
+    }
+
+    public void setValues(float scaleX, float skewX, float transX, float skewY, float scaleY, float transY) {
+        mScaleX = scaleX;
+        mSkewX = skewX;
+        mTransX = transX;
+        mSkewY = skewY;
+        mScaleY = scaleY;
+        mTransY = transY;
+        mInverseValid = false;
+    }
+
+    public void setTranslate(float dx, float dy) {
+        setValues(1, 0, dx, 0, 1, dy);
+    }
+
+    public void setScale(float sx, float sy, float px, float py) {
+        setValues(sx, 0, px - sx * px, 0, sy, py - sy * py);
+    }
+
+    /**
+     * @param degrees 顺时针旋转角度
+     * @param px      旋转中心x
+     * @param py      旋转中心y
+     */
+    public void setRotate(float degrees, float px, float py) {
+        float sin = sinDegrees(degrees), cos = cosDegrees(degrees);
+        setValues(cos, -sin, px - cos * px + sin * py, sin, cos, py - sin * px - cos * py);
+    }
+
+    public void postTranslate(float dx, float dy) {
+        mTransX += dx;
+        mTransY += dy;
+        mInverseValid = false;
+    }
+
+    public void postScale(float sx, float sy, float px, float py) {
+        postConcat(sx, 0, px - sx * px, 0, sy, py - sy * py);
+    }
+
+    /**
+     * @param degrees 顺时针旋转角度
+     * @param px      旋转中心x
+     * @param py      旋转中心y
+     */
+    public void postRotate(float degrees, float px, float py) {
+        float sin = sinDegrees(degrees), cos = cosDegrees(degrees);
+        postConcat(cos, -sin, px - cos * px + sin * py, sin, cos, py - sin * px - cos * py);
+    }
+
+    /**
+     * 当前矩阵 = other * 当前矩阵，即先应用当前变换再应用other
+     */
+    public void postConcat(Affine2D other) {
+        postConcat(other.mScaleX, other.mSkewX, other.mTransX, other.mSkewY, other.mScaleY, other.mTransY);
+    }
+
+    /**
+     * 当前矩阵 = 当前矩阵 * other，即先应用other再应用当前变换
+     */
+    public void preConcat(Affine2D other) {
+        float scaleX = mScaleX * other.mScaleX + mSkewX * other.mSkewY;
+        float skewX = mScaleX * other.mSkewX + mSkewX * other.mScaleY;
+        float transX = mScaleX * other.mTransX + mSkewX * other.mTransY + mTransX;
+        float skewY = mSkewY * other.mScaleX + mScaleY * other.mSkewY;
+        float scaleY = mSkewY * other.mSkewX + mScaleY * other.mScaleY;
+        float transY = mSkewY * other.mTransX + mScaleY * other.mTransY + mTransY;
+        setValues(scaleX, skewX, transX, skewY, scaleY, transY);
+    }
+
+    private void postConcat(float a, float b, float c, float d, float e, float f) {
+        float scaleX = a * mScaleX + b * mSkewY;
+        float skewX = a * mSkewX + b * mScaleY;
+        float transX = a * mTransX + b * mTransY + c;
+        float skewY = d * mScaleX + e * mSkewY;
+        float scaleY = d * mSkewX + e * mScaleY;
+        float transY = d * mTransX + e * mTransY + f;
+        setValues(scaleX, skewX, transX, skewY, scaleY, transY);
+    }
+
+    /**
+     * @return 映射后的x
+     */
+    public float mapX(float x, float y) {
+        return mScaleX * x + mSkewX * y + mTransX;
+    }
+
+    /**
+     * @return 映射后的y
+     */
+    public float mapY(float x, float y) {
+        return mSkewY * x + mScaleY * y + mTransY;
+    }
+
+    /**
+     * 映射点，dst和src可以是同一个数组
+     *
+     * @param dst        保存结果，按x、y交替排列
+     * @param dstIndex   结果的起始位置
+     * @param src        点坐标，按x、y交替排列
+     * @param srcIndex   点坐标的起始位置
+     * @param pointCount 点的数量
+     */
+    public void mapPoints(float[] dst, int dstIndex, float[] src, int srcIndex, int pointCount) {
+        for (int i = 0; i < pointCount; i++) {
+            float x = src[srcIndex + i * 2], y = src[srcIndex + i * 2 + 1];
+            dst[dstIndex + i * 2] = mScaleX * x + mSkewX * y + mTransX;
+            dst[dstIndex + i * 2 + 1] = mSkewY * x + mScaleY * y + mTransY;
+        }
+    }
+
+    public void mapPoints(float[] dst, float[] src) {
+        mapPoints(dst, 0, src, 0, src.length >> 1);
+    }
+
+    /**
+     * 用逆矩阵映射点，如触摸点转到字幕的局部坐标系
+     *
+     * @return 矩阵不可逆时返回false，结果不变
+     */
+    public boolean inverseMapPoints(float[] dst, int dstIndex, float[] src, int srcIndex, int pointCount) {
+        Affine2D inverse = getInverse();
+        if (inverse == null) {
+            return false;
+        }
+        inverse.mapPoints(dst, dstIndex, src, srcIndex, pointCount);
+        return true;
+    }
+
+    /**
+     * 获取缓存的逆矩阵，只能读取，不能修改
+     *
+     * @return 逆矩阵，不可逆时返回null
+     */
+    public Affine2D getInverse() {
+        if (!mInverseValid) {
+            if (mInverse == null) {
+                mInverse = new Affine2D();
+            }
+            mInvertible = invert(mInverse);
+            mInverseValid = true;
+        }
+        return mInvertible ? mInverse : null;
+    }
+
+    /**
+     * @param out 保存逆矩阵，可以是自身
+     * @return 是否可逆，不可逆时out不变
+     */
+    public boolean invert(Affine2D out) {
+        float det = mScaleX * mScaleY - mSkewX * mSkewY;
+        if (det == 0 || Float.isNaN(det) || Float.isInfinite(det)) {
+            return false;
+        }
+        float invDet = 1 / det;
+        float scaleX = mScaleY * invDet;
+        float skewX = -mSkewX * invDet;
+        float skewY = -mSkewY * invDet;
+        float scaleY = mScaleX * invDet;
+        float transX = -(scaleX * mTransX + skewX * mTransY);
+        float transY = -(skewY * mTransX + scaleY * mTransY);
+        out.setValues(scaleX, skewX, transX, skewY, scaleY, transY);
+        return true;
+    }
+
+    public boolean isIdentity() {
+        return mScaleX == 1 && mSkewX == 0 && mTransX == 0 && mSkewY == 0 && mScaleY == 1 && mTransY == 0;
+    }
+
+    public float getScaleX() {
+        return mScaleX;
+    }
+
+    public float getSkewX() {
+        return mSkewX;
+    }
+
+    public float getTransX() {
+        return mTransX;
+    }
+
+    public float getSkewY() {
+        return mSkewY;
+    }
+
+    public float getScaleY() {
+        return mScaleY;
+    }
+
+    public float getTransY() {
+        return mTransY;
+    }
+
+    /**
+     * @param values 按scaleX、skewX、transX、skewY、scaleY、transY保存，长度至少为6
+     */
+    public void getValues(float[] values) {
+        values[0] = mScaleX;
+        values[1] = mSkewX;
+        values[2] = mTransX;
+        values[3] = mSkewY;
+        values[4] = mScaleY;
+        values[5] = mTransY;
+    }
+
+    // 90度的倍数返回精确值，避免摆正的字幕产生误差
+    static float sinDegrees(float degrees) {
+        float mod = degrees % 360;
+        if (mod % 90 == 0) {
+            int quadrant = ((int) (mod / 90) + 4) % 4;
+            return quadrant == 1 ? 1 : (quadrant == 3 ? -1 : 0);
+        }
+        return (float) Math.sin(Math.toRadians(degrees));
+    }
+
+    static float cosDegrees(float degrees) {
+        float mod = degrees % 360;
+        if (mod % 90 == 0) {
+            int quadrant = ((int) (mod / 90) + 4) % 4;
+            return quadrant == 0 ? 1 : (quadrant == 2 ? -1 : 0);
+        }
+        return (float) Math.cos(Math.toRadians(degrees));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Affine2D)) {
+            return false;
+        }
+        Affine2D that = (Affine2D) o;
+        return mScaleX == that.mScaleX && mSkewX == that.mSkewX && mTransX == that.mTransX
+            && mSkewY == that.mSkewY && mScaleY == that.mScaleY && mTransY == that.mTransY;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Float.floatToIntBits(mScaleX);
+        result = 31 * result + Float.floatToIntBits(mSkewX);
+        result = 31 * result + Float.floatToIntBits(mTransX);
+        result = 31 * result + Float.floatToIntBits(mSkewY);
+        result = 31 * result + Float.floatToIntBits(mScaleY);
+        result = 31 * result + Float.floatToIntBits(mTransY);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "Affine2D{[" + mScaleX + ", " + mSkewX + ", " + mTransX + "][" + mSkewY + ", " + mScaleY + ", "
+            + mTransY + "]}";
+    }
+}
@@ -0,0 +1,76 @@
+package com.wurensen.captioncore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * 把帧按行分成互不重叠的条带执行，条带之间可以在线程池中并行
+ */
+final class CaptionBands {
+
+    /**
+     * 处理一个条带
+     */
+    interface Band {
+        /**
+         * @param top    条带第一行，包含
+         * @param bottom 条带最后一行，不包含
+         */
+        void run(int top, int bottom);
+    }
+
+    private CaptionBands() {
+    }
+
+    /**
+     * 执行所有条带，全部完成后返回
+     *
+     * @param executor   线程池，为null时在调用线程中执行
+     * @param height     帧高度
+     * @param bandHeight 条带高度
+     * @param band       条带处理
+     * @throws InterruptedException 等待线程池时被中断
+     */
+    static void run(ExecutorService executor, int height, int bandHeight, final Band band)
+        throws InterruptedException {
+        int bandCount = (height + bandHeight - 1) / bandHeight;
+        if (executor == null || bandCount == 1) {
+            for (int i = 0; i < bandCount; i++) {
+                int top = i * bandHeight;
+                band.run(top, Math.min(height, top + bandHeight));
+            }
+            return;
+        }
+        ArrayList<Callable<Void>> tasks = new ArrayList<>(bandCount);
+        for (int i = 0; i < bandCount; i++) {
+            final int top = i * bandHeight;
+            final int bottom = Math.min(height, top + bandHeight);
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    band.run(top, bottom);
+                    return null;
+                }
+            });
+        }
+        List<Future<Void>> futures = executor.invokeAll(tasks);
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                futures.get(i).get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+}
@@ -0,0 +1,503 @@
+package com.wurensen.captioncore;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 把导出的字幕合成到ARGB视频帧上，不依赖Android，可以在JVM中测试。
+ * 每个字幕图片按中心点旋转后，使用双线性采样和预乘alpha的src-over混合到帧上。
+ * 帧按行分成若干条带，每个条带按层级从下到上合成所有与之相交的字幕，条带之间可以在线程池中并行
+ */
+public final class CaptionCompositor {
+
+    /**
+     * 默认的条带高度，单位像素
+     */
+    public static final int DEFAULT_BAND_HEIGHT = 64;
+
+    private final ExecutorService mExecutor;
+    private final int mBandHeight;
+
+    /**
+     * 在调用线程中合成
+     */
+    public CaptionCompositor() {
+        this(null, DEFAULT_BAND_HEIGHT);
+    }
+
+    /**
+     * @param executor   执行条带合成的线程池，如ForkJoinPool，为null时在调用线程中合成
+     * @param bandHeight 条带高度，单位像素
+     */
+    public CaptionCompositor(ExecutorService executor, int bandHeight) {
+        if (bandHeight <= 0) {
+            throw new IllegalArgumentException("bandHeight must be > 0");
+        }
+        mExecutor = executor;
+        mBandHeight = bandHeight;
+    }
+
+    /**
+     * 合成到int数组保存的帧上，帧的像素格式为预乘alpha的ARGB，不透明的帧与普通ARGB相同
+     *
+     * @param frame  帧像素，按行存放
+     * @param width  帧宽度
+     * @param height 帧高度
+     * @param layers 字幕图层，按层级从下到上排列
+     * @throws InterruptedException 等待线程池时被中断
+     */
+    public void composite(int[] frame, int width, int height, List<Layer> layers) throws InterruptedException {
+        if (frame.length < width * height) {
+            throw new IllegalArgumentException("frame is smaller than " + width + "x" + height);
+        }
+        run(new ArrayFrame(frame, 0, width), width, height, layers);
+    }
+
+    /**
+     * 合成到IntBuffer保存的帧上，从缓冲区当前位置开始按行存放，不会修改缓冲区的位置。
+     * 支持直接缓冲区，此时每个条带会复制到临时数组中合成后再写回
+     *
+     * @param frame  帧像素
+     * @param width  帧宽度
+     * @param height 帧高度
+     * @param layers 字幕图层，按层级从下到上排列
+     * @throws InterruptedException 等待线程池时被中断
+     */
+    public void composite(IntBuffer frame, int width, int height, List<Layer> layers) throws InterruptedException {
+        if (frame.remaining() < width * height) {
+            throw new IllegalArgumentException("frame is smaller than " + width + "x" + height);
+        }
+        if (frame.hasArray()) {
+            run(new ArrayFrame(frame.array(), frame.arrayOffset() + frame.position(), width), width, height, layers);
+        } else {
+            run(new BufferFrame(frame, width), width, height, layers);
+        }
+    }
+
+    private void run(final Frame frame, final int width, final int height, List<Layer> layers)
+        throws InterruptedException {
+        final ArrayList<Layer> visibleLayers = new ArrayList<>(layers.size());
+        for (int i = 0; i < layers.size(); i++) {
+            Layer layer = layers.get(i);
+            if (layer.prepare(width, height)) {
+                visibleLayers.add(layer);
+            }
+        }
+        if (visibleLayers.isEmpty()) {
+            return;
+        }
+        CaptionBands.run(mExecutor, height, mBandHeight, new CaptionBands.Band() {
+            @Override
+            public void run(int top, int bottom) {
+                compositeBand(frame, width, top, bottom, visibleLayers);
+            }
+        });
+    }
+
+    private static void compositeBand(Frame frame, int width, int top, int bottom, List<Layer> layers) {
+        int[] pixels = null;
+        int offset = 0;
+        for (int i = 0; i < layers.size(); i++) {
+            Layer layer = layers.get(i);
+            if (!layer.intersectsRows(top, bottom)) {
+                continue;
+            }
+            if (pixels == null) {
+                // 没有字幕经过的条带不需要访问帧
+                pixels = frame.lockBand(top, bottom);
+                offset = frame.getBandOffset(top);
+            }
+            blendLayer(pixels, offset, width, Math.max(top, layer.mBoundsTop), Math.min(bottom, layer.mBoundsBottom),
+                top, layer);
+        }
+        if (pixels != null) {
+            frame.unlockBand(top, bottom);
+        }
+    }
+
+    // 逐像素反向映射到字幕图片中采样，再混合到帧上
+    private static void blendLayer(int[] pixels, int offset, int stride, int rowStart, int rowEnd, int bandTop,
+        Layer layer) {
+        final int[] src = layer.getPremultipliedPixels();
+        final int srcWidth = layer.width;
+        final int srcHeight = layer.height;
+        final float cos = layer.mCos;
+        final float sin = layer.mSin;
+        final float scaleX = srcWidth / layer.mDstWidth;
+        final float scaleY = srcHeight / layer.mDstHeight;
+        final float halfW = layer.mDstWidth / 2;
+        final float halfH = layer.mDstHeight / 2;
+        final int left = layer.mBoundsLeft;
+        final int right = layer.mBoundsRight;
+        for (int y = rowStart; y < rowEnd; y++) {
+            float dy = y + 0.5f - layer.mFrameCenterY;
+            float dx = left + 0.5f - layer.mFrameCenterX;
+            // 像素中心在字幕坐标系中的位置，沿x方向递增
+            float u = dx * cos + dy * sin + halfW;
+            float v = -dx * sin + dy * cos + halfH;
+            int row = offset + (y - bandTop) * stride;
+            for (int x = left; x < right; x++, u += cos, v -= sin) {
+                float sx = u * scaleX - 0.5f;
+                float sy = v * scaleY - 0.5f;
+                if (sx <= -1 || sy <= -1 || sx >= srcWidth || sy >= srcHeight) {
+                    continue;
+                }
+                int color = sampleBilinear(src, srcWidth, srcHeight, sx, sy);
+                int alpha = color >>> 24;
+                if (alpha == 0) {
+                    continue;
+                }
+                int index = row + x;
+                pixels[index] = alpha == 255 ? color : blendSrcOver(color, pixels[index], alpha);
+            }
+        }
+    }
+
+    /**
+     * 在预乘alpha的图片中双线性采样，超出图片的部分视为透明
+     *
+     * @param src    预乘alpha的ARGB像素
+     * @param width  图片宽度
+     * @param height 图片高度
+     * @param sx     采样位置x，以像素中心为整数坐标，大于-1
+     * @param sy     采样位置y，以像素中心为整数坐标，大于-1
+     * @return 预乘alpha的ARGB颜色
+     */
+    static int sampleBilinear(int[] src, int width, int height, float sx, float sy) {
+        // 调用方保证sx、sy大于-1，可以用截断代替floor
+        int x0 = (int) (sx + 1) - 1;
+        int y0 = (int) (sy + 1) - 1;
+        int fx = (int) ((sx - x0) * 256);
+        int fy = (int) ((sy - y0) * 256);
+        int c00, c10, c01, c11;
+        if (x0 >= 0 && y0 >= 0 && x0 + 1 < width && y0 + 1 < height) {
+            int index = y0 * width + x0;
+            c00 = src[index];
+            c10 = src[index + 1];
+            c01 = src[index + width];
+            c11 = src[index + width + 1];
+        } else {
+            c00 = pixelAt(src, width, height, x0, y0);
+            c10 = pixelAt(src, width, height, x0 + 1, y0);
+            c01 = pixelAt(src, width, height, x0, y0 + 1);
+            c11 = pixelAt(src, width, height, x0 + 1, y0 + 1);
+        }
+        if (c00 == c10 && c00 == c01 && c00 == c11) {
+            return c00;
+        }
+        int w00 = (256 - fx) * (256 - fy);
+        int w10 = fx * (256 - fy);
+        int w01 = (256 - fx) * fy;
+        int w11 = fx * fy;
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            int channel = ((c00 >>> shift) & 0xff) * w00 + ((c10 >>> shift) & 0xff) * w10
+                + ((c01 >>> shift) & 0xff) * w01 + ((c11 >>> shift) & 0xff) * w11;
+            result |= ((channel + 32768) >>> 16) << shift;
+        }
+        return result;
+    }
+
+    private static int pixelAt(int[] src, int width, int height, int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return 0;
+        }
+        return src[y * width + x];
+    }
+
+    /**
+     * 预乘alpha的src-over混合
+     *
+     * @param src   预乘alpha的源颜色
+     * @param dst   预乘alpha的目标颜色
+     * @param alpha 源颜色的alpha
+     * @return 混合后的颜色
+     */
+    static int blendSrcOver(int src, int dst, int alpha) {
+        int inverse = 255 - alpha;
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            int channel = ((src >>> shift) & 0xff) + div255(((dst >>> shift) & 0xff) * inverse);
+            result |= Math.min(255, channel) << shift;
+        }
+        return result;
+    }
+
+    // 四舍五入的除以255
+    static int div255(int value) {
+        value += 128;
+        return (value + (value >>> 8)) >>> 8;
+    }
+
+    /**
+     * 把普通ARGB颜色转为预乘alpha
+     *
+     * @param color ARGB颜色
+     * @return 预乘alpha的ARGB颜色
+     */
+    public static int premultiply(int color) {
+        int alpha = color >>> 24;
+        if (alpha == 255) {
+            return color;
+        }
+        if (alpha == 0) {
+            return 0;
+        }
+        int r = div255(((color >> 16) & 0xff) * alpha);
+        int g = div255(((color >> 8) & 0xff) * alpha);
+        int b = div255((color & 0xff) * alpha);
+        return (alpha << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * 要合成的字幕图层。同一个图层可以连续合成到多帧，但不能同时用于多个合成
+     */
+    public static final class Layer {
+
+        public final int width, height; // 图片大小
+
+        private final int[] mPixels;
+        private final boolean mPremultiplied;
+        private int[] mPremultipliedPixels;
+
+        private float mCenterX, mCenterY; // 中心在帧中的位置
+        private float mDegree;
+        private float mDstWidth, mDstHeight; // 绘制到帧上的大小
+        private boolean mRelativeCenter;
+
+        // 每次合成前计算
+        private float mFrameCenterX, mFrameCenterY;
+        private float mCos, mSin;
+        private int mBoundsLeft, mBoundsTop, mBoundsRight, mBoundsBottom;
+
+        /**
+         * @param pixels        ARGB像素，按行存放
+         * @param width         图片宽度
+         * @param height        图片高度
+         * @param premultiplied 像素是否已经预乘alpha，Android的Bitmap.getPixels()返回的是未预乘的颜色
+         */
+        public Layer(int[] pixels, int width, int height, boolean premultiplied) {
+            if (width <= 0 || height <= 0) {
+                throw new IllegalArgumentException("width and height must be > 0");
+            }
+            if (pixels.length < width * height) {
+                throw new IllegalArgumentException("pixels is smaller than " + width + "x" + height);
+            }
+            this.width = width;
+            this.height = height;
+            mPixels = pixels;
+            mPremultiplied = premultiplied;
+            mDstWidth = width;
+            mDstHeight = height;
+        }
+
+        /**
+         * @param centerX 中心在帧中的位置x，单位像素
+         * @param centerY 中心在帧中的位置y，单位像素
+         * @return 当前对象
+         */
+        public Layer center(float centerX, float centerY) {
+            mCenterX = centerX;
+            mCenterY = centerY;
+            mRelativeCenter = false;
+            return this;
+        }
+
+        /**
+         * @param relativeCenterX 中心相对于帧宽度的位置，与导出的字幕信息中的relativeCenterX一致
+         * @param relativeCenterY 中心相对于帧高度的位置
+         * @return 当前对象
+         */
+        public Layer relativeCenter(float relativeCenterX, float relativeCenterY) {
+            mCenterX = relativeCenterX;
+            mCenterY = relativeCenterY;
+            mRelativeCenter = true;
+            return this;
+        }
+
+        /**
+         * @param degree 绕中心顺时针旋转的角度
+         * @return 当前对象
+         */
+        public Layer degree(float degree) {
+            mDegree = degree;
+            return this;
+        }
+
+        /**
+         * @param dstWidth  绘制到帧上的宽度，默认与图片一致
+         * @param dstHeight 绘制到帧上的高度
+         * @return 当前对象
+         */
+        public Layer destinationSize(float dstWidth, float dstHeight) {
+            if (dstWidth <= 0 || dstHeight <= 0) {
+                throw new IllegalArgumentException("dstWidth and dstHeight must be > 0");
+            }
+            mDstWidth = dstWidth;
+            mDstHeight = dstHeight;
+            return this;
+        }
+
+        boolean intersectsRows(int top, int bottom) {
+            return mBoundsTop < bottom && mBoundsBottom > top;
+        }
+
+        int getBoundsLeft() {
+            return mBoundsLeft;
+        }
+
+        int getBoundsTop() {
+            return mBoundsTop;
+        }
+
+        int getBoundsRight() {
+            return mBoundsRight;
+        }
+
+        int getBoundsBottom() {
+            return mBoundsBottom;
+        }
+
+        /**
+         * 采样帧中某一点对应的字幕颜色，需要先调用{@link #prepare(int, int)}
+         *
+         * @param x 帧中的位置x
+         * @param y 帧中的位置y
+         * @return 预乘alpha的ARGB颜色，不在字幕范围内时为0
+         */
+        int sample(float x, float y) {
+            float dx = x - mFrameCenterX;
+            float dy = y - mFrameCenterY;
+            float sx = (dx * mCos + dy * mSin + mDstWidth / 2) * width / mDstWidth - 0.5f;
+            float sy = (-dx * mSin + dy * mCos + mDstHeight / 2) * height / mDstHeight - 0.5f;
+            if (sx <= -1 || sy <= -1 || sx >= width || sy >= height) {
+                return 0;
+            }
+            return sampleBilinear(getPremultipliedPixels(), width, height, sx, sy);
+        }
+
+        int[] getPremultipliedPixels() {
+            if (mPremultiplied) {
+                return mPixels;
+            }
+            if (mPremultipliedPixels == null) {
+                int[] premultiplied = new int[width * height];
+                for (int i = 0; i < premultiplied.length; i++) {
+                    premultiplied[i] = premultiply(mPixels[i]);
+                }
+                mPremultipliedPixels = premultiplied;
+            }
+            return mPremultipliedPixels;
+        }
+
+        /**
+         * 计算在帧中的中心和旋转后的外接矩形，合成前在调用线程中执行
+         *
+         * @return 是否与帧相交
+         */
+        boolean prepare(int frameWidth, int frameHeight) {
+            float centerX = mRelativeCenter ? mCenterX * frameWidth : mCenterX;
+            float centerY = mRelativeCenter ? mCenterY * frameHeight : mCenterY;
+            double radians = Math.toRadians(mDegree);
+            mCos = (float) Math.cos(radians);
+            mSin = (float) Math.sin(radians);
+            float halfW = mDstWidth / 2;
+            float halfH = mDstHeight / 2;
+            float extentX = Math.abs(halfW * mCos) + Math.abs(halfH * mSin);
+            float extentY = Math.abs(halfW * mSin) + Math.abs(halfH * mCos);
+            // 多留一个像素给双线性采样的边缘
+            mBoundsLeft = Math.max(0, (int) Math.floor(centerX - extentX) - 1);
+            mBoundsTop = Math.max(0, (int) Math.floor(centerY - extentY) - 1);
+            mBoundsRight = Math.min(frameWidth, (int) Math.ceil(centerX + extentX) + 1);
+            mBoundsBottom = Math.min(frameHeight, (int) Math.ceil(centerY + extentY) + 1);
+            mFrameCenterX = centerX;
+            mFrameCenterY = centerY;
+            if (mBoundsLeft >= mBoundsRight || mBoundsTop >= mBoundsBottom) {
+                return false;
+            }
+            // 避免多个条带同时预乘
+            getPremultipliedPixels();
+            return true;
+        }
+    }
+
+    /**
+     * 帧像素的访问方式
+     */
+    private interface Frame {
+        // 获取包含条带的数组，条带第一行从getBandOffset开始
+        int[] lockBand(int top, int bottom);
+
+        int getBandOffset(int top);
+
+        void unlockBand(int top, int bottom);
+    }
+
+    private static final class ArrayFrame implements Frame {
+        private final int[] mPixels;
+        private final int mOffset;
+        private final int mWidth;
+
+        ArrayFrame(int[] pixels, int offset, int width) {
+            mPixels = pixels;
+            mOffset = offset;
+            mWidth = width;
+        }
+
+        @Override
+        public int[] lockBand(int top, int bottom) {
+            return mPixels;
+        }
+
+        @Override
+        public int getBandOffset(int top) {
+            return mOffset + top * mWidth;
+        }
+
+        @Override
+        public void unlockBand(int top, int bottom) {
+        }
+    }
+
+    // 直接缓冲区复制到每个线程的临时数组中合成
+    private static final class BufferFrame implements Frame {
+        private final IntBuffer mBuffer;
+        private final int mPosition;
+        private final int mWidth;
+        private final ThreadLocal<int[]> mBandPixels = new ThreadLocal<>();
+
+        BufferFrame(IntBuffer buffer, int width) {
+            mBuffer = buffer;
+            mPosition = buffer.position();
+            mWidth = width;
+        }
+
+        @Override
+        public int[] lockBand(int top, int bottom) {
+            int size = (bottom - top) * mWidth;
+            int[] pixels = mBandPixels.get();
+            if (pixels == null || pixels.length < size) {
+                pixels = new int[size];
+                mBandPixels.set(pixels);
+            }
+            IntBuffer band = mBuffer.duplicate();
+            band.position(mPosition + top * mWidth);
+            band.get(pixels, 0, size);
+            return pixels;
+        }
+
+        @Override
+        public int getBandOffset(int top) {
+            return 0;
+        }
+
+        @Override
+        public void unlockBand(int top, int bottom) {
+            IntBuffer band = mBuffer.duplicate();
+            band.position(mPosition + top * mWidth);
+            band.put(mBandPixels.get(), 0, (bottom - top) * mWidth);
+        }
+    }
+}
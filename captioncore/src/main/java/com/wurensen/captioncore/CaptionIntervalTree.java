@@ -0,0 +1,192 @@
+package com.wurensen.captioncore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * 字幕显示时间范围的区间索引，区间为[start, end)。
+ * 按开始时间排序后以隐式平衡二叉树保存子树的最大结束时间，查询某一时刻显示的字幕和某一时间段内开始或结束的字幕，
+ * 复杂度都为O(log n + k)。修改后在下一次查询时重建，适合修改少、查询多的场景
+ *
+ * @param <T> 索引的对象类型
+ */
+public final class CaptionIntervalTree<T> {
+
+    private static final class Interval<T> {
+        final T item;
+        long start, end;
+
+        Interval(T item) {
+            this.item = item;
+        }
+    }
+
+    private static final Comparator<Interval<?>> START_COMPARATOR = new Comparator<Interval<?>>() {
+        @Override
+        public int compare(Interval<?> lhs, Interval<?> rhs) {
+            return lhs.start < rhs.start ? -1 : (lhs.start == rhs.start ? 0 : 1);
+        }
+    };
+
+    private static final Comparator<Interval<?>> END_COMPARATOR = new Comparator<Interval<?>>() {
+        @Override
+        public int compare(Interval<?> lhs, Interval<?> rhs) {
+            return lhs.end < rhs.end ? -1 : (lhs.end == rhs.end ? 0 : 1);
+        }
+    };
+
+    private final HashMap<T, Interval<T>> mIntervals = new HashMap<>();
+    private boolean mDirty;
+
+    // 重建后的数据
+    private final ArrayList<Interval<T>> mByStart = new ArrayList<>();
+    private final ArrayList<Interval<T>> mByEnd = new ArrayList<>();
+    private long[] mStarts = new long[0];
+    private long[] mEnds = new long[0]; // 按开始时间排序时对应的结束时间
+    private long[] mMaxEnds = new long[0]; // 以该位置为根的子树的最大结束时间
+    private long[] mSortedEnds = new long[0];
+
+    /**
+     * 加入或更新区间
+     *
+     * @param item  对象
+     * @param start 开始时间，包含
+     * @param end   结束时间，不包含
+     */
+    public void put(T item, long start, long end) {
+        if (start > end) {
+            throw new IllegalArgumentException("start > end");
+        }
+        Interval<T> interval = mIntervals.get(item);
+        if (interval == null) {
+            interval = new Interval<>(item);
+            mIntervals.put(item, interval);
+        } else if (interval.start == start && interval.end == end) {
+            return;
+        }
+        interval.start = start;
+        interval.end = end;
+        mDirty = true;
+    }
+
+    public void remove(T item) {
+        if (mIntervals.remove(item) != null) {
+            mDirty = true;
+        }
+    }
+
+    public int size() {
+        return mIntervals.size();
+    }
+
+    /**
+     * 查询在指定时刻显示的对象，即start &lt;= time &lt; end，结果无序
+     *
+     * @param time 时刻
+     * @param out  保存结果，不会清空
+     * @return 结果数量
+     */
+    public int queryActive(long time, List<T> out) {
+        rebuildIfNeeded();
+        int before = out.size();
+        queryActive(0, mStarts.length - 1, time, out);
+        return out.size() - before;
+    }
+
+    private void queryActive(int lo, int hi, long time, List<T> out) {
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (mMaxEnds[mid] <= time) {
+                // 子树中所有区间都已结束
+                return;
+            }
+            queryActive(lo, mid - 1, time, out);
+            if (mStarts[mid] > time) {
+                // 右子树的区间都还未开始
+                return;
+            }
+            if (mEnds[mid] > time) {
+                out.add(mByStart.get(mid).item);
+            }
+            lo = mid + 1;
+        }
+    }
+
+    /**
+     * 查询在[t0, t1)内开始或结束的对象，即显示状态在这段时间内发生变化的对象，每个对象只出现一次，结果无序
+     *
+     * @param t0  开始时刻，包含
+     * @param t1  结束时刻，不包含
+     * @param out 保存结果，不会清空
+     * @return 结果数量
+     */
+    public int queryChanging(long t0, long t1, List<T> out) {
+        rebuildIfNeeded();
+        int before = out.size();
+        for (int i = lowerBound(mStarts, t0); i < mStarts.length && mStarts[i] < t1; i++) {
+            out.add(mByStart.get(i).item);
+        }
+        for (int i = lowerBound(mSortedEnds, t0); i < mSortedEnds.length && mSortedEnds[i] < t1; i++) {
+            Interval<T> interval = mByEnd.get(i);
+            // 开始时间也在范围内的已经加入
+            if (interval.start < t0 || interval.start >= t1) {
+                out.add(interval.item);
+            }
+        }
+        return out.size() - before;
+    }
+
+    // 第一个不小于key的位置
+    private static int lowerBound(long[] values, long key) {
+        int lo = 0, hi = values.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (values[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private void rebuildIfNeeded() {
+        if (!mDirty) {
+            return;
+        }
+        mDirty = false;
+        mByStart.clear();
+        mByStart.addAll(mIntervals.values());
+        Collections.sort(mByStart, START_COMPARATOR);
+        mByEnd.clear();
+        mByEnd.addAll(mByStart);
+        Collections.sort(mByEnd, END_COMPARATOR);
+
+        int size = mByStart.size();
+        if (mStarts.length != size) {
+            mStarts = new long[size];
+            mEnds = new long[size];
+            mMaxEnds = new long[size];
+            mSortedEnds = new long[size];
+        }
+        for (int i = 0; i < size; i++) {
+            mStarts[i] = mByStart.get(i).start;
+            mEnds[i] = mByStart.get(i).end;
+            mSortedEnds[i] = mByEnd.get(i).end;
+        }
+        buildMaxEnds(0, size - 1);
+    }
+
+    private long buildMaxEnds(int lo, int hi) {
+        if (lo > hi) {
+            return Long.MIN_VALUE;
+        }
+        int mid = (lo + hi) >>> 1;
+        long maxEnd = Math.max(mEnds[mid], Math.max(buildMaxEnds(lo, mid - 1), buildMaxEnds(mid + 1, hi)));
+        mMaxEnds[mid] = maxEnd;
+        return maxEnd;
+    }
+}
@@ -0,0 +1,209 @@
+package com.wurensen.captioncore;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * 字幕边界的空间索引，使用均匀网格保存每个字幕的外接矩形，查询时只检查触摸点所在格子内的字幕，
+ * 结果按层级从上到下排列
+ *
+ * @param <T> 索引的对象类型
+ */
+public final class CaptionSpatialIndex<T> {
+
+    /**
+     * 默认的格子边长，单位像素
+     */
+    public static final float DEFAULT_CELL_SIZE = 96f;
+
+    private final float mCellSize;
+    private int mColumns = 1, mRows = 1;
+    private ArrayList<ArrayList<Entry<T>>> mCells = new ArrayList<>();
+    private final HashMap<T, Entry<T>> mEntries = new HashMap<>();
+    private final ArrayList<Entry<T>> mQueryResult = new ArrayList<>(); // 查询时复用
+
+    private static final class Entry<T> {
+        final T item;
+        int zOrder;
+        boolean hasBounds;
+        float left, top, right, bottom;
+        int cellLeft, cellTop, cellRight, cellBottom;
+
+        Entry(T item) {
+            this.item = item;
+        }
+    }
+
+    public CaptionSpatialIndex() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    public CaptionSpatialIndex(float cellSize) {
+        mCellSize = cellSize;
+        mCells.add(new ArrayList<Entry<T>>());
+    }
+
+    /**
+     * 设置索引覆盖的区域大小，重新分配所有字幕所在的格子
+     *
+     * @param width  区域宽度
+     * @param height 区域高度
+     */
+    public void resize(int width, int height) {
+        int columns = Math.max(1, (int) Math.ceil(width / mCellSize));
+        int rows = Math.max(1, (int) Math.ceil(height / mCellSize));
+        if (columns == mColumns && rows == mRows) {
+            return;
+        }
+        mColumns = columns;
+        mRows = rows;
+        mCells = new ArrayList<>(columns * rows);
+        for (int i = 0; i < columns * rows; i++) {
+            mCells.add(new ArrayList<Entry<T>>());
+        }
+        for (Entry<T> entry : mEntries.values()) {
+            if (entry.hasBounds) {
+                computeCellRange(entry);
+                addToCells(entry);
+            }
+        }
+    }
+
+    /**
+     * 加入索引，尚未设置边界时不会被查询到
+     *
+     * @param item   对象
+     * @param zOrder 层级，越大越靠上
+     */
+    public void add(T item, int zOrder) {
+        Entry<T> entry = mEntries.get(item);
+        if (entry == null) {
+            entry = new Entry<>(item);
+            mEntries.put(item, entry);
+        }
+        entry.zOrder = zOrder;
+    }
+
+    /**
+     * 更新层级
+     *
+     * @param item   对象
+     * @param zOrder 层级，越大越靠上
+     */
+    public void setZOrder(T item, int zOrder) {
+        Entry<T> entry = mEntries.get(item);
+        if (entry != null) {
+            entry.zOrder = zOrder;
+        }
+    }
+
+    /**
+     * 更新外接矩形，只有所在格子变化时才移动
+     */
+    public void update(T item, float left, float top, float right, float bottom) {
+        Entry<T> entry = mEntries.get(item);
+        if (entry == null) {
+            return;
+        }
+        entry.left = left;
+        entry.top = top;
+        entry.right = right;
+        entry.bottom = bottom;
+        int oldCellLeft = entry.cellLeft, oldCellTop = entry.cellTop;
+        int oldCellRight = entry.cellRight, oldCellBottom = entry.cellBottom;
+        computeCellRange(entry);
+        if (entry.hasBounds) {
+            if (oldCellLeft == entry.cellLeft && oldCellTop == entry.cellTop && oldCellRight == entry.cellRight
+                && oldCellBottom == entry.cellBottom) {
+                return;
+            }
+            removeFromCells(entry, oldCellLeft, oldCellTop, oldCellRight, oldCellBottom);
+        }
+        entry.hasBounds = true;
+        addToCells(entry);
+    }
+
+    /**
+     * 移出索引
+     */
+    public void remove(T item) {
+        Entry<T> entry = mEntries.remove(item);
+        if (entry != null && entry.hasBounds) {
+            removeFromCells(entry, entry.cellLeft, entry.cellTop, entry.cellRight, entry.cellBottom);
+        }
+    }
+
+    /**
+     * 查询外接矩形包含指定点的对象
+     *
+     * @param x   横坐标
+     * @param y   纵坐标
+     * @param out 结果，按层级从上到下排列
+     * @return 结果数量
+     */
+    public int query(float x, float y, List<T> out) {
+        out.clear();
+        int column = clamp((int) Math.floor(x / mCellSize), mColumns);
+        int row = clamp((int) Math.floor(y / mCellSize), mRows);
+        ArrayList<Entry<T>> cell = mCells.get(row * mColumns + column);
+        ArrayList<Entry<T>> result = mQueryResult;
+        result.clear();
+        for (int i = 0, size = cell.size(); i < size; i++) {
+            Entry<T> entry = cell.get(i);
+            if (x < entry.left || x > entry.right || y < entry.top || y > entry.bottom) {
+                continue;
+            }
+            // 插入排序，层级高的在前
+            int pos = result.size();
+            result.add(entry);
+            while (pos > 0 && result.get(pos - 1).zOrder < entry.zOrder) {
+                result.set(pos, result.get(pos - 1));
+                pos--;
+            }
+            result.set(pos, entry);
+        }
+        for (int i = 0, size = result.size(); i < size; i++) {
+            out.add(result.get(i).item);
+        }
+        result.clear();
+        return out.size();
+    }
+
+    /**
+     * @return 索引中的对象数量
+     */
+    public int size() {
+        return mEntries.size();
+    }
+
+    private void computeCellRange(Entry<T> entry) {
+        entry.cellLeft = clamp((int) Math.floor(entry.left / mCellSize), mColumns);
+        entry.cellTop = clamp((int) Math.floor(entry.top / mCellSize), mRows);
+        entry.cellRight = clamp((int) Math.floor(entry.right / mCellSize), mColumns);
+        entry.cellBottom = clamp((int) Math.floor(entry.bottom / mCellSize), mRows);
+    }
+
+    private void addToCells(Entry<T> entry) {
+        for (int row = entry.cellTop; row <= entry.cellBottom; row++) {
+            for (int column = entry.cellLeft; column <= entry.cellRight; column++) {
+                mCells.get(row * mColumns + column).add(entry);
+            }
+        }
+    }
+
+    private void removeFromCells(Entry<T> entry, int cellLeft, int cellTop, int cellRight, int cellBottom) {
+        for (int row = cellTop; row <= cellBottom; row++) {
+            for (int column = cellLeft; column <= cellRight; column++) {
+                mCells.get(row * mColumns + column).remove(entry);
+            }
+        }
+    }
+
+    private static int clamp(int value, int count) {
+        if (value < 0) {
+            return 0;
+        }
+        return value >= count ? count - 1 : value;
+    }
+}
@@ -0,0 +1,346 @@
+package com.wurensen.captioncore;
+
+/**
+ * 字幕的几何状态，以中心、缩放倍数和旋转角度表示，包含平移的边界检查、缩放的上限检查、
+ * 旋转到水平或竖直方向时的吸附以及导出区域的计算。只使用基本类型，不创建任何对象。不是线程安全的
+ */
+public final class CaptionTransform {
+
+    /**
+     * 默认的边框相对于容器的最大倍数
+     */
+    public static final float DEFAULT_MAX_BORDER_SCALE = 1.5f;
+    /**
+     * 默认的水平或竖直方向的吸附角度范围
+     */
+    public static final float DEFAULT_SNAP_DEGREE = 10f;
+
+    private final float mMaxBorderScale;
+    private final float mSnapDegree;
+
+    private float mCenterX, mCenterY; // 字幕中心在容器中的位置
+    private float mBaseWidth, mBaseHeight; // 未缩放的边框大小
+    private float mScale = 1f; // 总缩放倍数
+    private float mDegree; // 总旋转角度，绕中心顺时针，范围(-360, 360)
+    private float mFingerDegree; // 手指累积的旋转角度，吸附时用来判断是否离开吸附范围
+    private int mBoundsWidth, mBoundsHeight; // 容器大小，中心不能移出容器
+
+    public CaptionTransform() {
+        this(DEFAULT_MAX_BORDER_SCALE, DEFAULT_SNAP_DEGREE);
+    }
+
+    /**
+     * @param maxBorderScale 缩放后的边框最多为容器大小的倍数
+     * @param snapDegree     旋转到水平或竖直方向这个角度范围内时吸附
+     */
+    public CaptionTransform(float maxBorderScale, float snapDegree) {
+        if (maxBorderScale <= 0) {
+            throw new IllegalArgumentException("maxBorderScale must be > 0");
+        }
+        if (snapDegree < 0 || snapDegree >= 45) {
+            throw new IllegalArgumentException("snapDegree must be in [0, 45)");
+        }
+        mMaxBorderScale = maxBorderScale;
+        mSnapDegree = snapDegree;
+    }
+
+    /**
+     * 恢复为未缩放未旋转的状态，中心和大小不变
+     */
+    public void reset() {
+        mScale = 1f;
+        mDegree = mFingerDegree = 0;
+    }
+
+    public void set(CaptionTransform src) {
+        mCenterX = src.mCenterX;
+        mCenterY = src.mCenterY;
+        mBaseWidth = src.mBaseWidth;
+        mBaseHeight = src.mBaseHeight;
+        mScale = src.mScale;
+        mDegree = src.mDegree;
+        mFingerDegree = src.mFingerDegree;
+        mBoundsWidth = src.mBoundsWidth;
+        mBoundsHeight = src.mBoundsHeight;
+    }
+
+    public void setBounds(int width, int height) {
+        mBoundsWidth = width;
+        mBoundsHeight = height;
+    }
+
+    public void setCenter(float centerX, float centerY) {
+        mCenterX = centerX;
+        mCenterY = centerY;
+    }
+
+    /**
+     * @param baseWidth  未缩放的边框宽度
+     * @param baseHeight 未缩放的边框高度
+     */
+    public void setBaseSize(float baseWidth, float baseHeight) {
+        mBaseWidth = baseWidth;
+        mBaseHeight = baseHeight;
+    }
+
+    public void setScale(float scale) {
+        mScale = scale;
+    }
+
+    /**
+     * 设置旋转角度，手指累积的角度同时重置为这个角度
+     *
+     * @param degree 绕中心顺时针的角度
+     */
+    public void setDegree(float degree) {
+        mDegree = mFingerDegree = degree % 360;
+    }
+
+    public float getCenterX() {
+        return mCenterX;
+    }
+
+    public float getCenterY() {
+        return mCenterY;
+    }
+
+    public float getScale() {
+        return mScale;
+    }
+
+    public float getDegree() {
+        return mDegree;
+    }
+
+    /**
+     * @return 缩放后的边框宽度
+     */
+    public float getBorderWidth() {
+        return mBaseWidth * mScale;
+    }
+
+    /**
+     * @return 缩放后的边框高度
+     */
+    public float getBorderHeight() {
+        return mBaseHeight * mScale;
+    }
+
+    /**
+     * 平移，中心不能移出容器
+     *
+     * @return 是否发生了变化
+     */
+    public boolean move(float dx, float dy) {
+        dx = clampMoveX(dx);
+        dy = clampMoveY(dy);
+        if (dx == 0 && dy == 0) {
+            return false;
+        }
+        mCenterX += dx;
+        mCenterY += dy;
+        return true;
+    }
+
+    /**
+     * @return 检查边界后的x方向平移量
+     */
+    public float clampMoveX(float dx) {
+        return clampMove(mCenterX, dx, mBoundsWidth);
+    }
+
+    /**
+     * @return 检查边界后的y方向平移量
+     */
+    public float clampMoveY(float dy) {
+        return clampMove(mCenterY, dy, mBoundsHeight);
+    }
+
+    private static float clampMove(float center, float delta, int bound) {
+        float after = center + delta;
+        if (after < 0) {
+            return -center;
+        } else if (after > bound) {
+            return bound - center;
+        }
+        return delta;
+    }
+
+    /**
+     * 绕中心缩放
+     *
+     * @param scale       缩放倍数
+     * @param textSize    当前字号
+     * @param maxTextSize 最大字号
+     * @return 检查上限后实际应用的倍数，为1表示没有变化
+     */
+    public float scaleBy(float scale, float textSize, float maxTextSize) {
+        scale = clampScale(scale, textSize, maxTextSize);
+        if (scale != 1) {
+            mScale *= scale;
+        }
+        return scale;
+    }
+
+    /**
+     * 边框不能超过容器大小的设定倍数，字号不能超过最大字号
+     *
+     * @param scale       缩放倍数
+     * @param textSize    当前字号
+     * @param maxTextSize 最大字号
+     * @return 检查上限后的倍数
+     */
+    public float clampScale(float scale, float textSize, float maxTextSize) {
+        float borderWidth = mBaseWidth * mScale, borderHeight = mBaseHeight * mScale;
+        if (borderWidth * scale > mBoundsWidth * mMaxBorderScale) {
+            return mBoundsWidth * mMaxBorderScale / borderWidth;
+        }
+        if (borderHeight * scale > mBoundsHeight * mMaxBorderScale) {
+            return mBoundsHeight * mMaxBorderScale / borderHeight;
+        }
+        if (textSize * scale > maxTextSize) {
+            return maxTextSize / textSize;
+        }
+        return scale;
+    }
+
+    /**
+     * 绕中心旋转，靠近水平或竖直方向时吸附
+     *
+     * @param degree 手指旋转的角度
+     * @return 吸附后实际应用的角度，为0表示没有变化
+     */
+    public float rotateBy(float degree) {
+        degree = snapRotation(degree);
+        if (degree != 0) {
+            mDegree = (mDegree + degree) % 360;
+        }
+        return degree;
+    }
+
+    /**
+     * 当处于水平或竖直方向时，手指累积的角度离开吸附范围才旋转，否则保持不动；
+     * 当处于其他方向时，一到吸附范围的边界，立即旋转成水平或竖直方向。会累积手指的旋转角度
+     *
+     * @param degree 手指旋转的角度
+     * @return 需要旋转的角度
+     */
+    public float snapRotation(float degree) {
+        mFingerDegree = (mFingerDegree + degree) % 360;
+        if (mDegree % 90 == 0) {
+            for (int i = -270; i <= 360; i += 90) {
+                if (mDegree == i) {
+                    if (mFingerDegree >= i - mSnapDegree && mFingerDegree <= i + mSnapDegree) {
+                        return 0;
+                    }
+                    // 一次性返回需要旋转的角度
+                    return mFingerDegree - i;
+                }
+            }
+        }
+        // 检查是否进入水平或竖直区域
+        float afterDegree = (mDegree + degree) % 360;
+        for (int i = -270; i <= 360; i += 90) {
+            if (afterDegree >= i - mSnapDegree && afterDegree <= i + mSnapDegree) {
+                return i - mDegree;
+            }
+        }
+        return degree;
+    }
+
+    /**
+     * 生成把未缩放未旋转的边框映射到当前位置的矩阵
+     *
+     * @param baseCenterX 未变换的边框中心x
+     * @param baseCenterY 未变换的边框中心y
+     * @param out         保存结果
+     */
+    public void toAffine(float baseCenterX, float baseCenterY, Affine2D out) {
+        out.setTranslate(-baseCenterX, -baseCenterY);
+        out.postScale(mScale, mScale, 0, 0);
+        out.postRotate(mDegree, 0, 0);
+        out.postTranslate(mCenterX, mCenterY);
+    }
+
+    /**
+     * 获取边框的四个顶点，依次为左上、右上、左下、右下
+     *
+     * @param out 保存结果，按x、y交替排列，长度至少为8
+     */
+    public void getVertices(float[] out) {
+        float halfWidth = mBaseWidth * mScale / 2, halfHeight = mBaseHeight * mScale / 2;
+        float sin = Affine2D.sinDegrees(mDegree), cos = Affine2D.cosDegrees(mDegree);
+        float wx = halfWidth * cos, wy = halfWidth * sin; // 半宽方向
+        float hx = -halfHeight * sin, hy = halfHeight * cos; // 半高方向
+        out[0] = mCenterX - wx - hx;
+        out[1] = mCenterY - wy - hy;
+        out[2] = mCenterX + wx - hx;
+        out[3] = mCenterY + wy - hy;
+        out[4] = mCenterX - wx + hx;
+        out[5] = mCenterY - wy + hy;
+        out[6] = mCenterX + wx + hx;
+        out[7] = mCenterY + wy + hy;
+    }
+
+    /**
+     * @return 点是否在旋转后的边框内
+     */
+    public boolean contains(float x, float y) {
+        return OrientedBoundingBox.contains(mCenterX, mCenterY, mBaseWidth * mScale / 2, mBaseHeight * mScale / 2,
+            mDegree, x, y);
+    }
+
+    /**
+     * @param center 中心坐标
+     * @param size   边框大小
+     * @param scale  导出的目标相对于容器的倍数
+     * @return 摆正后的字幕在目标中的起始边界
+     */
+    public static int getTargetStart(float center, float size, float scale) {
+        return (int) ((center - size / 2) * scale);
+    }
+
+    /**
+     * @param center 中心坐标
+     * @param size   边框大小
+     * @param scale  导出的目标相对于容器的倍数
+     * @return 摆正后的字幕在目标中的结束边界
+     */
+    public static int getTargetEnd(float center, float size, float scale) {
+        return (int) ((center + size / 2) * scale);
+    }
+
+    /**
+     * @return 旋转后的外接矩形在x方向的半径
+     */
+    public static float getRotatedExtentX(float width, float height, float degree) {
+        return Math.abs(width / 2 * Affine2D.cosDegrees(degree)) + Math.abs(height / 2 * Affine2D.sinDegrees(degree));
+    }
+
+    /**
+     * @return 旋转后的外接矩形在y方向的半径
+     */
+    public static float getRotatedExtentY(float width, float height, float degree) {
+        return Math.abs(width / 2 * Affine2D.sinDegrees(degree)) + Math.abs(height / 2 * Affine2D.cosDegrees(degree));
+    }
+
+    /**
+     * 获取导出时摆正后的字幕在目标中的区域
+     *
+     * @param scale 导出的目标相对于容器的倍数
+     * @param out   依次保存左、上、右、下边界，长度至少为4
+     */
+    public void getTargetRect(float scale, int[] out) {
+        float borderWidth = mBaseWidth * mScale, borderHeight = mBaseHeight * mScale;
+        out[0] = getTargetStart(mCenterX, borderWidth, scale);
+        out[1] = getTargetStart(mCenterY, borderHeight, scale);
+        out[2] = getTargetEnd(mCenterX, borderWidth, scale);
+        out[3] = getTargetEnd(mCenterY, borderHeight, scale);
+    }
+
+    @Override
+    public String toString() {
+        return "CaptionTransform{" + "centerX=" + mCenterX + ", centerY=" + mCenterY + ", baseWidth=" + mBaseWidth
+            + ", baseHeight=" + mBaseHeight + ", scale=" + mScale + ", degree=" + mDegree + '}';
+    }
+}
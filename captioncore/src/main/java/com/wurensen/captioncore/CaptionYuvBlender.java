@@ -0,0 +1,189 @@
+package com.wurensen.captioncore;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 把字幕直接混合到YUV420帧上，供编码器使用，不需要整帧在RGB和YUV之间来回转换。
+ * 支持NV21、I420以及任意行跨度和像素跨度的平面，缓冲区可以是直接缓冲区。
+ * 颜色按BT.601有限范围转换，每个字幕只处理旋转后外接矩形内的像素，帧按行分成条带并行处理。
+ * 不依赖Android，可以在JVM中测试
+ */
+public final class CaptionYuvBlender {
+
+    /**
+     * 默认的条带高度，单位像素，必须为偶数
+     */
+    public static final int DEFAULT_BAND_HEIGHT = 64;
+
+    private final ExecutorService mExecutor;
+    private final int mBandHeight;
+
+    /**
+     * 在调用线程中混合
+     */
+    public CaptionYuvBlender() {
+        this(null, DEFAULT_BAND_HEIGHT);
+    }
+
+    /**
+     * @param executor   执行条带混合的线程池，为null时在调用线程中混合
+     * @param bandHeight 条带高度，单位像素，必须为正偶数，保证每行色度只属于一个条带
+     */
+    public CaptionYuvBlender(ExecutorService executor, int bandHeight) {
+        if (bandHeight <= 0 || (bandHeight & 1) != 0) {
+            throw new IllegalArgumentException("bandHeight must be a positive even number");
+        }
+        mExecutor = executor;
+        mBandHeight = bandHeight;
+    }
+
+    /**
+     * 混合到NV21帧，Y平面之后是交错的VU平面，从缓冲区当前位置开始存放
+     *
+     * @param frame  帧数据
+     * @param width  帧宽度
+     * @param height 帧高度
+     * @param layers 字幕图层，按层级从下到上排列
+     * @throws InterruptedException 等待线程池时被中断
+     */
+    public void blendNv21(ByteBuffer frame, int width, int height, List<CaptionCompositor.Layer> layers)
+        throws InterruptedException {
+        int position = frame.position();
+        int uvOffset = position + width * height;
+        int uvRowStride = (width + 1) / 2 * 2;
+        blend(frame, position, width, frame, uvOffset + 1, frame, uvOffset, uvRowStride, 2, width, height, layers);
+    }
+
+    /**
+     * 混合到I420帧，依次为Y、U、V平面，从缓冲区当前位置开始存放
+     *
+     * @param frame  帧数据
+     * @param width  帧宽度
+     * @param height 帧高度
+     * @param layers 字幕图层，按层级从下到上排列
+     * @throws InterruptedException 等待线程池时被中断
+     */
+    public void blendI420(ByteBuffer frame, int width, int height, List<CaptionCompositor.Layer> layers)
+        throws InterruptedException {
+        int position = frame.position();
+        int chromaWidth = (width + 1) / 2;
+        int chromaSize = chromaWidth * ((height + 1) / 2);
+        int uOffset = position + width * height;
+        blend(frame, position, width, frame, uOffset, frame, uOffset + chromaSize, chromaWidth, 1, width, height,
+            layers);
+    }
+
+    /**
+     * 混合到任意布局的YUV420平面，各平面从缓冲区当前位置开始存放，与Android的Image.Plane一致
+     *
+     * @param yPlane        Y平面
+     * @param yRowStride    Y平面的行跨度
+     * @param uPlane        U平面
+     * @param vPlane        V平面
+     * @param uvRowStride   U、V平面的行跨度
+     * @param uvPixelStride U、V平面的像素跨度，I420为1，NV21、NV12为2
+     * @param width         帧宽度
+     * @param height        帧高度
+     * @param layers        字幕图层，按层级从下到上排列
+     * @throws InterruptedException 等待线程池时被中断
+     */
+    public void blend(ByteBuffer yPlane, int yRowStride, ByteBuffer uPlane, ByteBuffer vPlane, int uvRowStride,
+        int uvPixelStride, int width, int height, List<CaptionCompositor.Layer> layers) throws InterruptedException {
+        blend(yPlane, yPlane.position(), yRowStride, uPlane, uPlane.position(), vPlane, vPlane.position(),
+            uvRowStride, uvPixelStride, width, height, layers);
+    }
+
+    private void blend(final ByteBuffer yPlane, final int yOffset, final int yRowStride, final ByteBuffer uPlane,
+        final int uOffset, final ByteBuffer vPlane, final int vOffset, final int uvRowStride, final int uvPixelStride,
+        int width, int height, List<CaptionCompositor.Layer> layers) throws InterruptedException {
+        final ArrayList<CaptionCompositor.Layer> visibleLayers = new ArrayList<>(layers.size());
+        for (int i = 0; i < layers.size(); i++) {
+            CaptionCompositor.Layer layer = layers.get(i);
+            if (layer.prepare(width, height)) {
+                visibleLayers.add(layer);
+            }
+        }
+        if (visibleLayers.isEmpty()) {
+            return;
+        }
+        CaptionBands.run(mExecutor, height, mBandHeight, new CaptionBands.Band() {
+            @Override
+            public void run(int top, int bottom) {
+                for (int i = 0; i < visibleLayers.size(); i++) {
+                    CaptionCompositor.Layer layer = visibleLayers.get(i);
+                    if (!layer.intersectsRows(top, bottom)) {
+                        continue;
+                    }
+                    blendLuma(yPlane, yOffset, yRowStride, top, bottom, layer);
+                    blendChroma(uPlane, uOffset, vPlane, vOffset, uvRowStride, uvPixelStride, top, bottom, layer);
+                }
+            }
+        });
+    }
+
+    private static void blendLuma(ByteBuffer plane, int offset, int rowStride, int top, int bottom,
+        CaptionCompositor.Layer layer) {
+        int rowStart = Math.max(top, layer.getBoundsTop());
+        int rowEnd = Math.min(bottom, layer.getBoundsBottom());
+        for (int y = rowStart; y < rowEnd; y++) {
+            int row = offset + y * rowStride;
+            for (int x = layer.getBoundsLeft(); x < layer.getBoundsRight(); x++) {
+                int color = layer.sample(x + 0.5f, y + 0.5f);
+                int alpha = color >>> 24;
+                if (alpha == 0) {
+                    continue;
+                }
+                int index = row + x;
+                int dst = plane.get(index) & 0xff;
+                plane.put(index, (byte) blend(premultipliedY(color, alpha), dst, alpha));
+            }
+        }
+    }
+
+    // 每个色度像素对应2x2的亮度像素，在其中心采样
+    private static void blendChroma(ByteBuffer uPlane, int uOffset, ByteBuffer vPlane, int vOffset, int rowStride,
+        int pixelStride, int top, int bottom, CaptionCompositor.Layer layer) {
+        int rowStart = Math.max(top, layer.getBoundsTop()) / 2;
+        int rowEnd = (Math.min(bottom, layer.getBoundsBottom()) + 1) / 2;
+        int columnStart = layer.getBoundsLeft() / 2;
+        int columnEnd = (layer.getBoundsRight() + 1) / 2;
+        for (int y = rowStart; y < rowEnd; y++) {
+            for (int x = columnStart; x < columnEnd; x++) {
+                int color = layer.sample(x * 2 + 1, y * 2 + 1);
+                int alpha = color >>> 24;
+                if (alpha == 0) {
+                    continue;
+                }
+                int delta = y * rowStride + x * pixelStride;
+                int uIndex = uOffset + delta;
+                int vIndex = vOffset + delta;
+                uPlane.put(uIndex, (byte) blend(premultipliedU(color, alpha), uPlane.get(uIndex) & 0xff, alpha));
+                vPlane.put(vIndex, (byte) blend(premultipliedV(color, alpha), vPlane.get(vIndex) & 0xff, alpha));
+            }
+        }
+    }
+
+    private static int blend(int premultipliedSrc, int dst, int alpha) {
+        int value = premultipliedSrc + CaptionCompositor.div255(dst * (255 - alpha));
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+
+    // 预乘alpha的颜色转为乘以alpha后的Y，即Y * alpha / 255
+    static int premultipliedY(int color, int alpha) {
+        int r = (color >> 16) & 0xff, g = (color >> 8) & 0xff, b = color & 0xff;
+        return ((66 * r + 129 * g + 25 * b + 128) >> 8) + CaptionCompositor.div255(16 * alpha);
+    }
+
+    static int premultipliedU(int color, int alpha) {
+        int r = (color >> 16) & 0xff, g = (color >> 8) & 0xff, b = color & 0xff;
+        return ((-38 * r - 74 * g + 112 * b + 128) >> 8) + CaptionCompositor.div255(128 * alpha);
+    }
+
+    static int premultipliedV(int color, int alpha) {
+        int r = (color >> 16) & 0xff, g = (color >> 8) & 0xff, b = color & 0xff;
+        return ((112 * r - 94 * g - 18 * b + 128) >> 8) + CaptionCompositor.div255(128 * alpha);
+    }
+}
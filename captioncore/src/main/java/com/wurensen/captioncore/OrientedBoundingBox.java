@@ -0,0 +1,49 @@
+package com.wurensen.captioncore;
+
+/**
+ * 旋转矩形的点击检测，把触摸点逆向旋转到矩形的局部坐标系后与半宽半高比较，纯数学计算，不创建任何对象
+ */
+public final class OrientedBoundingBox {
+
+    private OrientedBoundingBox() {
+    }
+
+    /**
+     * @param centerX    矩形中心x
+     * @param centerY    矩形中心y
+     * @param halfWidth  矩形宽度的一半
+     * @param halfHeight 矩形高度的一半
+     * @param degree     矩形绕中心顺时针旋转的角度
+     * @param x          触摸点x
+     * @param y          触摸点y
+     * @return 触摸点是否落在旋转后的矩形内（包含边界）
+     */
+    public static boolean contains(float centerX, float centerY, float halfWidth, float halfHeight, float degree,
+        float x, float y) {
+        double radians = Math.toRadians(degree);
+        return contains(centerX, centerY, halfWidth, halfHeight, Math.cos(radians), Math.sin(radians), x, y);
+    }
+
+    /**
+     * 使用预先计算好的三角函数值检测，适合同一矩形多次检测的场景
+     *
+     * @param centerX    矩形中心x
+     * @param centerY    矩形中心y
+     * @param halfWidth  矩形宽度的一半
+     * @param halfHeight 矩形高度的一半
+     * @param cos        旋转角度的余弦值
+     * @param sin        旋转角度的正弦值
+     * @param x          触摸点x
+     * @param y          触摸点y
+     * @return 触摸点是否落在旋转后的矩形内（包含边界）
+     */
+    public static boolean contains(float centerX, float centerY, float halfWidth, float halfHeight, double cos,
+        double sin, float x, float y) {
+        double dx = x - centerX;
+        double dy = y - centerY;
+        // 逆向旋转到矩形的局部坐标系
+        double localX = dx * cos + dy * sin;
+        double localY = -dx * sin + dy * cos;
+        return Math.abs(localX) <= halfWidth && Math.abs(localY) <= halfHeight;
+    }
+}
@@ -0,0 +1,147 @@
+package com.wurensen.captioncore;
+
+/**
+ * 计算能让文字完整放进给定区域的字号。文字只按换行符"\n"换行，宽度和高度都近似与字号成正比，
+ * 因此先按比例直接算出目标字号，再用少量固定次数的迭代修正测量误差，不需要反复创建排版对象
+ */
+public final class TextSizeFitter {
+
+    /**
+     * 按比例修正的次数，正常情况下一到两次即可收敛，超过后每次额外缩小一点直到放进区域
+     */
+    public static final int MAX_ITERATIONS = 6;
+
+    // 超过最大修正次数后额外的缩小倍数
+    private static final float SAFETY_SCALE = 0.9999f;
+
+    /**
+     * 文字测量接口，与具体的画笔实现解耦
+     */
+    public interface Measurer {
+        /**
+         * @param text     文本
+         * @param start    起始位置
+         * @param end      结束位置（不包含）
+         * @param textSize 字号
+         * @return 指定字号下一行文字的宽度
+         */
+        float measureLineWidth(CharSequence text, int start, int end, float textSize);
+
+        /**
+         * @param textSize 字号
+         * @return 指定字号下的行高
+         */
+        float getLineHeight(float textSize);
+    }
+
+    private final Measurer mMeasurer;
+
+    // 上一次的计算结果
+    private String mLastText;
+    private Object mLastTypeface;
+    private float mLastStartTextSize;
+    private float mLastAvailableWidth;
+    private float mLastAvailableHeight;
+    private float mLastResult;
+
+    public TextSizeFitter(Measurer measurer) {
+        mMeasurer = measurer;
+    }
+
+    /**
+     * 计算适应区域的字号，字号只会缩小不会放大
+     *
+     * @param text            文本
+     * @param typeface        字体，只作为缓存的键使用
+     * @param textSize        当前字号
+     * @param availableWidth  可用宽度
+     * @param availableHeight 可用高度
+     * @return 适应区域的字号，按这个字号测量的文字不会超出区域
+     */
+    public float fit(CharSequence text, Object typeface, float textSize, float availableWidth, float availableHeight) {
+        if (availableWidth == 0 || availableHeight == 0 || text.length() == 0) {
+            return textSize;
+        }
+        if (mLastText != null && mLastTypeface == typeface && mLastStartTextSize == textSize
+            && mLastAvailableWidth == availableWidth && mLastAvailableHeight == availableHeight
+            && contentEquals(mLastText, text)) {
+            return mLastResult;
+        }
+        float result = solve(text, textSize, availableWidth, availableHeight);
+        mLastText = text.toString();
+        mLastTypeface = typeface;
+        mLastStartTextSize = textSize;
+        mLastAvailableWidth = availableWidth;
+        mLastAvailableHeight = availableHeight;
+        mLastResult = result;
+        return result;
+    }
+
+    /**
+     * 清除缓存的计算结果
+     */
+    public void clear() {
+        mLastText = null;
+        mLastTypeface = null;
+    }
+
+    private float solve(CharSequence text, float textSize, float availableWidth, float availableHeight) {
+        // 只测量一次所有行，找出最长的一行，后续修正只需要测量这一行
+        int lineCount = 1;
+        int maxLineStart = 0, maxLineEnd = 0;
+        float maxWidth = -1;
+        int lineStart = 0;
+        int length = text.length();
+        for (int i = 0; i <= length; i++) {
+            if (i == length || text.charAt(i) == '\n') {
+                float lineWidth = mMeasurer.measureLineWidth(text, lineStart, i, textSize);
+                if (lineWidth > maxWidth) {
+                    maxWidth = lineWidth;
+                    maxLineStart = lineStart;
+                    maxLineEnd = i;
+                }
+                if (i < length) {
+                    lineCount++;
+                }
+                lineStart = i + 1;
+            }
+        }
+
+        float size = textSize;
+        for (int i = 0; ; i++) {
+            if (i > 0) {
+                maxWidth = mMeasurer.measureLineWidth(text, maxLineStart, maxLineEnd, size);
+            }
+            float height = mMeasurer.getLineHeight(size) * lineCount;
+            float widthScale = maxWidth > 0 ? availableWidth / maxWidth : Float.MAX_VALUE;
+            float heightScale = height > 0 ? availableHeight / height : Float.MAX_VALUE;
+            float resizeScale = Math.min(widthScale, heightScale);
+            if (resizeScale >= 1) {
+                return size;
+            }
+            if (i >= MAX_ITERATIONS) {
+                // 测量误差迟迟不收敛时每次多缩小一点，保证最终结果一定能放进区域
+                resizeScale *= SAFETY_SCALE;
+            }
+            float next = size * resizeScale;
+            if (next == size) {
+                // 已经缩小到浮点精度的极限仍然放不下，如行高包含固定间距，任何字号都放不下
+                return next;
+            }
+            size = next;
+        }
+    }
+
+    private static boolean contentEquals(String a, CharSequence b) {
+        int length = a.length();
+        if (length != b.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (a.charAt(i) != b.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,87 @@
+package com.wurensen.captioncore;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class Affine2DTest {
+
+    private static final float DELTA = 1e-3f;
+
+    @Test
+    public void inverseIsCachedUntilModified() {
+        Affine2D matrix = new Affine2D();
+        matrix.setRotate(30, 10, 20);
+        Affine2D inverse = matrix.getInverse();
+        assertNotNull(inverse);
+        float scaleX = inverse.getScaleX();
+        // 没有修改时返回同一个对象，内容不变
+        assertSame(inverse, matrix.getInverse());
+        assertEquals(scaleX, matrix.getInverse().getScaleX(), 0);
+
+        // 修改后重新计算，仍复用缓存对象
+        matrix.postScale(2, 2, 0, 0);
+        assertSame(inverse, matrix.getInverse());
+        assertEquals(scaleX / 2, matrix.getInverse().getScaleX(), DELTA);
+    }
+
+    @Test
+    public void inverseMapsBack() {
+        Affine2D matrix = new Affine2D();
+        matrix.setTranslate(-50, -20);
+        matrix.postScale(1.5f, 1.5f, 0, 0);
+        matrix.postRotate(37, 0, 0);
+        matrix.postTranslate(300, 400);
+        float[] src = {0, 0, 100, 40, -30, 77};
+        float[] mapped = new float[src.length];
+        float[] back = new float[src.length];
+        matrix.mapPoints(mapped, src);
+        assertTrue(matrix.inverseMapPoints(back, 0, mapped, 0, 3));
+        for (int i = 0; i < src.length; i++) {
+            assertEquals(src[i], back[i], DELTA);
+        }
+
+        Affine2D product = new Affine2D(matrix);
+        product.preConcat(matrix.getInverse());
+        assertEquals(1, product.getScaleX(), DELTA);
+        assertEquals(0, product.getSkewX(), DELTA);
+        assertEquals(0, product.getTransX(), DELTA);
+        assertEquals(0, product.getSkewY(), DELTA);
+        assertEquals(1, product.getScaleY(), DELTA);
+        assertEquals(0, product.getTransY(), DELTA);
+    }
+
+    @Test
+    public void singularMatrixHasNoInverse() {
+        Affine2D matrix = new Affine2D();
+        matrix.setScale(0, 1, 0, 0);
+        assertNull(matrix.getInverse());
+        float[] dst = {7, 8};
+        assertFalse(matrix.inverseMapPoints(dst, 0, new float[]{1, 2}, 0, 1));
+        assertEquals(7, dst[0], 0);
+        assertEquals(8, dst[1], 0);
+
+        // 恢复可逆后重新计算
+        matrix.reset();
+        assertNotNull(matrix.getInverse());
+        assertTrue(matrix.getInverse().isIdentity());
+    }
+
+    @Test
+    public void rightAnglesAreExact() {
+        Affine2D matrix = new Affine2D();
+        for (int degree = -270; degree <= 360; degree += 90) {
+            matrix.setRotate(degree, 0, 0);
+            float[] point = {3, 5};
+            matrix.mapPoints(point, point);
+            // 90度的倍数没有三角函数误差
+            assertEquals(Math.round(point[0]), point[0], 0);
+            assertEquals(Math.round(point[1]), point[1], 0);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.wurensen.captioncore;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CaptionCompositorTest {
+
+    private static final int RED = 0xffff0000;
+    private static final int BACKGROUND = 0xff204060;
+
+    @Test
+    public void sampleBilinearAtPixelCentersIsExact() {
+        int[] src = {0xff000000, 0xff0000ff, 0x80800000, 0x00000000};
+        assertEquals(src[0], CaptionCompositor.sampleBilinear(src, 2, 2, 0, 0));
+        assertEquals(src[1], CaptionCompositor.sampleBilinear(src, 2, 2, 1, 0));
+        assertEquals(src[2], CaptionCompositor.sampleBilinear(src, 2, 2, 0, 1));
+        assertEquals(src[3], CaptionCompositor.sampleBilinear(src, 2, 2, 1, 1));
+    }
+
+    @Test
+    public void sampleBilinearInterpolatesChannels() {
+        int[] src = {0xff000000, 0xff0000fe};
+        // 两个像素中间各占一半
+        assertEquals(0xff00007f, CaptionCompositor.sampleBilinear(src, 2, 1, 0.5f, 0));
+        // 四分之一处
+        int quarter = CaptionCompositor.sampleBilinear(src, 2, 1, 0.25f, 0) & 0xff;
+        assertTrue(Math.abs(quarter - 0xfe / 4) <= 1);
+    }
+
+    @Test
+    public void sampleBilinearFadesOutsideImage() {
+        int[] src = new int[4 * 4];
+        Arrays.fill(src, 0xffffffff);
+        // 图片外的部分视为透明，边缘外半个像素处只剩一半
+        int color = CaptionCompositor.sampleBilinear(src, 4, 4, -0.5f, 1);
+        assertTrue(Math.abs((color >>> 24) - 128) <= 1);
+        assertEquals(color >>> 24, (color >> 16) & 0xff);
+        int corner = CaptionCompositor.sampleBilinear(src, 4, 4, 3.5f, 3.5f);
+        assertTrue(Math.abs((corner >>> 24) - 64) <= 1);
+        // 均匀区域直接返回原颜色
+        assertEquals(0xffffffff, CaptionCompositor.sampleBilinear(src, 4, 4, 1.3f, 2.7f));
+    }
+
+    @Test
+    public void premultiplyMatchesRoundedReference() {
+        assertEquals(0, CaptionCompositor.premultiply(0x00ffffff));
+        assertEquals(0xff123456, CaptionCompositor.premultiply(0xff123456));
+        assertEquals(0x80800000, CaptionCompositor.premultiply(0x80ff0000));
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            int color = random.nextInt();
+            int alpha = color >>> 24;
+            int result = CaptionCompositor.premultiply(color);
+            assertEquals(alpha, result >>> 24);
+            for (int shift = 0; shift < 24; shift += 8) {
+                int expected = Math.round(((color >>> shift) & 0xff) * alpha / 255f);
+                assertEquals(expected, (result >>> shift) & 0xff);
+            }
+        }
+    }
+
+    @Test
+    public void blendSrcOverMatchesFloatReference() {
+        assertEquals(0xff808080, CaptionCompositor.blendSrcOver(0x80808080, 0xff000000, 0x80));
+        assertEquals(0xff102030, CaptionCompositor.blendSrcOver(0, 0xff102030, 0));
+        Random random = new Random(2);
+        for (int i = 0; i < 100000; i++) {
+            int src = CaptionCompositor.premultiply(random.nextInt());
+            int dst = CaptionCompositor.premultiply(random.nextInt());
+            int alpha = src >>> 24;
+            int result = CaptionCompositor.blendSrcOver(src, dst, alpha);
+            for (int shift = 0; shift < 32; shift += 8) {
+                float expected = ((src >>> shift) & 0xff) + ((dst >>> shift) & 0xff) * (255 - alpha) / 255f;
+                assertEquals(Math.min(255, expected), (result >>> shift) & 0xff, 1);
+            }
+        }
+    }
+
+    @Test
+    public void rotatesAboutRelativeCenter() throws InterruptedException {
+        int width = 200, height = 100;
+        int[] pixels = new int[40 * 10];
+        Arrays.fill(pixels, RED);
+        int[] relative = newFrame(width, height);
+        int[] absolute = newFrame(width, height);
+        List<CaptionCompositor.Layer> layers = new ArrayList<>();
+        layers.add(new CaptionCompositor.Layer(pixels, 40, 10, true).relativeCenter(0.25f, 0.5f).degree(90));
+        new CaptionCompositor().composite(relative, width, height, layers);
+        layers.set(0, new CaptionCompositor.Layer(pixels, 40, 10, true).center(50, 50).degree(90));
+        new CaptionCompositor().composite(absolute, width, height, layers);
+        assertArrayEquals(absolute, relative);
+
+        // 旋转90度后竖直方向长40，水平方向宽10，中心在(50, 50)
+        assertEquals(RED, relative[50 * width + 50]);
+        assertEquals(RED, relative[32 * width + 50]);
+        assertEquals(RED, relative[67 * width + 47]);
+        assertEquals(BACKGROUND, relative[50 * width + 60]);
+        assertEquals(BACKGROUND, relative[50 * width + 40]);
+        assertEquals(BACKGROUND, relative[25 * width + 50]);
+        assertEquals(BACKGROUND, relative[75 * width + 50]);
+    }
+
+    @Test
+    public void destinationSizeScalesAboutCenter() throws InterruptedException {
+        int width = 100, height = 100;
+        int[] pixels = new int[10 * 10];
+        Arrays.fill(pixels, RED);
+        int[] frame = newFrame(width, height);
+        List<CaptionCompositor.Layer> layers = new ArrayList<>();
+        layers.add(new CaptionCompositor.Layer(pixels, 10, 10, true).center(50, 50).destinationSize(40, 20));
+        new CaptionCompositor().composite(frame, width, height, layers);
+        assertEquals(RED, frame[50 * width + 32]);
+        assertEquals(RED, frame[42 * width + 67]);
+        assertEquals(BACKGROUND, frame[50 * width + 27]);
+        assertEquals(BACKGROUND, frame[38 * width + 50]);
+    }
+
+    @Test
+    public void bandsAndBuffersMatchSingleBand() throws InterruptedException {
+        int width = 321, height = 239;
+        List<CaptionCompositor.Layer> layers = randomLayers(new Random(4), 12);
+        int[] expected = newFrame(width, height);
+        new CaptionCompositor(null, height).composite(expected, width, height, layers);
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (int bandHeight : new int[]{1, 7, 64}) {
+                int[] array = newFrame(width, height);
+                new CaptionCompositor(executor, bandHeight).composite(array, width, height, layers);
+                assertArrayEquals(expected, array);
+
+                // 从非零位置开始的堆缓冲区
+                int offset = 5;
+                IntBuffer heap = IntBuffer.allocate(offset + width * height);
+                heap.position(offset);
+                heap.put(newFrame(width, height));
+                heap.position(offset);
+                new CaptionCompositor(executor, bandHeight).composite(heap, width, height, layers);
+                assertEquals(offset, heap.position());
+                assertArrayEquals(expected, Arrays.copyOfRange(heap.array(), offset, offset + width * height));
+
+                IntBuffer direct =
+                    ByteBuffer.allocateDirect(width * height * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+                direct.put(newFrame(width, height));
+                direct.rewind();
+                new CaptionCompositor(executor, bandHeight).composite(direct, width, height, layers);
+                assertEquals(0, direct.position());
+                int[] result = new int[width * height];
+                direct.get(result);
+                assertArrayEquals(expected, result);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void layersOutsideFrameAreSkipped() throws InterruptedException {
+        int[] pixels = new int[8 * 8];
+        Arrays.fill(pixels, RED);
+        int[] frame = newFrame(64, 64);
+        List<CaptionCompositor.Layer> layers = new ArrayList<>();
+        layers.add(new CaptionCompositor.Layer(pixels, 8, 8, true).center(-20, 30));
+        layers.add(new CaptionCompositor.Layer(pixels, 8, 8, true).relativeCenter(1.5f, 0.5f).degree(45));
+        new CaptionCompositor().composite(frame, 64, 64, layers);
+        assertArrayEquals(newFrame(64, 64), frame);
+    }
+
+    private static int[] newFrame(int width, int height) {
+        int[] frame = new int[width * height];
+        Arrays.fill(frame, BACKGROUND);
+        return frame;
+    }
+
+    // 随机大小、位置、角度和透明度的图层，部分超出帧
+    static List<CaptionCompositor.Layer> randomLayers(Random random, int count) {
+        List<CaptionCompositor.Layer> layers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int width = 1 + random.nextInt(90);
+            int height = 1 + random.nextInt(40);
+            int[] pixels = new int[width * height];
+            for (int j = 0; j < pixels.length; j++) {
+                pixels[j] = random.nextInt(4) == 0 ? 0 : random.nextInt();
+            }
+            CaptionCompositor.Layer layer = new CaptionCompositor.Layer(pixels, width, height, false)
+                .relativeCenter(random.nextFloat() * 1.2f - 0.1f, random.nextFloat() * 1.2f - 0.1f)
+                .degree(random.nextFloat() * 360 - 180);
+            if (random.nextBoolean()) {
+                layer.destinationSize(width * (0.5f + random.nextFloat() * 2),
+                    height * (0.5f + random.nextFloat() * 2));
+            }
+            layers.add(layer);
+        }
+        return layers;
+    }
+}
@@ -0,0 +1,157 @@
+package com.wurensen.captioncore;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CaptionTransformTest {
+
+    private static final int BOUNDS_WIDTH = 200, BOUNDS_HEIGHT = 400;
+
+    private CaptionTransform mTransform;
+
+    @Before
+    public void setUp() {
+        mTransform = new CaptionTransform();
+        mTransform.setBounds(BOUNDS_WIDTH, BOUNDS_HEIGHT);
+        mTransform.setBaseSize(100, 50);
+        mTransform.setCenter(100, 200);
+    }
+
+    @Test
+    public void moveClampsCenterToBounds() {
+        assertTrue(mTransform.move(-150, 20));
+        assertEquals(0, mTransform.getCenterX(), 0);
+        assertEquals(220, mTransform.getCenterY(), 0);
+
+        // 已经在边界上，继续向外移动没有变化
+        assertFalse(mTransform.move(-10, 0));
+
+        assertTrue(mTransform.move(500, 500));
+        assertEquals(BOUNDS_WIDTH, mTransform.getCenterX(), 0);
+        assertEquals(BOUNDS_HEIGHT, mTransform.getCenterY(), 0);
+    }
+
+    @Test
+    public void scaleClampsToBorderLimit() {
+        // 宽度最多为容器宽度的1.5倍：100 * 3 = 300
+        assertEquals(3f, mTransform.scaleBy(4f, 10, 1000), 1e-6f);
+        assertEquals(300, mTransform.getBorderWidth(), 1e-3f);
+        assertEquals(1f, mTransform.scaleBy(1.2f, 10, 1000), 1e-6f);
+
+        // 高度上限
+        CaptionTransform tall = new CaptionTransform();
+        tall.setBounds(1000, 100);
+        tall.setBaseSize(100, 50);
+        assertEquals(3f, tall.scaleBy(5f, 10, 1000), 1e-6f);
+    }
+
+    @Test
+    public void scaleClampsToMaxTextSize() {
+        assertEquals(2f, mTransform.scaleBy(2.5f, 40, 80), 1e-6f);
+        assertEquals(2f, mTransform.getScale(), 1e-6f);
+        // 缩小不受上限影响
+        assertEquals(0.5f, mTransform.scaleBy(0.5f, 80, 80), 0);
+    }
+
+    @Test
+    public void snapRotationMatchesBaseline() {
+        Random random = new Random(7);
+        for (float start : new float[]{0, 90, -180, 30, 85}) {
+            mTransform.setDegree(start);
+            BaselineRotation baseline = new BaselineRotation(start);
+            for (int i = 0; i < 2000; i++) {
+                // 大部分是每帧的小角度，偶尔有较大的跳变
+                float delta = random.nextInt(10) == 0 ? (random.nextFloat() - 0.5f) * 60
+                    : (random.nextFloat() - 0.5f) * 6;
+                float expected = baseline.rotate(delta);
+                assertEquals("step " + i + " from " + start, expected, mTransform.rotateBy(delta), 0);
+                assertEquals("step " + i + " from " + start, baseline.mTotalDegree, mTransform.getDegree(), 0);
+            }
+        }
+    }
+
+    @Test
+    public void snapRotationHoldsUntilLeavingRange() {
+        mTransform.setDegree(0);
+        assertEquals(0, mTransform.rotateBy(6), 0);
+        assertEquals(0, mTransform.rotateBy(4), 0);
+        // 手指累积11度，离开吸附范围后一次性转到手指的位置
+        assertEquals(11, mTransform.rotateBy(1), 1e-4f);
+        assertEquals(11, mTransform.getDegree(), 1e-4f);
+        // 回到吸附范围时直接摆正
+        assertEquals(-11, mTransform.rotateBy(-2), 1e-4f);
+        assertEquals(0, mTransform.getDegree(), 0);
+    }
+
+    @Test
+    public void targetRectTruncatesTowardZero() {
+        int[] rect = new int[4];
+        mTransform.setCenter(20.6f, 10.2f);
+        mTransform.getTargetRect(1f, rect);
+        // 左边界-29.4截断为-29，与原来的(int)强制转换一致，不是向下取整
+        assertEquals(-29, rect[0]);
+        assertEquals(-14, rect[1]);
+        assertEquals(70, rect[2]);
+        assertEquals(35, rect[3]);
+
+        mTransform.setCenter(100, 200);
+        mTransform.setScale(1.5f);
+        mTransform.getTargetRect(0.333f, rect);
+        assertEquals((int) ((100 - 75) * 0.333f), rect[0]);
+        assertEquals((int) ((200 - 37.5f) * 0.333f), rect[1]);
+        assertEquals((int) ((100 + 75) * 0.333f), rect[2]);
+        assertEquals((int) ((200 + 37.5f) * 0.333f), rect[3]);
+    }
+
+    /**
+     * 拆分到CaptionTransform之前FlexibleCaptionView中的旋转吸附，作为对照
+     */
+    private static final class BaselineRotation {
+
+        private static final float OFFSET_DEGREE = 10f;
+
+        float mTotalDegree;
+        float mFingerDegree;
+
+        BaselineRotation(float degree) {
+            mTotalDegree = mFingerDegree = degree % 360;
+        }
+
+        float rotate(float degree) {
+            degree = adjustDegreeToSkipOffset(degree);
+            if (degree != 0) {
+                mTotalDegree = (mTotalDegree + degree) % 360;
+            }
+            return degree;
+        }
+
+        private float adjustDegreeToSkipOffset(float degree) {
+            mFingerDegree = (mFingerDegree + degree) % 360;
+            if (mTotalDegree % 90 == 0) {
+                for (int i = -270; i <= 360; i += 90) {
+                    if (mTotalDegree == i) {
+                        if (mFingerDegree >= i - OFFSET_DEGREE && mFingerDegree <= i + OFFSET_DEGREE) {
+                            return 0;
+                        } else {
+                            return mFingerDegree - i;
+                        }
+                    }
+                }
+            }
+            float afterTotalDegree = (mTotalDegree + degree) % 360;
+            for (int i = -270; i <= 360; i += 90) {
+                if (afterTotalDegree >= i - OFFSET_DEGREE && afterTotalDegree <= i + OFFSET_DEGREE) {
+                    afterTotalDegree = i - mTotalDegree;
+                    return afterTotalDegree;
+                }
+            }
+            return degree;
+        }
+    }
+}
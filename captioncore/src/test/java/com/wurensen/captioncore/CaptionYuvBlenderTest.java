@@ -0,0 +1,332 @@
+package com.wurensen.captioncore;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 与先用{@link CaptionCompositor}合成到ARGB帧再按BT.601转换的结果比较。
+ * 色度在每个2x2块的中心采样，相当于把字幕按一半的大小合成到一半分辨率的帧上
+ */
+public class CaptionYuvBlenderTest {
+
+    // YUV中混合与先混合RGB再转换的舍入误差
+    private static final int TOLERANCE = 2;
+
+    private static final int[][] SIZES = {{320, 240}, {321, 239}, {97, 55}};
+
+    @Test
+    public void nv21MatchesCompositedArgb() throws InterruptedException {
+        for (int[] size : SIZES) {
+            int width = size[0], height = size[1];
+            List<Spec> specs = randomSpecs(new Random(width), 6);
+            Planes expected = reference(width, height, specs);
+
+            int chromaWidth = (width + 1) / 2, chromaHeight = (height + 1) / 2;
+            ByteBuffer frame = ByteBuffer.allocate(width * height + chromaWidth * chromaHeight * 2);
+            Planes background = background(width, height);
+            fill(frame, 0, width, width, height, background.y);
+            for (int y = 0; y < chromaHeight; y++) {
+                for (int x = 0; x < chromaWidth; x++) {
+                    int index = width * height + y * chromaWidth * 2 + x * 2;
+                    frame.put(index, (byte) background.v[y * chromaWidth + x]);
+                    frame.put(index + 1, (byte) background.u[y * chromaWidth + x]);
+                }
+            }
+            new CaptionYuvBlender().blendNv21(frame, width, height, fullLayers(specs));
+
+            assertPlane("nv21 y " + width, expected.y, frame, 0, width, 1, width, height);
+            assertPlane("nv21 u " + width, expected.u, frame, width * height + 1, chromaWidth * 2, 2, chromaWidth,
+                chromaHeight);
+            assertPlane("nv21 v " + width, expected.v, frame, width * height, chromaWidth * 2, 2, chromaWidth,
+                chromaHeight);
+        }
+    }
+
+    @Test
+    public void i420MatchesCompositedArgb() throws InterruptedException {
+        for (int[] size : SIZES) {
+            int width = size[0], height = size[1];
+            List<Spec> specs = randomSpecs(new Random(width + 1), 6);
+            Planes expected = reference(width, height, specs);
+
+            int chromaWidth = (width + 1) / 2, chromaHeight = (height + 1) / 2;
+            int chromaSize = chromaWidth * chromaHeight;
+            ByteBuffer frame = ByteBuffer.allocate(width * height + chromaSize * 2);
+            Planes background = background(width, height);
+            fill(frame, 0, width, width, height, background.y);
+            fill(frame, width * height, chromaWidth, chromaWidth, chromaHeight, background.u);
+            fill(frame, width * height + chromaSize, chromaWidth, chromaWidth, chromaHeight, background.v);
+            new CaptionYuvBlender().blendI420(frame, width, height, fullLayers(specs));
+
+            assertPlane("i420 y " + width, expected.y, frame, 0, width, 1, width, height);
+            assertPlane("i420 u " + width, expected.u, frame, width * height, chromaWidth, 1, chromaWidth,
+                chromaHeight);
+            assertPlane("i420 v " + width, expected.v, frame, width * height + chromaSize, chromaWidth, 1,
+                chromaWidth, chromaHeight);
+        }
+    }
+
+    @Test
+    public void stridedPlanesMatchCompositedArgb() throws InterruptedException {
+        int width = 201, height = 117;
+        int chromaWidth = (width + 1) / 2, chromaHeight = (height + 1) / 2;
+        List<Spec> specs = randomSpecs(new Random(5), 6);
+        specs.add(new Spec(solidPixels(60, 20, 0xc0ffffff), 60, 20, 0.5f, 0.5f, 90, 60, 20));
+        specs.add(new Spec(solidPixels(40, 40, 0xff00ff00), 40, 40, 0.3f, 0.7f, 33, 55, 30));
+        Planes expected = reference(width, height, specs);
+        Planes background = background(width, height);
+
+        // 行尾有填充的Y平面，交错的UV平面（NV12），各平面从非零位置开始
+        int yRowStride = width + 13;
+        int uvRowStride = chromaWidth * 2 + 6;
+        ByteBuffer yBuffer = ByteBuffer.allocate(3 + yRowStride * height);
+        ByteBuffer uvBuffer = ByteBuffer.allocate(7 + uvRowStride * chromaHeight);
+        Arrays.fill(yBuffer.array(), (byte) 0x5a);
+        Arrays.fill(uvBuffer.array(), (byte) 0x5a);
+        fill(yBuffer, 3, yRowStride, width, height, background.y);
+        for (int y = 0; y < chromaHeight; y++) {
+            for (int x = 0; x < chromaWidth; x++) {
+                int index = 7 + y * uvRowStride + x * 2;
+                uvBuffer.put(index, (byte) background.u[y * chromaWidth + x]);
+                uvBuffer.put(index + 1, (byte) background.v[y * chromaWidth + x]);
+            }
+        }
+        yBuffer.position(3);
+        ByteBuffer uPlane = uvBuffer.duplicate();
+        uPlane.position(7);
+        ByteBuffer vPlane = uvBuffer.duplicate();
+        vPlane.position(8);
+        new CaptionYuvBlender().blend(yBuffer, yRowStride, uPlane, vPlane, uvRowStride, 2, width, height,
+            fullLayers(specs));
+
+        assertEquals(3, yBuffer.position());
+        assertEquals(7, uPlane.position());
+        assertPlane("y", expected.y, yBuffer, 3, yRowStride, 1, width, height);
+        assertPlane("u", expected.u, uvBuffer, 7, uvRowStride, 2, chromaWidth, chromaHeight);
+        assertPlane("v", expected.v, uvBuffer, 8, uvRowStride, 2, chromaWidth, chromaHeight);
+        // 填充部分不能被修改
+        for (int y = 0; y < height; y++) {
+            for (int x = width; x < yRowStride && 3 + y * yRowStride + x < yBuffer.capacity(); x++) {
+                assertEquals(0x5a, yBuffer.get(3 + y * yRowStride + x));
+            }
+        }
+        for (int y = 0; y < chromaHeight; y++) {
+            for (int x = chromaWidth * 2; x < uvRowStride && 7 + y * uvRowStride + x < uvBuffer.capacity(); x++) {
+                assertEquals(0x5a, uvBuffer.get(7 + y * uvRowStride + x));
+            }
+        }
+    }
+
+    @Test
+    public void directBufferAndBandsMatchHeap() throws InterruptedException {
+        int width = 255, height = 143;
+        int size = width * height + (width + 1) / 2 * ((height + 1) / 2) * 2;
+        List<CaptionCompositor.Layer> layers = fullLayers(randomSpecs(new Random(6), 10));
+        byte[] initial = new byte[size];
+        new Random(7).nextBytes(initial);
+
+        ByteBuffer heap = ByteBuffer.allocate(size);
+        heap.put(initial);
+        heap.rewind();
+        new CaptionYuvBlender().blendNv21(heap, width, height, layers);
+
+        // 从非零位置开始的直接缓冲区
+        ByteBuffer direct = ByteBuffer.allocateDirect(size + 9);
+        direct.position(9);
+        direct.put(initial);
+        direct.position(9);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            new CaptionYuvBlender(executor, 6).blendNv21(direct, width, height, layers);
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(9, direct.position());
+        byte[] result = new byte[size];
+        direct.get(result);
+        assertArrayEquals(heap.array(), result);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void oddBandHeightIsRejected() {
+        new CaptionYuvBlender(null, 7);
+    }
+
+    // 合成到ARGB帧后转换，色度按一半分辨率合成
+    private static Planes reference(int width, int height, List<Spec> specs) throws InterruptedException {
+        int chromaWidth = (width + 1) / 2, chromaHeight = (height + 1) / 2;
+        int[] full = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                full[y * width + x] = backgroundColor(x / 2, y / 2);
+            }
+        }
+        int[] half = new int[chromaWidth * chromaHeight];
+        for (int y = 0; y < chromaHeight; y++) {
+            for (int x = 0; x < chromaWidth; x++) {
+                half[y * chromaWidth + x] = backgroundColor(x, y);
+            }
+        }
+        new CaptionCompositor().composite(full, width, height, fullLayers(specs));
+        new CaptionCompositor().composite(half, chromaWidth, chromaHeight, halfLayers(specs, width, height));
+        Planes planes = new Planes(width, height);
+        for (int i = 0; i < full.length; i++) {
+            planes.y[i] = toY(full[i]);
+        }
+        for (int i = 0; i < half.length; i++) {
+            planes.u[i] = toU(half[i]);
+            planes.v[i] = toV(half[i]);
+        }
+        return planes;
+    }
+
+    private static Planes background(int width, int height) {
+        int chromaWidth = (width + 1) / 2, chromaHeight = (height + 1) / 2;
+        Planes planes = new Planes(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                planes.y[y * width + x] = toY(backgroundColor(x / 2, y / 2));
+            }
+        }
+        for (int y = 0; y < chromaHeight; y++) {
+            for (int x = 0; x < chromaWidth; x++) {
+                int color = backgroundColor(x, y);
+                planes.u[y * chromaWidth + x] = toU(color);
+                planes.v[y * chromaWidth + x] = toV(color);
+            }
+        }
+        return planes;
+    }
+
+    // 每个2x2块颜色相同的不透明渐变背景
+    private static int backgroundColor(int blockX, int blockY) {
+        int r = (blockX * 5) & 0xff;
+        int g = (blockY * 7) & 0xff;
+        int b = ((blockX + blockY) * 3) & 0xff;
+        return 0xff000000 | (r << 16) | (g << 8) | b;
+    }
+
+    private static int toY(int color) {
+        int r = (color >> 16) & 0xff, g = (color >> 8) & 0xff, b = color & 0xff;
+        return ((66 * r + 129 * g + 25 * b + 128) >> 8) + 16;
+    }
+
+    private static int toU(int color) {
+        int r = (color >> 16) & 0xff, g = (color >> 8) & 0xff, b = color & 0xff;
+        return ((-38 * r - 74 * g + 112 * b + 128) >> 8) + 128;
+    }
+
+    private static int toV(int color) {
+        int r = (color >> 16) & 0xff, g = (color >> 8) & 0xff, b = color & 0xff;
+        return ((112 * r - 94 * g - 18 * b + 128) >> 8) + 128;
+    }
+
+    private static void fill(ByteBuffer buffer, int offset, int rowStride, int width, int height, int[] values) {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                buffer.put(offset + y * rowStride + x, (byte) values[y * width + x]);
+            }
+        }
+    }
+
+    private static void assertPlane(String name, int[] expected, ByteBuffer buffer, int offset, int rowStride,
+        int pixelStride, int width, int height) {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int actual = buffer.get(offset + y * rowStride + x * pixelStride) & 0xff;
+                int diff = Math.abs(actual - expected[y * width + x]);
+                assertTrue(name + " at " + x + "," + y + " expected " + expected[y * width + x] + " but was " + actual,
+                    diff <= TOLERANCE);
+            }
+        }
+    }
+
+    private static List<CaptionCompositor.Layer> fullLayers(List<Spec> specs) {
+        List<CaptionCompositor.Layer> layers = new ArrayList<>(specs.size());
+        for (int i = 0; i < specs.size(); i++) {
+            Spec spec = specs.get(i);
+            layers.add(new CaptionCompositor.Layer(spec.pixels, spec.width, spec.height, false)
+                .relativeCenter(spec.relativeCenterX, spec.relativeCenterY)
+                .degree(spec.degree)
+                .destinationSize(spec.dstWidth, spec.dstHeight));
+        }
+        return layers;
+    }
+
+    // 中心和大小都减半，一半分辨率的像素中心对应原帧中2x2块的中心
+    private static List<CaptionCompositor.Layer> halfLayers(List<Spec> specs, int width, int height) {
+        List<CaptionCompositor.Layer> layers = new ArrayList<>(specs.size());
+        for (int i = 0; i < specs.size(); i++) {
+            Spec spec = specs.get(i);
+            layers.add(new CaptionCompositor.Layer(spec.pixels, spec.width, spec.height, false)
+                .center(spec.relativeCenterX * width / 2, spec.relativeCenterY * height / 2)
+                .degree(spec.degree)
+                .destinationSize(spec.dstWidth / 2, spec.dstHeight / 2));
+        }
+        return layers;
+    }
+
+    private static List<Spec> randomSpecs(Random random, int count) {
+        List<Spec> specs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int width = 2 + random.nextInt(60);
+            int height = 2 + random.nextInt(30);
+            int[] pixels = new int[width * height];
+            for (int j = 0; j < pixels.length; j++) {
+                pixels[j] = random.nextInt(4) == 0 ? 0 : random.nextInt();
+            }
+            float scale = 0.5f + random.nextFloat() * 1.5f;
+            specs.add(new Spec(pixels, width, height, random.nextFloat() * 1.1f - 0.05f,
+                random.nextFloat() * 1.1f - 0.05f, random.nextFloat() * 360 - 180, width * scale, height * scale));
+        }
+        return specs;
+    }
+
+    private static int[] solidPixels(int width, int height, int color) {
+        int[] pixels = new int[width * height];
+        Arrays.fill(pixels, color);
+        return pixels;
+    }
+
+    private static final class Spec {
+        final int[] pixels;
+        final int width, height;
+        final float relativeCenterX, relativeCenterY;
+        final float degree;
+        final float dstWidth, dstHeight;
+
+        Spec(int[] pixels, int width, int height, float relativeCenterX, float relativeCenterY, float degree,
+            float dstWidth, float dstHeight) {
+            this.pixels = pixels;
+            this.width = width;
+            this.height = height;
+            this.relativeCenterX = relativeCenterX;
+            this.relativeCenterY = relativeCenterY;
+            this.degree = degree;
+            this.dstWidth = dstWidth;
+            this.dstHeight = dstHeight;
+        }
+    }
+
+    private static final class Planes {
+        final int[] y, u, v;
+
+        Planes(int width, int height) {
+            int chromaSize = (width + 1) / 2 * ((height + 1) / 2);
+            y = new int[width * height];
+            u = new int[chromaSize];
+            v = new int[chromaSize];
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.wurensen.captioncore;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OrientedBoundingBoxTest {
+
+    private static final float CENTER_X = 300.3f, CENTER_Y = 500.7f;
+    private static final float HALF_WIDTH = 120, HALF_HEIGHT = 45;
+    private static final float[] DEGREES = {0, 45, 90, 180, -30, 270};
+
+    @Test
+    public void agreesWithRegionAwayFromBorder() {
+        Random random = new Random(3);
+        for (float degree : DEGREES) {
+            float[] polygon = rotatedCorners(degree);
+            for (int i = 0; i < 20000; i++) {
+                float x = CENTER_X + (random.nextFloat() - 0.5f) * 400;
+                float y = CENTER_Y + (random.nextFloat() - 0.5f) * 400;
+                boolean expected = regionContains(polygon, x, y);
+                boolean actual =
+                    OrientedBoundingBox.contains(CENTER_X, CENTER_Y, HALF_WIDTH, HALF_HEIGHT, degree, x, y);
+                if (expected != actual) {
+                    // 原来的区域按整数像素判断，只允许在边框一个像素以内不同
+                    assertTrue("degree " + degree + " at " + x + "," + y,
+                        distanceToBorder(polygon, x, y) <= (float) Math.sqrt(2));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void edgesAndCornersAreInclusive() {
+        for (float degree : DEGREES) {
+            float[] polygon = rotatedCorners(degree);
+            for (int i = 0; i < 4; i++) {
+                float cornerX = polygon[i * 2], cornerY = polygon[i * 2 + 1];
+                // 向中心收缩一点，避免三角函数的误差
+                float insideX = cornerX + (CENTER_X - cornerX) * 1e-3f;
+                float insideY = cornerY + (CENTER_Y - cornerY) * 1e-3f;
+                assertTrue("corner " + i + " at " + degree, OrientedBoundingBox.contains(CENTER_X, CENTER_Y,
+                    HALF_WIDTH, HALF_HEIGHT, degree, insideX, insideY));
+                // 沿对角线向外两个像素
+                float outsideX = cornerX + (cornerX - CENTER_X) / distance(cornerX, cornerY) * 2;
+                float outsideY = cornerY + (cornerY - CENTER_Y) / distance(cornerX, cornerY) * 2;
+                assertFalse("outside corner " + i + " at " + degree, OrientedBoundingBox.contains(CENTER_X,
+                    CENTER_Y, HALF_WIDTH, HALF_HEIGHT, degree, outsideX, outsideY));
+                assertFalse(regionContains(polygon, outsideX, outsideY));
+            }
+        }
+        // 没有旋转时边上的点属于矩形
+        assertTrue(OrientedBoundingBox.contains(0, 0, 10, 5, 0, 10, 5));
+        assertTrue(OrientedBoundingBox.contains(0, 0, 10, 5, 0, -10, 0));
+        assertFalse(OrientedBoundingBox.contains(0, 0, 10, 5, 0, 10.01f, 0));
+    }
+
+    @Test
+    public void rightAnglesSwapExtents() {
+        // 旋转90度和270度后宽高互换
+        for (float degree : new float[]{90, 270, -90}) {
+            assertTrue(OrientedBoundingBox.contains(0, 0, 10, 5, degree, 0, 9.9f));
+            assertFalse(OrientedBoundingBox.contains(0, 0, 10, 5, degree, 9.9f, 0));
+        }
+        assertEquals(OrientedBoundingBox.contains(0, 0, 10, 5, 0, 9, 4),
+            OrientedBoundingBox.contains(0, 0, 10, 5, 180, 9, 4));
+    }
+
+    @Test
+    public void precomputedMatchesDegree() {
+        Random random = new Random(11);
+        for (float degree : DEGREES) {
+            double radians = Math.toRadians(degree);
+            for (int i = 0; i < 1000; i++) {
+                float x = CENTER_X + (random.nextFloat() - 0.5f) * 400;
+                float y = CENTER_Y + (random.nextFloat() - 0.5f) * 400;
+                assertEquals(OrientedBoundingBox.contains(CENTER_X, CENTER_Y, HALF_WIDTH, HALF_HEIGHT, degree, x, y),
+                    OrientedBoundingBox.contains(CENTER_X, CENTER_Y, HALF_WIDTH, HALF_HEIGHT, Math.cos(radians),
+                        Math.sin(radians), x, y));
+            }
+        }
+    }
+
+    private static float distance(float x, float y) {
+        return (float) Math.hypot(x - CENTER_X, y - CENTER_Y);
+    }
+
+    // 旋转后的四个顶点，按左上、右上、右下、左下的顺序，与原来的边框路径一致
+    private static float[] rotatedCorners(float degree) {
+        double radians = Math.toRadians(degree);
+        float cos = (float) Math.cos(radians), sin = (float) Math.sin(radians);
+        float[] local = {-HALF_WIDTH, -HALF_HEIGHT, HALF_WIDTH, -HALF_HEIGHT, HALF_WIDTH, HALF_HEIGHT, -HALF_WIDTH,
+            HALF_HEIGHT};
+        float[] polygon = new float[8];
+        for (int i = 0; i < 4; i++) {
+            float x = local[i * 2], y = local[i * 2 + 1];
+            polygon[i * 2] = CENTER_X + x * cos - y * sin;
+            polygon[i * 2 + 1] = CENTER_Y + x * sin + y * cos;
+        }
+        return polygon;
+    }
+
+    /**
+     * 原来的做法：边框路径光栅化成Region，像素中心在路径内的像素属于区域，触摸点截断为整数后查询所在像素
+     */
+    private static boolean regionContains(float[] polygon, float x, float y) {
+        float px = (int) x + 0.5f, py = (int) y + 0.5f;
+        boolean positive = false, negative = false;
+        for (int i = 0; i < 4; i++) {
+            float x0 = polygon[i * 2], y0 = polygon[i * 2 + 1];
+            float x1 = polygon[(i + 1) % 4 * 2], y1 = polygon[(i + 1) % 4 * 2 + 1];
+            float cross = (x1 - x0) * (py - y0) - (y1 - y0) * (px - x0);
+            positive |= cross > 0;
+            negative |= cross < 0;
+        }
+        return !(positive && negative);
+    }
+
+    private static float distanceToBorder(float[] polygon, float x, float y) {
+        float min = Float.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            float x0 = polygon[i * 2], y0 = polygon[i * 2 + 1];
+            float x1 = polygon[(i + 1) % 4 * 2], y1 = polygon[(i + 1) % 4 * 2 + 1];
+            float dx = x1 - x0, dy = y1 - y0;
+            float t = Math.max(0, Math.min(1, ((x - x0) * dx + (y - y0) * dy) / (dx * dx + dy * dy)));
+            min = Math.min(min, (float) Math.hypot(x - x0 - t * dx, y - y0 - t * dy));
+        }
+        return min;
+    }
+}
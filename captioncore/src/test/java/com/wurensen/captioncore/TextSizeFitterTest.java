@@ -0,0 +1,147 @@
+package com.wurensen.captioncore;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TextSizeFitterTest {
+
+    private static final float START_TEXT_SIZE = 120f;
+
+    private final KernedMeasurer mMeasurer = new KernedMeasurer();
+
+    @Test
+    public void matchesBaselineLoopWithinOnePixel() {
+        TextSizeFitter fitter = new TextSizeFitter(mMeasurer);
+        float[][] boxes = {{600, 900}, {1620, 2880}, {300, 500}, {80, 2000}, {5000, 5000}};
+        for (int lines : new int[]{1, 2, 8, 50, 200}) {
+            String text = createText(lines);
+            for (float[] box : boxes) {
+                float expected = baselineFit(mMeasurer, text, START_TEXT_SIZE, box[0], box[1]);
+                float actual = fitter.fit(text, null, START_TEXT_SIZE, box[0], box[1]);
+                String message = lines + " lines in " + box[0] + "x" + box[1];
+                // 渲染结果的差别：最长一行的宽度和总高度相差不超过一个像素
+                assertEquals(message, measureMaxWidth(text, expected), measureMaxWidth(text, actual), 1f);
+                assertEquals(message, mMeasurer.getLineHeight(expected) * lines,
+                    mMeasurer.getLineHeight(actual) * lines, 1f);
+                assertFits(message, text, lines, actual, box[0], box[1]);
+            }
+        }
+    }
+
+    @Test
+    public void neverOverflowsWhenMeasurementDoesNotScale() {
+        // 每个字固定的额外宽度使按比例的修正收敛很慢，超过最大修正次数后仍需要放进区域
+        TextSizeFitter fitter = new TextSizeFitter(new TextSizeFitter.Measurer() {
+            @Override
+            public float measureLineWidth(CharSequence text, int start, int end, float textSize) {
+                return (end - start) * (textSize * 0.01f + 10f);
+            }
+
+            @Override
+            public float getLineHeight(float textSize) {
+                return textSize;
+            }
+        });
+        float size = fitter.fit("abcdefghij", null, 100f, 105f, 1000f);
+        assertTrue(size > 0);
+        assertTrue("width " + size, 10 * (size * 0.01f + 10f) <= 105f);
+    }
+
+    @Test
+    public void terminatesWhenNothingFits() {
+        TextSizeFitter fitter = new TextSizeFitter(mMeasurer);
+        // 50行的固定行距已经超过可用高度，任何字号都放不下
+        float size = fitter.fit(createText(50), null, START_TEXT_SIZE, 300, 90);
+        assertTrue(size >= 0 && size < 1e-30f);
+    }
+
+    @Test
+    public void doesNotGrowText() {
+        TextSizeFitter fitter = new TextSizeFitter(mMeasurer);
+        assertEquals(START_TEXT_SIZE, fitter.fit("ab", null, START_TEXT_SIZE, 10000, 10000), 0);
+        assertEquals(START_TEXT_SIZE, fitter.fit("", null, START_TEXT_SIZE, 10, 10), 0);
+    }
+
+    private void assertFits(String message, String text, int lines, float size, float width, float height) {
+        assertTrue(message, measureMaxWidth(text, size) <= width);
+        assertTrue(message, mMeasurer.getLineHeight(size) * lines <= height);
+    }
+
+    private float measureMaxWidth(String text, float size) {
+        float max = 0;
+        int start = 0;
+        for (int i = 0; i <= text.length(); i++) {
+            if (i == text.length() || text.charAt(i) == '\n') {
+                max = Math.max(max, mMeasurer.measureLineWidth(text, start, i, size));
+                start = i + 1;
+            }
+        }
+        return max;
+    }
+
+    private static String createText(int lines) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            if (i > 0) {
+                builder.append('\n');
+            }
+            for (int j = 0; j < 20 + (i * 7) % 13; j++) {
+                builder.append((char) ('a' + (i + j) % 26));
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 原来的做法：每次按当前字号重新排版所有行，按比例缩小直到放进区域
+     */
+    private static float baselineFit(TextSizeFitter.Measurer measurer, String text, float textSize,
+        float availableWidth, float availableHeight) {
+        float size = textSize;
+        while (true) {
+            float maxWidth = 0;
+            int lineCount = 1;
+            int start = 0;
+            for (int i = 0; i <= text.length(); i++) {
+                if (i == text.length() || text.charAt(i) == '\n') {
+                    maxWidth = Math.max(maxWidth, measurer.measureLineWidth(text, start, i, size));
+                    if (i < text.length()) {
+                        lineCount++;
+                    }
+                    start = i + 1;
+                }
+            }
+            float widthScale = availableWidth / maxWidth;
+            float heightScale = availableHeight / (measurer.getLineHeight(size) * lineCount);
+            float resizeScale = Math.min(widthScale, heightScale);
+            float next = size * resizeScale;
+            if (resizeScale >= 1 || next == size) {
+                // 原来的循环在浮点精度内不再变化时不会结束，这里作为对照直接返回
+                return size;
+            }
+            size = next;
+        }
+    }
+
+    /**
+     * 字宽与字号成正比，加上少量字距使按比例计算的结果需要修正
+     */
+    private static final class KernedMeasurer implements TextSizeFitter.Measurer {
+
+        @Override
+        public float measureLineWidth(CharSequence text, int start, int end, float textSize) {
+            float width = 0;
+            for (int i = start; i < end; i++) {
+                width += textSize * (text.charAt(i) == 'm' || text.charAt(i) == 'w' ? 0.8f : 0.55f) + 1f;
+            }
+            return width;
+        }
+
+        @Override
+        public float getLineHeight(float textSize) {
+            return textSize * 1.17f + 2f;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.wurensen.captionlayout;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+/**
+ * 导出字幕图片用的位图池，按宽高分桶复用ARGB_8888位图，超过字节上限时按最久未使用的顺序回收。
+ * 同时统计内存使用情况，方便衡量每批导出的内存峰值。可在多个线程中使用
+ */
+public class CaptionBitmapPool {
+
+    /**
+     * 默认的字节上限
+     */
+    public static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+    private final long mMaxBytes;
+    // 按宽高分桶，访问顺序排列，最久未使用的在前
+    private final LinkedHashMap<Long, ArrayList<Bitmap>> mBuckets = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long mPooledBytes; // 池中保存的字节数
+    private long mOutstandingBytes; // 已取出未归还的字节数
+    private long mPeakBytes; // 池中与已取出的字节数之和的峰值
+    private long mAllocatedBytes; // 累计新创建的字节数
+    private int mHitCount, mMissCount, mEvictionCount;
+
+    public CaptionBitmapPool() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param maxBytes 池中最多保存的字节数
+     */
+    public CaptionBitmapPool(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be > 0");
+        }
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * 获取指定大小的透明位图，池中没有时新建
+     *
+     * @param width  宽度
+     * @param height 高度
+     * @return 可绘制的位图
+     */
+    public synchronized Bitmap get(int width, int height) {
+        Bitmap bitmap = null;
+        ArrayList<Bitmap> bucket = mBuckets.get(key(width, height));
+        if (bucket != null && !bucket.isEmpty()) {
+            bitmap = bucket.remove(bucket.size() - 1);
+            if (bucket.isEmpty()) {
+                mBuckets.remove(key(width, height));
+            }
+        }
+        if (bitmap != null) {
+            mHitCount++;
+            mPooledBytes -= bitmap.getByteCount();
+            bitmap.eraseColor(Color.TRANSPARENT);
+        } else {
+            mMissCount++;
+            bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            mAllocatedBytes += bitmap.getByteCount();
+        }
+        mOutstandingBytes += bitmap.getByteCount();
+        updatePeak();
+        return bitmap;
+    }
+
+    /**
+     * 归还位图，不可复用的位图会被忽略
+     *
+     * @param bitmap 位图
+     */
+    public synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()
+            || bitmap.getConfig() != Bitmap.Config.ARGB_8888) {
+            return;
+        }
+        long key = key(bitmap.getWidth(), bitmap.getHeight());
+        ArrayList<Bitmap> bucket = mBuckets.get(key);
+        if (bucket != null && bucket.contains(bitmap)) {
+            // 重复归还，不能再次扣除已取出的字节数
+            return;
+        }
+        int bytes = bitmap.getByteCount();
+        mOutstandingBytes = Math.max(0, mOutstandingBytes - bytes);
+        if (bytes > mMaxBytes) {
+            bitmap.recycle();
+            return;
+        }
+        if (bucket == null) {
+            bucket = new ArrayList<>(2);
+            mBuckets.put(key, bucket);
+        }
+        bucket.add(bitmap);
+        mPooledBytes += bytes;
+        trimToSize(mMaxBytes);
+        updatePeak();
+    }
+
+    /**
+     * 回收池中所有位图
+     */
+    public synchronized void clear() {
+        trimToSize(0);
+    }
+
+    private void trimToSize(long maxBytes) {
+        Iterator<Map.Entry<Long, ArrayList<Bitmap>>> iterator = mBuckets.entrySet().iterator();
+        while (mPooledBytes > maxBytes && iterator.hasNext()) {
+            ArrayList<Bitmap> bucket = iterator.next().getValue();
+            while (mPooledBytes > maxBytes && !bucket.isEmpty()) {
+                Bitmap evicted = bucket.remove(0);
+                mPooledBytes -= evicted.getByteCount();
+                mEvictionCount++;
+                evicted.recycle();
+            }
+            if (bucket.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private void updatePeak() {
+        long total = mPooledBytes + mOutstandingBytes;
+        if (total > mPeakBytes) {
+            mPeakBytes = total;
+        }
+    }
+
+    private static long key(int width, int height) {
+        return ((long) width << 32) | (height & 0xffffffffL);
+    }
+
+    /**
+     * @return 池中最多保存的字节数
+     */
+    public long getMaxBytes() {
+        return mMaxBytes;
+    }
+
+    /**
+     * @return 池中当前保存的字节数
+     */
+    public synchronized long getPooledBytes() {
+        return mPooledBytes;
+    }
+
+    /**
+     * @return 已取出还未归还的字节数
+     */
+    public synchronized long getOutstandingBytes() {
+        return mOutstandingBytes;
+    }
+
+    /**
+     * @return 池中与已取出的字节数之和的峰值
+     */
+    public synchronized long getPeakBytes() {
+        return mPeakBytes;
+    }
+
+    /**
+     * @return 累计新创建位图的字节数
+     */
+    public synchronized long getAllocatedBytes() {
+        return mAllocatedBytes;
+    }
+
+    /**
+     * @return 从池中复用的次数
+     */
+    public synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * @return 需要新建位图的次数
+     */
+    public synchronized int getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * @return 超过字节上限被回收的位图数量
+     */
+    public synchronized int getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    /**
+     * 重置统计数据，峰值从当前使用量重新开始统计，用于按批次衡量内存
+     */
+    public synchronized void resetStats() {
+        mPeakBytes = mPooledBytes + mOutstandingBytes;
+        mAllocatedBytes = 0;
+        mHitCount = mMissCount = mEvictionCount = 0;
+    }
+}
@@ -0,0 +1,93 @@
+package com.wurensen.captionlayout;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.os.Process;
+
+/**
+ * 字幕导出使用的后台线程池，线程数有上限，空闲时线程自动退出。
+ * 字体加载等其他后台任务通过{@link #newExecutor(int, String)}创建各自的线程池，不与导出任务排队
+ */
+final class CaptionExportExecutor {
+
+    private static final int MAX_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    private static final int DECODE_THREADS = 2;
+    private static final long KEEP_ALIVE_SECONDS = 10;
+
+    private static volatile ExecutorService sExecutor;
+    private static volatile ExecutorService sDecoder;
+
+    private CaptionExportExecutor() {
+    }
+
+    /**
+     * @return 共享的后台线程池
+     */
+    static ExecutorService get() {
+        if (sExecutor == null) {
+            synchronized (CaptionExportExecutor.class) {
+                if (sExecutor == null) {
+                    sExecutor = newExecutor(MAX_THREADS, "caption-export");
+                }
+            }
+        }
+        return sExecutor;
+    }
+
+    /**
+     * @return 解码贴图字幕用的共享线程池，与导出任务分开，显示用的解码不会排在批量导出之后
+     */
+    static ExecutorService getDecoder() {
+        if (sDecoder == null) {
+            synchronized (CaptionExportExecutor.class) {
+                if (sDecoder == null) {
+                    sDecoder = newExecutor(DECODE_THREADS, "caption-decode");
+                }
+            }
+        }
+        return sDecoder;
+    }
+
+    /**
+     * 创建后台优先级的线程池，空闲时线程自动退出
+     *
+     * @param threads 线程数
+     * @param name    线程名前缀
+     * @return 线程池
+     */
+    static ExecutorService newExecutor(int threads, String name) {
+        ThreadPoolExecutor executor =
+            new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new BackgroundThreadFactory(name));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static class BackgroundThreadFactory implements ThreadFactory {
+
+        private final String mName;
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        BackgroundThreadFactory(String name) {
+            mName = name;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, mName + "-" + mCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.wurensen.captionlayout;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * 异步导出多个字幕的任务，每个字幕在线程池中单独渲染，全部完成后按传入顺序返回结果，并在主线程回调
+ */
+final class CaptionExportFuture implements Future<List<CaptionInfo>> {
+
+    // 每个线程使用自己的渲染器
+    private static final ThreadLocal<CaptionRenderer> sRenderer = new ThreadLocal<CaptionRenderer>() {
+        @Override
+        protected CaptionRenderer initialValue() {
+            return new CaptionRenderer();
+        }
+    };
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    private final CaptionInfo[] mResults;
+    private final AtomicInteger mRemaining;
+    private final CountDownLatch mDoneLatch = new CountDownLatch(1);
+    private final List<Future<?>> mParts;
+    private final CaptionLayout.OnCaptionExportListener mListener;
+    private final CaptionBitmapPool mPool;
+    private volatile Throwable mError;
+    private volatile boolean mCancelled;
+
+    private CaptionExportFuture(int count, CaptionBitmapPool pool, CaptionLayout.OnCaptionExportListener listener) {
+        mResults = new CaptionInfo[count];
+        mRemaining = new AtomicInteger(count);
+        mParts = new ArrayList<>(count);
+        mListener = listener;
+        mPool = pool;
+    }
+
+    /**
+     * 提交导出任务
+     *
+     * @param states   字幕渲染状态，按层级从下到上排列
+     * @param scale    导出的目标相对于字幕控件的倍数
+     * @param pool     位图池，可以为null
+     * @param metrics  统计导出次数和分配的字节数，可以为null
+     * @param executor 执行渲染的线程池
+     * @param listener 主线程回调，可以为null
+     * @return 导出任务
+     */
+    static CaptionExportFuture submit(List<CaptionRenderState> states, final float scale,
+        final CaptionBitmapPool pool, final CaptionMetrics metrics, ExecutorService executor,
+        CaptionLayout.OnCaptionExportListener listener) {
+        final CaptionExportFuture future = new CaptionExportFuture(states.size(), pool, listener);
+        if (states.isEmpty()) {
+            future.finish();
+            return future;
+        }
+        for (int i = 0; i < states.size(); i++) {
+            final int index = i;
+            final CaptionRenderState state = states.get(i);
+            future.mParts.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    if (future.mCancelled || future.mError != null) {
+                        return;
+                    }
+                    CaptionTrace.begin(CaptionTrace.SECTION_EXPORT_RENDER);
+                    Bitmap bitmap = null;
+                    try {
+                        int width = state.getTargetWidth(scale);
+                        int height = state.getTargetHeight(scale);
+                        bitmap = CaptionMetrics.obtainExportBitmap(metrics, pool, width, height);
+                        if (metrics != null) {
+                            metrics.increment(CaptionMetrics.COUNTER_EXPORT_RASTER, 1);
+                        }
+                        CaptionInfo info = sRenderer.get().export(state, scale, bitmap);
+                        if (!future.setResult(index, info)) {
+                            return;
+                        }
+                    } catch (Throwable throwable) {
+                        future.releaseBitmap(bitmap);
+                        future.fail(throwable);
+                        return;
+                    } finally {
+                        CaptionTrace.end();
+                    }
+                    if (future.mRemaining.decrementAndGet() == 0) {
+                        future.finish();
+                    }
+                }
+            }));
+        }
+        return future;
+    }
+
+    // 任务已取消或失败时不再保存结果，直接释放位图
+    private synchronized boolean setResult(int index, CaptionInfo info) {
+        if (mCancelled || mError != null) {
+            releaseBitmap(info.captionBitmap);
+            return false;
+        }
+        mResults[index] = info;
+        return true;
+    }
+
+    // 取消或失败后结果不会交给调用者，把已经渲染好的位图还给位图池
+    private synchronized void releaseResults() {
+        for (int i = 0; i < mResults.length; i++) {
+            if (mResults[i] != null) {
+                releaseBitmap(mResults[i].captionBitmap);
+                mResults[i] = null;
+            }
+        }
+    }
+
+    private void releaseBitmap(Bitmap bitmap) {
+        if (bitmap == null) {
+            return;
+        }
+        if (mPool != null) {
+            mPool.put(bitmap);
+        } else {
+            bitmap.recycle();
+        }
+    }
+
+    private void finish() {
+        mDoneLatch.countDown();
+        if (mListener == null || mCancelled) {
+            return;
+        }
+        final List<CaptionInfo> result = new ArrayList<>(Arrays.asList(mResults));
+        sMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!mCancelled) {
+                    mListener.onExportSuccess(result);
+                }
+            }
+        });
+    }
+
+    private void fail(final Throwable throwable) {
+        synchronized (this) {
+            if (mError != null || mCancelled) {
+                return;
+            }
+            mError = throwable;
+            releaseResults();
+        }
+        mDoneLatch.countDown();
+        if (mListener == null) {
+            return;
+        }
+        sMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!mCancelled) {
+                    mListener.onExportFailure(throwable);
+                }
+            }
+        });
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        synchronized (this) {
+            if (isDone()) {
+                return false;
+            }
+            mCancelled = true;
+            releaseResults();
+        }
+        for (int i = 0; i < mParts.size(); i++) {
+            mParts.get(i).cancel(mayInterruptIfRunning);
+        }
+        mDoneLatch.countDown();
+        return true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    @Override
+    public boolean isDone() {
+        return mDoneLatch.getCount() == 0;
+    }
+
+    @Override
+    public List<CaptionInfo> get() throws InterruptedException, ExecutionException {
+        mDoneLatch.await();
+        return getResult();
+    }
+
+    @Override
+    public List<CaptionInfo> get(long timeout, TimeUnit unit)
+        throws InterruptedException, ExecutionException, TimeoutException {
+        if (!mDoneLatch.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return getResult();
+    }
+
+    private List<CaptionInfo> getResult() throws ExecutionException {
+        if (mCancelled) {
+            throw new CancellationException();
+        }
+        if (mError != null) {
+            throw new ExecutionException(mError);
+        }
+        return new ArrayList<>(Arrays.asList(mResults));
+    }
+}
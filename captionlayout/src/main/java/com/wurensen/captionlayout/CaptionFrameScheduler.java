@@ -0,0 +1,117 @@
+package com.wurensen.captionlayout;
+
+import java.util.ArrayList;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+/**
+ * 按显示帧合并字幕变换的调度器，同一帧内多次提交的任务只执行一次。
+ * API 16及以上在Choreographer的下一个垂直同步信号执行，之前的版本在主线程消息队列中的下一条消息执行。
+ * 只能在主线程使用
+ */
+final class CaptionFrameScheduler {
+
+    /**
+     * 每帧执行一次的任务
+     */
+    interface FrameTask {
+        void doFrame();
+    }
+
+    private static CaptionFrameScheduler sInstance;
+
+    private final ArrayList<FrameTask> mTasks = new ArrayList<>();
+    private final ArrayList<FrameTask> mRunningTasks = new ArrayList<>();
+    private final Runnable mFrameRunnable = new Runnable() {
+        @Override
+        public void run() {
+            doFrame();
+        }
+    };
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private Object mFrameCallback; // Choreographer.FrameCallback，API 16以下为null
+    private boolean mScheduled;
+
+    private CaptionFrameScheduler() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            mFrameCallback = FrameCallbackCompat.create(mFrameRunnable);
+        }
+    }
+
+    static CaptionFrameScheduler getInstance() {
+        if (sInstance == null) {
+            sInstance = new CaptionFrameScheduler();
+        }
+        return sInstance;
+    }
+
+    /**
+     * 在下一帧执行任务，已经提交的任务不会重复执行
+     *
+     * @param task 任务
+     */
+    void schedule(FrameTask task) {
+        if (!mTasks.contains(task)) {
+            mTasks.add(task);
+        }
+        if (mScheduled) {
+            return;
+        }
+        mScheduled = true;
+        if (mFrameCallback != null) {
+            FrameCallbackCompat.post(mFrameCallback);
+        } else {
+            mHandler.post(mFrameRunnable);
+        }
+    }
+
+    /**
+     * 取消还未执行的任务
+     *
+     * @param task 任务
+     */
+    void cancel(FrameTask task) {
+        mTasks.remove(task);
+    }
+
+    /**
+     * 立即执行已经提交的任务，用于回放触摸轨迹时不依赖垂直同步信号，已经请求的下一帧照常到来但没有任务可执行
+     */
+    void runPendingFrame() {
+        if (!mTasks.isEmpty()) {
+            doFrame();
+        }
+    }
+
+    private void doFrame() {
+        mScheduled = false;
+        // 执行时提交的任务在下一帧执行
+        mRunningTasks.addAll(mTasks);
+        mTasks.clear();
+        for (int i = 0; i < mRunningTasks.size(); i++) {
+            mRunningTasks.get(i).doFrame();
+        }
+        mRunningTasks.clear();
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static final class FrameCallbackCompat {
+
+        static Object create(final Runnable runnable) {
+            return new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    runnable.run();
+                }
+            };
+        }
+
+        static void post(Object frameCallback) {
+            Choreographer.getInstance().postFrameCallback((Choreographer.FrameCallback) frameCallback);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.wurensen.captionlayout;
+
+import java.util.HashMap;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+/**
+ * 进程内共享的角标图标缓存，按资源id和图标大小引用计数，同一个图标只解码一次。
+ * 解码时先按inSampleSize缩小，再缩放到图标大小，绘制时不需要再缩放。
+ * 引用计数为0时从缓存中移除，位图交给GC回收，避免仍在绘制的控件使用已回收的位图。只能在主线程使用
+ */
+final class CaptionIconCache {
+
+    private static final class Entry {
+        final Bitmap bitmap;
+        int refCount;
+
+        Entry(Bitmap bitmap) {
+            this.bitmap = bitmap;
+        }
+    }
+
+    private static final CaptionIconCache sInstance = new CaptionIconCache();
+
+    private final HashMap<Long, Entry> mEntries = new HashMap<>();
+
+    private CaptionIconCache() {
+    }
+
+    static CaptionIconCache getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * 获取图标并增加引用计数，使用完后需要调用{@link #release(int, int)}
+     *
+     * @param res  资源
+     * @param id   图片资源id
+     * @param size 图标大小，单位像素，小于等于0时按原始大小解码
+     * @return 图标，资源无法解码时返回null，不增加引用计数
+     */
+    Bitmap acquire(Resources res, int id, int size) {
+        long key = key(id, size);
+        Entry entry = mEntries.get(key);
+        if (entry == null) {
+            Bitmap bitmap = decode(res, id, size);
+            if (bitmap == null) {
+                return null;
+            }
+            entry = new Entry(bitmap);
+            mEntries.put(key, entry);
+        }
+        entry.refCount++;
+        return entry.bitmap;
+    }
+
+    /**
+     * 减少引用计数，为0时从缓存中移除
+     *
+     * @param id   图片资源id
+     * @param size 图标大小
+     */
+    void release(int id, int size) {
+        long key = key(id, size);
+        Entry entry = mEntries.get(key);
+        if (entry != null && --entry.refCount <= 0) {
+            mEntries.remove(key);
+        }
+    }
+
+    /**
+     * @return 缓存中的图标数量
+     */
+    int size() {
+        return mEntries.size();
+    }
+
+    static Bitmap decode(Resources res, int id, int size) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        // 不按屏幕密度缩放，直接缩放到图标大小
+        options.inScaled = false;
+        if (size > 0) {
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeResource(res, id, options);
+            if (options.outWidth <= 0 || options.outHeight <= 0) {
+                return null;
+            }
+            options.inSampleSize =
+                ImageCaptionSource.calculateInSampleSize(options.outWidth, options.outHeight, size, size);
+            options.inJustDecodeBounds = false;
+        }
+        Bitmap bitmap = BitmapFactory.decodeResource(res, id, options);
+        if (bitmap == null || size <= 0 || (bitmap.getWidth() == size && bitmap.getHeight() == size)) {
+            return bitmap;
+        }
+        // 图标绘制在正方形区域中
+        Bitmap scaled = Bitmap.createScaledBitmap(bitmap, size, size, true);
+        if (scaled != bitmap) {
+            bitmap.recycle();
+        }
+        return scaled;
+    }
+
+    private static long key(int id, int size) {
+        return ((long) id << 32) | (size & 0xffffffffL);
+    }
+}
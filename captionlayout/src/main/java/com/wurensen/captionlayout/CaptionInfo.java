@@ -1,8 +1,10 @@
 package com.wurensen.captionlayout;
 
+import java.io.IOException;
+
 import android.graphics.Bitmap;
-import android.graphics.Matrix;
-import android.graphics.Rect;
+
+import com.wurensen.captioncore.OrientedBoundingBox;
 
 /**
  * 导出的字幕信息
@@ -15,6 +17,11 @@ public abstract class CaptionInfo {
     public float relativeCenterY; // 相对字幕控件的中点y
     public int width; // 绝对宽度
     public int height; // 绝对高度
+    public long startTime; // 开始显示的时间，单位毫秒，包含
+    public long endTime = Long.MAX_VALUE; // 结束显示的时间，单位毫秒，不包含，默认一直显示
+
+    // 从序列化数据中读取的字幕图片，首次访问时解码
+    EncodedBitmap captionBitmapSource;
 
     public CaptionInfo() {
     }
@@ -29,6 +36,44 @@ public abstract class CaptionInfo {
         this.height = height;
     }
 
+    /**
+     * 获取字幕图片，从序列化数据中读取的字幕在首次调用时才解码图片
+     *
+     * @return 字幕图片，没有图片或者解码失败时返回null
+     */
+    public synchronized Bitmap getCaptionBitmap() {
+        if (captionBitmap == null && captionBitmapSource != null) {
+            captionBitmap = decode(captionBitmapSource);
+            if (captionBitmap != null) {
+                captionBitmapSource = null;
+            }
+        }
+        return captionBitmap;
+    }
+
+    /**
+     * @return 是否有字幕图片，不会触发解码
+     */
+    public boolean hasCaptionBitmap() {
+        return captionBitmap != null || captionBitmapSource != null;
+    }
+
+    static Bitmap decode(EncodedBitmap source) {
+        try {
+            return source.decode();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param time 时间，单位毫秒
+     * @return 字幕在该时间是否显示
+     */
+    public boolean isActiveAt(long time) {
+        return startTime <= time && time < endTime;
+    }
+
     /**
      * @param viewWidth 控件宽度
      * @param viewHeight 控件高度
@@ -37,21 +82,11 @@ public abstract class CaptionInfo {
      * @return 返回传入的坐标是否落在字幕在字幕控件上的区域
      */
     public boolean isTouchPointInCaption(int viewWidth, int viewHeight, float touchX, float touchY) {
-        // 坐标映射到控件上
-        Matrix matrix = new Matrix();
-        int centerX = (int) (relativeCenterX * viewWidth);
-        int centerY = (int) (relativeCenterY * viewHeight);
-        matrix.postRotate(-degree, centerX, centerY);
-        float[] pst = new float[] {touchX, touchY};
-        matrix.mapPoints(pst);
-        int halfWidth = (int) (width * 1.0f / 2);
-        int halfHeight = (int) (height * 1.0f / 2);
-        int left = centerX - halfWidth;
-        int right = centerX + halfWidth;
-        int top = centerY - halfHeight;
-        int bottom = centerY + halfHeight;
-        Rect rect = new Rect(left, top, right, bottom);
-        return rect.contains((int) pst[0], (int) pst[1]);
+        // 中心点映射到控件上
+        float centerX = relativeCenterX * viewWidth;
+        float centerY = relativeCenterY * viewHeight;
+        return OrientedBoundingBox.contains(centerX, centerY, width * 1.0f / 2, height * 1.0f / 2, degree, touchX,
+            touchY);
     }
 
 }
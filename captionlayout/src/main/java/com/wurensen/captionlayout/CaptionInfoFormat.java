@@ -0,0 +1,36 @@
+package com.wurensen.captionlayout;
+
+import java.nio.charset.Charset;
+
+/**
+ * 字幕信息二进制格式的常量。
+ * <pre>
+ * 文件头：magic(int "CAPT") version(short) count(int)
+ * 字幕：  type(byte) degree relativeCenterX relativeCenterY(float) width height(int)
+ *         startTime endTime(long，版本2开始) captionBitmap(blob)
+ * 文字：  text(UTF，版本4开始为text) textSize(float) textColor textBorderColor(int) typefaceName(UTF) typefaceStyle(byte)
+ *         textAlignment(UTF) textPadding(int) textTypefaceKey(UTF，版本3开始)
+ * 贴图：  intrinsicBitmap(blob)
+ * blob：  length(int，-1表示没有) data(PNG/WebP)
+ * text：  length(int) data(UTF-8)，没有writeUTF的65535字节限制
+ * </pre>
+ * 字体名称为空字符串表示默认字体，字体key为空字符串表示没有
+ */
+final class CaptionInfoFormat {
+
+    static final int MAGIC = 0x43415054; // "CAPT"
+    static final int VERSION = 4;
+    static final int VERSION_TIME_RANGE = 2; // 开始保存显示时间范围的版本
+    static final int VERSION_TYPEFACE_KEY = 3; // 开始保存字体key的版本
+    static final int VERSION_LONG_TEXT = 4; // 字幕内容开始按长度加UTF-8保存的版本
+
+    static final byte TYPE_TEXT = 1;
+    static final byte TYPE_IMAGE = 2;
+
+    static final int NO_BLOB = -1;
+
+    static final Charset TEXT_CHARSET = Charset.forName("UTF-8");
+
+    private CaptionInfoFormat() {
+    }
+}
@@ -0,0 +1,52 @@
+package com.wurensen.captionlayout;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.graphics.Bitmap;
+
+import com.wurensen.captioncore.CaptionCompositor;
+
+/**
+ * 把导出的字幕信息转为{@link CaptionCompositor}使用的图层
+ */
+public final class CaptionInfoLayers {
+
+    private CaptionInfoLayers() {
+    }
+
+    /**
+     * 字幕图片按原大小绘制，导出时的倍数需要与帧相对于字幕控件的倍数一致
+     *
+     * @param captionInfo 字幕信息
+     * @return 图层，没有字幕图片时返回null
+     */
+    public static CaptionCompositor.Layer toLayer(CaptionInfo captionInfo) {
+        Bitmap bitmap = captionInfo.getCaptionBitmap();
+        if (bitmap == null || bitmap.isRecycled()) {
+            return null;
+        }
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int[] pixels = new int[width * height];
+        // getPixels返回未预乘alpha的颜色
+        bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+        return new CaptionCompositor.Layer(pixels, width, height, false).relativeCenter(captionInfo.relativeCenterX,
+            captionInfo.relativeCenterY).degree(captionInfo.degree);
+    }
+
+    /**
+     * @param captionInfos 字幕信息，按层级从下到上排列
+     * @return 图层，跳过没有字幕图片的字幕
+     */
+    public static List<CaptionCompositor.Layer> toLayers(List<? extends CaptionInfo> captionInfos) {
+        ArrayList<CaptionCompositor.Layer> layers = new ArrayList<>(captionInfos.size());
+        for (int i = 0; i < captionInfos.size(); i++) {
+            CaptionCompositor.Layer layer = toLayer(captionInfos.get(i));
+            if (layer != null) {
+                layers.add(layer);
+            }
+        }
+        return layers;
+    }
+}
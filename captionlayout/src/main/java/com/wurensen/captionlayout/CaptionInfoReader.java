@@ -0,0 +1,226 @@
+package com.wurensen.captionlayout;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import android.graphics.Typeface;
+import android.text.Layout;
+
+/**
+ * 读取{@link CaptionInfoWriter}写入的字幕信息。图片不会立即解码：
+ * 从输入流读取时只保存编码后的数据；从文件读取时只记录数据在文件中的位置，内存中只保留字幕的基本信息。
+ * 图片在调用{@link CaptionInfo#getCaptionBitmap()}或{@link ImageCaptionInfo#getIntrinsicBitmap()}时才解码
+ */
+public class CaptionInfoReader {
+
+    private TypefaceResolver mTypefaceResolver = TypefaceResolver.SYSTEM;
+
+    /**
+     * @param resolver 字体转换器，需要与写入时使用的一致
+     * @return 当前对象
+     */
+    public CaptionInfoReader setTypefaceResolver(TypefaceResolver resolver) {
+        if (resolver == null) {
+            throw new NullPointerException("resolver == null");
+        }
+        mTypefaceResolver = resolver;
+        return this;
+    }
+
+    /**
+     * 从文件读取字幕信息，图片数据留在文件中，解码前不能删除或修改文件
+     *
+     * @param file 文件
+     * @return 字幕信息
+     * @throws IOException 读取失败或格式不正确
+     */
+    public List<CaptionInfo> read(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            return read(new BufferedInputStream(in), file);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * 从输入流读取字幕信息，不会关闭输入流
+     *
+     * @param in 输入流
+     * @return 字幕信息
+     * @throws IOException 读取失败或格式不正确
+     */
+    public List<CaptionInfo> read(InputStream in) throws IOException {
+        return read(in, null);
+    }
+
+    private List<CaptionInfo> read(InputStream in, File file) throws IOException {
+        CountingInputStream counting = new CountingInputStream(in);
+        DataInputStream data = new DataInputStream(counting);
+        if (data.readInt() != CaptionInfoFormat.MAGIC) {
+            throw new IOException("not a caption info stream");
+        }
+        int version = data.readUnsignedShort();
+        if (version > CaptionInfoFormat.VERSION) {
+            throw new IOException("unsupported version: " + version);
+        }
+        int count = data.readInt();
+        if (count < 0) {
+            throw new IOException("invalid caption count: " + count);
+        }
+        List<CaptionInfo> captionInfos = new ArrayList<>(Math.min(count, 1024));
+        for (int i = 0; i < count; i++) {
+            captionInfos.add(readCaptionInfo(data, counting, file, version));
+        }
+        return captionInfos;
+    }
+
+    private CaptionInfo readCaptionInfo(DataInputStream data, CountingInputStream counting, File file, int version)
+        throws IOException {
+        byte type = data.readByte();
+        CaptionInfo info;
+        if (type == CaptionInfoFormat.TYPE_TEXT) {
+            info = new TextCaptionInfo();
+        } else if (type == CaptionInfoFormat.TYPE_IMAGE) {
+            info = new ImageCaptionInfo();
+        } else {
+            throw new IOException("unknown caption type: " + type);
+        }
+        info.degree = data.readFloat();
+        info.relativeCenterX = data.readFloat();
+        info.relativeCenterY = data.readFloat();
+        info.width = data.readInt();
+        info.height = data.readInt();
+        if (version >= CaptionInfoFormat.VERSION_TIME_RANGE) {
+            info.startTime = data.readLong();
+            info.endTime = data.readLong();
+        }
+        info.captionBitmapSource = readBlob(data, counting, file);
+
+        if (info instanceof TextCaptionInfo) {
+            TextCaptionInfo textInfo = (TextCaptionInfo) info;
+            textInfo.text = version >= CaptionInfoFormat.VERSION_LONG_TEXT ? readText(data) : data.readUTF();
+            textInfo.textSize = data.readFloat();
+            textInfo.textColor = data.readInt();
+            textInfo.textBorderColor = data.readInt();
+            textInfo.textTypeface = readTypeface(data);
+            textInfo.textAlignment = readAlignment(data.readUTF());
+            textInfo.textPadding = data.readInt();
+            if (version >= CaptionInfoFormat.VERSION_TYPEFACE_KEY) {
+                String key = data.readUTF();
+                textInfo.textTypefaceKey = key.isEmpty() ? null : key;
+            }
+        } else {
+            ((ImageCaptionInfo) info).intrinsicBitmapSource = readBlob(data, counting, file);
+        }
+        return info;
+    }
+
+    private static String readText(DataInputStream data) throws IOException {
+        int length = data.readInt();
+        if (length < 0) {
+            throw new IOException("invalid text length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        data.readFully(bytes);
+        return new String(bytes, CaptionInfoFormat.TEXT_CHARSET);
+    }
+
+    private Typeface readTypeface(DataInputStream data) throws IOException {
+        String name = data.readUTF();
+        int style = data.readByte();
+        return mTypefaceResolver.resolve(name.isEmpty() ? null : name, style);
+    }
+
+    private static Layout.Alignment readAlignment(String name) {
+        for (Layout.Alignment alignment : Layout.Alignment.values()) {
+            if (alignment.name().equals(name)) {
+                return alignment;
+            }
+        }
+        return Layout.Alignment.ALIGN_CENTER;
+    }
+
+    private static EncodedBitmap readBlob(DataInputStream data, CountingInputStream counting, File file)
+        throws IOException {
+        int length = data.readInt();
+        if (length == CaptionInfoFormat.NO_BLOB) {
+            return null;
+        }
+        if (length < 0) {
+            throw new IOException("invalid blob length: " + length);
+        }
+        if (file == null) {
+            byte[] bytes = new byte[length];
+            data.readFully(bytes);
+            return new EncodedBitmap(bytes);
+        }
+        // 跳过图片数据，只记录位置
+        long offset = counting.getCount();
+        int remaining = length;
+        while (remaining > 0) {
+            int skipped = data.skipBytes(remaining);
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+            remaining -= skipped;
+        }
+        return new EncodedBitmap(file, offset, length);
+    }
+
+    /**
+     * 记录已读取字节数的输入流
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long mCount;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long getCount() {
+            return mCount;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                mCount++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            int read = super.read(buffer, offset, count);
+            if (read > 0) {
+                mCount += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            long skipped = super.skip(count);
+            if (skipped > 0) {
+                mCount += skipped;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
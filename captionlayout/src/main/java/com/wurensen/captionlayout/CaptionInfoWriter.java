@@ -0,0 +1,163 @@
+package com.wurensen.captionlayout;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import android.graphics.Bitmap;
+import android.graphics.Typeface;
+
+/**
+ * 把字幕信息写成紧凑的二进制格式，字体按名称和样式保存，图片按PNG/WebP压缩后保存，可以选择不保存图片。
+ * 从{@link CaptionInfoReader}读取且还未解码的图片直接复制原数据，不会重新编码。
+ * 一个实例只能在一个线程中使用
+ */
+public class CaptionInfoWriter {
+
+    private Bitmap.CompressFormat mCompressFormat = Bitmap.CompressFormat.PNG;
+    private int mCompressQuality = 100;
+    private boolean mWriteCaptionBitmap = true;
+    private boolean mWriteIntrinsicBitmap = true;
+    private TypefaceResolver mTypefaceResolver = TypefaceResolver.SYSTEM;
+
+    private final ByteArrayOutputStream mBlobBuffer = new ByteArrayOutputStream();
+
+    /**
+     * @param format  图片压缩格式
+     * @param quality 压缩质量，0~100
+     * @return 当前对象
+     */
+    public CaptionInfoWriter setCompressFormat(Bitmap.CompressFormat format, int quality) {
+        if (format == null) {
+            throw new NullPointerException("format == null");
+        }
+        if (quality < 0 || quality > 100) {
+            throw new IllegalArgumentException("quality must be in [0, 100]");
+        }
+        mCompressFormat = format;
+        mCompressQuality = quality;
+        return this;
+    }
+
+    /**
+     * @param write 是否保存导出的字幕图片，不保存时读取后需要重新导出
+     * @return 当前对象
+     */
+    public CaptionInfoWriter setWriteCaptionBitmap(boolean write) {
+        mWriteCaptionBitmap = write;
+        return this;
+    }
+
+    /**
+     * @param write 是否保存贴图字幕原先的图片，不保存时读取后无法恢复贴图字幕
+     * @return 当前对象
+     */
+    public CaptionInfoWriter setWriteIntrinsicBitmap(boolean write) {
+        mWriteIntrinsicBitmap = write;
+        return this;
+    }
+
+    /**
+     * @param resolver 字体转换器，需要与读取时使用的一致
+     * @return 当前对象
+     */
+    public CaptionInfoWriter setTypefaceResolver(TypefaceResolver resolver) {
+        if (resolver == null) {
+            throw new NullPointerException("resolver == null");
+        }
+        mTypefaceResolver = resolver;
+        return this;
+    }
+
+    /**
+     * 写入字幕信息，不会关闭输出流
+     *
+     * @param captionInfos 字幕信息
+     * @param out          输出流
+     * @throws IOException 写入失败
+     */
+    public void write(List<? extends CaptionInfo> captionInfos, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(CaptionInfoFormat.MAGIC);
+        data.writeShort(CaptionInfoFormat.VERSION);
+        data.writeInt(captionInfos.size());
+        for (int i = 0; i < captionInfos.size(); i++) {
+            writeCaptionInfo(data, captionInfos.get(i));
+        }
+        data.flush();
+    }
+
+    private void writeCaptionInfo(DataOutputStream data, CaptionInfo info) throws IOException {
+        if (info instanceof TextCaptionInfo) {
+            data.writeByte(CaptionInfoFormat.TYPE_TEXT);
+        } else if (info instanceof ImageCaptionInfo) {
+            data.writeByte(CaptionInfoFormat.TYPE_IMAGE);
+        } else {
+            throw new IllegalArgumentException("unsupported caption info: " + info);
+        }
+        data.writeFloat(info.degree);
+        data.writeFloat(info.relativeCenterX);
+        data.writeFloat(info.relativeCenterY);
+        data.writeInt(info.width);
+        data.writeInt(info.height);
+        data.writeLong(info.startTime);
+        data.writeLong(info.endTime);
+        if (mWriteCaptionBitmap) {
+            writeBlob(data, info.captionBitmap, info.captionBitmapSource);
+        } else {
+            data.writeInt(CaptionInfoFormat.NO_BLOB);
+        }
+
+        if (info instanceof TextCaptionInfo) {
+            TextCaptionInfo textInfo = (TextCaptionInfo) info;
+            writeText(data, textInfo.text == null ? "" : textInfo.text);
+            data.writeFloat(textInfo.textSize);
+            data.writeInt(textInfo.textColor);
+            data.writeInt(textInfo.textBorderColor);
+            writeTypeface(data, textInfo.textTypeface);
+            data.writeUTF(textInfo.textAlignment == null ? "" : textInfo.textAlignment.name());
+            data.writeInt(textInfo.textPadding);
+            data.writeUTF(textInfo.textTypefaceKey == null ? "" : textInfo.textTypefaceKey);
+        } else {
+            ImageCaptionInfo imageInfo = (ImageCaptionInfo) info;
+            if (mWriteIntrinsicBitmap) {
+                writeBlob(data, imageInfo.intrinsicBitmap, imageInfo.intrinsicBitmapSource);
+            } else {
+                data.writeInt(CaptionInfoFormat.NO_BLOB);
+            }
+        }
+    }
+
+    // writeUTF最多只能写入65535字节，字幕内容可能更长
+    private static void writeText(DataOutputStream data, String text) throws IOException {
+        byte[] bytes = text.getBytes(CaptionInfoFormat.TEXT_CHARSET);
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
+    private void writeTypeface(DataOutputStream data, Typeface typeface) throws IOException {
+        String name = typeface == null ? null : mTypefaceResolver.getName(typeface);
+        data.writeUTF(name == null ? "" : name);
+        data.writeByte(typeface == null ? Typeface.NORMAL : typeface.getStyle());
+    }
+
+    private void writeBlob(DataOutputStream data, Bitmap bitmap, EncodedBitmap source) throws IOException {
+        if (bitmap != null && !bitmap.isRecycled()) {
+            mBlobBuffer.reset();
+            if (!bitmap.compress(mCompressFormat, mCompressQuality, mBlobBuffer)) {
+                throw new IOException("unable to compress caption bitmap");
+            }
+            data.writeInt(mBlobBuffer.size());
+            mBlobBuffer.writeTo(data);
+        } else if (source != null) {
+            byte[] bytes = source.getBytes();
+            data.writeInt(bytes.length);
+            data.write(bytes);
+        } else {
+            data.writeInt(CaptionInfoFormat.NO_BLOB);
+        }
+    }
+}
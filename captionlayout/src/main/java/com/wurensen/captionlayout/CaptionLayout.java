@@ -1,14 +1,24 @@
 package com.wurensen.captionlayout;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
 
 import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.RectF;
 import android.util.AttributeSet;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.FrameLayout;
 
+import com.wurensen.captioncore.CaptionIntervalTree;
+import com.wurensen.captioncore.CaptionSpatialIndex;
+
 /**
  * 字幕控件布局，提供多个字幕控件的控制，增加，移除
  *
@@ -23,6 +33,27 @@ public class CaptionLayout extends FrameLayout {
     private ArrayList<FlexibleCaptionView> captionViews;
     private int mNeedFocusIndex = -1;
 
+    private CaptionSpatialIndex<FlexibleCaptionView> mSpatialIndex; // 字幕边界的空间索引，用于触摸分发
+    private ArrayList<FlexibleCaptionView> mHitCandidates; // 命中检测时复用
+    private RectF mTempBounds = new RectF();
+    private int mNextZOrder; // 下一个追加字幕的层级
+    private boolean mDispatchByIndex; // 当前手势是否通过索引直接分发
+    private FlexibleCaptionView mIndexTouchTarget; // 通过索引找到的处理当前手势的字幕
+    private boolean mTouchSelf; // 当前手势没有字幕处理，由容器自身的onTouchEvent处理
+
+    private boolean mBatchRenderEnabled; // 是否批量渲染
+    private CaptionBitmapPool mBitmapPool; // 导出时使用的位图池
+    private CaptionRenderer mOverlayRenderer; // 导出叠加图时使用
+    private Rect mDirtyRect = new Rect();
+
+    private CaptionIntervalTree<FlexibleCaptionView> mTimeIndex; // 字幕显示时间的区间索引
+    private ArrayList<FlexibleCaptionView> mTimeCandidates; // 按时间查询时复用
+    private boolean mHasCurrentTime; // 是否按时间控制字幕显示
+    private long mCurrentTime;
+
+    private TouchTraceRecorder mTouchTraceRecorder; // 记录收到的触摸事件
+    private CaptionMetrics mMetrics; // 热点路径统计，null表示不统计
+
     public CaptionLayout(Context context) {
         this(context, null);
     }
@@ -34,6 +65,10 @@ public class CaptionLayout extends FrameLayout {
     public CaptionLayout(Context context, AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
         captionViews = new ArrayList<>();
+        mSpatialIndex = new CaptionSpatialIndex<>();
+        mHitCandidates = new ArrayList<>();
+        mTimeIndex = new CaptionIntervalTree<>();
+        mTimeCandidates = new ArrayList<>();
     }
 
     public OnCaptionFocusChangeListener getOnCaptionFocusChangeListener() {
@@ -50,6 +85,24 @@ public class CaptionLayout extends FrameLayout {
         if (child instanceof FlexibleCaptionView) {
             FlexibleCaptionView captionView = (FlexibleCaptionView) child;
             captionViews.add(captionView);
+            if (index < 0) {
+                mSpatialIndex.add(captionView, mNextZOrder++);
+            } else {
+                // 插入到中间，重新确定所有字幕的层级
+                mSpatialIndex.add(captionView, 0);
+                updateCaptionZOrder();
+            }
+            onChildBoundsChange(captionView);
+            onChildTimeRangeChange(captionView);
+            if (mBatchRenderEnabled) {
+                captionView.onBatchRenderChange(true);
+            }
+            if (mMetrics != null && captionView.getMetrics() == null) {
+                captionView.setMetrics(mMetrics);
+            }
+            if (mBitmapPool != null && captionView.getBitmapPool() == null) {
+                captionView.setBitmapPool(mBitmapPool);
+            }
             if (captionView.getFocus()) {
                 mNeedFocusIndex = captionViews.indexOf(captionView);
                 performCaptionFocusChange();
@@ -63,6 +116,16 @@ public class CaptionLayout extends FrameLayout {
         if (view instanceof FlexibleCaptionView) {
             FlexibleCaptionView captionView = (FlexibleCaptionView) view;
             captionViews.remove(captionView);
+            mSpatialIndex.remove(captionView);
+            mTimeIndex.remove(captionView);
+            captionView.setTimeHidden(false);
+            if (mBatchRenderEnabled) {
+                captionView.onBatchRenderChange(false);
+                invalidate();
+            }
+            if (view == mIndexTouchTarget) {
+                mIndexTouchTarget = null;
+            }
             if (view == mCurFocusCaptionView) {
                 // 当前选中字幕被移除，无选中
                 mCurFocusCaptionView = null;
@@ -73,6 +136,41 @@ public class CaptionLayout extends FrameLayout {
         }
     }
 
+    private void updateCaptionZOrder() {
+        for (int i = 0; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            if (child instanceof FlexibleCaptionView) {
+                mSpatialIndex.setZOrder((FlexibleCaptionView) child, i);
+            }
+        }
+        mNextZOrder = getChildCount();
+    }
+
+    // 字幕控件平移、缩放、旋转后更新索引中的边界
+    protected void onChildBoundsChange(FlexibleCaptionView view) {
+        view.getCaptionBounds(mTempBounds);
+        mTempBounds.offset(view.getLeft(), view.getTop());
+        mSpatialIndex.update(view, mTempBounds.left, mTempBounds.top, mTempBounds.right, mTempBounds.bottom);
+    }
+
+    // 字幕控件的显示时间范围变化后更新索引和显示状态
+    void onChildTimeRangeChange(FlexibleCaptionView view) {
+        mTimeIndex.put(view, view.getStartTime(), view.getEndTime());
+        if (mHasCurrentTime) {
+            updateTimeVisibility(view);
+        }
+    }
+
+    private void updateTimeVisibility(FlexibleCaptionView view) {
+        view.setTimeHidden(!view.isActiveAt(mCurrentTime));
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        mSpatialIndex.resize(w, h);
+    }
+
     protected void markChildFocus(FlexibleCaptionView view) {
         // 标记选中对象变更
         mNeedFocusIndex = captionViews.indexOf(view);
@@ -141,7 +239,7 @@ public class CaptionLayout extends FrameLayout {
     }
 
     /**
-     * @return 获取所有字幕控件的信息
+     * @return 获取所有字幕控件的信息，包括不在当前时间内、还没有绘制过的字幕
      * @param scale 导出的目标相对于字幕的倍数
      */
     public ArrayList<CaptionInfo> findAllCaptionInfos(float scale) {
@@ -156,6 +254,352 @@ public class CaptionLayout extends FrameLayout {
         return captionInfos;
     }
 
+    /**
+     * @return 是否开启了批量渲染
+     */
+    public boolean isBatchRenderEnabled() {
+        return mBatchRenderEnabled;
+    }
+
+    /**
+     * 设置是否批量渲染。开启后所有字幕由容器在一次绘制中完成，字幕控件只负责事件处理，
+     * 字幕变化时只刷新变化前后所在的区域，绘制耗时与变化的区域相关，而不是与字幕数量相关。
+     * 容器中包含非字幕控件时仍使用默认的绘制方式
+     *
+     * @param enabled 是否开启
+     */
+    public void setBatchRenderEnabled(boolean enabled) {
+        if (mBatchRenderEnabled == enabled) {
+            return;
+        }
+        mBatchRenderEnabled = enabled;
+        for (int i = 0; i < captionViews.size(); i++) {
+            captionViews.get(i).onBatchRenderChange(enabled);
+        }
+        // 字幕不再使用各自的硬件层，由容器统一使用
+        setLayerType(enabled ? LAYER_TYPE_HARDWARE : LAYER_TYPE_NONE, null);
+        invalidate();
+    }
+
+    /**
+     * @return 当前是否正在批量渲染
+     */
+    boolean isBatchRendering() {
+        return mBatchRenderEnabled && getChildCount() == captionViews.size();
+    }
+
+    // 刷新字幕控件坐标系中的区域
+    void invalidateCaptionRegion(FlexibleCaptionView view, RectF dirty) {
+        dirty.roundOut(mDirtyRect);
+        mDirtyRect.offset(view.getLeft(), view.getTop());
+        invalidate(mDirtyRect);
+    }
+
+    // 刷新字幕控件坐标系中的区域，可在非UI线程调用
+    void postInvalidateCaptionRegion(FlexibleCaptionView view, RectF dirty) {
+        int left = (int) Math.floor(dirty.left) + view.getLeft();
+        int top = (int) Math.floor(dirty.top) + view.getTop();
+        int right = (int) Math.ceil(dirty.right) + view.getLeft();
+        int bottom = (int) Math.ceil(dirty.bottom) + view.getTop();
+        postInvalidate(left, top, right, bottom);
+    }
+
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        CaptionTrace.begin(CaptionTrace.SECTION_LAYOUT_DRAW);
+        try {
+            if (isBatchRendering()) {
+                drawCaptionsInBatch(canvas);
+            } else {
+                super.dispatchDraw(canvas);
+            }
+        } finally {
+            CaptionTrace.end();
+        }
+    }
+
+    // 按层级从下到上绘制所有字幕，跳过不在刷新区域内的字幕
+    private void drawCaptionsInBatch(Canvas canvas) {
+        for (int i = 0; i < getChildCount(); i++) {
+            FlexibleCaptionView captionView = (FlexibleCaptionView) getChildAt(i);
+            if (!captionView.isCaptionVisible()) {
+                continue;
+            }
+            canvas.save();
+            canvas.translate(captionView.getLeft(), captionView.getTop());
+            if (captionView.isCaptionPrepared()) {
+                captionView.getCaptionBounds(mTempBounds);
+                if (canvas.quickReject(mTempBounds, Canvas.EdgeType.AA)) {
+                    canvas.restore();
+                    continue;
+                }
+            }
+            captionView.drawCaption(canvas);
+            canvas.restore();
+        }
+    }
+
+    /**
+     * 在后台线程中导出所有字幕控件的信息。字幕的渲染状态在调用线程（UI线程）中获取快照，
+     * 之后的绘制在有数量上限的线程池中并行进行，不会修改字幕控件
+     *
+     * @param scale    导出的目标相对于字幕的倍数
+     * @param listener 导出完成后在主线程回调，可以为null
+     * @return 导出任务，结果按层级从下到上排列，与{@link #findAllCaptionInfos(float)}一致
+     */
+    public Future<List<CaptionInfo>> findAllCaptionInfosAsync(float scale, OnCaptionExportListener listener) {
+        ArrayList<CaptionRenderState> states = new ArrayList<>();
+        for (int i = 0; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            if (child instanceof FlexibleCaptionView) {
+                states.add(((FlexibleCaptionView) child).getRenderState());
+            }
+        }
+        return CaptionExportFuture.submit(states, scale, mBitmapPool, mMetrics, CaptionExportExecutor.get(),
+            listener);
+    }
+
+    /**
+     * 把所有字幕按旋转角度和层级绘制到一张与目标大小一致的叠加图中，只分配一张图片。
+     * 目标与容器宽高比不同时字幕中心按两个方向的倍数分别映射，字幕本身按横向倍数等比绘制。
+     * 不显示的字幕不会绘制，设置了位图池时从池中获取图片
+     *
+     * @param targetWidth  目标宽度
+     * @param targetHeight 目标高度
+     * @return 叠加图和包含所有字幕的最小区域
+     */
+    public CaptionOverlay exportOverlay(int targetWidth, int targetHeight) {
+        checkOverlayTarget(targetWidth, targetHeight);
+        CaptionTrace.begin(CaptionTrace.SECTION_LAYOUT_EXPORT_OVERLAY);
+        try {
+            float scaleX = targetWidth * 1.0f / getWidth();
+            float scaleY = targetHeight * 1.0f / getHeight();
+            Bitmap bitmap = CaptionMetrics.obtainExportBitmap(mMetrics, mBitmapPool, targetWidth, targetHeight);
+            if (mMetrics != null) {
+                mMetrics.increment(CaptionMetrics.COUNTER_EXPORT_RASTER, 1);
+            }
+            Canvas canvas = new Canvas(bitmap);
+            if (mOverlayRenderer == null) {
+                mOverlayRenderer = new CaptionRenderer();
+            }
+            Rect dirtyBounds = new Rect();
+            List<CaptionRenderState> states = collectOverlayStates();
+            for (int i = 0; i < states.size(); i++) {
+                CaptionRenderState state = states.get(i);
+                CaptionStripExporter.drawOverlayCaption(mOverlayRenderer, canvas, state, scaleX, scaleY);
+                CaptionStripExporter.unionBounds(dirtyBounds, state, scaleX, scaleY, mTempBounds);
+            }
+            if (!dirtyBounds.intersect(0, 0, targetWidth, targetHeight)) {
+                dirtyBounds.setEmpty();
+            }
+            return new CaptionOverlay(bitmap, dirtyBounds);
+        } finally {
+            CaptionTrace.end();
+        }
+    }
+
+    /**
+     * 与{@link #exportOverlay(int, int)}相同，但按条带绘制并交给sink，不分配整张叠加图，
+     * 内存峰值只与条带大小有关
+     *
+     * @param targetWidth  目标宽度
+     * @param targetHeight 目标高度
+     * @param exporter     条带导出器，决定条带高度
+     * @param sink         接收条带
+     * @return 包含所有字幕的最小区域，没有字幕时为空
+     * @throws IOException 写入失败
+     */
+    public Rect exportOverlay(int targetWidth, int targetHeight, CaptionStripExporter exporter,
+        CaptionStripSink sink) throws IOException {
+        checkOverlayTarget(targetWidth, targetHeight);
+        float scaleX = targetWidth * 1.0f / getWidth();
+        float scaleY = targetHeight * 1.0f / getHeight();
+        if (mMetrics != null) {
+            mMetrics.increment(CaptionMetrics.COUNTER_EXPORT_RASTER, 1);
+        }
+        CaptionTrace.begin(CaptionTrace.SECTION_LAYOUT_EXPORT_OVERLAY);
+        try {
+            return exporter.exportOverlay(collectOverlayStates(), scaleX, scaleY, targetWidth, targetHeight, sink);
+        } finally {
+            CaptionTrace.end();
+        }
+    }
+
+    private void checkOverlayTarget(int targetWidth, int targetHeight) {
+        if (targetWidth <= 0 || targetHeight <= 0) {
+            throw new IllegalArgumentException("targetWidth and targetHeight must be > 0");
+        }
+        if (getWidth() == 0 || getHeight() == 0) {
+            throw new IllegalStateException("CaptionLayout has not been laid out");
+        }
+    }
+
+    // 获取所有显示的字幕在容器坐标系中的渲染状态，按层级从下到上排列
+    private List<CaptionRenderState> collectOverlayStates() {
+        ArrayList<CaptionRenderState> states = new ArrayList<>();
+        for (int i = 0; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            if (!(child instanceof FlexibleCaptionView) || !((FlexibleCaptionView) child).isCaptionVisible()) {
+                continue;
+            }
+            CaptionRenderState state = ((FlexibleCaptionView) child).getRenderState();
+            if (child.getLeft() != 0 || child.getTop() != 0) {
+                state = state.newBuilder()
+                    .center(state.centerX + child.getLeft(), state.centerY + child.getTop())
+                    .build();
+            }
+            states.add(state);
+        }
+        return states;
+    }
+
+    /**
+     * @return 获取导出时使用的位图池
+     */
+    public CaptionBitmapPool getBitmapPool() {
+        return mBitmapPool;
+    }
+
+    /**
+     * 设置导出时使用的位图池，同时应用到所有字幕控件，导出的字幕信息使用完后通过
+     * {@link #releaseCaptionInfos(List)}归还
+     *
+     * @param bitmapPool 位图池，null表示每次新建
+     */
+    public void setBitmapPool(CaptionBitmapPool bitmapPool) {
+        this.mBitmapPool = bitmapPool;
+        for (int i = 0; i < captionViews.size(); i++) {
+            captionViews.get(i).setBitmapPool(bitmapPool);
+        }
+    }
+
+    /**
+     * 把导出的字幕图片归还到位图池，归还后不能再使用这些字幕图片
+     *
+     * @param captionInfos 导出的字幕信息
+     */
+    public void releaseCaptionInfos(List<CaptionInfo> captionInfos) {
+        if (mBitmapPool == null || captionInfos == null) {
+            return;
+        }
+        for (int i = 0; i < captionInfos.size(); i++) {
+            CaptionInfo captionInfo = captionInfos.get(i);
+            mBitmapPool.put(captionInfo.captionBitmap);
+            captionInfo.captionBitmap = null;
+        }
+    }
+
+    /**
+     * 设置当前时间，只显示时间范围包含该时间的字幕，其余字幕不绘制也不响应触摸。
+     * 按时间隐藏与字幕控件自身的{@link View#setVisibility(int)}分开记录，互不覆盖。
+     * 连续设置时只更新在两个时间之间开始或结束的字幕，适合拖动进度条时逐帧调用
+     *
+     * @param time 时间，单位毫秒
+     */
+    public void setCurrentTime(long time) {
+        if (mHasCurrentTime && mCurrentTime == time) {
+            return;
+        }
+        if (!mHasCurrentTime) {
+            mHasCurrentTime = true;
+            mCurrentTime = time;
+            for (int i = 0; i < captionViews.size(); i++) {
+                updateTimeVisibility(captionViews.get(i));
+            }
+            return;
+        }
+        // 从t0变到t1时，显示状态变化的字幕是在(t0, t1]内开始或结束的字幕
+        long from = Math.min(mCurrentTime, time) + 1;
+        long to = Math.max(mCurrentTime, time);
+        to = to == Long.MAX_VALUE ? to : to + 1;
+        mCurrentTime = time;
+        mTimeIndex.queryChanging(from, to, mTimeCandidates);
+        for (int i = 0; i < mTimeCandidates.size(); i++) {
+            updateTimeVisibility(mTimeCandidates.get(i));
+        }
+        mTimeCandidates.clear();
+    }
+
+    /**
+     * 不再按时间控制字幕显示，字幕恢复为控件自身的可见状态
+     */
+    public void clearCurrentTime() {
+        if (!mHasCurrentTime) {
+            return;
+        }
+        mHasCurrentTime = false;
+        for (int i = 0; i < captionViews.size(); i++) {
+            captionViews.get(i).setTimeHidden(false);
+        }
+    }
+
+    /**
+     * @return 当前时间，没有设置时返回{@link Long#MIN_VALUE}
+     */
+    public long getCurrentTime() {
+        return mHasCurrentTime ? mCurrentTime : Long.MIN_VALUE;
+    }
+
+    /**
+     * 查询在指定时间显示的字幕
+     *
+     * @param time 时间，单位毫秒
+     * @param out  保存结果，不会清空，结果无序
+     * @return 结果数量
+     */
+    public int findCaptionViewsAt(long time, List<FlexibleCaptionView> out) {
+        return mTimeIndex.queryActive(time, out);
+    }
+
+    /**
+     * 查询在[startTime, endTime)内开始或结束显示的字幕
+     *
+     * @param startTime 开始时间，单位毫秒，包含
+     * @param endTime   结束时间，单位毫秒，不包含
+     * @param out       保存结果，不会清空，结果无序
+     * @return 结果数量
+     */
+    public int findCaptionViewsChanging(long startTime, long endTime, List<FlexibleCaptionView> out) {
+        return mTimeIndex.queryChanging(startTime, endTime, out);
+    }
+
+    /**
+     * @return 热点路径统计，未开启时为null
+     */
+    public CaptionMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * 开启热点路径统计，同时应用到所有字幕控件，之后添加的字幕控件没有设置时也使用这个统计对象，
+     * 统计结果为所有字幕的合计，需要单个字幕的统计时为字幕单独设置
+     *
+     * @param metrics 统计对象，null表示不统计
+     */
+    public void setMetrics(CaptionMetrics metrics) {
+        mMetrics = metrics;
+        for (int i = 0; i < captionViews.size(); i++) {
+            captionViews.get(i).setMetrics(metrics);
+        }
+    }
+
+    /**
+     * @return 当前的触摸轨迹记录器
+     */
+    public TouchTraceRecorder getTouchTraceRecorder() {
+        return mTouchTraceRecorder;
+    }
+
+    /**
+     * 设置触摸轨迹记录器，之后收到的所有触摸事件都会在分发前记录下来，用于重现真实手势。
+     * 不会关闭之前的记录器，记录结束后需要调用{@link TouchTraceRecorder#close()}
+     *
+     * @param recorder 记录器，null表示停止记录
+     */
+    public void setTouchTraceRecorder(TouchTraceRecorder recorder) {
+        mTouchTraceRecorder = recorder;
+    }
+
     /**
      * @return 获取当前操作的字幕控件
      */
@@ -165,16 +609,80 @@ public class CaptionLayout extends FrameLayout {
 
     @Override
     public boolean dispatchTouchEvent(MotionEvent ev) {
-        // 记录是否为多指按下
-        mIsPointerDown = (ev.getAction() & MotionEvent.ACTION_MASK) == MotionEvent.ACTION_POINTER_DOWN;
+        if (mTouchTraceRecorder != null) {
+            mTouchTraceRecorder.record(ev, getWidth(), getHeight());
+        }
+        CaptionTrace.begin(CaptionTrace.SECTION_LAYOUT_TOUCH);
+        boolean consume;
+        try {
+            // 记录是否为多指按下
+            mIsPointerDown = (ev.getAction() & MotionEvent.ACTION_MASK) == MotionEvent.ACTION_POINTER_DOWN;
 
-        boolean consume = super.dispatchTouchEvent(ev);
-        if (ev.getAction() == MotionEvent.ACTION_DOWN) {
-            performCaptionFocusChange();
+            int action = ev.getAction() & MotionEvent.ACTION_MASK;
+            if (action == MotionEvent.ACTION_DOWN) {
+                mIndexTouchTarget = null;
+                mTouchSelf = false;
+                // 只有字幕控件时才通过索引分发，否则交给默认流程
+                mDispatchByIndex = getChildCount() == captionViews.size();
+                if (mDispatchByIndex) {
+                    mIndexTouchTarget = dispatchDownByIndex(ev);
+                    // 点击空白处时候选字幕都已拒绝按下事件，其余字幕不包含按下点，不再遍历子控件，直接交给容器自身处理
+                    mTouchSelf = mIndexTouchTarget == null;
+                    consume = mIndexTouchTarget != null || onTouchEvent(ev);
+                } else {
+                    consume = super.dispatchTouchEvent(ev);
+                }
+            } else if (mDispatchByIndex) {
+                if (mIndexTouchTarget != null) {
+                    consume = dispatchToCaption(mIndexTouchTarget, ev);
+                } else {
+                    consume = mTouchSelf && onTouchEvent(ev);
+                }
+            } else {
+                consume = super.dispatchTouchEvent(ev);
+            }
+            if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+                mDispatchByIndex = false;
+                mIndexTouchTarget = null;
+                mTouchSelf = false;
+            }
+            if (ev.getAction() == MotionEvent.ACTION_DOWN) {
+                performCaptionFocusChange();
+            }
+        } finally {
+            CaptionTrace.end();
         }
         return consume;
     }
 
+    // 从索引中取出外接矩形包含按下点的字幕，按层级从上到下分发，返回处理了按下事件的字幕
+    private FlexibleCaptionView dispatchDownByIndex(MotionEvent ev) {
+        mSpatialIndex.query(ev.getX() + getScrollX(), ev.getY() + getScrollY(), mHitCandidates);
+        FlexibleCaptionView target = null;
+        for (int i = 0; i < mHitCandidates.size(); i++) {
+            FlexibleCaptionView candidate = mHitCandidates.get(i);
+            if (!candidate.isCaptionVisible()) {
+                continue;
+            }
+            if (dispatchToCaption(candidate, ev)) {
+                target = candidate;
+                break;
+            }
+        }
+        mHitCandidates.clear();
+        return target;
+    }
+
+    // 把事件转换到字幕控件的坐标系后直接分发
+    private boolean dispatchToCaption(FlexibleCaptionView captionView, MotionEvent ev) {
+        float offsetX = getScrollX() - captionView.getLeft();
+        float offsetY = getScrollY() - captionView.getTop();
+        ev.offsetLocation(offsetX, offsetY);
+        boolean handled = captionView.dispatchTouchEvent(ev);
+        ev.offsetLocation(-offsetX, -offsetY);
+        return handled;
+    }
+
     /**
      * 字幕间焦点变更监听器
      */
@@ -188,4 +696,21 @@ public class CaptionLayout extends FrameLayout {
         void onCaptionFocusChange(CaptionLayout captionLayout, FlexibleCaptionView lastFocusCaptionView,
             FlexibleCaptionView curFocusCaptionView);
     }
+
+    /**
+     * 异步导出字幕信息的监听器，在主线程回调
+     */
+    public interface OnCaptionExportListener {
+        /**
+         * 所有字幕导出完成时触发
+         * @param captionInfos 字幕信息，按层级从下到上排列
+         */
+        void onExportSuccess(List<CaptionInfo> captionInfos);
+
+        /**
+         * 导出失败时触发
+         * @param throwable 失败原因
+         */
+        void onExportFailure(Throwable throwable);
+    }
 }
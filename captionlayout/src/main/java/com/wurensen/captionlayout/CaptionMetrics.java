@@ -0,0 +1,337 @@
+package com.wurensen.captionlayout;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import android.graphics.Bitmap;
+import android.os.SystemClock;
+
+/**
+ * 字幕热点路径的统计，包含计数和固定分桶的耗时直方图。通过{@link CaptionLayout#setMetrics(CaptionMetrics)}
+ * 或{@link FlexibleCaptionView#setMetrics(CaptionMetrics)}开启，未设置时只有一次判空的开销。
+ * 计数和直方图都使用原子操作，导出线程和主线程可以同时记录；{@link #snapshot()}不加锁，与记录同时进行时各项之间可能有细微偏差
+ */
+public final class CaptionMetrics {
+
+    /**
+     * 排版对象的创建次数
+     */
+    public static final int COUNTER_LAYOUT_BUILD = 0;
+    /**
+     * 文字测量次数，包含计算字号和确定边框时的测量
+     */
+    public static final int COUNTER_TEXT_MEASURE = 1;
+    /**
+     * 字幕请求刷新的次数
+     */
+    public static final int COUNTER_INVALIDATE = 2;
+    /**
+     * 导出时绘制字幕图片、条带或叠加图的次数
+     */
+    public static final int COUNTER_EXPORT_RASTER = 3;
+    /**
+     * 导出时新分配的位图字节数，复用的位图不计算
+     */
+    public static final int COUNTER_EXPORT_BYTES = 4;
+    static final int COUNTER_COUNT = 5;
+
+    /**
+     * 绘制字幕的耗时
+     */
+    public static final int HISTOGRAM_DRAW = 0;
+    /**
+     * 处理触摸事件的耗时
+     */
+    public static final int HISTOGRAM_TOUCH = 1;
+    static final int HISTOGRAM_COUNT = 2;
+
+    // 每个桶的耗时上限，单位微秒，最后一个桶没有上限；16毫秒和33毫秒分别对应60和30帧每秒的一帧
+    private static final long[] BUCKET_UPPER_BOUNDS_MICROS = {50, 100, 250, 500, 1000, 2000, 4000, 8000, 16000, 33000};
+    /**
+     * 直方图的桶数量
+     */
+    public static final int BUCKET_COUNT = BUCKET_UPPER_BOUNDS_MICROS.length + 1;
+
+    // 每个直方图依次为桶计数、总数、总耗时和最长耗时
+    private static final int HISTOGRAM_STRIDE = BUCKET_COUNT + 3;
+    private static final int OFFSET_TOTAL_COUNT = BUCKET_COUNT;
+    private static final int OFFSET_TOTAL_NANOS = BUCKET_COUNT + 1;
+    private static final int OFFSET_MAX_NANOS = BUCKET_COUNT + 2;
+
+    private final AtomicLongArray mCounters = new AtomicLongArray(COUNTER_COUNT);
+    private final AtomicLongArray mHistograms = new AtomicLongArray(HISTOGRAM_COUNT * HISTOGRAM_STRIDE);
+
+    private volatile Listener mListener;
+    private volatile long mReportIntervalMillis;
+    private final AtomicLong mLastReportTime = new AtomicLong(SystemClock.uptimeMillis());
+
+    /**
+     * 统计结果的监听器，用于接入线上监控
+     */
+    public interface Listener {
+        /**
+         * 到达上报间隔或调用{@link #report()}时触发，在记录或调用的线程中执行，不要做耗时操作
+         *
+         * @param metrics  统计对象
+         * @param snapshot 上次上报以来的统计结果，上报后统计清零
+         */
+        void onMetricsReport(CaptionMetrics metrics, Snapshot snapshot);
+    }
+
+    /**
+     * @param listener 监听器，null表示不上报
+     * @return 当前对象
+     */
+    public CaptionMetrics setListener(Listener listener) {
+        mListener = listener;
+        return this;
+    }
+
+    /**
+     * 设置自动上报的间隔，记录耗时时检查是否到达间隔
+     *
+     * @param intervalMillis 间隔，单位毫秒，0表示只在调用{@link #report()}时上报
+     * @return 当前对象
+     */
+    public CaptionMetrics setReportInterval(long intervalMillis) {
+        if (intervalMillis < 0) {
+            throw new IllegalArgumentException("intervalMillis must be >= 0");
+        }
+        mReportIntervalMillis = intervalMillis;
+        return this;
+    }
+
+    /**
+     * 增加计数
+     *
+     * @param counter 计数项，如{@link #COUNTER_LAYOUT_BUILD}
+     * @param delta   增加的值
+     */
+    public void increment(int counter, long delta) {
+        mCounters.addAndGet(counter, delta);
+    }
+
+    /**
+     * 记录一次耗时
+     *
+     * @param histogram 直方图，如{@link #HISTOGRAM_DRAW}
+     * @param nanos     耗时，单位纳秒
+     */
+    public void recordDuration(int histogram, long nanos) {
+        int base = histogram * HISTOGRAM_STRIDE;
+        mHistograms.incrementAndGet(base + bucketIndex(nanos / 1000));
+        mHistograms.incrementAndGet(base + OFFSET_TOTAL_COUNT);
+        mHistograms.addAndGet(base + OFFSET_TOTAL_NANOS, nanos);
+        int maxIndex = base + OFFSET_MAX_NANOS;
+        long max;
+        while (nanos > (max = mHistograms.get(maxIndex))) {
+            if (mHistograms.compareAndSet(maxIndex, max, nanos)) {
+                break;
+            }
+        }
+        long interval = mReportIntervalMillis;
+        if (interval > 0 && mListener != null) {
+            long now = SystemClock.uptimeMillis();
+            long last = mLastReportTime.get();
+            // 多个线程同时到达间隔时只有更新了上报时间的线程上报
+            if (now - last >= interval && mLastReportTime.compareAndSet(last, now)) {
+                publish();
+            }
+        }
+    }
+
+    private static int bucketIndex(long micros) {
+        long[] bounds = BUCKET_UPPER_BOUNDS_MICROS;
+        for (int i = 0; i < bounds.length; i++) {
+            if (micros < bounds[i]) {
+                return i;
+            }
+        }
+        return bounds.length;
+    }
+
+    /**
+     * @param index 桶序号
+     * @return 桶的耗时上限（不包含），单位微秒，最后一个桶返回{@link Long#MAX_VALUE}
+     */
+    public static long getBucketUpperBoundMicros(int index) {
+        return index < BUCKET_UPPER_BOUNDS_MICROS.length ? BUCKET_UPPER_BOUNDS_MICROS[index] : Long.MAX_VALUE;
+    }
+
+    /**
+     * @return 当前的统计结果，不清零
+     */
+    public Snapshot snapshot() {
+        return takeSnapshot(false);
+    }
+
+    // 清零时每一项原子地读取并清零，读取与清零之间的记录不会丢失，会计入下一次的统计
+    private Snapshot takeSnapshot(boolean clear) {
+        long[] counters = new long[COUNTER_COUNT];
+        for (int i = 0; i < COUNTER_COUNT; i++) {
+            counters[i] = clear ? mCounters.getAndSet(i, 0) : mCounters.get(i);
+        }
+        long[] histograms = new long[HISTOGRAM_COUNT * HISTOGRAM_STRIDE];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = clear ? mHistograms.getAndSet(i, 0) : mHistograms.get(i);
+        }
+        return new Snapshot(counters, histograms);
+    }
+
+    /**
+     * 清零所有统计
+     */
+    public void reset() {
+        for (int i = 0; i < COUNTER_COUNT; i++) {
+            mCounters.set(i, 0);
+        }
+        for (int i = 0; i < HISTOGRAM_COUNT * HISTOGRAM_STRIDE; i++) {
+            mHistograms.set(i, 0);
+        }
+    }
+
+    /**
+     * 获取统计结果并清零，有监听器时通知监听器
+     *
+     * @return 上次上报以来的统计结果
+     */
+    public Snapshot report() {
+        mLastReportTime.set(SystemClock.uptimeMillis());
+        return publish();
+    }
+
+    // 获取统计结果并清零，通知监听器
+    private Snapshot publish() {
+        Snapshot snapshot;
+        synchronized (this) {
+            snapshot = takeSnapshot(true);
+        }
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onMetricsReport(this, snapshot);
+        }
+        return snapshot;
+    }
+
+    /**
+     * 从位图池获取或新建导出用的位图，统计新分配的字节数
+     *
+     * @param metrics 统计对象，可以为null
+     * @param pool    位图池，可以为null
+     * @param width   宽度
+     * @param height  高度
+     * @return 透明位图
+     */
+    static Bitmap obtainExportBitmap(CaptionMetrics metrics, CaptionBitmapPool pool, int width, int height) {
+        if (metrics == null) {
+            return pool != null ? pool.get(width, height) : Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        }
+        Bitmap bitmap;
+        boolean allocated;
+        if (pool != null) {
+            // 其他线程同时从池中获取时可能把别人的分配算到这里，只影响统计
+            int missCount = pool.getMissCount();
+            bitmap = pool.get(width, height);
+            allocated = pool.getMissCount() != missCount;
+        } else {
+            bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            allocated = true;
+        }
+        if (allocated) {
+            metrics.increment(COUNTER_EXPORT_BYTES, bitmap.getByteCount());
+        }
+        return bitmap;
+    }
+
+    /**
+     * 统计结果，不可修改
+     */
+    public static final class Snapshot {
+
+        private final long[] mCounters;
+        private final long[] mHistograms;
+
+        Snapshot(long[] counters, long[] histograms) {
+            mCounters = counters;
+            mHistograms = histograms;
+        }
+
+        /**
+         * @param counter 计数项，如{@link #COUNTER_LAYOUT_BUILD}
+         * @return 计数
+         */
+        public long getCounter(int counter) {
+            return mCounters[counter];
+        }
+
+        /**
+         * @param histogram 直方图，如{@link #HISTOGRAM_DRAW}
+         * @param bucket    桶序号，范围见{@link #getBucketUpperBoundMicros(int)}
+         * @return 落在桶中的次数
+         */
+        public long getBucketCount(int histogram, int bucket) {
+            if (bucket < 0 || bucket >= BUCKET_COUNT) {
+                throw new IndexOutOfBoundsException("bucket=" + bucket);
+            }
+            return mHistograms[histogram * HISTOGRAM_STRIDE + bucket];
+        }
+
+        /**
+         * @param histogram 直方图
+         * @return 记录的次数
+         */
+        public long getCount(int histogram) {
+            return mHistograms[histogram * HISTOGRAM_STRIDE + OFFSET_TOTAL_COUNT];
+        }
+
+        /**
+         * @param histogram 直方图
+         * @return 总耗时，单位纳秒
+         */
+        public long getTotalNanos(int histogram) {
+            return mHistograms[histogram * HISTOGRAM_STRIDE + OFFSET_TOTAL_NANOS];
+        }
+
+        /**
+         * @param histogram 直方图
+         * @return 最长耗时，单位纳秒
+         */
+        public long getMaxNanos(int histogram) {
+            return mHistograms[histogram * HISTOGRAM_STRIDE + OFFSET_MAX_NANOS];
+        }
+
+        /**
+         * 根据分桶估算分位数，返回所在桶的上限，不超过最长耗时
+         *
+         * @param histogram 直方图
+         * @param quantile  分位，范围[0, 1]
+         * @return 耗时上限，单位纳秒，没有记录时返回0
+         */
+        public long getQuantileUpperBoundNanos(int histogram, float quantile) {
+            long count = getCount(histogram);
+            if (count == 0) {
+                return 0;
+            }
+            long target = (long) Math.ceil(count * Math.max(0f, Math.min(1f, quantile)));
+            long accumulated = 0;
+            for (int i = 0; i < BUCKET_COUNT - 1; i++) {
+                accumulated += getBucketCount(histogram, i);
+                if (accumulated >= target && accumulated > 0) {
+                    return Math.min(BUCKET_UPPER_BOUNDS_MICROS[i] * 1000, getMaxNanos(histogram));
+                }
+            }
+            return getMaxNanos(histogram);
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot{" + "layoutBuilds=" + mCounters[COUNTER_LAYOUT_BUILD]
+                + ", textMeasures=" + mCounters[COUNTER_TEXT_MEASURE]
+                + ", invalidates=" + mCounters[COUNTER_INVALIDATE]
+                + ", exportRasters=" + mCounters[COUNTER_EXPORT_RASTER]
+                + ", exportBytes=" + mCounters[COUNTER_EXPORT_BYTES]
+                + ", draws=" + getCount(HISTOGRAM_DRAW) + ", drawMaxNanos=" + getMaxNanos(HISTOGRAM_DRAW)
+                + ", touches=" + getCount(HISTOGRAM_TOUCH) + ", touchMaxNanos=" + getMaxNanos(HISTOGRAM_TOUCH) + '}';
+        }
+    }
+}
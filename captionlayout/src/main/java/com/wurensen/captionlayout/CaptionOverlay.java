@@ -0,0 +1,20 @@
+package com.wurensen.captionlayout;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+/**
+ * 所有字幕合成后的整帧叠加图
+ */
+public class CaptionOverlay {
+    public Bitmap bitmap; // 与目标大小一致的透明图片
+    public Rect dirtyBounds; // 包含所有字幕的最小区域，没有字幕时为空，编码时可以跳过区域外的像素
+
+    public CaptionOverlay() {
+    }
+
+    public CaptionOverlay(Bitmap bitmap, Rect dirtyBounds) {
+        this.bitmap = bitmap;
+        this.dirtyBounds = dirtyBounds;
+    }
+}
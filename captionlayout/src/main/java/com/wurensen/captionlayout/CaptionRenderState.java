@@ -0,0 +1,375 @@
+package com.wurensen.captionlayout;
+
+import android.graphics.Bitmap;
+import android.graphics.RectF;
+import android.graphics.Typeface;
+import android.text.Layout;
+import android.text.Spanned;
+import android.text.TextUtils;
+
+import com.wurensen.captioncore.CaptionTransform;
+
+/**
+ * 字幕渲染状态，不可变。通过{@link FlexibleCaptionView#getRenderState()}在UI线程获取快照后不再依赖字幕控件，
+ * 可以在任意线程中通过{@link CaptionRenderer}绘制到任意画布，也可以按内容比较后缓存渲染结果。
+ * 需要修改时通过{@link #newBuilder()}复制出新的状态
+ */
+public final class CaptionRenderState {
+
+    public final boolean isImageCaption;
+    public final Bitmap image; // 贴图字幕按显示大小解码的图片，还在加载时为null
+    public final ImageCaptionSource imageSource; // 贴图字幕的图片来源，高倍导出时重新解码，可以为null
+    public final CharSequence text; // 保留样式的文本快照
+    public final CharSequence maxWidthLineText; // 最长一行的文本，决定换行宽度
+    public final float textSize; // 实际绘制的字号
+    public final int textColor;
+    public final int borderColor;
+    public final Typeface typeface;
+    public final String typefaceKey; // 字体在TypefaceRegistry中的key，可以为null
+    public final Layout.Alignment alignment;
+    public final int padding; // 缩放后的边距
+
+    public final float centerX, centerY; // 字幕中心在控件中的位置
+    public final float borderWidth, borderHeight; // 缩放后的边框大小
+    public final float degree; // 旋转角度，绕中心顺时针
+    public final int viewWidth, viewHeight; // 控件大小
+    public final long startTime, endTime; // 显示时间范围[startTime, endTime)，单位毫秒
+
+    private static final Object[] EMPTY_SPANS = new Object[0];
+
+    private int mHashCode;
+
+    private CaptionRenderState(Builder builder) {
+        this.isImageCaption = builder.mIsImageCaption;
+        this.image = builder.mImage;
+        this.imageSource = builder.mImageSource;
+        this.text = builder.mText;
+        this.maxWidthLineText = builder.mMaxWidthLineText;
+        this.textSize = builder.mTextSize;
+        this.textColor = builder.mTextColor;
+        this.borderColor = builder.mBorderColor;
+        this.typeface = builder.mTypeface;
+        this.typefaceKey = builder.mTypefaceKey;
+        this.alignment = builder.mAlignment;
+        this.padding = builder.mPadding;
+        this.centerX = builder.mCenterX;
+        this.centerY = builder.mCenterY;
+        this.borderWidth = builder.mBorderWidth;
+        this.borderHeight = builder.mBorderHeight;
+        this.degree = builder.mDegree;
+        this.viewWidth = builder.mViewWidth;
+        this.viewHeight = builder.mViewHeight;
+        this.startTime = builder.mStartTime;
+        this.endTime = builder.mEndTime;
+    }
+
+    /**
+     * @param scale 导出的目标相对于字幕控件的倍数
+     * @return 导出的字幕图片宽度
+     */
+    public int getTargetWidth(float scale) {
+        return getTargetRight(scale) - getTargetLeft(scale);
+    }
+
+    /**
+     * @param scale 导出的目标相对于字幕控件的倍数
+     * @return 导出的字幕图片高度
+     */
+    public int getTargetHeight(float scale) {
+        return getTargetBottom(scale) - getTargetTop(scale);
+    }
+
+    /**
+     * @param scale 导出的目标相对于字幕控件的倍数
+     * @return 摆正后的字幕在目标中的左边界
+     */
+    public int getTargetLeft(float scale) {
+        return CaptionTransform.getTargetStart(centerX, borderWidth, scale);
+    }
+
+    /**
+     * @param scale 导出的目标相对于字幕控件的倍数
+     * @return 摆正后的字幕在目标中的上边界
+     */
+    public int getTargetTop(float scale) {
+        return CaptionTransform.getTargetStart(centerY, borderHeight, scale);
+    }
+
+    /**
+     * 获取旋转后的字幕在目标中的外接矩形
+     *
+     * @param scale 目标相对于字幕控件的倍数
+     * @param out   保存结果
+     */
+    public void getRotatedBounds(float scale, RectF out) {
+        float extentX = CaptionTransform.getRotatedExtentX(borderWidth, borderHeight, degree) * scale;
+        float extentY = CaptionTransform.getRotatedExtentY(borderWidth, borderHeight, degree) * scale;
+        out.set(centerX * scale - extentX, centerY * scale - extentY, centerX * scale + extentX,
+            centerY * scale + extentY);
+    }
+
+    private int getTargetRight(float scale) {
+        return CaptionTransform.getTargetEnd(centerX, borderWidth, scale);
+    }
+
+    private int getTargetBottom(float scale) {
+        return CaptionTransform.getTargetEnd(centerY, borderHeight, scale);
+    }
+
+    /**
+     * @return 以当前状态为初始值的构造器
+     */
+    public Builder newBuilder() {
+        return new Builder(this);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CaptionRenderState)) {
+            return false;
+        }
+        CaptionRenderState that = (CaptionRenderState) o;
+        return isImageCaption == that.isImageCaption && image == that.image
+            && imageSource == that.imageSource
+            && Float.compare(textSize, that.textSize) == 0 && textColor == that.textColor
+            && borderColor == that.borderColor && padding == that.padding
+            && Float.compare(centerX, that.centerX) == 0 && Float.compare(centerY, that.centerY) == 0
+            && Float.compare(borderWidth, that.borderWidth) == 0
+            && Float.compare(borderHeight, that.borderHeight) == 0 && Float.compare(degree, that.degree) == 0
+            && viewWidth == that.viewWidth && viewHeight == that.viewHeight && startTime == that.startTime
+            && endTime == that.endTime && textEquals(text, that.text)
+            && textEquals(maxWidthLineText, that.maxWidthLineText) && equals(typeface, that.typeface)
+            && equals(typefaceKey, that.typefaceKey)
+            && alignment == that.alignment;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = mHashCode;
+        if (result == 0) {
+            result = isImageCaption ? 1 : 0;
+            result = 31 * result + (image != null ? System.identityHashCode(image) : 0);
+            result = 31 * result + (imageSource != null ? System.identityHashCode(imageSource) : 0);
+            result = 31 * result + (text != null ? text.toString().hashCode() : 0);
+            result = 31 * result + (maxWidthLineText != null ? maxWidthLineText.toString().hashCode() : 0);
+            result = 31 * result + Float.floatToIntBits(textSize);
+            result = 31 * result + textColor;
+            result = 31 * result + borderColor;
+            result = 31 * result + (typeface != null ? typeface.hashCode() : 0);
+            result = 31 * result + (typefaceKey != null ? typefaceKey.hashCode() : 0);
+            result = 31 * result + (alignment != null ? alignment.hashCode() : 0);
+            result = 31 * result + padding;
+            result = 31 * result + Float.floatToIntBits(centerX);
+            result = 31 * result + Float.floatToIntBits(centerY);
+            result = 31 * result + Float.floatToIntBits(borderWidth);
+            result = 31 * result + Float.floatToIntBits(borderHeight);
+            result = 31 * result + Float.floatToIntBits(degree);
+            result = 31 * result + viewWidth;
+            result = 31 * result + viewHeight;
+            result = 31 * result + (int) (startTime ^ (startTime >>> 32));
+            result = 31 * result + (int) (endTime ^ (endTime >>> 32));
+            mHashCode = result;
+        }
+        return result;
+    }
+
+    private static boolean equals(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * 比较文本内容和样式，SpannedString在低版本系统上没有按内容实现equals
+     */
+    static boolean textEquals(CharSequence a, CharSequence b) {
+        if (a == b) {
+            return true;
+        }
+        if (!TextUtils.equals(a, b)) {
+            return false;
+        }
+        Object[] spansA = getSpans(a);
+        Object[] spansB = getSpans(b);
+        if (spansA.length != spansB.length) {
+            return false;
+        }
+        if (spansA.length == 0) {
+            return true;
+        }
+        Spanned sa = (Spanned) a;
+        Spanned sb = (Spanned) b;
+        for (int i = 0; i < spansA.length; i++) {
+            Object spanA = spansA[i];
+            Object spanB = spansB[i];
+            if (!spanA.equals(spanB) || sa.getSpanStart(spanA) != sb.getSpanStart(spanB)
+                || sa.getSpanEnd(spanA) != sb.getSpanEnd(spanB) || sa.getSpanFlags(spanA) != sb.getSpanFlags(spanB)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Object[] getSpans(CharSequence text) {
+        if (text instanceof Spanned) {
+            return ((Spanned) text).getSpans(0, text.length(), Object.class);
+        }
+        return EMPTY_SPANS;
+    }
+
+    @Override
+    public String toString() {
+        return "CaptionRenderState{" + "isImageCaption=" + isImageCaption + ", text='" + text + '\'' + ", textSize="
+            + textSize + ", centerX=" + centerX + ", centerY=" + centerY + ", borderWidth=" + borderWidth
+            + ", borderHeight=" + borderHeight + ", degree=" + degree + ", viewWidth=" + viewWidth + ", viewHeight="
+            + viewHeight + '}';
+    }
+
+    /**
+     * 渲染状态构造器
+     */
+    public static class Builder {
+
+        private boolean mIsImageCaption;
+        private Bitmap mImage;
+        private ImageCaptionSource mImageSource;
+        private CharSequence mText;
+        private CharSequence mMaxWidthLineText;
+        private float mTextSize;
+        private int mTextColor;
+        private int mBorderColor;
+        private Typeface mTypeface = Typeface.DEFAULT;
+        private String mTypefaceKey;
+        private Layout.Alignment mAlignment = Layout.Alignment.ALIGN_CENTER;
+        private int mPadding;
+        private float mCenterX, mCenterY;
+        private float mBorderWidth, mBorderHeight;
+        private float mDegree;
+        private int mViewWidth, mViewHeight;
+        private long mStartTime, mEndTime = Long.MAX_VALUE;
+
+        public Builder() {
+        }
+
+        private Builder(CaptionRenderState state) {
+            mIsImageCaption = state.isImageCaption;
+            mImage = state.image;
+            mImageSource = state.imageSource;
+            mText = state.text;
+            mMaxWidthLineText = state.maxWidthLineText;
+            mTextSize = state.textSize;
+            mTextColor = state.textColor;
+            mBorderColor = state.borderColor;
+            mTypeface = state.typeface;
+            mTypefaceKey = state.typefaceKey;
+            mAlignment = state.alignment;
+            mPadding = state.padding;
+            mCenterX = state.centerX;
+            mCenterY = state.centerY;
+            mBorderWidth = state.borderWidth;
+            mBorderHeight = state.borderHeight;
+            mDegree = state.degree;
+            mViewWidth = state.viewWidth;
+            mViewHeight = state.viewHeight;
+            mStartTime = state.startTime;
+            mEndTime = state.endTime;
+        }
+
+        public Builder image(Bitmap image) {
+            return image(image, null);
+        }
+
+        /**
+         * @param image       按显示大小解码的图片，还在加载时为null
+         * @param imageSource 图片来源，可以为null
+         */
+        public Builder image(Bitmap image, ImageCaptionSource imageSource) {
+            mIsImageCaption = image != null || imageSource != null;
+            mImage = image;
+            mImageSource = imageSource;
+            return this;
+        }
+
+        /**
+         * @param text             文本，带样式时传入不可变的快照，如{@link android.text.SpannedString}
+         * @param maxWidthLineText 最长一行的文本
+         */
+        public Builder text(CharSequence text, CharSequence maxWidthLineText) {
+            mText = text;
+            mMaxWidthLineText = maxWidthLineText;
+            return this;
+        }
+
+        public Builder textSize(float textSize) {
+            mTextSize = textSize;
+            return this;
+        }
+
+        public Builder textColor(int textColor) {
+            mTextColor = textColor;
+            return this;
+        }
+
+        public Builder borderColor(int borderColor) {
+            mBorderColor = borderColor;
+            return this;
+        }
+
+        public Builder typeface(Typeface typeface) {
+            return typeface(typeface, null);
+        }
+
+        public Builder typeface(Typeface typeface, String typefaceKey) {
+            mTypeface = typeface;
+            mTypefaceKey = typefaceKey;
+            return this;
+        }
+
+        public Builder alignment(Layout.Alignment alignment) {
+            mAlignment = alignment;
+            return this;
+        }
+
+        public Builder padding(int padding) {
+            mPadding = padding;
+            return this;
+        }
+
+        public Builder center(float centerX, float centerY) {
+            mCenterX = centerX;
+            mCenterY = centerY;
+            return this;
+        }
+
+        public Builder borderSize(float borderWidth, float borderHeight) {
+            mBorderWidth = borderWidth;
+            mBorderHeight = borderHeight;
+            return this;
+        }
+
+        public Builder degree(float degree) {
+            mDegree = degree;
+            return this;
+        }
+
+        public Builder viewSize(int viewWidth, int viewHeight) {
+            mViewWidth = viewWidth;
+            mViewHeight = viewHeight;
+            return this;
+        }
+
+        public Builder timeRange(long startTime, long endTime) {
+            mStartTime = startTime;
+            mEndTime = endTime;
+            return this;
+        }
+
+        public CaptionRenderState build() {
+            if (mIsImageCaption ? mImage == null && mImageSource == null : mText == null || mMaxWidthLineText == null) {
+                throw new IllegalStateException("image or text must be set");
+            }
+            return new CaptionRenderState(this);
+        }
+    }
+}
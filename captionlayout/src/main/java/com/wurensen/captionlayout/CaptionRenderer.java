@@ -0,0 +1,259 @@
+package com.wurensen.captionlayout;
+
+import java.io.IOException;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+
+/**
+ * 根据字幕渲染状态绘制字幕，只使用自身的画笔，不修改渲染状态，也不依赖字幕控件。
+ * 连续绘制文字内容、字号、字体和对齐方式相同的状态时复用上一次的排版结果，适合逐帧渲染同一个字幕。
+ * 一个实例只能在一个线程中使用，不同线程各自创建实例即可并发渲染
+ */
+public final class CaptionRenderer {
+
+    private final TextPaint mTextPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mBitmapPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+    private final Rect mDstRect = new Rect();
+
+    // 上一次的排版结果
+    private CaptionRenderState mLastState;
+    private float mLastScale;
+    private StaticLayout mLastLayout;
+    private float mLastMaxLineWidth;
+
+    // 条带导出时只按画布可见区域从贴图来源区域解码，解码器在一次导出的多个条带之间复用
+    private boolean mRegionDecodeEnabled;
+    private ImageCaptionSource mRegionSource;
+    private BitmapRegionDecoder mRegionDecoder;
+    private final Rect mClipBounds = new Rect();
+    private final Rect mSourceRegion = new Rect();
+    private final RectF mRegionDstRect = new RectF();
+
+    /**
+     * 按字幕在控件中的位置和角度绘制，画布坐标系对应按倍数缩放后的控件
+     *
+     * @param canvas 画布
+     * @param state  渲染状态
+     * @param scale  画布相对于字幕控件的倍数
+     */
+    public void draw(Canvas canvas, CaptionRenderState state, float scale) {
+        canvas.save();
+        canvas.rotate(state.degree, state.centerX * scale, state.centerY * scale);
+        canvas.translate(state.getTargetLeft(scale), state.getTargetTop(scale));
+        drawUpright(canvas, state, scale);
+        canvas.restore();
+    }
+
+    /**
+     * 把摆正后的字幕绘制到画布上，画布原点对应导出图片的左上角
+     *
+     * @param canvas 画布
+     * @param state  渲染状态
+     * @param scale  导出的目标相对于字幕控件的倍数
+     */
+    public void drawUpright(Canvas canvas, CaptionRenderState state, float scale) {
+        int targetWidth = state.getTargetWidth(scale);
+        int targetHeight = state.getTargetHeight(scale);
+        if (state.isImageCaption) {
+            if (mRegionDecodeEnabled && needsSourceImage(state, targetWidth, targetHeight)
+                && drawImageRegion(canvas, state, targetWidth, targetHeight)) {
+                return;
+            }
+            // 条带导出时不整张重新解码，区域解码失败时使用显示大小的图片
+            Bitmap image = mRegionDecodeEnabled ? state.image : obtainImage(state, targetWidth, targetHeight);
+            if (image != null) {
+                mDstRect.set(0, 0, targetWidth, targetHeight);
+                canvas.drawBitmap(image, null, mDstRect, mBitmapPaint);
+                if (image != state.image) {
+                    // 重新解码的图片只用于这一次绘制
+                    image.recycle();
+                }
+            }
+            return;
+        }
+        StaticLayout layout = obtainLayout(state, scale);
+        float dx = (targetWidth - mLastMaxLineWidth) / 2;
+        float dy = (targetHeight - layout.getHeight()) / 2;
+        canvas.save();
+        // 移动画布原点到指定位置
+        canvas.translate(dx, dy);
+        layout.draw(canvas);
+        canvas.restore();
+    }
+
+    /**
+     * 绘制到位图中并构建导出的字幕信息
+     *
+     * @param state  渲染状态
+     * @param scale  导出的目标相对于字幕控件的倍数
+     * @param bitmap 大小与导出大小一致的透明位图
+     * @return 导出的字幕信息
+     */
+    public CaptionInfo export(CaptionRenderState state, float scale, Bitmap bitmap) {
+        drawUpright(new Canvas(bitmap), state, scale);
+        return buildCaptionInfo(state, bitmap);
+    }
+
+    // 目标比显示大小的图片大，并且有图片来源时需要从来源解码
+    private static boolean needsSourceImage(CaptionRenderState state, int targetWidth, int targetHeight) {
+        Bitmap image = state.image;
+        return state.imageSource != null
+            && (image == null || targetWidth > image.getWidth() || targetHeight > image.getHeight());
+    }
+
+    // 需要时从图片来源按目标大小重新解码，不超过来源的像素大小，不需要或来源不可用时返回显示大小的图片
+    private static Bitmap obtainImage(CaptionRenderState state, int targetWidth, int targetHeight) {
+        Bitmap image = state.image;
+        if (!needsSourceImage(state, targetWidth, targetHeight)) {
+            return image;
+        }
+        ImageCaptionSource source = state.imageSource;
+        try {
+            source.readSize();
+            int width = Math.max(1, Math.min(targetWidth, source.getWidth()));
+            int height = Math.max(1, Math.min(targetHeight, source.getHeight()));
+            if (image != null && width <= image.getWidth() && height <= image.getHeight()) {
+                return image;
+            }
+            return source.decode(width, height);
+        } catch (IOException e) {
+            return image;
+        }
+    }
+
+    /**
+     * 只解码画布可见区域对应的来源区域并绘制，内存只与可见区域有关
+     *
+     * @return 是否已经绘制，来源不可用或不比显示大小的图片清晰时返回false
+     */
+    private boolean drawImageRegion(Canvas canvas, CaptionRenderState state, int targetWidth, int targetHeight) {
+        ImageCaptionSource source = state.imageSource;
+        try {
+            source.readSize();
+            int sourceWidth = source.getWidth(), sourceHeight = source.getHeight();
+            Bitmap image = state.image;
+            if (image != null && sourceWidth <= image.getWidth() && sourceHeight <= image.getHeight()) {
+                return false;
+            }
+            // 画布经过平移、旋转后，裁剪区域在摆正的字幕坐标系中的外接矩形
+            if (!canvas.getClipBounds(mClipBounds) || !mClipBounds.intersect(0, 0, targetWidth, targetHeight)) {
+                return true;
+            }
+            float scaleX = (float) sourceWidth / targetWidth;
+            float scaleY = (float) sourceHeight / targetHeight;
+            // 四周多解码一个像素，条带边缘的过滤与整张绘制一致
+            mSourceRegion.set((int) Math.floor(mClipBounds.left * scaleX) - 1,
+                (int) Math.floor(mClipBounds.top * scaleY) - 1, (int) Math.ceil(mClipBounds.right * scaleX) + 1,
+                (int) Math.ceil(mClipBounds.bottom * scaleY) + 1);
+            mSourceRegion.intersect(0, 0, sourceWidth, sourceHeight);
+            mRegionDstRect.set(mSourceRegion.left / scaleX, mSourceRegion.top / scaleY,
+                mSourceRegion.right / scaleX, mSourceRegion.bottom / scaleY);
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inSampleSize = ImageCaptionSource.calculateInSampleSize(mSourceRegion.width(),
+                mSourceRegion.height(), (int) Math.ceil(mRegionDstRect.width()),
+                (int) Math.ceil(mRegionDstRect.height()));
+            Bitmap region = obtainRegionDecoder(source).decodeRegion(mSourceRegion, options);
+            if (region == null) {
+                throw new IOException("unable to decode image region " + mSourceRegion);
+            }
+            canvas.drawBitmap(region, null, mRegionDstRect, mBitmapPaint);
+            region.recycle();
+            return true;
+        } catch (IOException e) {
+            releaseRegionDecoder();
+            return false;
+        }
+    }
+
+    private BitmapRegionDecoder obtainRegionDecoder(ImageCaptionSource source) throws IOException {
+        if (mRegionDecoder == null || mRegionSource != source) {
+            releaseRegionDecoder();
+            mRegionDecoder = source.newRegionDecoder();
+            mRegionSource = source;
+        }
+        return mRegionDecoder;
+    }
+
+    /**
+     * 设置绘制贴图时是否只解码画布可见区域对应的来源区域，按条带导出时使用，避免持有整张目标大小的图片
+     *
+     * @param enabled 是否开启
+     */
+    void setRegionDecodeEnabled(boolean enabled) {
+        mRegionDecodeEnabled = enabled;
+        if (!enabled) {
+            releaseRegionDecoder();
+        }
+    }
+
+    /**
+     * 释放区域解码器，一次导出完成后调用
+     */
+    void releaseRegionDecoder() {
+        if (mRegionDecoder != null) {
+            mRegionDecoder.recycle();
+            mRegionDecoder = null;
+        }
+        mRegionSource = null;
+    }
+
+    private StaticLayout obtainLayout(CaptionRenderState state, float scale) {
+        // 颜色在绘制时才读取，不影响排版
+        mTextPaint.setColor(state.textColor);
+        if (mLastLayout != null && mLastScale == scale && hasSameTextLayout(state, mLastState)) {
+            return mLastLayout;
+        }
+        mTextPaint.setTextSize(state.textSize * scale);
+        mTextPaint.setTypeface(state.typeface);
+        mLastMaxLineWidth = mTextPaint.measureText(state.maxWidthLineText, 0, state.maxWidthLineText.length());
+        mLastLayout =
+            new StaticLayout(state.text, mTextPaint, (int) Math.ceil(mLastMaxLineWidth), state.alignment, 1.0f, 0f,
+                false);
+        mLastState = state;
+        mLastScale = scale;
+        return mLastLayout;
+    }
+
+    // 位置和角度不影响排版
+    private static boolean hasSameTextLayout(CaptionRenderState a, CaptionRenderState b) {
+        return a == b || a.textSize == b.textSize && a.alignment == b.alignment
+            && CaptionRenderState.textEquals(a.text, b.text)
+            && CaptionRenderState.textEquals(a.maxWidthLineText, b.maxWidthLineText)
+            && (a.typeface == null ? b.typeface == null : a.typeface.equals(b.typeface));
+    }
+
+    /**
+     * @param state  渲染状态
+     * @param bitmap 字幕图片
+     * @return 导出的字幕信息
+     */
+    public static CaptionInfo buildCaptionInfo(CaptionRenderState state, Bitmap bitmap) {
+        float relativeCenterX = state.centerX / state.viewWidth;
+        float relativeCenterY = state.centerY / state.viewHeight;
+        int width = state.getTargetWidth(1);
+        int height = state.getTargetHeight(1);
+        CaptionInfo captionInfo;
+        if (state.isImageCaption) {
+            captionInfo =
+                new ImageCaptionInfo(bitmap, state.degree, relativeCenterX, relativeCenterY, width, height, state.image);
+            ((ImageCaptionInfo) captionInfo).intrinsicSource = state.imageSource;
+        } else {
+            captionInfo =
+                new TextCaptionInfo(bitmap, state.degree, relativeCenterX, relativeCenterY, width, height,
+                    state.text.toString(), state.textSize, state.textColor, state.borderColor, state.typeface,
+                    state.alignment, state.padding);
+            ((TextCaptionInfo) captionInfo).textTypefaceKey = state.typefaceKey;
+        }
+        captionInfo.startTime = state.startTime;
+        captionInfo.endTime = state.endTime;
+        return captionInfo;
+    }
+}
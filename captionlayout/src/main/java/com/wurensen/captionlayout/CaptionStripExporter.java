@@ -0,0 +1,204 @@
+package com.wurensen.captionlayout;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * 按水平条带导出字幕图片，每次只绘制一个条带并交给{@link CaptionStripSink}，
+ * 内存峰值只与条带大小有关，与导出的目标大小无关，适合4K、8K等大尺寸导出。
+ * 条带位图在多次导出之间复用，一个实例只能在一个线程中使用
+ */
+public class CaptionStripExporter {
+
+    /**
+     * 默认的条带高度，单位像素
+     */
+    public static final int DEFAULT_STRIP_HEIGHT = 128;
+
+    private final int mStripHeight;
+    private final ArrayList<CaptionRenderer> mRenderers = new ArrayList<>();
+    private final RectF mTempBounds = new RectF();
+    private Bitmap mStripBitmap;
+    private ByteBuffer mStripBuffer;
+
+    public CaptionStripExporter() {
+        this(DEFAULT_STRIP_HEIGHT);
+    }
+
+    /**
+     * @param stripHeight 条带高度，单位像素
+     */
+    public CaptionStripExporter(int stripHeight) {
+        if (stripHeight <= 0) {
+            throw new IllegalArgumentException("stripHeight must be > 0");
+        }
+        mStripHeight = stripHeight;
+    }
+
+    /**
+     * 导出摆正后的单个字幕，大小与{@link FlexibleCaptionView#exportCaptionInfo(float)}导出的图片一致
+     *
+     * @param state 渲染状态
+     * @param scale 导出的目标相对于字幕控件的倍数
+     * @param sink  接收条带
+     * @throws IOException 写入失败
+     */
+    public void exportCaption(CaptionRenderState state, float scale, CaptionStripSink sink) throws IOException {
+        int width = state.getTargetWidth(scale);
+        int height = state.getTargetHeight(scale);
+        CaptionRenderer renderer = obtainRenderer(0);
+        try {
+            for (int top = 0; top < height; top += mStripHeight) {
+                int stripHeight = Math.min(mStripHeight, height - top);
+                Canvas canvas = beginStrip(width, top);
+                renderer.drawUpright(canvas, state, scale);
+                endStrip(sink, top, width, stripHeight);
+            }
+        } finally {
+            releaseRegionDecoders();
+        }
+    }
+
+    /**
+     * 把多个字幕按旋转角度和层级合成一张叠加图后导出
+     *
+     * @param states       渲染状态，按层级从下到上排列，中心为在叠加图坐标系中的位置
+     * @param scaleX       目标相对于叠加图坐标系的横向倍数，也是字幕的绘制倍数
+     * @param scaleY       目标相对于叠加图坐标系的纵向倍数，只用于映射字幕中心，字幕本身不会拉伸
+     * @param targetWidth  目标宽度
+     * @param targetHeight 目标高度
+     * @param sink         接收条带
+     * @return 包含所有字幕的最小区域，没有字幕时为空
+     * @throws IOException 写入失败
+     */
+    public Rect exportOverlay(List<CaptionRenderState> states, float scaleX, float scaleY, int targetWidth,
+        int targetHeight, CaptionStripSink sink) throws IOException {
+        // 预先计算每个字幕所在的行范围，每个条带只绘制与之相交的字幕
+        int[] rowRanges = new int[states.size() * 2];
+        Rect dirtyBounds = new Rect();
+        for (int i = 0; i < states.size(); i++) {
+            unionBounds(dirtyBounds, states.get(i), scaleX, scaleY, mTempBounds);
+            rowRanges[i * 2] = (int) Math.floor(mTempBounds.top) - 1;
+            rowRanges[i * 2 + 1] = (int) Math.ceil(mTempBounds.bottom) + 1;
+        }
+        if (!dirtyBounds.intersect(0, 0, targetWidth, targetHeight)) {
+            dirtyBounds.setEmpty();
+        }
+        try {
+            for (int top = 0; top < targetHeight; top += mStripHeight) {
+                int stripHeight = Math.min(mStripHeight, targetHeight - top);
+                Canvas canvas = beginStrip(targetWidth, top);
+                for (int i = 0; i < states.size(); i++) {
+                    if (rowRanges[i * 2] < top + stripHeight && rowRanges[i * 2 + 1] > top) {
+                        // 每个字幕使用自己的渲染器，排版只在第一次绘制时计算
+                        drawOverlayCaption(obtainRenderer(i), canvas, states.get(i), scaleX, scaleY);
+                    }
+                }
+                endStrip(sink, top, targetWidth, stripHeight);
+            }
+        } finally {
+            releaseRegionDecoders();
+        }
+        return dirtyBounds;
+    }
+
+    /**
+     * 把字幕绘制到叠加图上。中心按横向和纵向倍数分别映射，字幕按横向倍数等比绘制，
+     * 与CaptionCompositor按相对中心合成一致，宽高比不同时旋转的字幕也不会被拉斜
+     *
+     * @param renderer 渲染器
+     * @param canvas   叠加图的画布
+     * @param state    渲染状态
+     * @param scaleX   横向倍数，也是字幕的绘制倍数
+     * @param scaleY   纵向倍数
+     */
+    static void drawOverlayCaption(CaptionRenderer renderer, Canvas canvas, CaptionRenderState state, float scaleX,
+        float scaleY) {
+        if (scaleX == scaleY) {
+            renderer.draw(canvas, state, scaleX);
+            return;
+        }
+        int count = canvas.save();
+        canvas.translate(0, state.centerY * (scaleY - scaleX));
+        renderer.draw(canvas, state, scaleX);
+        canvas.restoreToCount(count);
+    }
+
+    /**
+     * 合并字幕旋转后在目标中的外接矩形，多留一个像素给抗锯齿的边缘
+     *
+     * @param bounds 合并结果
+     * @param state  渲染状态
+     * @param scaleX 横向倍数，也是字幕的绘制倍数
+     * @param scaleY 纵向倍数，只用于映射字幕中心
+     * @param temp   保存字幕自身的外接矩形
+     */
+    static void unionBounds(Rect bounds, CaptionRenderState state, float scaleX, float scaleY, RectF temp) {
+        state.getRotatedBounds(scaleX, temp);
+        temp.offset(0, state.centerY * (scaleY - scaleX));
+        // 空矩形合并时直接取新的区域
+        bounds.union((int) Math.floor(temp.left) - 1, (int) Math.floor(temp.top) - 1,
+            (int) Math.ceil(temp.right) + 1, (int) Math.ceil(temp.bottom) + 1);
+    }
+
+    private CaptionRenderer obtainRenderer(int index) {
+        while (mRenderers.size() <= index) {
+            // 贴图只解码每个条带需要的来源区域，不持有整张目标大小的图片
+            CaptionRenderer renderer = new CaptionRenderer();
+            renderer.setRegionDecodeEnabled(true);
+            mRenderers.add(renderer);
+        }
+        return mRenderers.get(index);
+    }
+
+    private void releaseRegionDecoders() {
+        for (int i = 0; i < mRenderers.size(); i++) {
+            mRenderers.get(i).releaseRegionDecoder();
+        }
+    }
+
+    // 清空条带位图，返回原点移到条带上方的画布
+    private Canvas beginStrip(int width, int top) {
+        if (mStripBitmap == null || mStripBitmap.getWidth() != width) {
+            if (mStripBitmap != null) {
+                mStripBitmap.recycle();
+            }
+            mStripBitmap = Bitmap.createBitmap(width, mStripHeight, Bitmap.Config.ARGB_8888);
+            mStripBuffer = ByteBuffer.allocateDirect(mStripBitmap.getByteCount());
+        } else {
+            mStripBitmap.eraseColor(Color.TRANSPARENT);
+        }
+        Canvas canvas = new Canvas(mStripBitmap);
+        canvas.translate(0, -top);
+        return canvas;
+    }
+
+    private void endStrip(CaptionStripSink sink, int top, int width, int height) throws IOException {
+        mStripBuffer.clear();
+        mStripBitmap.copyPixelsToBuffer(mStripBuffer);
+        mStripBuffer.position(0);
+        mStripBuffer.limit(width * height * 4);
+        sink.onStrip(mStripBuffer, top, width, height);
+    }
+
+    /**
+     * 释放条带位图和渲染器
+     */
+    public void release() {
+        if (mStripBitmap != null) {
+            mStripBitmap.recycle();
+            mStripBitmap = null;
+            mStripBuffer = null;
+        }
+        releaseRegionDecoders();
+        mRenderers.clear();
+    }
+}
@@ -0,0 +1,22 @@
+package com.wurensen.captionlayout;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 按条带接收导出图片的像素
+ */
+public interface CaptionStripSink {
+
+    /**
+     * 接收一个条带，条带从上到下依次传入
+     *
+     * @param pixels 条带像素，从position到limit按行存放，每个像素4个字节，顺序为预乘alpha的RGBA，
+     *               只在本次回调中有效
+     * @param top    条带第一行在图片中的位置
+     * @param width  图片宽度
+     * @param height 条带高度
+     * @throws IOException 写入失败，导出会中止
+     */
+    void onStrip(ByteBuffer pixels, int top, int width, int height) throws IOException;
+}
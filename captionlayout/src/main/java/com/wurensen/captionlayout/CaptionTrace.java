@@ -0,0 +1,268 @@
+package com.wurensen.captionlayout;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Process;
+
+/**
+ * 字幕的时间线追踪，把绘制、初始化、触摸事件和导出等阶段的开始和结束写入固定容量的环形缓冲区，
+ * 可以导出为Chrome trace-event JSON，在Perfetto或chrome://tracing中查看；同时可以输出android.os.Trace区段（API 18及以上）。
+ * 写入时不加锁也不创建对象，区段名称只能使用本类中的常量或其他常量字符串，可以在正式版本中一直开启。
+ * 缓冲区写满后覆盖最早的事件，正在并发写入的事件数量不能超过容量
+ */
+public final class CaptionTrace {
+
+    public static final String SECTION_VIEW_DRAW = "FlexibleCaptionView#draw";
+    public static final String SECTION_VIEW_INIT = "FlexibleCaptionView#init";
+    public static final String SECTION_VIEW_UPDATE_BASE_DATA = "FlexibleCaptionView#updateBaseData";
+    public static final String SECTION_VIEW_INIT_BORDER_RECT = "FlexibleCaptionView#initBorderRect";
+    public static final String SECTION_VIEW_FIT_TEXT_SIZE = "FlexibleCaptionView#adjustTextSizeToFitMaxBorder";
+    public static final String SECTION_VIEW_TOUCH = "FlexibleCaptionView#touch";
+    public static final String SECTION_VIEW_EXPORT = "FlexibleCaptionView#export";
+    public static final String SECTION_LAYOUT_DRAW = "CaptionLayout#draw";
+    public static final String SECTION_LAYOUT_TOUCH = "CaptionLayout#touch";
+    public static final String SECTION_LAYOUT_EXPORT_OVERLAY = "CaptionLayout#exportOverlay";
+    public static final String SECTION_EXPORT_RENDER = "CaptionExport#render";
+
+    /**
+     * 默认容量，每个事件约占40字节
+     */
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    private static final char PHASE_BEGIN = 'B';
+    private static final char PHASE_END = 'E';
+
+    private static volatile CaptionTrace sInstance;
+    private static volatile boolean sSystraceEnabled;
+
+    private final int mMask;
+    private final AtomicLong mNext = new AtomicLong();
+    // 每个槽位的序号，为写入的序号加1，正在写入时为-1，读取前后序号一致才认为事件完整
+    private final AtomicLongArray mSequences;
+    private final AtomicReferenceArray<String> mNames;
+    private final AtomicLongArray mTimes; // System.nanoTime()
+    private final AtomicLongArray mInfos; // 线程id左移16位后加上阶段
+    private final AtomicReferenceArray<Thread> mThreads; // 导出时获取线程名称
+
+    private CaptionTrace(int capacity) {
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        mMask = size - 1;
+        mSequences = new AtomicLongArray(size);
+        mNames = new AtomicReferenceArray<>(size);
+        mTimes = new AtomicLongArray(size);
+        mInfos = new AtomicLongArray(size);
+        mThreads = new AtomicReferenceArray<>(size);
+    }
+
+    /**
+     * 开始记录到新的缓冲区，之前记录的事件被丢弃
+     *
+     * @param capacity 最多保存的事件数量，向上取整为2的幂
+     */
+    public static void start(int capacity) {
+        if (capacity < 2 || capacity > 1 << 24) {
+            throw new IllegalArgumentException("capacity must be in [2, 2^24]");
+        }
+        sInstance = new CaptionTrace(capacity);
+    }
+
+    /**
+     * 停止记录并丢弃缓冲区
+     */
+    public static void stop() {
+        sInstance = null;
+    }
+
+    /**
+     * @return 是否正在记录到缓冲区
+     */
+    public static boolean isEnabled() {
+        return sInstance != null;
+    }
+
+    /**
+     * 设置是否同时输出android.os.Trace区段，在systrace或Perfetto中与系统事件对齐。
+     * 区段按线程嵌套，应在没有未结束区段时切换
+     *
+     * @param enabled 是否输出，API 18以下忽略
+     */
+    public static void setSystraceEnabled(boolean enabled) {
+        sSystraceEnabled = enabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+    }
+
+    /**
+     * 开始一个区段，需要在同一线程中调用{@link #end()}结束
+     *
+     * @param name 区段名称，常量字符串
+     */
+    public static void begin(String name) {
+        if (sSystraceEnabled) {
+            TraceCompat.beginSection(name);
+        }
+        CaptionTrace trace = sInstance;
+        if (trace != null) {
+            trace.write(name, PHASE_BEGIN);
+        }
+    }
+
+    /**
+     * 结束当前线程最近开始的区段
+     */
+    public static void end() {
+        CaptionTrace trace = sInstance;
+        if (trace != null) {
+            trace.write(null, PHASE_END);
+        }
+        if (sSystraceEnabled) {
+            TraceCompat.endSection();
+        }
+    }
+
+    private void write(String name, char phase) {
+        long time = System.nanoTime();
+        long sequence = mNext.getAndIncrement();
+        int index = (int) (sequence & mMask);
+        mSequences.set(index, -1);
+        mNames.set(index, name);
+        mTimes.set(index, time);
+        mInfos.set(index, ((long) Process.myTid() << 16) | phase);
+        mThreads.set(index, Thread.currentThread());
+        mSequences.set(index, sequence + 1);
+    }
+
+    /**
+     * 把当前缓冲区中的事件导出为Chrome trace-event JSON，可以在记录的同时导出，
+     * 正在写入或导出时被覆盖的事件会被跳过
+     *
+     * @param file 输出文件，已存在时覆盖
+     * @throws IOException 写入失败
+     */
+    public static void writeChromeTrace(File file) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            writeChromeTrace(writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * 把当前缓冲区中的事件导出为Chrome trace-event JSON，不会关闭writer，没有开始记录时输出空的事件列表
+     *
+     * @param writer 输出
+     * @throws IOException 写入失败
+     */
+    public static void writeChromeTrace(Writer writer) throws IOException {
+        CaptionTrace trace = sInstance;
+        writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+        if (trace != null) {
+            trace.writeEvents(writer);
+        }
+        writer.write("]}");
+        writer.flush();
+    }
+
+    private void writeEvents(Writer writer) throws IOException {
+        int pid = Process.myPid();
+        long end = mNext.get();
+        long start = Math.max(0, end - mMask - 1);
+        boolean first = true;
+        Map<Integer, String> threadNames = new HashMap<>();
+        StringBuilder builder = new StringBuilder(128);
+        for (long sequence = start; sequence < end; sequence++) {
+            int index = (int) (sequence & mMask);
+            if (mSequences.get(index) != sequence + 1) {
+                continue;
+            }
+            String name = mNames.get(index);
+            long time = mTimes.get(index);
+            long info = mInfos.get(index);
+            Thread thread = mThreads.get(index);
+            if (mSequences.get(index) != sequence + 1) {
+                // 读取期间被覆盖
+                continue;
+            }
+            int tid = (int) (info >>> 16);
+            char phase = (char) (info & 0xffff);
+            if (thread != null && !threadNames.containsKey(tid)) {
+                threadNames.put(tid, thread.getName());
+            }
+            builder.setLength(0);
+            if (!first) {
+                builder.append(',');
+            }
+            first = false;
+            builder.append("{\"ph\":\"").append(phase).append('"');
+            if (name != null) {
+                builder.append(",\"name\":");
+                appendJsonString(builder, name);
+            }
+            // 时间单位为微秒，保留纳秒精度
+            builder.append(",\"ts\":").append(time / 1000).append('.');
+            appendPadded(builder, time % 1000);
+            builder.append(",\"pid\":").append(pid).append(",\"tid\":").append(tid).append('}');
+            writer.write(builder.toString());
+        }
+        for (Map.Entry<Integer, String> entry : threadNames.entrySet()) {
+            builder.setLength(0);
+            if (!first) {
+                builder.append(',');
+            }
+            first = false;
+            builder.append("{\"ph\":\"M\",\"name\":\"thread_name\",\"pid\":").append(pid)
+                .append(",\"tid\":").append(entry.getKey()).append(",\"args\":{\"name\":");
+            appendJsonString(builder, entry.getValue());
+            builder.append("}}");
+            writer.write(builder.toString());
+        }
+    }
+
+    private static void appendPadded(StringBuilder builder, long nanos) {
+        if (nanos < 100) {
+            builder.append('0');
+        }
+        if (nanos < 10) {
+            builder.append('0');
+        }
+        builder.append(nanos);
+    }
+
+    private static void appendJsonString(StringBuilder builder, String value) {
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        builder.append('"');
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static final class TraceCompat {
+
+        static void beginSection(String name) {
+            android.os.Trace.beginSection(name);
+        }
+
+        static void endSection() {
+            android.os.Trace.endSection();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.wurensen.captionlayout;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+/**
+ * 序列化后的字幕图片，只保存编码后的数据或数据在文件中的位置，访问时才解码
+ */
+final class EncodedBitmap {
+
+    private final byte[] mData;
+    private final File mFile;
+    private final long mOffset;
+    private final int mLength;
+
+    /**
+     * @param data PNG/WebP数据
+     */
+    EncodedBitmap(byte[] data) {
+        mData = data;
+        mFile = null;
+        mOffset = 0;
+        mLength = data.length;
+    }
+
+    /**
+     * @param file   文件
+     * @param offset 数据在文件中的起始位置
+     * @param length 数据长度
+     */
+    EncodedBitmap(File file, long offset, int length) {
+        mData = null;
+        mFile = file;
+        mOffset = offset;
+        mLength = length;
+    }
+
+    /**
+     * @return 编码后数据的长度
+     */
+    int getLength() {
+        return mLength;
+    }
+
+    /**
+     * @return 编码后的数据
+     * @throws IOException 读取文件失败
+     */
+    byte[] getBytes() throws IOException {
+        if (mData != null) {
+            return mData;
+        }
+        byte[] data = new byte[mLength];
+        RandomAccessFile file = new RandomAccessFile(mFile, "r");
+        try {
+            file.seek(mOffset);
+            file.readFully(data);
+        } finally {
+            file.close();
+        }
+        return data;
+    }
+
+    /**
+     * @return 解码后的图片
+     * @throws IOException 读取文件失败或数据无法解码
+     */
+    Bitmap decode() throws IOException {
+        byte[] data = getBytes();
+        Bitmap bitmap = BitmapFactory.decodeByteArray(data, 0, data.length);
+        if (bitmap == null) {
+            throw new IOException("unable to decode caption bitmap");
+        }
+        return bitmap;
+    }
+}
@@ -1,20 +1,22 @@
 package com.wurensen.captionlayout;
 
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Path;
 import android.graphics.PointF;
 import android.graphics.Rect;
 import android.graphics.RectF;
-import android.graphics.Region;
 import android.graphics.Typeface;
+import android.os.Build;
 import android.text.Layout;
+import android.text.SpannedString;
 import android.text.StaticLayout;
 import android.text.TextPaint;
 import android.text.TextUtils;
@@ -26,6 +28,10 @@ import android.view.View;
 import android.view.ViewConfiguration;
 import android.widget.EditText;
 
+import com.wurensen.captioncore.Affine2D;
+import com.wurensen.captioncore.CaptionTransform;
+import com.wurensen.captioncore.TextSizeFitter;
+
 /**
  * 字幕控件，文字字幕支持移动、旋转、缩放、导出、导入字幕信息；贴图字幕只支持移动、导出、导入字幕信息
  * Created by wrs on 2015/11/18.
@@ -52,6 +58,18 @@ public class FlexibleCaptionView extends View {
      * 边框能达到的最大放大倍数，相对于控件的宽高
      */
     private static final float MAX_BORDER_SCALE = 1.5f;
+    /**
+     * 贴图解码完成前绘制的占位颜色
+     */
+    private static final int PLACEHOLDER_COLOR = 0x33888888;
+    /**
+     * 手势停止变化超过这个时间后按最终字号重新排版，单位毫秒
+     */
+    private static final long GESTURE_IDLE_DELAY = 150;
+    /**
+     * 手势缓存图片最多为控件面积的倍数，超过时直接绘制文字
+     */
+    private static final int MAX_GESTURE_RASTER_AREA_SCALE = 4;
     /**
      * 默认支持的最大字体大小，单位像素
      */
@@ -61,10 +79,11 @@ public class FlexibleCaptionView extends View {
 
     private boolean mDebug = false;
 
-    private Matrix mUpdateMatrix = new Matrix(); // 变化矩阵，用来获取最新的点
+    private Affine2D mUpdateMatrix = new Affine2D(); // 变化矩阵，用来获取最新的点
+    // 中心、缩放和旋转，以及平移、缩放的边界检查和旋转吸附
+    private CaptionTransform mTransform = new CaptionTransform(MAX_BORDER_SCALE, OFFSET_DEGREE);
 
     private Paint mBorderPaint; // 画矩形的笔
-    private Region mBorderRegion = new Region();
     private Path mBorderPath = new Path();
     private int mBorderColor = Color.GRAY;
 
@@ -82,6 +101,9 @@ public class FlexibleCaptionView extends View {
 
     private Paint mBitmapPaint;
     private Bitmap mLeftTopBmp, mRightTopBmp, mRightBottomBmp;
+    // 图标的资源id，为0表示直接使用设置的位图。资源图标在第一次绘制时从共享缓存获取
+    private int mLeftTopIconId, mRightTopIconId, mRightBottomIconId;
+    private int mAcquiredIconSize = -1; // 已从缓存获取的资源图标的大小，-1表示未获取
     private int mIconSize;
 
     private TextPaint mTextPaint; // 写字幕的笔
@@ -89,12 +111,33 @@ public class FlexibleCaptionView extends View {
     private float mTextSize;
     private int mTextColor;
     private Typeface mTextTypeface = Typeface.DEFAULT;
+    private String mTextTypefaceKey; // 字体在TypefaceRegistry中的key，可以为null
     private int mPaddingLeft, mPaddingRight, mPaddingTop, mPaddingBottom;
     private Layout.Alignment mLayoutTextAlignment = Layout.Alignment.ALIGN_CENTER;
-    private StaticLayout mTextLayout;
+    private TextLayoutCache mTextLayoutCache = new TextLayoutCache(); // 绘制用的排版缓存
+    private TextSizeFitter mTextSizeFitter; // 计算适应边框的字号
+    private PaintTextMeasurer mTextMeasurer;
+    private CaptionMetrics mMetrics; // 热点路径统计，null表示不统计
     private CharSequence mMaxWidthLineText;
 
-    private Bitmap mImgCaptionBitmap; // 贴图字幕
+    // 手势模式：变换过程中只缩放旋转缓存的文字图片，不重新排版，手势结束或停顿后才按最终字号绘制
+    private boolean mGestureActive;
+    private Bitmap mGestureRaster; // 摆正后的文字图片，与drawText裁剪的区域一致，足够大时在多次手势之间复用
+    private boolean mGestureRasterValid; // 图片内容是否与当前文字一致
+    private final Rect mGestureRasterBounds = new Rect(); // 图片中有效的区域
+    private float mGestureRasterScale; // 缓存图片时的总缩放倍数
+    private float mGestureRasterTextWidth, mGestureRasterTextHeight; // 缓存图片时文字区域的大小
+    private final Runnable mSettleGestureRunnable = new Runnable() {
+        @Override
+        public void run() {
+            settleGesture();
+        }
+    };
+
+    private Bitmap mImgCaptionBitmap; // 贴图字幕，按显示大小解码
+    private ImageCaptionSource mImgCaptionSource; // 贴图字幕的图片来源，可以为null
+    private ImageCaptionSource mImgCaptionLoadingSource; // 正在后台解码的贴图来源
+    private Paint mPlaceholderPaint; // 贴图字幕加载完成前的占位画笔
     private boolean mIsImgCaption;
     private boolean mBlockRotateScaleEvent; // 贴图字幕拦截旋转缩放功能
 
@@ -102,16 +145,23 @@ public class FlexibleCaptionView extends View {
     private TouchMode mTouchMode = TouchMode.NONE; // 触摸模式
     private boolean mFocus = true;
 
-    private float mTotalScale;
-    private float mTotalDegree;
     private boolean mFirstDraw = true;
     private boolean mResetData = true; // 是否需要重置数据
     private boolean mUpdateBaseData = true; // 是否更新初始信息
     private boolean mIsImportCaption = false; // 是否为导入的字幕
     private CaptionInfo mCaptionInfo;
-    private float mFingerDegree; // 手指移动的角度，为了旋转时依附的效果并且跟手
-
-    private Matrix mExportMatrix = new Matrix(); // 用于导出字幕的矩阵
+    private long mStartTime, mEndTime = Long.MAX_VALUE; // 显示时间范围[mStartTime, mEndTime)，单位毫秒
+    private boolean mTimeHidden; // 被容器按当前时间隐藏，与setVisibility互不影响
+
+    private CaptionRenderer mExportRenderer; // 在UI线程导出时使用
+    private CaptionBitmapPool mBitmapPool; // 导出时使用的位图池
+    private float[] mBorderSrcPoints = new float[8]; // 边框顶点映射前的坐标
+    private float[] mBorderDstPoints = new float[8]; // 边框顶点映射后的坐标
+    private RectF mLastBounds = new RectF(); // 上次刷新时字幕的外接矩形
+    private RectF mDirtyBounds = new RectF(); // 需要刷新的区域
+    private RectF mTempBounds = new RectF();
+    private Rect mInvalidateRect = new Rect();
+    private int mInvalidateCount; // 刷新次数，回放触摸轨迹时统计
 
     private OnCaptionClickListener mOnCaptionClickListener;
     private OnCaptionTranslateListener mOnCaptionTranslateListener;
@@ -163,15 +213,10 @@ public class FlexibleCaptionView extends View {
 
         mBorderColor = typedArray.getColor(R.styleable.FlexibleCaptionView_borderColor, Color.GRAY);
 
-        mLeftTopBmp =
-            BitmapFactory.decodeResource(getResources(),
-                typedArray.getResourceId(R.styleable.FlexibleCaptionView_leftTopIcon, 0));
-        mRightTopBmp =
-            BitmapFactory.decodeResource(getResources(),
-                typedArray.getResourceId(R.styleable.FlexibleCaptionView_rightTopIcon, 0));
-        mRightBottomBmp =
-            BitmapFactory.decodeResource(getResources(),
-                typedArray.getResourceId(R.styleable.FlexibleCaptionView_rightBottomIcon, 0));
+        // 只记录资源id，用到时才按图标大小解码
+        mLeftTopIconId = typedArray.getResourceId(R.styleable.FlexibleCaptionView_leftTopIcon, 0);
+        mRightTopIconId = typedArray.getResourceId(R.styleable.FlexibleCaptionView_rightTopIcon, 0);
+        mRightBottomIconId = typedArray.getResourceId(R.styleable.FlexibleCaptionView_rightBottomIcon, 0);
         mIconSize =
             typedArray.getDimensionPixelSize(R.styleable.FlexibleCaptionView_iconSize,
                 (int) convert2px(context, TypedValue.COMPLEX_UNIT_DIP, 30f));
@@ -182,10 +227,6 @@ public class FlexibleCaptionView extends View {
         return TypedValue.applyDimension(unit, value, context.getResources().getDisplayMetrics());
     }
 
-    private static Bitmap loadBitmap(Context context, int id) {
-        return BitmapFactory.decodeResource(context.getResources(), id);
-    }
-
     private void initPaint() {
         // 边框画笔
         mBorderPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
@@ -195,11 +236,66 @@ public class FlexibleCaptionView extends View {
         // 图标画笔
         mBitmapPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
         // mBitmapPaint.setDither(true);
+        mPlaceholderPaint = new Paint();
+        mPlaceholderPaint.setColor(PLACEHOLDER_COLOR);
 
         // 文字画笔
         mTextPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
         // 1.关闭硬件加速emoji表情绘制无法跟随旋转，但能够渲染足够大的字号；2.开启硬件加速，emoji表情正常，但不能渲染太大的字号
         setLayerType(View.LAYER_TYPE_HARDWARE, mTextPaint);
+        mTextMeasurer = new PaintTextMeasurer(mTextPaint);
+        mTextSizeFitter = new TextSizeFitter(mTextMeasurer);
+    }
+
+    /**
+     * 字体加载完成后替换占位字体，只弱引用字幕控件，等待加载期间不阻止控件被回收
+     */
+    private static class TypefaceLoadListener implements TypefaceRegistry.OnTypefaceLoadListener {
+
+        private final WeakReference<FlexibleCaptionView> mViewRef;
+
+        TypefaceLoadListener(FlexibleCaptionView view) {
+            mViewRef = new WeakReference<>(view);
+        }
+
+        @Override
+        public void onTypefaceLoaded(String key, Typeface typeface) {
+            FlexibleCaptionView view = mViewRef.get();
+            // 等待期间可能已经换了字体
+            if (view != null && typeface != null && key.equals(view.mTextTypefaceKey)) {
+                view.applyTextTypeface(typeface);
+            }
+        }
+    }
+
+    /**
+     * 基于文字画笔的测量实现，与StaticLayout在不额外设置行距时的测量结果一致
+     */
+    private static class PaintTextMeasurer implements TextSizeFitter.Measurer {
+
+        private final TextPaint mPaint;
+        private final Paint.FontMetricsInt mFontMetrics = new Paint.FontMetricsInt();
+        CaptionMetrics mMetrics;
+
+        PaintTextMeasurer(TextPaint paint) {
+            mPaint = paint;
+        }
+
+        @Override
+        public float measureLineWidth(CharSequence text, int start, int end, float textSize) {
+            if (mMetrics != null) {
+                mMetrics.increment(CaptionMetrics.COUNTER_TEXT_MEASURE, 1);
+            }
+            mPaint.setTextSize(textSize);
+            return mPaint.measureText(text, start, end);
+        }
+
+        @Override
+        public float getLineHeight(float textSize) {
+            mPaint.setTextSize(textSize);
+            mPaint.getFontMetricsInt(mFontMetrics);
+            return mFontMetrics.descent - mFontMetrics.ascent;
+        }
     }
 
     /**
@@ -214,11 +310,15 @@ public class FlexibleCaptionView extends View {
         private Integer mTextColor;
         private Integer mTextBorderColor;
         private Typeface mTextTypeface;
+        private String mTextTypefaceKey;
         private Layout.Alignment mLayoutTextAlignment;
         private Integer mPaddingLeft, mPaddingRight, mPaddingTop, mPaddingBottom;
         private Bitmap mLeftTopIconBmp, mRightTopIconBmp, mRightBottomIconBmp;
+        private int mLeftTopIconId, mRightTopIconId, mRightBottomIconId;
         private Integer mIconSize;
         private Bitmap mImgCaptionBitmap;
+        private ImageCaptionSource mImgCaptionSource;
+        private Long mStartTime, mEndTime;
 
         private CaptionInfo mCaptionInfo;
 
@@ -233,11 +333,24 @@ public class FlexibleCaptionView extends View {
             return new Builder(context);
         }
 
+        /**
+         * 设置资源贴图，在后台按显示大小解码
+         */
         public Builder imgCaption(int id) {
-            return imgCaption(loadBitmap(mContext, id));
+            return imgCaption(ImageCaptionSource.fromResource(mContext.getResources(), id));
+        }
+
+        /**
+         * 设置贴图来源，在后台按显示大小解码，加载完成前显示占位区域。高倍导出时从来源重新解码
+         */
+        public Builder imgCaption(ImageCaptionSource imgCaptionSource) {
+            mImgCaptionBitmap = null;
+            mImgCaptionSource = imgCaptionSource;
+            return this;
         }
 
         public Builder imgCaption(Bitmap imgCaptionBitmap) {
+            mImgCaptionSource = null;
             mImgCaptionBitmap = imgCaptionBitmap;
             return this;
         }
@@ -287,6 +400,17 @@ public class FlexibleCaptionView extends View {
 
         public Builder textTypeface(Typeface textTypeface) {
             mTextTypeface = textTypeface;
+            mTextTypefaceKey = null;
+            return this;
+        }
+
+        /**
+         * @param key 字体在{@link TypefaceRegistry}中的key，字体文件加载完成前使用占位字体
+         * @return 当前对象
+         */
+        public Builder textTypefaceKey(String key) {
+            mTextTypefaceKey = key;
+            mTextTypeface = null;
             return this;
         }
 
@@ -320,12 +444,19 @@ public class FlexibleCaptionView extends View {
                     return this;
                 }*/
 
+        /**
+         * 设置资源图标，图标在第一次绘制时按图标大小解码，并在所有字幕之间共享
+         */
         public Builder icon(int leftTopIconId, int rightTopIconId, int rightBottomIconId) {
-            return icon(loadBitmap(mContext, leftTopIconId), loadBitmap(mContext, rightTopIconId),
-                loadBitmap(mContext, rightBottomIconId));
+            mLeftTopIconBmp = mRightTopIconBmp = mRightBottomIconBmp = null;
+            mLeftTopIconId = leftTopIconId;
+            mRightTopIconId = rightTopIconId;
+            mRightBottomIconId = rightBottomIconId;
+            return this;
         }
 
         public Builder icon(Bitmap leftTopIconBmp, Bitmap rightTopIconBmp, Bitmap rightBottomIconBmp) {
+            mLeftTopIconId = mRightTopIconId = mRightBottomIconId = 0;
             mLeftTopIconBmp = leftTopIconBmp;
             mRightTopIconBmp = rightTopIconBmp;
             mRightBottomIconBmp = rightBottomIconBmp;
@@ -337,6 +468,15 @@ public class FlexibleCaptionView extends View {
             return this;
         }
 
+        public Builder timeRange(long startTime, long endTime) {
+            if (startTime > endTime) {
+                throw new IllegalArgumentException("startTime > endTime");
+            }
+            mStartTime = startTime;
+            mEndTime = endTime;
+            return this;
+        }
+
         public FlexibleCaptionView build() {
             FlexibleCaptionView view = new FlexibleCaptionView(mContext);
             view.mText = mText == null ? view.mText : mText;
@@ -345,6 +485,11 @@ public class FlexibleCaptionView extends View {
             view.mTextColor = mTextColor == null ? view.mTextColor : mTextColor;
             view.mBorderColor = mTextBorderColor == null ? view.mBorderColor : mTextBorderColor;
             view.mTextTypeface = mTextTypeface == null ? view.mTextTypeface : mTextTypeface;
+            if (mTextTypefaceKey != null) {
+                view.mTextTypeface = view.loadTypeface(mTextTypefaceKey);
+            } else if (mTextTypeface != null) {
+                view.mTextTypefaceKey = TypefaceRegistry.getInstance(mContext).keyOf(mTextTypeface);
+            }
             view.mLayoutTextAlignment = mLayoutTextAlignment == null ? view.mLayoutTextAlignment : mLayoutTextAlignment;
 
             view.mPaddingLeft = mPaddingLeft == null ? view.mPaddingLeft : mPaddingLeft;
@@ -355,18 +500,27 @@ public class FlexibleCaptionView extends View {
             view.mLeftTopBmp = mLeftTopIconBmp;
             view.mRightTopBmp = mRightTopIconBmp;
             view.mRightBottomBmp = mRightBottomIconBmp;
+            view.mLeftTopIconId = mLeftTopIconId;
+            view.mRightTopIconId = mRightTopIconId;
+            view.mRightBottomIconId = mRightBottomIconId;
             view.mIconSize = mIconSize == null ? view.mIconSize : mIconSize;
 
             view.mImgCaptionBitmap = mImgCaptionBitmap;
+            view.mImgCaptionSource = mImgCaptionSource;
 
             if (mCaptionInfo != null) {
                 view.mIsImportCaption = true;
                 view.mCaptionInfo = mCaptionInfo;
-                if (mImgCaptionBitmap != null) {
+                view.mStartTime = mCaptionInfo.startTime;
+                view.mEndTime = mCaptionInfo.endTime;
+                if (mImgCaptionBitmap != null || mImgCaptionSource != null) {
                     view.mIsImgCaption = true;
-                    view.mImgCaptionBitmap = mImgCaptionBitmap;
                 }
             }
+            if (mStartTime != null) {
+                view.mStartTime = mStartTime;
+                view.mEndTime = mEndTime;
+            }
             view.refresh(true, true);
             return view;
         }
@@ -414,6 +568,15 @@ public class FlexibleCaptionView extends View {
         this.mDebug = debug;
     }
 
+    /**
+     * 获取绘制用文字排版对象的累计创建次数，可用于检测单纯拖动时每帧是否还有排版分配
+     *
+     * @return 累计创建次数
+     */
+    public int getTextLayoutBuildCount() {
+        return mTextLayoutCache.getBuildCount();
+    }
+
     /**
      * @return 获取当前操作状态
      */
@@ -449,6 +612,7 @@ public class FlexibleCaptionView extends View {
         if (textAlignment != null) {
             this.mLayoutTextAlignment = textAlignment;
         }
+        mTextLayoutCache.invalidate();
         refresh(false, true);
     }
 
@@ -458,11 +622,40 @@ public class FlexibleCaptionView extends View {
      * @param typeface 字体
      */
     public void setTextTypeface(Typeface typeface) {
+        mTextTypefaceKey = TypefaceRegistry.getInstance(getContext()).keyOf(typeface);
+        applyTextTypeface(typeface);
+    }
+
+    /**
+     * 通过{@link TypefaceRegistry}中的key设置字体，字体文件加载完成前使用占位字体，加载完成后自动替换
+     *
+     * @param key 字体的key
+     */
+    public void setTextTypefaceKey(String key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+        if (key.equals(mTextTypefaceKey)) {
+            return;
+        }
+        applyTextTypeface(loadTypeface(key));
+    }
+
+    // 获取key对应的字体，还未加载时在加载完成后替换。先注册监听再读取当前字体，加载在两步之间完成时也不会停留在占位字体
+    private Typeface loadTypeface(String key) {
+        TypefaceRegistry registry = TypefaceRegistry.getInstance(getContext());
+        mTextTypefaceKey = key;
+        registry.load(key, new TypefaceLoadListener(this));
+        return registry.get(key);
+    }
+
+    private void applyTextTypeface(Typeface typeface) {
         if (this.mTextTypeface.equals(typeface)) {
             return;
         }
         this.mTextTypeface = typeface;
         mTextPaint.setTypeface(mTextTypeface);
+        mTextLayoutCache.invalidate();
         refresh(false, true);
     }
 
@@ -473,6 +666,13 @@ public class FlexibleCaptionView extends View {
         return mTextTypeface;
     }
 
+    /**
+     * @return 字体在{@link TypefaceRegistry}中的key，不是通过注册表创建的字体时返回null
+     */
+    public String getTextTypefaceKey() {
+        return mTextTypefaceKey;
+    }
+
     /**
      * 设置文本内容
      *
@@ -483,6 +683,7 @@ public class FlexibleCaptionView extends View {
             return;
         }
         this.mText = text;
+        mTextLayoutCache.invalidate();
         refresh(false, true);
     }
 
@@ -538,6 +739,7 @@ public class FlexibleCaptionView extends View {
         }
         this.mTextSize = textSize > mMaxTextSize ? mMaxTextSize : textSize;
         mTextPaint.setTextSize(textSize);
+        mTextLayoutCache.invalidate();
         refresh(false, true);
     }
 
@@ -710,6 +912,8 @@ public class FlexibleCaptionView extends View {
             return;
         }
         this.mIconSize = iconSize;
+        // 资源图标在下一次绘制时按新的大小获取
+        releaseIcons();
         refresh(false, true);
     }
 
@@ -723,6 +927,7 @@ public class FlexibleCaptionView extends View {
     }
 
     public Bitmap getLeftTopBmp() {
+        acquireIcons();
         return mLeftTopBmp;
     }
 
@@ -732,9 +937,11 @@ public class FlexibleCaptionView extends View {
      * @param bitmap 位图对象
      */
     public void setLeftTopIcon(Bitmap bitmap) {
-        if (this.mLeftTopBmp == bitmap) {
+        if (this.mLeftTopBmp == bitmap && mLeftTopIconId == 0) {
             return;
         }
+        releaseIcons();
+        this.mLeftTopIconId = 0;
         this.mLeftTopBmp = bitmap;
         refresh(false, false);
     }
@@ -745,10 +952,17 @@ public class FlexibleCaptionView extends View {
      * @param id 图片资源id
      */
     public void setLeftTopIcon(int id) {
-        setLeftTopIcon(BitmapFactory.decodeResource(getResources(), id));
+        if (this.mLeftTopIconId == id) {
+            return;
+        }
+        releaseIcons();
+        this.mLeftTopIconId = id;
+        this.mLeftTopBmp = null;
+        refresh(false, false);
     }
 
     public Bitmap getmRightTopBmp() {
+        acquireIcons();
         return mRightTopBmp;
     }
 
@@ -758,9 +972,11 @@ public class FlexibleCaptionView extends View {
      * @param bitmap 位图对象
      */
     public void setRightTopIcon(Bitmap bitmap) {
-        if (this.mRightTopBmp == bitmap) {
+        if (this.mRightTopBmp == bitmap && mRightTopIconId == 0) {
             return;
         }
+        releaseIcons();
+        this.mRightTopIconId = 0;
         this.mRightTopBmp = bitmap;
         refresh(false, false);
     }
@@ -771,10 +987,17 @@ public class FlexibleCaptionView extends View {
      * @param id 图片资源id
      */
     public void setRightTopIcon(int id) {
-        setRightTopIcon(BitmapFactory.decodeResource(getResources(), id));
+        if (this.mRightTopIconId == id) {
+            return;
+        }
+        releaseIcons();
+        this.mRightTopIconId = id;
+        this.mRightTopBmp = null;
+        refresh(false, false);
     }
 
     public Bitmap getRightBottomBmp() {
+        acquireIcons();
         return mRightBottomBmp;
     }
 
@@ -784,9 +1007,11 @@ public class FlexibleCaptionView extends View {
      * @param bitmap 位图对象
      */
     public void setRightBottomIcon(Bitmap bitmap) {
-        if (this.mRightBottomBmp == bitmap) {
+        if (this.mRightBottomBmp == bitmap && mRightBottomIconId == 0) {
             return;
         }
+        releaseIcons();
+        this.mRightBottomIconId = 0;
         this.mRightBottomBmp = bitmap;
         refresh(false, false);
     }
@@ -797,7 +1022,13 @@ public class FlexibleCaptionView extends View {
      * @param id 图片资源id
      */
     public void setRightBottomIcon(int id) {
-        setRightBottomIcon(BitmapFactory.decodeResource(getResources(), id));
+        if (this.mRightBottomIconId == id) {
+            return;
+        }
+        releaseIcons();
+        this.mRightBottomIconId = id;
+        this.mRightBottomBmp = null;
+        refresh(false, false);
     }
 
     /**
@@ -842,74 +1073,223 @@ public class FlexibleCaptionView extends View {
      * @return 获取导出的字幕信息
      */
     public CaptionInfo exportCaptionInfo(float scale) {
-        return mIsImgCaption ? buildImageCaptionInfo(scale) : buildTextCaptionInfo(scale);
-    }
-
-    private ImageCaptionInfo buildImageCaptionInfo(float scale) {
-        Rect targetRect = getTargetRect(scale);
-        // 创建字幕图层
-        Bitmap imageCaptionBitmap =
-            Bitmap.createBitmap(targetRect.width(), targetRect.height(), Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(imageCaptionBitmap);
-        canvas.drawBitmap(mImgCaptionBitmap, null, new Rect(0, 0, targetRect.width(), targetRect.height()),
-            mBitmapPaint);
-        // 构建导出对象
-        float relativeCenterX = mCenterPoint.x / getWidth();
-        float relativeCenterY = mCenterPoint.y / getHeight();
-        int width = getIntrinsicRect().width();
-        int height = getIntrinsicRect().height();
-        return new ImageCaptionInfo(imageCaptionBitmap, mTotalDegree, relativeCenterX, relativeCenterY, width, height,
-            mImgCaptionBitmap);
-    }
-
-    private TextCaptionInfo buildTextCaptionInfo(float scale) {
-        Rect targetRect = getTargetRect(scale);
-        // 创建字幕图层
-        Bitmap textCaptionBitmap =
-            Bitmap.createBitmap(targetRect.width(), targetRect.height(), Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(textCaptionBitmap);
-        float textSize = mTextPaint.getTextSize();
-        mTextPaint.setTextSize(textSize * scale);
-        mTextLayout =
-            new StaticLayout(mText, mTextPaint, getStaticLayoutBreakWidth(), mLayoutTextAlignment, 1.0f, 0f, false);
-        float dx = (targetRect.width() - mTextPaint.measureText(mMaxWidthLineText.toString())) / 2;
-        float dy = (targetRect.height() - mTextLayout.getHeight()) / 2;
-        // 移动画布原点到指定位置
-        canvas.translate(dx, dy);
-        mTextLayout.draw(canvas);
-        mTextPaint.setTextSize(textSize);
-        // 构建导出对象
-        float relativeCenterX = mCenterPoint.x / getWidth();
-        float relativeCenterY = mCenterPoint.y / getHeight();
-        int width = getIntrinsicRect().width();
-        int height = getIntrinsicRect().height();
-        int padding = (int) (mPaddingLeft * mTotalScale);
-        return new TextCaptionInfo(textCaptionBitmap, mTotalDegree, relativeCenterX, relativeCenterY, width, height,
-            mText.toString(), textSize, mTextColor, mBorderColor, mTextTypeface, mLayoutTextAlignment, padding);
-    }
-
-    private Rect getTargetRect(float scale) {
-        mExportMatrix.set(mUpdateMatrix);
-        // 摆正
-        mExportMatrix.postRotate(-mTotalDegree, mCenterPoint.x, mCenterPoint.y);
-        // 缩放到目标
-        mExportMatrix.postScale(scale, scale, getWidth() * 1.0f / 2, getHeight() * 1.0f / 2);
-        // 移动原点
-        mExportMatrix.postTranslate(-(getWidth() - getWidth() * scale) / 2, -(getHeight() - getHeight() * scale) / 2);
-        // 获取映射后矩形的位置信息
-        RectF dst = new RectF();
-        mExportMatrix.mapRect(dst, mBorderRect);
-        return new Rect((int) dst.left, (int) dst.top, (int) dst.right, (int) dst.bottom);
-    }
-
-    private Rect getIntrinsicRect() {
-        mExportMatrix.set(mUpdateMatrix);
-        // 摆正
-        mExportMatrix.postRotate(-mTotalDegree, mCenterPoint.x, mCenterPoint.y);
-        // 获取映射后矩形的位置信息
-        RectF dst = new RectF();
-        mExportMatrix.mapRect(dst, mBorderRect);
-        return new Rect((int) dst.left, (int) dst.top, (int) dst.right, (int) dst.bottom);
+        return exportCaptionInfo(scale, null);
+    }
+
+    /**
+     * 导出字幕信息，字幕图片绘制到调用方提供的位图中，避免每次导出都创建新的位图
+     *
+     * @param scale 导出的目标相对于字幕控件的倍数
+     * @param reuse 复用的位图，需要可修改；大小与导出大小一致时直接使用，否则在系统支持时重新配置，
+     *              都不满足时从位图池获取或新建
+     * @return 获取导出的字幕信息
+     */
+    public CaptionInfo exportCaptionInfo(float scale, Bitmap reuse) {
+        return buildCaptionInfo(scale, reuse);
+    }
+
+    /**
+     * 按条带导出字幕图片，不创建整张字幕图片，适合大倍数导出
+     *
+     * @param scale    导出的目标相对于字幕控件的倍数
+     * @param exporter 条带导出器，决定条带高度
+     * @param sink     接收条带
+     * @throws IOException 写入失败
+     */
+    public void exportCaption(float scale, CaptionStripExporter exporter, CaptionStripSink sink) throws IOException {
+        if (mMetrics != null) {
+            mMetrics.increment(CaptionMetrics.COUNTER_EXPORT_RASTER, 1);
+        }
+        CaptionTrace.begin(CaptionTrace.SECTION_VIEW_EXPORT);
+        try {
+            exporter.exportCaption(getRenderState(), scale, sink);
+        } finally {
+            CaptionTrace.end();
+        }
+    }
+
+    /**
+     * @return 获取导出时使用的位图池
+     */
+    public CaptionBitmapPool getBitmapPool() {
+        return mBitmapPool;
+    }
+
+    /**
+     * 设置导出时使用的位图池，导出的字幕图片从池中获取，使用完后可通过{@link CaptionBitmapPool#put(Bitmap)}归还
+     *
+     * @param bitmapPool 位图池，null表示每次新建
+     */
+    public void setBitmapPool(CaptionBitmapPool bitmapPool) {
+        this.mBitmapPool = bitmapPool;
+    }
+
+    /**
+     * @return 热点路径统计，未开启时为null
+     */
+    public CaptionMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * 开启热点路径统计，记录排版、测量、刷新、导出次数以及绘制和触摸事件的耗时。
+     * 多个字幕可以共用一个统计对象，放在{@link CaptionLayout}中时由容器统一设置
+     *
+     * @param metrics 统计对象，null表示不统计
+     */
+    public void setMetrics(CaptionMetrics metrics) {
+        mMetrics = metrics;
+        mTextMeasurer.mMetrics = metrics;
+        mTextLayoutCache.setMetrics(metrics);
+    }
+
+    /**
+     * @return 开始显示的时间，单位毫秒
+     */
+    public long getStartTime() {
+        return mStartTime;
+    }
+
+    /**
+     * @return 结束显示的时间，单位毫秒
+     */
+    public long getEndTime() {
+        return mEndTime;
+    }
+
+    /**
+     * 设置显示的时间范围，在{@link CaptionLayout#setCurrentTime(long)}时决定是否显示
+     *
+     * @param startTime 开始时间，单位毫秒，包含
+     * @param endTime   结束时间，单位毫秒，不包含，{@link Long#MAX_VALUE}表示一直显示
+     */
+    public void setTimeRange(long startTime, long endTime) {
+        if (startTime > endTime) {
+            throw new IllegalArgumentException("startTime > endTime");
+        }
+        if (mStartTime == startTime && mEndTime == endTime) {
+            return;
+        }
+        mStartTime = startTime;
+        mEndTime = endTime;
+        if (getParent() instanceof CaptionLayout) {
+            ((CaptionLayout) getParent()).onChildTimeRangeChange(this);
+        }
+    }
+
+    /**
+     * @param time 时间，单位毫秒
+     * @return 字幕在该时间是否显示
+     */
+    public boolean isActiveAt(long time) {
+        return mStartTime <= time && time < mEndTime;
+    }
+
+    /**
+     * 由容器按当前时间设置是否隐藏，隐藏时不绘制也不响应触摸，不修改{@link #getVisibility()}
+     *
+     * @param hidden 是否隐藏
+     */
+    void setTimeHidden(boolean hidden) {
+        if (mTimeHidden == hidden) {
+            return;
+        }
+        mTimeHidden = hidden;
+        CaptionLayout batchRenderParent = getBatchRenderParent();
+        if (batchRenderParent != null && isCaptionPrepared()) {
+            getCaptionBounds(mTempBounds);
+            batchRenderParent.invalidateCaptionRegion(this, mTempBounds);
+        } else if (batchRenderParent != null) {
+            batchRenderParent.invalidate();
+        } else {
+            invalidate();
+        }
+    }
+
+    /**
+     * @return 是否被容器按当前时间隐藏
+     */
+    boolean isTimeHidden() {
+        return mTimeHidden;
+    }
+
+    /**
+     * @return 控件可见并且没有被容器按当前时间隐藏
+     */
+    boolean isCaptionVisible() {
+        return getVisibility() == VISIBLE && !mTimeHidden;
+    }
+
+    // 获取导出用的透明位图
+    private Bitmap obtainExportBitmap(int width, int height, Bitmap reuse) {
+        if (reuse != null && !reuse.isRecycled() && reuse.isMutable()) {
+            if (reuse.getWidth() == width && reuse.getHeight() == height
+                && reuse.getConfig() == Bitmap.Config.ARGB_8888) {
+                reuse.eraseColor(Color.TRANSPARENT);
+                return reuse;
+            }
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT
+                && reuse.getAllocationByteCount() >= width * height * 4) {
+                reuse.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+                reuse.eraseColor(Color.TRANSPARENT);
+                return reuse;
+            }
+            if (mDebug) {
+                log("reuse bitmap is too small, width=" + width + ",height=" + height);
+            }
+        }
+        return CaptionMetrics.obtainExportBitmap(mMetrics, mBitmapPool, width, height);
+    }
+
+    private CaptionInfo buildCaptionInfo(float scale, Bitmap reuse) {
+        // 通过快照渲染，不修改绘制用的画笔和排版
+        CaptionRenderState state = getRenderState();
+        Bitmap captionBitmap = obtainExportBitmap(state.getTargetWidth(scale), state.getTargetHeight(scale), reuse);
+        if (mExportRenderer == null) {
+            mExportRenderer = new CaptionRenderer();
+        }
+        if (mMetrics != null) {
+            mMetrics.increment(CaptionMetrics.COUNTER_EXPORT_RASTER, 1);
+        }
+        CaptionTrace.begin(CaptionTrace.SECTION_VIEW_EXPORT);
+        try {
+            return mExportRenderer.export(state, scale, captionBitmap);
+        } finally {
+            CaptionTrace.end();
+        }
+    }
+
+    /**
+     * 获取当前渲染状态的不可变快照，需要在UI线程调用，之后可在任意线程中通过{@link CaptionRenderer}绘制。
+     * 还没有绘制过的字幕（例如不在当前时间内）在这里计算位置信息
+     *
+     * @return 渲染状态
+     * @throws IllegalStateException 字幕控件还没有完成布局
+     */
+    public CaptionRenderState getRenderState() {
+        if (!isCaptionPrepared()) {
+            if (getWidth() == 0 || getHeight() == 0) {
+                throw new IllegalStateException("FlexibleCaptionView has not been laid out");
+            }
+            prepareCaption();
+        }
+        CaptionRenderState.Builder builder =
+            new CaptionRenderState.Builder().center(mCenterPoint.x, mCenterPoint.y)
+                .borderSize(mTransform.getBorderWidth(), mTransform.getBorderHeight())
+                .degree(mTransform.getDegree())
+                .viewSize(getWidth(), getHeight())
+                .timeRange(mStartTime, mEndTime)
+                .borderColor(mBorderColor);
+        if (mIsImgCaption) {
+            return builder.image(mImgCaptionBitmap, mImgCaptionSource).build();
+        }
+        return builder.text(new SpannedString(mText), new SpannedString(mMaxWidthLineText))
+            .textSize(mTextPaint.getTextSize())
+            .textColor(mTextColor)
+            .typeface(mTextTypeface, mTextTypefaceKey)
+            .alignment(mLayoutTextAlignment)
+            .padding((int) (mPaddingLeft * mTransform.getScale()))
+            .build();
     }
 
     /**
@@ -919,13 +1299,73 @@ public class FlexibleCaptionView extends View {
      * @param update 基于当前状态更新信息
      */
     private void refresh(boolean reset, boolean update) {
+        // 内容可能变化，手势模式下在下一次绘制时重新缓存文字图片
+        mGestureRasterValid = false;
+        mInvalidateCount++;
+        if (mMetrics != null) {
+            mMetrics.increment(CaptionMetrics.COUNTER_INVALIDATE, 1);
+        }
         if (!mResetData && reset) {
             this.mResetData = true;
         }
         if (!mUpdateBaseData && update) {
             this.mUpdateBaseData = true;
         }
-        postInvalidate();
+        CaptionLayout batchRenderParent = getBatchRenderParent();
+        if (isCaptionPrepared()) {
+            // 位置不变，只刷新字幕所在区域
+            if (batchRenderParent != null) {
+                batchRenderParent.postInvalidateCaptionRegion(this, mLastBounds);
+            } else {
+                postInvalidate((int) Math.floor(mLastBounds.left), (int) Math.floor(mLastBounds.top),
+                    (int) Math.ceil(mLastBounds.right), (int) Math.ceil(mLastBounds.bottom));
+            }
+        } else {
+            // 需要重新计算位置，刷新后的区域未知，整体刷新
+            if (batchRenderParent != null) {
+                batchRenderParent.postInvalidate();
+            } else {
+                postInvalidate();
+            }
+        }
+    }
+
+    // 批量渲染时返回负责绘制的父容器，否则返回null
+    private CaptionLayout getBatchRenderParent() {
+        if (getParent() instanceof CaptionLayout) {
+            CaptionLayout parent = (CaptionLayout) getParent();
+            if (parent.isBatchRendering()) {
+                return parent;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return 字幕位置信息是否已经计算完成，未完成时需要在绘制时计算
+     */
+    boolean isCaptionPrepared() {
+        return !mFirstDraw && !mResetData && !mUpdateBaseData;
+    }
+
+    /**
+     * 父容器批量渲染状态改变，批量渲染时自身不再绘制，不需要单独的硬件层
+     *
+     * @param batchRender 是否批量渲染
+     */
+    void onBatchRenderChange(boolean batchRender) {
+        if (batchRender) {
+            setLayerType(View.LAYER_TYPE_NONE, null);
+        } else {
+            setLayerType(View.LAYER_TYPE_HARDWARE, mTextPaint);
+        }
+    }
+
+    /**
+     * @return 字幕请求刷新的累计次数，包含位置变化和内容变化
+     */
+    int getInvalidateCount() {
+        return mInvalidateCount;
     }
 
     @Override
@@ -945,14 +1385,18 @@ public class FlexibleCaptionView extends View {
             // 未指定高度，与父控件一样大
             measureHeight = heightSize;
         }
-        log("measureWidth=" + measureWidth + ",measureHeight=" + measureHeight);
+        if (mDebug) {
+            log("measureWidth=" + measureWidth + ",measureHeight=" + measureHeight);
+        }
         setMeasuredDimension(measureWidth, measureHeight);
     }
 
     @Override
     protected void onSizeChanged(int w, int h, int oldw, int oldh) {
         super.onSizeChanged(w, h, oldw, oldh);
-        log("onSizeChanged,w=" + w + ",h=" + h + ",oldw=" + oldw + ",oldh=" + oldh);
+        if (mDebug) {
+            log("onSizeChanged,w=" + w + ",h=" + h + ",oldw=" + oldw + ",oldh=" + oldh);
+        }
     }
 
     @Override
@@ -971,6 +1415,52 @@ public class FlexibleCaptionView extends View {
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
         log("onDetachedFromWindow()");
+        flushTransform();
+        settleGesture();
+        // 不回收，绘制中的显示列表可能仍在引用
+        mGestureRaster = null;
+        mGestureRasterValid = false;
+        releaseIcons();
+    }
+
+    // 从共享缓存获取资源图标，图标大小变化时重新获取
+    private void acquireIcons() {
+        if (mAcquiredIconSize == mIconSize) {
+            return;
+        }
+        releaseIcons();
+        CaptionIconCache cache = CaptionIconCache.getInstance();
+        if (mLeftTopIconId != 0) {
+            mLeftTopBmp = cache.acquire(getResources(), mLeftTopIconId, mIconSize);
+        }
+        if (mRightTopIconId != 0) {
+            mRightTopBmp = cache.acquire(getResources(), mRightTopIconId, mIconSize);
+        }
+        if (mRightBottomIconId != 0) {
+            mRightBottomBmp = cache.acquire(getResources(), mRightBottomIconId, mIconSize);
+        }
+        mAcquiredIconSize = mIconSize;
+    }
+
+    // 归还资源图标，直接设置的位图不受影响
+    private void releaseIcons() {
+        if (mAcquiredIconSize < 0) {
+            return;
+        }
+        CaptionIconCache cache = CaptionIconCache.getInstance();
+        if (mLeftTopIconId != 0 && mLeftTopBmp != null) {
+            cache.release(mLeftTopIconId, mAcquiredIconSize);
+            mLeftTopBmp = null;
+        }
+        if (mRightTopIconId != 0 && mRightTopBmp != null) {
+            cache.release(mRightTopIconId, mAcquiredIconSize);
+            mRightTopBmp = null;
+        }
+        if (mRightBottomIconId != 0 && mRightBottomBmp != null) {
+            cache.release(mRightBottomIconId, mAcquiredIconSize);
+            mRightBottomBmp = null;
+        }
+        mAcquiredIconSize = -1;
     }
 
     // 更新各位置信息
@@ -978,29 +1468,96 @@ public class FlexibleCaptionView extends View {
         updateLeftTopIconRect();
         updateRightTopIconRect();
         updateRightBottomIconRect();
+        notifyParentBoundsChange();
+    }
+
+    private void notifyParentBoundsChange() {
+        if (getParent() instanceof CaptionLayout) {
+            CaptionLayout parent = (CaptionLayout) getParent();
+            parent.onChildBoundsChange(this);
+        }
+    }
+
+    /**
+     * 获取字幕在控件中的外接矩形，包含边框和四角图标
+     *
+     * @param out 结果
+     */
+    void getCaptionBounds(RectF out) {
+        float left = Math.min(Math.min(mLeftTopPoint.x, mRightTopPoint.x),
+            Math.min(mLeftBottomPoint.x, mRightBottomPoint.x));
+        float top = Math.min(Math.min(mLeftTopPoint.y, mRightTopPoint.y),
+            Math.min(mLeftBottomPoint.y, mRightBottomPoint.y));
+        float right = Math.max(Math.max(mLeftTopPoint.x, mRightTopPoint.x),
+            Math.max(mLeftBottomPoint.x, mRightBottomPoint.x));
+        float bottom = Math.max(Math.max(mLeftTopPoint.y, mRightTopPoint.y),
+            Math.max(mLeftBottomPoint.y, mRightBottomPoint.y));
+        // 四角图标以顶点为中心，边框线宽也向外延伸
+        float inset = Math.max(mIconSize / 2f, mBorderPaint.getStrokeWidth() / 2);
+        out.set(left - inset, top - inset, right + inset, bottom + inset);
     }
 
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
         // log("onDraw");
+        // 批量渲染时由父容器统一绘制
+        if (getBatchRenderParent() != null || mTimeHidden) {
+            return;
+        }
+        drawCaption(canvas);
+    }
+
+    /**
+     * 绘制字幕内容、边框和图标，位置信息未计算时先计算
+     *
+     * @param canvas 画布，坐标系与控件一致
+     */
+    void drawCaption(Canvas canvas) {
+        CaptionMetrics metrics = mMetrics;
+        long start = metrics != null ? System.nanoTime() : 0;
+        CaptionTrace.begin(CaptionTrace.SECTION_VIEW_DRAW);
+        try {
+            prepareCaption();
+            if (mIsImgCaption) {
+                drawImgCaption(canvas);
+            } else {
+                drawText(canvas);
+            }
+            if (mFocus) {
+                drawBorderRect(canvas);
+                acquireIcons();
+                drawCornerIcon(canvas, mLeftTopBmp, mRightTopBmp, mRightBottomBmp);
+            }
+        } finally {
+            CaptionTrace.end();
+        }
+        if (metrics != null) {
+            metrics.recordDuration(CaptionMetrics.HISTOGRAM_DRAW, System.nanoTime() - start);
+        }
+    }
+
+    // 计算未完成的位置信息，绘制和导出前调用
+    private void prepareCaption() {
         if (mFirstDraw || mResetData) {
-            init();
+            CaptionTrace.begin(CaptionTrace.SECTION_VIEW_INIT);
+            try {
+                init();
+            } finally {
+                CaptionTrace.end();
+            }
             mFirstDraw = false;
             mResetData = false;
         }
         if (mUpdateBaseData) {
-            updateBaseData();
+            CaptionTrace.begin(CaptionTrace.SECTION_VIEW_UPDATE_BASE_DATA);
+            try {
+                updateBaseData();
+            } finally {
+                CaptionTrace.end();
+            }
             mUpdateBaseData = false;
-        }
-        if (mIsImgCaption) {
-            drawImgCaption(canvas);
-        } else {
-            drawText(canvas);
-        }
-        if (mFocus) {
-            drawBorderRect(canvas);
-            drawCornerIcon(canvas, mLeftTopBmp, mRightTopBmp, mRightBottomBmp);
+            getCaptionBounds(mLastBounds);
         }
     }
 
@@ -1008,16 +1565,20 @@ public class FlexibleCaptionView extends View {
         log("init");
         // 中点默认在中间
         mCenterPoint.set(getWidth() / 2f, getHeight() / 2f);
+        mTransform.setBounds(getWidth(), getHeight());
+        mTransform.setCenter(mCenterPoint.x, mCenterPoint.y);
 
         if (mIsImportCaption) {
             loadImportCaptionInfo();
         } else {
             mUpdateMatrix.reset();
-            mTotalScale = 1f;
-            mTotalDegree = 0f;
+            mTransform.reset();
         }
-        if (mImgCaptionBitmap != null) {
+        if (mImgCaptionBitmap != null || mImgCaptionSource != null) {
             mIsImgCaption = mBlockRotateScaleEvent = true;
+            if (mImgCaptionBitmap == null) {
+                loadImgCaption();
+            }
         } else {
             mIsImgCaption = mBlockRotateScaleEvent = false;
             if (mTextSize > mMaxTextSize) {
@@ -1033,27 +1594,39 @@ public class FlexibleCaptionView extends View {
 
     private void loadImportCaptionInfo() {
         // 加载导入的字幕信息
-        mTotalScale = 1f;
-        mTotalDegree = mFingerDegree = mCaptionInfo.degree;
+        mTransform.setScale(1f);
+        mTransform.setDegree(mCaptionInfo.degree);
         if (mCaptionInfo instanceof TextCaptionInfo) {
             TextCaptionInfo textCaptionInfo = (TextCaptionInfo) mCaptionInfo;
             mTextSize = textCaptionInfo.textSize;
             mText = textCaptionInfo.text;
 
-            mTextTypeface = textCaptionInfo.textTypeface;
+            if (textCaptionInfo.textTypefaceKey != null) {
+                mTextTypeface = loadTypeface(textCaptionInfo.textTypefaceKey);
+            } else {
+                mTextTypeface = textCaptionInfo.textTypeface;
+            }
             mLayoutTextAlignment = textCaptionInfo.textAlignment;
             mBorderColor = textCaptionInfo.textBorderColor;
             mTextColor = textCaptionInfo.textColor;
             mPaddingLeft = mPaddingRight = mPaddingTop = mPaddingBottom = textCaptionInfo.textPadding;
         } else if (mCaptionInfo instanceof ImageCaptionInfo) {
             ImageCaptionInfo imageCaptionInfo = (ImageCaptionInfo) mCaptionInfo;
-            mImgCaptionBitmap = imageCaptionInfo.intrinsicBitmap;
+            mImgCaptionSource = imageCaptionInfo.intrinsicSource;
+            // 有来源时不解码序列化的图片，直接从来源加载
+            mImgCaptionBitmap =
+                mImgCaptionSource == null ? imageCaptionInfo.getIntrinsicBitmap() : imageCaptionInfo.intrinsicBitmap;
         }
 
     }
 
     private void updateBaseData() {
-        initBorderRect();
+        CaptionTrace.begin(CaptionTrace.SECTION_VIEW_INIT_BORDER_RECT);
+        try {
+            initBorderRect();
+        } finally {
+            CaptionTrace.end();
+        }
         updateBorderVertexData();
         updateCornerLocationData();
 
@@ -1061,9 +1634,7 @@ public class FlexibleCaptionView extends View {
         if (mIsImportCaption) {
             float currentCenterX = mCaptionInfo.relativeCenterX * getWidth();
             float currentCenterY = mCaptionInfo.relativeCenterY * getHeight();
-            mUpdateMatrix.reset();
-            mUpdateMatrix.postRotate(mTotalDegree, mCenterPoint.x, mCenterPoint.y);
-            mUpdateMatrix.postTranslate(currentCenterX - mCenterPoint.x, currentCenterY - mCenterPoint.y);
+            mTransform.setCenter(currentCenterX, currentCenterY);
             updateLocationDataAndRefresh();
             mIsImportCaption = false;
         }
@@ -1072,30 +1643,146 @@ public class FlexibleCaptionView extends View {
     private void drawImgCaption(Canvas canvas) {
         canvas.save();
         canvas.translate(mLeftTopPoint.x, mLeftTopPoint.y);
-        canvas.drawBitmap(mImgCaptionBitmap, 0, 0, mBitmapPaint);
+        if (mImgCaptionBitmap != null) {
+            canvas.drawBitmap(mImgCaptionBitmap, 0, 0, mBitmapPaint);
+        } else {
+            canvas.drawRect(0, 0, mBorderRect.width(), mBorderRect.height(), mPlaceholderPaint);
+        }
         canvas.restore();
     }
 
+    // 在单独的解码线程池中按显示大小解码贴图，最大不超过控件大小，完成后按图片大小更新边框
+    private void loadImgCaption() {
+        final ImageCaptionSource source = mImgCaptionSource;
+        if (source == mImgCaptionLoadingSource || getWidth() == 0 || getHeight() == 0) {
+            return;
+        }
+        mImgCaptionLoadingSource = source;
+        final int maxWidth = getWidth(), maxHeight = getHeight();
+        CaptionExportExecutor.getDecoder().execute(new Runnable() {
+            @Override
+            public void run() {
+                Bitmap bitmap = null;
+                try {
+                    bitmap = source.decodeToFit(maxWidth, maxHeight);
+                } catch (IOException e) {
+                    Log.w(TAG, "unable to load image caption", e);
+                }
+                final Bitmap result = bitmap;
+                post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onImgCaptionLoaded(source, result);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onImgCaptionLoaded(ImageCaptionSource source, Bitmap bitmap) {
+        if (source == mImgCaptionLoadingSource) {
+            mImgCaptionLoadingSource = null;
+        }
+        if (source != mImgCaptionSource || mImgCaptionBitmap != null) {
+            return;
+        }
+        if (bitmap == null) {
+            // 加载失败时保留占位区域
+            return;
+        }
+        mImgCaptionBitmap = bitmap;
+        refresh(false, true);
+    }
+
     private void drawText(Canvas canvas) {
+        if (mGestureActive && drawGestureRaster(canvas)) {
+            return;
+        }
         canvas.save();
         // 旋转画布
-        canvas.rotate(mTotalDegree, mCenterPoint.x, mCenterPoint.y);
-        mTextLayout =
-            new StaticLayout(mText, mTextPaint, getStaticLayoutBreakWidth(), mLayoutTextAlignment, 1.0f, 0f, false);
-        float rectWidth = mTextPaint.measureText(mMaxWidthLineText.toString());
-        float rectHeight = mTextLayout.getHeight();
+        canvas.rotate(mTransform.getDegree(), mCenterPoint.x, mCenterPoint.y);
+        // 只有文本、字号、字体、对齐方式或换行宽度变化时才重新排版，单纯的移动直接复用
+        StaticLayout textLayout =
+            mTextLayoutCache.obtain(mText, mMaxWidthLineText, mTextPaint, mLayoutTextAlignment);
+        float rectWidth = mTextLayoutCache.getMaxWidthLineWidth();
+        float rectHeight = textLayout.getHeight();
         float dx = mCenterPoint.x - rectWidth / 2;
         float dy = mCenterPoint.y - rectHeight / 2;
         // 移动画布原点到指定位置
         canvas.translate(dx, dy);
         // 裁剪画布，减少绘制区域
         canvas.clipRect(0, 0, rectWidth + mPaddingLeft + mPaddingRight, rectHeight + mPaddingTop + mPaddingBottom);
-        mTextLayout.draw(canvas);
+        textLayout.draw(canvas);
+        canvas.restore();
+    }
+
+    // 按缓存后的缩放和旋转绘制文字图片，无法缓存时返回false
+    private boolean drawGestureRaster(Canvas canvas) {
+        if (!mGestureRasterValid && !captureGestureRaster()) {
+            return false;
+        }
+        float scale = mTransform.getScale() / mGestureRasterScale;
+        canvas.save();
+        canvas.rotate(mTransform.getDegree(), mCenterPoint.x, mCenterPoint.y);
+        canvas.scale(scale, scale, mCenterPoint.x, mCenterPoint.y);
+        canvas.translate(mCenterPoint.x - mGestureRasterTextWidth / 2,
+            mCenterPoint.y - mGestureRasterTextHeight / 2);
+        canvas.drawBitmap(mGestureRaster, mGestureRasterBounds, mGestureRasterBounds, mBitmapPaint);
         canvas.restore();
+        return true;
+    }
+
+    private boolean captureGestureRaster() {
+        StaticLayout textLayout =
+            mTextLayoutCache.obtain(mText, mMaxWidthLineText, mTextPaint, mLayoutTextAlignment);
+        float rectWidth = mTextLayoutCache.getMaxWidthLineWidth();
+        float rectHeight = textLayout.getHeight();
+        int width = (int) Math.ceil(rectWidth + mPaddingLeft + mPaddingRight);
+        int height = (int) Math.ceil(rectHeight + mPaddingTop + mPaddingBottom);
+        if (width <= 0 || height <= 0
+            || (long) width * height > (long) getWidth() * getHeight() * MAX_GESTURE_RASTER_AREA_SCALE) {
+            return false;
+        }
+        Bitmap raster = mGestureRaster;
+        if (raster != null && raster.getWidth() >= width && raster.getHeight() >= height) {
+            raster.eraseColor(Color.TRANSPARENT);
+        } else {
+            // 不回收旧的图片，绘制中的显示列表可能仍在引用
+            raster = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        }
+        Canvas rasterCanvas = new Canvas(raster);
+        rasterCanvas.clipRect(0, 0, rectWidth + mPaddingLeft + mPaddingRight,
+            rectHeight + mPaddingTop + mPaddingBottom);
+        textLayout.draw(rasterCanvas);
+        mGestureRaster = raster;
+        mGestureRasterValid = true;
+        mGestureRasterBounds.set(0, 0, width, height);
+        mGestureRasterScale = mTransform.getScale();
+        mGestureRasterTextWidth = rectWidth;
+        mGestureRasterTextHeight = rectHeight;
+        return true;
+    }
+
+    // 变换应用后进入手势模式，停顿一段时间后自动退出
+    private void onGestureTransform() {
+        if (mIsImgCaption) {
+            return;
+        }
+        mGestureActive = true;
+        removeCallbacks(mSettleGestureRunnable);
+        postDelayed(mSettleGestureRunnable, GESTURE_IDLE_DELAY);
     }
 
-    private int getStaticLayoutBreakWidth() {
-        return (int) Math.ceil(mTextPaint.measureText(mMaxWidthLineText.toString()));
+    // 退出手势模式，下一次绘制时按最终字号排版一次
+    private void settleGesture() {
+        removeCallbacks(mSettleGestureRunnable);
+        if (!mGestureActive) {
+            return;
+        }
+        mGestureActive = false;
+        // 保留图片给下一次手势复用
+        mGestureRasterValid = false;
+        refresh(false, false);
     }
 
     private void drawBorderRect(Canvas canvas) {
@@ -1125,29 +1812,46 @@ public class FlexibleCaptionView extends View {
 
         if (mIsImgCaption) {
             // 贴图字幕
-            mTextBorderWidth = mImgCaptionBitmap.getWidth();
-            mTextBorderHeight = mImgCaptionBitmap.getHeight();
+            if (mImgCaptionBitmap != null) {
+                mTextBorderWidth = mImgCaptionBitmap.getWidth();
+                mTextBorderHeight = mImgCaptionBitmap.getHeight();
+            } else {
+                // 加载完成前使用占位大小
+                mTextBorderWidth = mTextBorderHeight = mIconSize * 2;
+            }
         } else {
             float availableTextWidth = (getWidth() - mPaddingLeft - mPaddingRight) * MAX_BORDER_SCALE;
             float availableTextHeight = (getHeight() - mPaddingTop - mPaddingBottom) * MAX_BORDER_SCALE;
-            adjustTextSizeToFitMaxBorder(availableTextWidth, availableTextHeight);
-            mTextLayout =
+            CaptionTrace.begin(CaptionTrace.SECTION_VIEW_FIT_TEXT_SIZE);
+            try {
+                adjustTextSizeToFitMaxBorder(availableTextWidth, availableTextHeight);
+            } finally {
+                CaptionTrace.end();
+            }
+            StaticLayout measureLayout =
                 new StaticLayout(mText, mTextPaint, Integer.MAX_VALUE, Layout.Alignment.ALIGN_NORMAL, 1.0f, 0f, false);
+            if (mMetrics != null) {
+                mMetrics.increment(CaptionMetrics.COUNTER_LAYOUT_BUILD, 1);
+                mMetrics.increment(CaptionMetrics.COUNTER_TEXT_MEASURE, 1);
+            }
             // 确定边框宽高
-            float maxWidth = mTextLayout.getLineWidth(0);
-            int lineStart = mTextLayout.getLineStart(0), lineEnd = mTextLayout.getLineEnd(0);
-            for (int i = 1; i < mTextLayout.getLineCount(); i++) {
-                if (maxWidth < mTextLayout.getLineWidth(i)) {
-                    maxWidth = mTextLayout.getLineWidth(i);
-                    lineStart = mTextLayout.getLineStart(i);
-                    lineEnd = mTextLayout.getLineEnd(i);
+            float maxWidth = measureLayout.getLineWidth(0);
+            int lineStart = measureLayout.getLineStart(0), lineEnd = measureLayout.getLineEnd(0);
+            for (int i = 1; i < measureLayout.getLineCount(); i++) {
+                if (maxWidth < measureLayout.getLineWidth(i)) {
+                    maxWidth = measureLayout.getLineWidth(i);
+                    lineStart = measureLayout.getLineStart(i);
+                    lineEnd = measureLayout.getLineEnd(i);
                 }
             }
             mMaxWidthLineText = mText.subSequence(lineStart, lineEnd);
+            mTextLayoutCache.invalidate();
             mTextBorderWidth = (int) (maxWidth + mPaddingLeft + mPaddingRight);
-            mTextBorderHeight = mTextLayout.getHeight() + mPaddingTop + mPaddingBottom;
+            mTextBorderHeight = measureLayout.getHeight() + mPaddingTop + mPaddingBottom;
+        }
+        if (mDebug) {
+            log("mTextBorderWidth=" + mTextBorderWidth + ",mTextBorderHeight=" + mTextBorderHeight);
         }
-        log("mTextBorderWidth=" + mTextBorderWidth + ",mTextBorderHeight=" + mTextBorderHeight);
 
         // 根据中心点获取边框位置
         float rectLeft = mCenterPoint.x - mTextBorderWidth / 2f;
@@ -1155,6 +1859,7 @@ public class FlexibleCaptionView extends View {
         float rectTop = mCenterPoint.y - mTextBorderHeight / 2f;
         float rectBottom = rectTop + mTextBorderHeight;
         mBorderRect.set(rectLeft, rectTop, rectRight, rectBottom);
+        mTransform.setBaseSize(mTextBorderWidth, mTextBorderHeight);
 
         resetUpdateMatrixExceptRotate();
     }
@@ -1163,37 +1868,22 @@ public class FlexibleCaptionView extends View {
         if (availableTextWidth == 0 || availableTextHeight == 0) {
             return;
         }
-        while (true) {
-            mTextLayout = new StaticLayout(mText, mTextPaint, Integer.MAX_VALUE, mLayoutTextAlignment, 1.0f, 0f, false);
-            // 获取需要缩小倍数
-            float resizeScale = getResizeScale(mTextLayout, availableTextWidth, availableTextHeight);
-            if (resizeScale < 1) {
-                mTextPaint.setTextSize(mTextPaint.getTextSize() * resizeScale);
-            } else {
-                break;
-            }
-        }
-        log("mTextPaint.getTextSize()=" + mTextPaint.getTextSize());
-    }
-
-    private float getResizeScale(StaticLayout mTextLayout, float availableTextWidth, float availableTextHeight) {
-        float maxWidth = mTextLayout.getLineWidth(0);
-        for (int i = 1; i < mTextLayout.getLineCount(); i++) {
-            float lineWidth = mTextLayout.getLineWidth(i);
-            if (lineWidth > maxWidth) {
-                maxWidth = lineWidth;
-            }
+        // 直接计算出适应区域的字号，不再循环创建排版对象
+        float textSize =
+            mTextSizeFitter.fit(mText, mTextTypeface, mTextPaint.getTextSize(), availableTextWidth,
+                availableTextHeight);
+        mTextPaint.setTextSize(textSize);
+        if (mDebug) {
+            log("mTextPaint.getTextSize()=" + mTextPaint.getTextSize());
         }
-        float widthScale = availableTextWidth / maxWidth;
-        float heightScale = availableTextHeight / mTextLayout.getHeight();
-        return Math.min(widthScale, heightScale);
     }
 
     // 重置矩阵，只保留旋转变换
     private void resetUpdateMatrixExceptRotate() {
-        mUpdateMatrix.reset();
-        mTotalScale = 1f;
-        mUpdateMatrix.postRotate(mTotalDegree, mCenterPoint.x, mCenterPoint.y);
+        mTransform.setBounds(getWidth(), getHeight());
+        mTransform.setCenter(mCenterPoint.x, mCenterPoint.y);
+        mTransform.setScale(1f);
+        mTransform.toAffine(mBorderRect.centerX(), mBorderRect.centerY(), mUpdateMatrix);
     }
 
     private void updateLeftTopIconRect() {
@@ -1229,6 +1919,36 @@ public class FlexibleCaptionView extends View {
     private float mPointerDegree; // 按下时两指的旋转角度
     private int mStillDownPointId = 0;
 
+    // 一帧内累积的变换，在下一帧统一检查边界后应用
+    private boolean mTransformPending;
+    private float mPendingDx, mPendingDy;
+    private float mPendingScale = 1f;
+    private float mPendingDegree;
+    private final CaptionFrameScheduler.FrameTask mTransformTask = new CaptionFrameScheduler.FrameTask() {
+        @Override
+        public void doFrame() {
+            applyPendingTransform();
+        }
+    };
+
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent event) {
+        if (mTimeHidden) {
+            return false;
+        }
+        CaptionMetrics metrics = mMetrics;
+        long start = metrics != null ? System.nanoTime() : 0;
+        CaptionTrace.begin(CaptionTrace.SECTION_VIEW_TOUCH);
+        try {
+            return super.dispatchTouchEvent(event);
+        } finally {
+            CaptionTrace.end();
+            if (metrics != null) {
+                metrics.recordDuration(CaptionMetrics.HISTOGRAM_TOUCH, System.nanoTime() - start);
+            }
+        }
+    }
+
     @Override
     public boolean onTouchEvent(MotionEvent event) {
         if (!mEnable) {
@@ -1254,6 +1974,8 @@ public class FlexibleCaptionView extends View {
                 if (mBlockRotateScaleEvent) {
                     break;
                 }
+                // 切换触摸模式前先应用之前累积的变换
+                flushTransform();
                 // 不处理超过两个点的情况
                 if (event.getActionIndex() > 1) {
                     break;
@@ -1261,9 +1983,9 @@ public class FlexibleCaptionView extends View {
                 float secondPointX = event.getX(event.getActionIndex());
                 float secondPointY = event.getY(event.getActionIndex());
                 if (mTouchRegion == TouchRegion.INSIDE && isInBorderRegion(secondPointX, secondPointY)) {
-                    mDownDistance = calculatePointsDistance(event);
+                    mDownDistance = calculatePointsDistance(event, -1);
                     mTouchMode = TouchMode.POINTER_SCALE_ROTATE;
-                    mPointerDegree = calculatePointerRotationDegree(event);
+                    mPointerDegree = calculatePointerRotationDegree(event, -1);
                 } else {
                     mTouchMode = TouchMode.NONE;
                 }
@@ -1275,6 +1997,7 @@ public class FlexibleCaptionView extends View {
                 if (mBlockRotateScaleEvent) {
                     break;
                 }
+                flushTransform();
                 int leavePointerId = event.getActionIndex();
                 // 前两个按下的点有效
                 if (leavePointerId < 2) {
@@ -1298,6 +2021,9 @@ public class FlexibleCaptionView extends View {
                 }
                 break;
             case MotionEvent.ACTION_UP:
+                // 抬起时立即应用剩余的变换，并按最终字号重新排版
+                flushTransform();
+                settleGesture();
                 // 刚获得焦点，不允许点击事件
                 if (!mCancelClick) {
                     long clickTimeout = event.getEventTime() - event.getDownTime();
@@ -1313,6 +2039,10 @@ public class FlexibleCaptionView extends View {
                     notifyTranslateEnd();
                 }
                 break;
+            case MotionEvent.ACTION_CANCEL:
+                flushTransform();
+                settleGesture();
+                break;
         }
         mLastX = curX;
         mLastY = curY;
@@ -1346,23 +2076,34 @@ public class FlexibleCaptionView extends View {
     }
 
     private void onMove(MotionEvent event) {
-        float curX = event.getX();
-        float curY = event.getY();
+        // 依次累积历史采样点和当前点的变化量，每帧只应用一次，与触摸采样率无关
+        int historySize = event.getHistorySize();
+        for (int pos = 0; pos < historySize; pos++) {
+            onMoveSample(event, pos);
+        }
+        onMoveSample(event, -1);
+        scheduleTransform();
+    }
+
+    // pos为历史采样点的位置，-1表示当前点
+    private void onMoveSample(MotionEvent event, int pos) {
+        float curX = pos < 0 ? event.getX() : event.getHistoricalX(pos);
+        float curY = pos < 0 ? event.getY() : event.getHistoricalY(pos);
         switch (mTouchRegion) {
             case INSIDE:
                 if (mTouchMode == TouchMode.DRAG) {
                     processMove(curX, curY);
                 } else if (mTouchMode == TouchMode.POINTER_SCALE_ROTATE) {
                     // 双指缩放
-                    float curDistance = calculatePointsDistance(event);
+                    float curDistance = calculatePointsDistance(event, pos);
                     float scale = curDistance / mDownDistance;
                     mDownDistance = curDistance;
-                    processScale(scale);
+                    mPendingScale *= scale;
                     // 旋转
-                    float curDegree = calculatePointerRotationDegree(event);
+                    float curDegree = calculatePointerRotationDegree(event, pos);
                     float degree = curDegree - mPointerDegree;
                     mPointerDegree = curDegree;
-                    processRotate(degree);
+                    mPendingDegree += degree;
                 }
                 break;
             case RIGHT_BOTTOM_ICON:
@@ -1372,6 +2113,54 @@ public class FlexibleCaptionView extends View {
                 scaleAndRotate(curX, curY);
                 break;
         }
+        mLastX = curX;
+        mLastY = curY;
+    }
+
+    private void scheduleTransform() {
+        if (mTransformPending) {
+            return;
+        }
+        mTransformPending = true;
+        CaptionFrameScheduler.getInstance().schedule(mTransformTask);
+    }
+
+    // 立即应用累积的变换
+    private void flushTransform() {
+        if (!mTransformPending) {
+            return;
+        }
+        CaptionFrameScheduler.getInstance().cancel(mTransformTask);
+        applyPendingTransform();
+    }
+
+    // 对一帧内合并后的变化量检查边界，只更新一次位置信息并重绘
+    private void applyPendingTransform() {
+        if (!mTransformPending) {
+            return;
+        }
+        mTransformPending = false;
+        float dx = mPendingDx, dy = mPendingDy, scale = mPendingScale, degree = mPendingDegree;
+        mPendingDx = mPendingDy = mPendingDegree = 0;
+        mPendingScale = 1f;
+        boolean moved = false, transformed = false;
+        mTransform.setBounds(getWidth(), getHeight());
+        if (dx != 0 || dy != 0) {
+            moved = mTransform.move(dx, dy);
+        }
+        if (scale != 1) {
+            transformed = applyScale(scale);
+        }
+        if (degree != 0) {
+            transformed |= mTransform.rotateBy(degree) != 0;
+        }
+        if (transformed) {
+            // 只有缩放和旋转需要重新排版，单纯的拖动直接按原来的排版绘制
+            onGestureTransform();
+        }
+        if (moved || transformed) {
+            updateLocationDataAndRefresh();
+        }
     }
 
     private void notifyTranslateStart() {
@@ -1387,25 +2176,32 @@ public class FlexibleCaptionView extends View {
     }
 
     // 取两指间旋转角度
-    private float calculatePointerRotationDegree(MotionEvent event) {
-        double dx = (event.getX(0) - event.getX(1));
-        double dy = (event.getY(0) - event.getY(1));
+    private float calculatePointerRotationDegree(MotionEvent event, int pos) {
+        double dx = getX(event, 0, pos) - getX(event, 1, pos);
+        double dy = getY(event, 0, pos) - getY(event, 1, pos);
         double radians = Math.atan2(dy, dx);
         return (float) Math.toDegrees(radians);
     }
 
     // 计算两个触摸点之间的距离
-    private float calculatePointsDistance(MotionEvent event) {
-        float x = event.getX(0) - event.getX(1);
-        float y = event.getY(0) - event.getY(1);
+    private float calculatePointsDistance(MotionEvent event, int pos) {
+        float x = getX(event, 0, pos) - getX(event, 1, pos);
+        float y = getY(event, 0, pos) - getY(event, 1, pos);
         return (float) Math.sqrt(x * x + y * y);
     }
 
+    private static float getX(MotionEvent event, int pointerIndex, int pos) {
+        return pos < 0 ? event.getX(pointerIndex) : event.getHistoricalX(pointerIndex, pos);
+    }
+
+    private static float getY(MotionEvent event, int pointerIndex, int pos) {
+        return pos < 0 ? event.getY(pointerIndex) : event.getHistoricalY(pointerIndex, pos);
+    }
+
+    // 缩放和旋转都以中心为基准，中心不变，累积后再应用与逐次应用的结果一致
     private void scaleAndRotate(float curX, float curY) {
-        float scale = calculateScale(curX, curY);
-        processScale(scale);
-        float degree = calculateRotationDegree(curX, curY, mLastX, mLastY);
-        processRotate(degree);
+        mPendingScale *= calculateScale(curX, curY);
+        mPendingDegree += calculateRotationDegree(curX, curY, mLastX, mLastY);
     }
 
     // 计算旋转角度
@@ -1435,11 +2231,11 @@ public class FlexibleCaptionView extends View {
     // 确定事件点击的区域
     private boolean determineTouchRegion(float curX, float curY) {
         boolean consume = true;
-        if (mRightBottomBmp != null && mCurrentRightBottomRect.contains(curX, curY)) {
+        if ((mRightBottomBmp != null || mRightBottomIconId != 0) && mCurrentRightBottomRect.contains(curX, curY)) {
             if (!needToSetFocusFirstly()) {
                 mTouchRegion = TouchRegion.RIGHT_BOTTOM_ICON;
             }
-        } else if (mLeftTopBmp != null && mCurrentLeftTopIconRect.contains(curX, curY)) {
+        } else if ((mLeftTopBmp != null || mLeftTopIconId != 0) && mCurrentLeftTopIconRect.contains(curX, curY)) {
             if (!needToSetFocusFirstly()) {
                 mTouchRegion = TouchRegion.LEFT_TOP_ICON;
             }
@@ -1452,7 +2248,9 @@ public class FlexibleCaptionView extends View {
             mTouchRegion = TouchRegion.OUTSIDE;
             consume = false;
         }
-        log("determineTouchRegion,curX=" + curX + ",curY=" + curY + ",mTouchRegion=" + mTouchRegion.name());
+        if (mDebug) {
+            log("determineTouchRegion,curX=" + curX + ",curY=" + curY + ",mTouchRegion=" + mTouchRegion.name());
+        }
         return consume;
     }
 
@@ -1472,12 +2270,8 @@ public class FlexibleCaptionView extends View {
 
     // 判断触摸点是否在边框区域内
     private boolean isInBorderRegion(float curX, float curY) {
-        RectF r = new RectF();
-        // 计算控制点的边界
-        mBorderPath.computeBounds(r, true);
-        // 设置区域路径和剪辑描述的区域
-        mBorderRegion.setPath(mBorderPath, new Region((int) r.left, (int) r.top, (int) r.right, (int) r.bottom));
-        return mBorderRegion.contains((int) curX, (int) curY);
+        // 边框是绕中心旋转的矩形，直接逆向旋转触摸点进行判断
+        return mTransform.contains(curX, curY);
     }
 
     private void processMove(float curX, float curY) {
@@ -1493,111 +2287,25 @@ public class FlexibleCaptionView extends View {
             }
         }
 
-        float dx = curX - mLastX;
-        float dy = curY - mLastY;
-        // 检查平移是否超出边界
-        float[] adjustDxDy = checkMoveBounds(dx, dy);
-        dx = adjustDxDy[0];
-        dy = adjustDxDy[1];
-        if (dx == 0 && dy == 0) {
-            return;
-        }
-        mUpdateMatrix.postTranslate(dx, dy);
-        updateLocationDataAndRefresh();
-    }
-
-    private float[] checkMoveBounds(float dx, float dy) {
-        // 防止中点移除边界
-        float afterMoveX = mCenterPoint.x + dx;
-        if (afterMoveX < 0) {
-            dx = -mCenterPoint.x;
-        } else if (afterMoveX > getWidth()) {
-            dx = getWidth() - mCenterPoint.x;
-        }
-        float afterMoveY = mCenterPoint.y + dy;
-        if (afterMoveY < 0) {
-            dy = -mCenterPoint.y;
-        } else if (afterMoveY > getHeight()) {
-            dy = getHeight() - mCenterPoint.y;
-        }
-        return new float[] {dx, dy};
+        mPendingDx += curX - mLastX;
+        mPendingDy += curY - mLastY;
     }
 
-    private void processScale(float scale) {
-        scale = checkScaleBounds(scale);
+    private boolean applyScale(float scale) {
+        // 边框不能超出控件的设置倍数，字号不能超过最大字号
+        scale = mTransform.scaleBy(scale, mTextSize, mMaxTextSize);
         if (scale == 1) {
-            return;
+            return false;
         }
-        this.mTotalScale *= scale;
-        mUpdateMatrix.postScale(scale, scale, mCenterPoint.x, mCenterPoint.y);
         updateTextPaint(scale);
-        updateLocationDataAndRefresh();
-    }
-
-    private float checkScaleBounds(float scale) {
-        // 边框宽度不能大于控件宽度的设置倍数
-        if (mBorderRect.width() * mTotalScale * scale > getWidth() * MAX_BORDER_SCALE) {
-            return getWidth() * MAX_BORDER_SCALE / (mBorderRect.width() * mTotalScale);
-        }
-        // 边框高度不能大于控件高度的设置倍数
-        if (mBorderRect.height() * mTotalScale * scale > getHeight() * MAX_BORDER_SCALE) {
-            return getHeight() * MAX_BORDER_SCALE / (mBorderRect.height() * mTotalScale);
-        }
-        // 不能超过最大字号
-        if (mTextSize * scale > mMaxTextSize) {
-            return mMaxTextSize / mTextSize;
-        }
-        return scale;
-    }
-
-    private void processRotate(float degree) {
-        degree = adjustDegreeToSkipOffset(degree);
-        if (degree == 0) {
-            return;
-        }
-        mTotalDegree = (mTotalDegree + degree) % 360;
-        mUpdateMatrix.postRotate(degree, mCenterPoint.x, mCenterPoint.y);
-        updateLocationDataAndRefresh();
-    }
-
-    private float adjustDegreeToSkipOffset(float degree) {
-        /*
-        * 当处于水平或竖直方向时，往范围外旋转累积达到范围外时，移动，否则保持不动
-        * 当处于范围外时，一到范围内的边界，立马旋转成水平或竖直方向
-        * 一个变量保持手指累积的旋转角度
-        * */
-
-        // 当前处于水平或竖直方向
-        mFingerDegree = (mFingerDegree + degree) % 360;
-        if (mTotalDegree % 90 == 0) {
-            for (int i = -270; i <= 360; i += 90) {
-                // 如果当前手指的累积的角度在范围外，移动
-                if (mTotalDegree == i) {
-                    if (mFingerDegree >= i - OFFSET_DEGREE && mFingerDegree <= i + OFFSET_DEGREE) {
-                        return 0;
-                    } else {
-                        // 一次性返回需要旋转的角度
-                        return mFingerDegree - i;
-                    }
-                }
-            }
-        }
-
-        // 检查是否进入水平或竖直区域
-        float afterTotalDegree = (mTotalDegree + degree) % 360;
-        for (int i = -270; i <= 360; i += 90) {
-            if (afterTotalDegree >= i - OFFSET_DEGREE && afterTotalDegree <= i + OFFSET_DEGREE) {
-                afterTotalDegree = i - mTotalDegree;
-                return afterTotalDegree;
-            }
-        }
-        return degree;
+        return true;
     }
 
     // 字体相关参数改变
     private void updateTextPaint(float scale) {
         mTextSize = mTextPaint.getTextSize() * scale;
         mTextPaint.setTextSize(mTextSize);
+        mTextLayoutCache.invalidate();
     }
 
     // 更新位置信息并重绘控件
@@ -1605,15 +2313,43 @@ public class FlexibleCaptionView extends View {
         updateBorderVertexData();
         updateCornerLocationData();
 
-        invalidate();
+        invalidateCaption();
+    }
+
+    // 刷新字幕变化前后所在的区域，包含边框和四角图标
+    private void invalidateCaption() {
+        mInvalidateCount++;
+        if (mMetrics != null) {
+            mMetrics.increment(CaptionMetrics.COUNTER_INVALIDATE, 1);
+        }
+        getCaptionBounds(mTempBounds);
+        mDirtyBounds.set(mLastBounds);
+        mDirtyBounds.union(mTempBounds);
+        mLastBounds.set(mTempBounds);
+        CaptionLayout batchRenderParent = getBatchRenderParent();
+        if (batchRenderParent != null) {
+            batchRenderParent.invalidateCaptionRegion(this, mDirtyBounds);
+        } else {
+            mDirtyBounds.roundOut(mInvalidateRect);
+            invalidate(mInvalidateRect);
+        }
     }
 
     // 更新边框顶点位置
     private void updateBorderVertexData() {
         // 根据矩阵变化，映射到新的顶点位置
-        float[] dst = new float[8];
-        mUpdateMatrix.mapPoints(dst, new float[] {mBorderRect.left, mBorderRect.top, mBorderRect.right,
-            mBorderRect.top, mBorderRect.left, mBorderRect.bottom, mBorderRect.right, mBorderRect.bottom});
+        float[] src = mBorderSrcPoints;
+        src[0] = mBorderRect.left;
+        src[1] = mBorderRect.top;
+        src[2] = mBorderRect.right;
+        src[3] = mBorderRect.top;
+        src[4] = mBorderRect.left;
+        src[5] = mBorderRect.bottom;
+        src[6] = mBorderRect.right;
+        src[7] = mBorderRect.bottom;
+        float[] dst = mBorderDstPoints;
+        mTransform.toAffine(mBorderRect.centerX(), mBorderRect.centerY(), mUpdateMatrix);
+        mUpdateMatrix.mapPoints(dst, src);
         mLeftTopPoint.x = dst[0];
         mLeftTopPoint.y = dst[1];
         mRightTopPoint.x = dst[2];
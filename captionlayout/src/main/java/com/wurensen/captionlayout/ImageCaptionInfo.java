@@ -7,7 +7,11 @@ import android.graphics.Bitmap;
  * Created by WuRS on 2015/12/2.
  */
 public class ImageCaptionInfo extends CaptionInfo {
-    public Bitmap intrinsicBitmap; // 原先的贴图图片
+    public Bitmap intrinsicBitmap; // 原先的贴图图片，按显示大小解码
+    public ImageCaptionSource intrinsicSource; // 贴图图片来源，导入时可以从来源重新解码，可以为null
+
+    // 从序列化数据中读取的贴图图片，首次访问时解码
+    EncodedBitmap intrinsicBitmapSource;
 
     public ImageCaptionInfo() {
     }
@@ -18,4 +22,19 @@ public class ImageCaptionInfo extends CaptionInfo {
         this.intrinsicBitmap = intrinsicBitmap;
     }
 
+    /**
+     * 获取原先的贴图图片，从序列化数据中读取的字幕在首次调用时才解码图片
+     *
+     * @return 贴图图片，没有图片或者解码失败时返回null
+     */
+    public synchronized Bitmap getIntrinsicBitmap() {
+        if (intrinsicBitmap == null && intrinsicBitmapSource != null) {
+            intrinsicBitmap = decode(intrinsicBitmapSource);
+            if (intrinsicBitmap != null) {
+                intrinsicBitmapSource = null;
+            }
+        }
+        return intrinsicBitmap;
+    }
+
 }
@@ -0,0 +1,352 @@
+package com.wurensen.captionlayout;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.util.TypedValue;
+
+/**
+ * 贴图字幕的图片来源，只保存资源id、文件或编码后的数据，需要时才按目标大小解码。
+ * 解码时先按inSampleSize缩小到不小于目标大小，再缩放到目标大小；缩小后仍然很大的图片分条区域解码，
+ * 避免同时持有整张中间图片和结果图片。解码可在任意线程中进行
+ */
+public abstract class ImageCaptionSource {
+
+    /**
+     * 按inSampleSize缩小后超过这个像素数时分条区域解码
+     */
+    public static final int REGION_DECODE_PIXELS = 8 * 1024 * 1024;
+
+    // 分条区域解码时每一条缩小后的最大像素数
+    private static final int REGION_STRIP_PIXELS = 1024 * 1024;
+
+    private volatile int mWidth, mHeight;
+
+    /**
+     * @param res 资源
+     * @param id  图片资源id
+     * @return 资源图片，与{@link BitmapFactory#decodeResource}一样按屏幕密度确定显示大小
+     */
+    public static ImageCaptionSource fromResource(Resources res, int id) {
+        if (res == null) {
+            throw new NullPointerException("res == null");
+        }
+        return new ResourceSource(res, id);
+    }
+
+    /**
+     * @param file 图片文件
+     * @return 文件图片
+     */
+    public static ImageCaptionSource fromFile(File file) {
+        if (file == null) {
+            throw new NullPointerException("file == null");
+        }
+        return new FileSource(file);
+    }
+
+    /**
+     * @param data 编码后的图片数据，不会复制
+     * @return 内存中的图片
+     */
+    public static ImageCaptionSource fromBytes(byte[] data) {
+        if (data == null) {
+            throw new NullPointerException("data == null");
+        }
+        return new BytesSource(data);
+    }
+
+    /**
+     * 流在第一次读取图片时整体读入内存并关闭，只保存编码后的数据
+     *
+     * @param in 图片数据流
+     * @return 流中的图片
+     */
+    public static ImageCaptionSource fromStream(InputStream in) {
+        if (in == null) {
+            throw new NullPointerException("in == null");
+        }
+        return new StreamSource(in);
+    }
+
+    /**
+     * @return 打开新的图片数据流，由调用者关闭
+     * @throws IOException 打开失败
+     */
+    protected abstract InputStream openStream() throws IOException;
+
+    /**
+     * @return 区域解码器
+     * @throws IOException 打开失败或格式不支持区域解码
+     */
+    protected BitmapRegionDecoder newRegionDecoder() throws IOException {
+        InputStream in = openStream();
+        try {
+            return BitmapRegionDecoder.newInstance(in, false);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @return 显示大小相对于图片像素大小的倍数
+     */
+    public float getDensityScale() {
+        return 1f;
+    }
+
+    /**
+     * 读取图片的像素大小，只读取图片头，已读取时直接返回
+     *
+     * @throws IOException 读取失败或数据无法解码
+     */
+    public final synchronized void readSize() throws IOException {
+        if (mWidth > 0) {
+            return;
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        InputStream in = openStream();
+        try {
+            BitmapFactory.decodeStream(in, null, options);
+        } finally {
+            in.close();
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("unable to decode image bounds");
+        }
+        mHeight = options.outHeight;
+        mWidth = options.outWidth;
+    }
+
+    /**
+     * @return 图片的像素宽度，未读取时为0
+     */
+    public final int getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * @return 图片的像素高度，未读取时为0
+     */
+    public final int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * 按显示大小解码，超出最大范围时等比缩小
+     *
+     * @param maxWidth  最大宽度
+     * @param maxHeight 最大高度
+     * @return 解码后的图片
+     * @throws IOException 读取失败或数据无法解码
+     */
+    public Bitmap decodeToFit(int maxWidth, int maxHeight) throws IOException {
+        readSize();
+        float density = getDensityScale();
+        float width = mWidth * density, height = mHeight * density;
+        float scale = Math.min(1f, Math.min(maxWidth / width, maxHeight / height));
+        return decode(Math.max(1, Math.round(width * scale)), Math.max(1, Math.round(height * scale)));
+    }
+
+    /**
+     * 解码到指定大小
+     *
+     * @param width  宽度
+     * @param height 高度
+     * @return 解码后的图片
+     * @throws IOException 读取失败或数据无法解码
+     */
+    public Bitmap decode(int width, int height) throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("width and height must be > 0");
+        }
+        readSize();
+        int sampleSize = calculateInSampleSize(mWidth, mHeight, width, height);
+        long sampledPixels = (long) (mWidth / sampleSize) * (mHeight / sampleSize);
+        if (sampledPixels > REGION_DECODE_PIXELS) {
+            return decodeByRegion(width, height, sampleSize);
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        Bitmap bitmap;
+        InputStream in = openStream();
+        try {
+            bitmap = BitmapFactory.decodeStream(in, null, options);
+        } finally {
+            in.close();
+        }
+        if (bitmap == null) {
+            throw new IOException("unable to decode image");
+        }
+        if (bitmap.getWidth() == width && bitmap.getHeight() == height) {
+            return bitmap;
+        }
+        Bitmap scaled = Bitmap.createScaledBitmap(bitmap, width, height, true);
+        if (scaled != bitmap) {
+            bitmap.recycle();
+        }
+        return scaled;
+    }
+
+    // 按行分条解码后缩放绘制到结果图片中，同一时刻只持有一条缩小后的图片
+    private Bitmap decodeByRegion(int width, int height, int sampleSize) throws IOException {
+        BitmapRegionDecoder decoder = newRegionDecoder();
+        try {
+            Bitmap result = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            Canvas canvas = new Canvas(result);
+            Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inSampleSize = sampleSize;
+            int stripRows = (int) Math.min(mHeight, (long) REGION_STRIP_PIXELS * sampleSize * sampleSize / mWidth);
+            stripRows = Math.max(sampleSize, stripRows / sampleSize * sampleSize);
+            Rect region = new Rect();
+            RectF dst = new RectF();
+            float scaleY = (float) height / mHeight;
+            for (int top = 0; top < mHeight; top += stripRows) {
+                int bottom = Math.min(mHeight, top + stripRows);
+                region.set(0, top, mWidth, bottom);
+                Bitmap strip = decoder.decodeRegion(region, options);
+                if (strip == null) {
+                    result.recycle();
+                    throw new IOException("unable to decode image region " + region);
+                }
+                dst.set(0, top * scaleY, width, bottom * scaleY);
+                canvas.drawBitmap(strip, null, dst, paint);
+                strip.recycle();
+            }
+            return result;
+        } finally {
+            decoder.recycle();
+        }
+    }
+
+    /**
+     * @return 缩小后宽高都不小于目标大小的最大的2的幂
+     */
+    static int calculateInSampleSize(int width, int height, int targetWidth, int targetHeight) {
+        int sampleSize = 1;
+        while (width / (sampleSize * 2) >= targetWidth && height / (sampleSize * 2) >= targetHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static final class ResourceSource extends ImageCaptionSource {
+        private final Resources mResources;
+        private final int mId;
+
+        ResourceSource(Resources resources, int id) {
+            mResources = resources;
+            mId = id;
+        }
+
+        @Override
+        protected InputStream openStream() throws IOException {
+            try {
+                return mResources.openRawResource(mId);
+            } catch (Resources.NotFoundException e) {
+                throw new IOException(e.getMessage());
+            }
+        }
+
+        @Override
+        public float getDensityScale() {
+            TypedValue value = new TypedValue();
+            mResources.getValue(mId, value, true);
+            int density = value.density;
+            if (density == TypedValue.DENSITY_DEFAULT) {
+                density = 160;
+            } else if (density == 0 || density == TypedValue.DENSITY_NONE) {
+                return 1f;
+            }
+            return (float) mResources.getDisplayMetrics().densityDpi / density;
+        }
+    }
+
+    private static final class FileSource extends ImageCaptionSource {
+        private final File mFile;
+
+        FileSource(File file) {
+            mFile = file;
+        }
+
+        @Override
+        protected InputStream openStream() throws IOException {
+            return new FileInputStream(mFile);
+        }
+
+        @Override
+        protected BitmapRegionDecoder newRegionDecoder() throws IOException {
+            return BitmapRegionDecoder.newInstance(mFile.getAbsolutePath(), false);
+        }
+    }
+
+    private static class BytesSource extends ImageCaptionSource {
+        byte[] mData;
+
+        BytesSource(byte[] data) {
+            mData = data;
+        }
+
+        synchronized byte[] getData() throws IOException {
+            return mData;
+        }
+
+        @Override
+        protected InputStream openStream() throws IOException {
+            return new ByteArrayInputStream(getData());
+        }
+
+        @Override
+        protected BitmapRegionDecoder newRegionDecoder() throws IOException {
+            byte[] data = getData();
+            return BitmapRegionDecoder.newInstance(data, 0, data.length, false);
+        }
+    }
+
+    private static final class StreamSource extends BytesSource {
+        private InputStream mIn;
+
+        StreamSource(InputStream in) {
+            super(null);
+            mIn = in;
+        }
+
+        @Override
+        synchronized byte[] getData() throws IOException {
+            if (mData != null) {
+                return mData;
+            }
+            if (mIn == null) {
+                throw new IOException("stream already failed");
+            }
+            InputStream in = mIn;
+            mIn = null;
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(in.available(), 8192));
+                byte[] buffer = new byte[8192];
+                int count;
+                while ((count = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, count);
+                }
+                mData = out.toByteArray();
+            } finally {
+                in.close();
+            }
+            return mData;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.wurensen.captionlayout;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * 把条带像素依次写入输出流，得到按行存放的RGBA原始数据，不会关闭输出流
+ */
+public class OutputStreamStripSink implements CaptionStripSink {
+
+    private final OutputStream mOut;
+    private byte[] mBuffer;
+
+    public OutputStreamStripSink(OutputStream out) {
+        if (out == null) {
+            throw new NullPointerException("out == null");
+        }
+        mOut = out;
+    }
+
+    @Override
+    public void onStrip(ByteBuffer pixels, int top, int width, int height) throws IOException {
+        if (pixels.hasArray()) {
+            mOut.write(pixels.array(), pixels.arrayOffset() + pixels.position(), pixels.remaining());
+            return;
+        }
+        if (mBuffer == null) {
+            mBuffer = new byte[64 * 1024];
+        }
+        while (pixels.hasRemaining()) {
+            int count = Math.min(mBuffer.length, pixels.remaining());
+            pixels.get(mBuffer, 0, count);
+            mOut.write(mBuffer, 0, count);
+        }
+    }
+}
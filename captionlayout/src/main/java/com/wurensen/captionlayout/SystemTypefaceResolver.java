@@ -0,0 +1,28 @@
+package com.wurensen.captionlayout;
+
+import android.graphics.Typeface;
+
+/**
+ * 识别系统字体族的字体转换器，其他字体按默认字体处理
+ */
+final class SystemTypefaceResolver implements TypefaceResolver {
+
+    private static final String[] FAMILY_NAMES = {"sans-serif", "serif", "monospace"};
+
+    @Override
+    public String getName(Typeface typeface) {
+        int style = typeface.getStyle();
+        for (String name : FAMILY_NAMES) {
+            // 系统会缓存同名同样式的字体，可以直接比较
+            if (typeface.equals(Typeface.create(name, style))) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Typeface resolve(String name, int style) {
+        return Typeface.create(name, style);
+    }
+}
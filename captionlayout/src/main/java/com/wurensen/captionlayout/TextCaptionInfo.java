@@ -15,6 +15,7 @@ public class TextCaptionInfo extends CaptionInfo {
     public int textColor; // 字体颜色
     public int textBorderColor; // 边框颜色
     public Typeface textTypeface; // 字体
+    public String textTypefaceKey; // 字体在TypefaceRegistry中的key，可以为null
     public Layout.Alignment textAlignment; // 字体对齐方式
     public int textPadding; // 内容与边框的间距
 
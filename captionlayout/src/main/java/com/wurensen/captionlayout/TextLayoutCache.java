@@ -0,0 +1,94 @@
+package com.wurensen.captionlayout;
+
+import android.graphics.Typeface;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+
+/**
+ * 文字排版缓存，文本、字号、字体、对齐方式和换行宽度都不变时复用同一个StaticLayout，避免每次绘制都重新排版
+ */
+final class TextLayoutCache {
+
+    private StaticLayout mLayout;
+    private boolean mValid;
+
+    // 缓存的键
+    private CharSequence mText;
+    private CharSequence mMaxWidthLineText;
+    private float mTextSize;
+    private Typeface mTypeface;
+    private Layout.Alignment mAlignment;
+
+    private float mMaxWidthLineWidth; // 最长一行的宽度
+    private int mBreakWidth; // 换行宽度
+
+    private int mBuildCount; // 排版对象创建次数
+    private CaptionMetrics mMetrics;
+
+    /**
+     * 获取排版对象，键发生变化或被标记为失效时重新创建
+     *
+     * @param text             文本内容
+     * @param maxWidthLineText 最长一行的文本，用于确定换行宽度
+     * @param paint            文字画笔
+     * @param alignment        对齐方式
+     * @return 排版对象
+     */
+    StaticLayout obtain(CharSequence text, CharSequence maxWidthLineText, TextPaint paint,
+        Layout.Alignment alignment) {
+        if (!mValid || mText != text || mMaxWidthLineText != maxWidthLineText || mTextSize != paint.getTextSize()
+            || mTypeface != paint.getTypeface() || mAlignment != alignment) {
+            mText = text;
+            mMaxWidthLineText = maxWidthLineText;
+            mTextSize = paint.getTextSize();
+            mTypeface = paint.getTypeface();
+            mAlignment = alignment;
+            mMaxWidthLineWidth = paint.measureText(maxWidthLineText, 0, maxWidthLineText.length());
+            mBreakWidth = (int) Math.ceil(mMaxWidthLineWidth);
+            mLayout = new StaticLayout(text, paint, mBreakWidth, alignment, 1.0f, 0f, false);
+            mBuildCount++;
+            if (mMetrics != null) {
+                mMetrics.increment(CaptionMetrics.COUNTER_LAYOUT_BUILD, 1);
+                mMetrics.increment(CaptionMetrics.COUNTER_TEXT_MEASURE, 1);
+            }
+            mValid = true;
+        }
+        return mLayout;
+    }
+
+    /**
+     * @return 最近一次排版时最长一行的宽度
+     */
+    float getMaxWidthLineWidth() {
+        return mMaxWidthLineWidth;
+    }
+
+    /**
+     * @return 最近一次排版的换行宽度
+     */
+    int getBreakWidth() {
+        return mBreakWidth;
+    }
+
+    /**
+     * @return 排版对象累计创建的次数
+     */
+    int getBuildCount() {
+        return mBuildCount;
+    }
+
+    /**
+     * @param metrics 统计排版次数，null表示不统计
+     */
+    void setMetrics(CaptionMetrics metrics) {
+        mMetrics = metrics;
+    }
+
+    /**
+     * 标记缓存失效，下次获取时重新排版
+     */
+    void invalidate() {
+        mValid = false;
+    }
+}
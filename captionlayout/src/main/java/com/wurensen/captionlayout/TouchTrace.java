@@ -0,0 +1,176 @@
+package com.wurensen.captionlayout;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+import android.view.InputDevice;
+import android.view.MotionEvent;
+
+/**
+ * {@link TouchTraceRecorder}记录的触摸轨迹，读取后可以按原来的相对时间重新生成事件，交给{@link TouchTraceReplayer}回放
+ */
+public final class TouchTrace {
+
+    private static final class Event {
+        int action;
+        int downTime;
+        int[] pointerIds;
+        int[] sampleTimes; // 历史采样在前，当前采样在最后
+        float[] coords; // 按采样、触摸点依次保存x、y
+    }
+
+    private final int mViewWidth, mViewHeight;
+    private final ArrayList<Event> mEvents;
+
+    private TouchTrace(int viewWidth, int viewHeight, ArrayList<Event> events) {
+        mViewWidth = viewWidth;
+        mViewHeight = viewHeight;
+        mEvents = events;
+    }
+
+    /**
+     * @param file 轨迹文件
+     * @return 触摸轨迹
+     * @throws IOException 读取失败或格式不正确
+     */
+    public static TouchTrace read(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            return read(new BufferedInputStream(in));
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * 读取到输入流末尾，不会关闭输入流
+     *
+     * @param in 输入流
+     * @return 触摸轨迹
+     * @throws IOException 读取失败或格式不正确
+     */
+    public static TouchTrace read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != TouchTraceFormat.MAGIC) {
+            throw new IOException("not a touch trace");
+        }
+        int version = data.readShort();
+        if (version > TouchTraceFormat.VERSION) {
+            throw new IOException("unsupported version " + version);
+        }
+        int viewWidth = data.readInt();
+        int viewHeight = data.readInt();
+        ArrayList<Event> events = new ArrayList<>();
+        while (true) {
+            int action;
+            try {
+                action = data.readInt();
+            } catch (EOFException e) {
+                break;
+            }
+            events.add(readEvent(data, action));
+        }
+        return new TouchTrace(viewWidth, viewHeight, events);
+    }
+
+    private static Event readEvent(DataInputStream data, int action) throws IOException {
+        Event event = new Event();
+        event.action = action;
+        event.downTime = data.readInt();
+        int pointerCount = data.readUnsignedByte();
+        int sampleCount = data.readUnsignedShort() + 1;
+        if (pointerCount == 0) {
+            throw new IOException("event without pointers");
+        }
+        event.pointerIds = new int[pointerCount];
+        for (int i = 0; i < pointerCount; i++) {
+            event.pointerIds[i] = data.readUnsignedByte();
+        }
+        event.sampleTimes = new int[sampleCount];
+        event.coords = new float[sampleCount * pointerCount * 2];
+        int index = 0;
+        for (int pos = 0; pos < sampleCount; pos++) {
+            event.sampleTimes[pos] = data.readInt();
+            for (int i = 0; i < pointerCount * 2; i++) {
+                event.coords[index++] = data.readFloat();
+            }
+        }
+        return event;
+    }
+
+    /**
+     * @return 记录时的容器宽度
+     */
+    public int getViewWidth() {
+        return mViewWidth;
+    }
+
+    /**
+     * @return 记录时的容器高度
+     */
+    public int getViewHeight() {
+        return mViewHeight;
+    }
+
+    public int getEventCount() {
+        return mEvents.size();
+    }
+
+    /**
+     * @param index 事件序号
+     * @return 事件的动作，与{@link MotionEvent#getAction()}一致
+     */
+    public int getAction(int index) {
+        return mEvents.get(index).action;
+    }
+
+    /**
+     * 重新生成事件，包含历史采样，使用完后需要调用{@link MotionEvent#recycle()}
+     *
+     * @param index    事件序号
+     * @param baseTime 第一个事件的按下时间，其他时间按记录时的相对时间计算
+     * @param scaleX   x坐标的缩放倍数，回放的容器与记录时大小不同时使用
+     * @param scaleY   y坐标的缩放倍数
+     * @return 事件
+     */
+    public MotionEvent obtainEvent(int index, long baseTime, float scaleX, float scaleY) {
+        Event event = mEvents.get(index);
+        int pointerCount = event.pointerIds.length;
+        MotionEvent.PointerProperties[] properties = new MotionEvent.PointerProperties[pointerCount];
+        MotionEvent.PointerCoords[] coords = new MotionEvent.PointerCoords[pointerCount];
+        for (int i = 0; i < pointerCount; i++) {
+            properties[i] = new MotionEvent.PointerProperties();
+            properties[i].id = event.pointerIds[i];
+            properties[i].toolType = MotionEvent.TOOL_TYPE_FINGER;
+            coords[i] = new MotionEvent.PointerCoords();
+            coords[i].pressure = 1f;
+            coords[i].size = 1f;
+        }
+        // 第一个采样创建事件，之后的采样依次追加，前面的采样成为历史采样
+        setCoords(event, 0, scaleX, scaleY, coords);
+        MotionEvent motionEvent =
+            MotionEvent.obtain(baseTime + event.downTime, baseTime + event.sampleTimes[0], event.action, pointerCount,
+                properties, coords, 0, 0, 1f, 1f, 0, 0, InputDevice.SOURCE_TOUCHSCREEN, 0);
+        for (int pos = 1; pos < event.sampleTimes.length; pos++) {
+            setCoords(event, pos, scaleX, scaleY, coords);
+            motionEvent.addBatch(baseTime + event.sampleTimes[pos], coords, 0);
+        }
+        return motionEvent;
+    }
+
+    private static void setCoords(Event event, int pos, float scaleX, float scaleY,
+        MotionEvent.PointerCoords[] coords) {
+        int pointerCount = event.pointerIds.length;
+        int index = pos * pointerCount * 2;
+        for (int i = 0; i < pointerCount; i++) {
+            coords[i].x = event.coords[index++] * scaleX;
+            coords[i].y = event.coords[index++] * scaleY;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.wurensen.captionlayout;
+
+/**
+ * 触摸轨迹二进制格式的常量。
+ * <pre>
+ * 文件头：magic(int "CTTR") version(short) viewWidth viewHeight(int)
+ * 事件：  action(int) downTime(int) pointerCount(byte) historySize(short) pointerId(byte * pointerCount)
+ *         采样(historySize + 1个，最后一个为当前采样)
+ * 采样：  eventTime(int) x y(float * pointerCount)
+ * </pre>
+ * 时间为相对于第一个事件按下时间的毫秒数，坐标为容器坐标系，读到文件末尾即结束
+ */
+final class TouchTraceFormat {
+
+    static final int MAGIC = 0x43545452; // "CTTR"
+    static final int VERSION = 1;
+
+    private TouchTraceFormat() {
+    }
+}
@@ -0,0 +1,128 @@
+package com.wurensen.captionlayout;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import android.view.MotionEvent;
+
+/**
+ * 把{@link CaptionLayout}收到的触摸事件写成紧凑的二进制轨迹，包含历史采样，可以用{@link TouchTrace}读取后回放。
+ * 通过{@link CaptionLayout#setTouchTraceRecorder(TouchTraceRecorder)}开始记录。
+ * 记录时的写入错误不会影响事件分发，只会停止记录，在{@link #close()}时抛出。只能在主线程使用
+ */
+public class TouchTraceRecorder implements Closeable {
+
+    private final DataOutputStream mOut;
+    private boolean mHeaderWritten;
+    private long mBaseTime; // 第一个事件的按下时间
+    private int mEventCount;
+    private IOException mError;
+    private boolean mClosed;
+
+    /**
+     * @param file 保存轨迹的文件，已存在时覆盖
+     * @throws IOException 文件无法创建
+     */
+    public TouchTraceRecorder(File file) throws IOException {
+        this(new FileOutputStream(file));
+    }
+
+    /**
+     * @param out 输出流，关闭时一起关闭
+     */
+    public TouchTraceRecorder(OutputStream out) {
+        if (out == null) {
+            throw new NullPointerException("out == null");
+        }
+        mOut = new DataOutputStream(new BufferedOutputStream(out));
+    }
+
+    /**
+     * 记录一个事件
+     *
+     * @param event      容器坐标系中的事件
+     * @param viewWidth  容器宽度
+     * @param viewHeight 容器高度
+     * @return 是否记录成功，写入失败或已经关闭时返回false
+     */
+    boolean record(MotionEvent event, int viewWidth, int viewHeight) {
+        if (mClosed || mError != null) {
+            return false;
+        }
+        try {
+            if (!mHeaderWritten) {
+                mOut.writeInt(TouchTraceFormat.MAGIC);
+                mOut.writeShort(TouchTraceFormat.VERSION);
+                mOut.writeInt(viewWidth);
+                mOut.writeInt(viewHeight);
+                mBaseTime = event.getDownTime();
+                mHeaderWritten = true;
+            }
+            writeEvent(event);
+            mEventCount++;
+            return true;
+        } catch (IOException e) {
+            mError = e;
+            return false;
+        }
+    }
+
+    private void writeEvent(MotionEvent event) throws IOException {
+        int pointerCount = event.getPointerCount();
+        int historySize = event.getHistorySize();
+        mOut.writeInt(event.getAction());
+        mOut.writeInt((int) (event.getDownTime() - mBaseTime));
+        mOut.writeByte(pointerCount);
+        mOut.writeShort(historySize);
+        for (int i = 0; i < pointerCount; i++) {
+            mOut.writeByte(event.getPointerId(i));
+        }
+        for (int pos = 0; pos < historySize; pos++) {
+            mOut.writeInt((int) (event.getHistoricalEventTime(pos) - mBaseTime));
+            for (int i = 0; i < pointerCount; i++) {
+                mOut.writeFloat(event.getHistoricalX(i, pos));
+                mOut.writeFloat(event.getHistoricalY(i, pos));
+            }
+        }
+        mOut.writeInt((int) (event.getEventTime() - mBaseTime));
+        for (int i = 0; i < pointerCount; i++) {
+            mOut.writeFloat(event.getX(i));
+            mOut.writeFloat(event.getY(i));
+        }
+    }
+
+    /**
+     * @return 已经记录的事件数量
+     */
+    public int getEventCount() {
+        return mEventCount;
+    }
+
+    /**
+     * 结束记录并关闭输出流
+     *
+     * @throws IOException 记录或关闭时写入失败
+     */
+    @Override
+    public void close() throws IOException {
+        if (mClosed) {
+            return;
+        }
+        mClosed = true;
+        try {
+            mOut.close();
+        } catch (IOException e) {
+            if (mError == null) {
+                mError = e;
+            }
+        }
+        if (mError != null) {
+            throw mError;
+        }
+    }
+}
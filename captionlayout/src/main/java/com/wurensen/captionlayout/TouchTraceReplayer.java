@@ -0,0 +1,255 @@
+package com.wurensen.captionlayout;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import android.os.Debug;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+
+/**
+ * 把{@link TouchTrace}中的事件依次交给{@link CaptionLayout}处理，统计每个事件的处理耗时、字幕刷新次数和对象分配次数，
+ * 并记录回放结束后所有字幕的状态，用于重现真实手势的性能问题和检查结果是否确定。
+ * 事件按记录时的相对时间生成，但不会等待，每个事件处理完后立即执行合并到下一帧的变换，不依赖垂直同步信号。
+ * 只能在主线程使用，如Robolectric测试或插桩测试
+ */
+public class TouchTraceReplayer {
+
+    /**
+     * 对象分配计数器，统计当前线程的分配次数
+     */
+    public interface AllocationCounter {
+        /**
+         * 回放开始前调用
+         */
+        void start();
+
+        /**
+         * @return 开始后当前线程累计的分配次数
+         */
+        long getCount();
+
+        /**
+         * 回放结束后调用
+         */
+        void stop();
+    }
+
+    /**
+     * 不统计分配次数
+     */
+    public static final AllocationCounter NO_ALLOCATION_COUNTER = new AllocationCounter() {
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public long getCount() {
+            return 0;
+        }
+
+        @Override
+        public void stop() {
+        }
+    };
+
+    /**
+     * 使用{@link Debug}统计当前线程的分配次数，统计期间运行会变慢，耗时只能作相对比较
+     */
+    @SuppressWarnings("deprecation")
+    public static final AllocationCounter DEBUG_ALLOCATION_COUNTER = new AllocationCounter() {
+        @Override
+        public void start() {
+            Debug.resetThreadAllocCount();
+            Debug.startAllocCounting();
+        }
+
+        @Override
+        public long getCount() {
+            return Debug.getThreadAllocCount();
+        }
+
+        @Override
+        public void stop() {
+            Debug.stopAllocCounting();
+        }
+    };
+
+    private AllocationCounter mAllocationCounter = NO_ALLOCATION_COUNTER;
+
+    /**
+     * @param counter 对象分配计数器，默认不统计
+     * @return 当前对象
+     */
+    public TouchTraceReplayer setAllocationCounter(AllocationCounter counter) {
+        if (counter == null) {
+            throw new NullPointerException("counter == null");
+        }
+        mAllocationCounter = counter;
+        return this;
+    }
+
+    /**
+     * 回放触摸轨迹，容器需要已经完成布局。容器与记录时大小不同时按比例缩放坐标
+     *
+     * @param layout 字幕容器
+     * @param trace  触摸轨迹
+     * @return 回放结果
+     */
+    public Result replay(CaptionLayout layout, TouchTrace trace) {
+        if (layout == null) {
+            throw new NullPointerException("layout == null");
+        }
+        if (trace == null) {
+            throw new NullPointerException("trace == null");
+        }
+        float scaleX = trace.getViewWidth() > 0 ? (float) layout.getWidth() / trace.getViewWidth() : 1f;
+        float scaleY = trace.getViewHeight() > 0 ? (float) layout.getHeight() / trace.getViewHeight() : 1f;
+        int eventCount = trace.getEventCount();
+        long[] times = new long[eventCount];
+        int[] invalidates = new int[eventCount];
+        long[] allocations = new long[eventCount];
+        long baseTime = SystemClock.uptimeMillis();
+        CaptionFrameScheduler scheduler = CaptionFrameScheduler.getInstance();
+
+        AllocationCounter counter = mAllocationCounter;
+        counter.start();
+        try {
+            for (int i = 0; i < eventCount; i++) {
+                // 在统计之外生成事件
+                MotionEvent event = trace.obtainEvent(i, baseTime, scaleX, scaleY);
+                int invalidateCount = getInvalidateCount(layout);
+                long allocationCount = counter.getCount();
+                long start = System.nanoTime();
+                layout.dispatchTouchEvent(event);
+                scheduler.runPendingFrame();
+                times[i] = System.nanoTime() - start;
+                allocations[i] = counter.getCount() - allocationCount;
+                invalidates[i] = getInvalidateCount(layout) - invalidateCount;
+                event.recycle();
+            }
+        } finally {
+            counter.stop();
+        }
+
+        ArrayList<CaptionRenderState> finalStates = new ArrayList<>();
+        for (int i = 0; i < layout.getChildCount(); i++) {
+            View child = layout.getChildAt(i);
+            if (child instanceof FlexibleCaptionView) {
+                finalStates.add(((FlexibleCaptionView) child).getRenderState());
+            }
+        }
+        return new Result(times, invalidates, allocations, finalStates);
+    }
+
+    private static int getInvalidateCount(CaptionLayout layout) {
+        int count = 0;
+        for (int i = 0; i < layout.getChildCount(); i++) {
+            View child = layout.getChildAt(i);
+            if (child instanceof FlexibleCaptionView) {
+                count += ((FlexibleCaptionView) child).getInvalidateCount();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 回放结果
+     */
+    public static final class Result {
+
+        private final long[] mTimes;
+        private final int[] mInvalidates;
+        private final long[] mAllocations;
+        private final List<CaptionRenderState> mFinalStates;
+
+        Result(long[] times, int[] invalidates, long[] allocations, List<CaptionRenderState> finalStates) {
+            mTimes = times;
+            mInvalidates = invalidates;
+            mAllocations = allocations;
+            mFinalStates = Collections.unmodifiableList(finalStates);
+        }
+
+        public int getEventCount() {
+            return mTimes.length;
+        }
+
+        /**
+         * @param index 事件序号
+         * @return 处理事件的耗时，包含合并到下一帧的变换，单位纳秒
+         */
+        public long getEventTimeNanos(int index) {
+            return mTimes[index];
+        }
+
+        /**
+         * @param index 事件序号
+         * @return 处理事件时字幕请求刷新的次数
+         */
+        public int getEventInvalidateCount(int index) {
+            return mInvalidates[index];
+        }
+
+        /**
+         * @param index 事件序号
+         * @return 处理事件时的对象分配次数
+         */
+        public long getEventAllocationCount(int index) {
+            return mAllocations[index];
+        }
+
+        /**
+         * @return 所有事件的总耗时，单位纳秒
+         */
+        public long getTotalTimeNanos() {
+            long total = 0;
+            for (long time : mTimes) {
+                total += time;
+            }
+            return total;
+        }
+
+        /**
+         * @return 单个事件的最长耗时，单位纳秒
+         */
+        public long getMaxTimeNanos() {
+            long max = 0;
+            for (long time : mTimes) {
+                max = Math.max(max, time);
+            }
+            return max;
+        }
+
+        public int getTotalInvalidateCount() {
+            int total = 0;
+            for (int count : mInvalidates) {
+                total += count;
+            }
+            return total;
+        }
+
+        public long getTotalAllocationCount() {
+            long total = 0;
+            for (long count : mAllocations) {
+                total += count;
+            }
+            return total;
+        }
+
+        /**
+         * @return 回放结束后所有字幕的状态，按层级从下到上排列，相同的轨迹回放到相同的初始状态应该得到相等的结果
+         */
+        public List<CaptionRenderState> getFinalStates() {
+            return mFinalStates;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{" + "events=" + getEventCount() + ", totalTimeNanos=" + getTotalTimeNanos()
+                + ", maxTimeNanos=" + getMaxTimeNanos() + ", invalidates=" + getTotalInvalidateCount()
+                + ", allocations=" + getTotalAllocationCount() + ", finalStates=" + mFinalStates + '}';
+        }
+    }
+}
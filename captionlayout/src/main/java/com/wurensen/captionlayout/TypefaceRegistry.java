@@ -0,0 +1,305 @@
+package com.wurensen.captionlayout;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.graphics.Typeface;
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * 进程内共享的字体注册表，按字体族、字体文件和样式生成稳定的key，同一个key只创建一次字体。
+ * 字体文件在单独的后台线程中加载，加载完成前返回占位字体，加载完成后在主线程回调。
+ * 加载失败的key会记住并一直返回占位字体，不会每次获取时重新加载，可以通过{@link #clearFailures()}重试。
+ * key可以保存在{@link TextCaptionInfo#textTypefaceKey}中，之后在任意进程中通过key重新得到同一个字体。
+ * <pre>
+ * system:sans-serif#1   系统字体族，字体族为空表示默认字体
+ * file:/sdcard/a.ttf#0  字体文件
+ * asset:fonts/b.ttf#2   assets中的字体文件
+ * </pre>
+ * #后面是字体样式，如{@link Typeface#BOLD}。可在多个线程中使用
+ */
+public final class TypefaceRegistry implements TypefaceResolver {
+
+    private static final String SCHEME_SYSTEM = "system:";
+    private static final String SCHEME_FILE = "file:";
+    private static final String SCHEME_ASSET = "asset:";
+
+    private static volatile TypefaceRegistry sInstance;
+
+    private final AssetManager mAssetManager;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final HashMap<String, Typeface> mTypefaces = new HashMap<>(); // 加载失败的key对应占位字体
+    private final HashSet<String> mFailed = new HashSet<>(); // 加载失败的key
+    private final IdentityHashMap<Typeface, String> mKeys = new IdentityHashMap<>();
+    // 正在加载的key和等待回调的监听器
+    private final HashMap<String, List<OnTypefaceLoadListener>> mLoading = new HashMap<>();
+    private Executor mExecutor;
+
+    private TypefaceRegistry(Context context) {
+        mAssetManager = context.getApplicationContext().getAssets();
+    }
+
+    /**
+     * @param context 上下文，只保存其中的AssetManager
+     * @return 共享的字体注册表
+     */
+    public static TypefaceRegistry getInstance(Context context) {
+        if (sInstance == null) {
+            synchronized (TypefaceRegistry.class) {
+                if (sInstance == null) {
+                    sInstance = new TypefaceRegistry(context);
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param family 系统字体族，如"serif"，null表示默认字体
+     * @param style  字体样式
+     * @return 字体的key
+     */
+    public static String systemKey(String family, int style) {
+        return SCHEME_SYSTEM + (family == null ? "" : family) + '#' + style;
+    }
+
+    /**
+     * @param file  字体文件
+     * @param style 字体样式
+     * @return 字体的key
+     */
+    public static String fileKey(File file, int style) {
+        return SCHEME_FILE + file.getAbsolutePath() + '#' + style;
+    }
+
+    /**
+     * @param path  字体文件在assets中的路径
+     * @param style 字体样式
+     * @return 字体的key
+     */
+    public static String assetKey(String path, int style) {
+        return SCHEME_ASSET + path + '#' + style;
+    }
+
+    /**
+     * 设置加载字体文件的线程池，默认使用单独的单线程线程池，不与字幕导出任务排队
+     *
+     * @param executor 线程池
+     */
+    public synchronized void setExecutor(Executor executor) {
+        if (executor == null) {
+            throw new NullPointerException("executor == null");
+        }
+        mExecutor = executor;
+    }
+
+    /**
+     * 获取key对应的字体。系统字体直接创建，字体文件还未加载时开始在后台加载，并先返回相同样式的默认字体作为占位
+     *
+     * @param key 字体的key
+     * @return 字体，key格式不正确时返回默认字体
+     */
+    public Typeface get(String key) {
+        synchronized (this) {
+            Typeface typeface = mTypefaces.get(key);
+            if (typeface != null) {
+                return typeface;
+            }
+        }
+        if (key.startsWith(SCHEME_SYSTEM)) {
+            String family = getPath(key, SCHEME_SYSTEM);
+            return intern(key, Typeface.create(family.isEmpty() ? null : family, getStyle(key)));
+        }
+        load(key, null);
+        return getPlaceholder(key);
+    }
+
+    /**
+     * @param key 字体的key
+     * @return 字体是否已经可以使用，系统字体总是返回true，加载失败时返回false
+     */
+    public synchronized boolean isLoaded(String key) {
+        return mTypefaces.containsKey(key) && !mFailed.contains(key) || key.startsWith(SCHEME_SYSTEM);
+    }
+
+    /**
+     * @param key 字体的key
+     * @return 字体文件是否加载失败，失败后{@link #get(String)}一直返回占位字体
+     */
+    public synchronized boolean isFailed(String key) {
+        return mFailed.contains(key);
+    }
+
+    /**
+     * 清除加载失败的记录，之后获取这些key时重新加载，用于字体文件下载完成后重试
+     */
+    public synchronized void clearFailures() {
+        for (String key : mFailed) {
+            mTypefaces.remove(key);
+        }
+        mFailed.clear();
+    }
+
+    /**
+     * 加载字体，已经加载或已经失败时立即回调，否则加载完成后在主线程回调
+     *
+     * @param key      字体的key
+     * @param listener 监听器，可以为null
+     */
+    public void load(final String key, OnTypefaceLoadListener listener) {
+        Typeface loaded;
+        boolean failed;
+        synchronized (this) {
+            failed = mFailed.contains(key);
+            loaded = failed ? null : mTypefaces.get(key);
+            if (!failed && loaded == null && !key.startsWith(SCHEME_SYSTEM)) {
+                List<OnTypefaceLoadListener> listeners = mLoading.get(key);
+                boolean start = listeners == null;
+                if (start) {
+                    listeners = new ArrayList<>(1);
+                    mLoading.put(key, listeners);
+                }
+                if (listener != null) {
+                    listeners.add(listener);
+                }
+                if (start) {
+                    if (mExecutor == null) {
+                        mExecutor = CaptionExportExecutor.newExecutor(1, "caption-typeface");
+                    }
+                    mExecutor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            onLoaded(key, createFromFile(key));
+                        }
+                    });
+                }
+                return;
+            }
+        }
+        if (loaded == null && !failed) {
+            loaded = get(key);
+        }
+        if (listener != null) {
+            listener.onTypefaceLoaded(key, loaded);
+        }
+    }
+
+    private Typeface createFromFile(String key) {
+        try {
+            Typeface typeface;
+            if (key.startsWith(SCHEME_FILE)) {
+                typeface = Typeface.createFromFile(getPath(key, SCHEME_FILE));
+            } else if (key.startsWith(SCHEME_ASSET)) {
+                typeface = Typeface.createFromAsset(mAssetManager, getPath(key, SCHEME_ASSET));
+            } else {
+                return null;
+            }
+            int style = getStyle(key);
+            return style == Typeface.NORMAL ? typeface : Typeface.create(typeface, style);
+        } catch (RuntimeException e) {
+            // 文件不存在或格式不正确
+            return null;
+        }
+    }
+
+    private void onLoaded(final String key, final Typeface typeface) {
+        final List<OnTypefaceLoadListener> listeners;
+        Typeface placeholder = typeface == null ? getPlaceholder(key) : null;
+        synchronized (this) {
+            listeners = mLoading.remove(key);
+            if (typeface != null) {
+                mTypefaces.put(key, typeface);
+                mKeys.put(typeface, key);
+            } else {
+                // 记住失败的结果，占位字体的key仍然是系统字体的key
+                mTypefaces.put(key, placeholder);
+                mFailed.add(key);
+            }
+        }
+        if (listeners == null || listeners.isEmpty()) {
+            return;
+        }
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < listeners.size(); i++) {
+                    listeners.get(i).onTypefaceLoaded(key, typeface);
+                }
+            }
+        });
+    }
+
+    private synchronized Typeface intern(String key, Typeface typeface) {
+        Typeface existing = mTypefaces.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        mTypefaces.put(key, typeface);
+        if (!mKeys.containsKey(typeface)) {
+            mKeys.put(typeface, key);
+        }
+        return typeface;
+    }
+
+    /**
+     * @param typeface 字体
+     * @return 通过注册表创建的字体的key，其他字体返回null
+     */
+    public synchronized String keyOf(Typeface typeface) {
+        return mKeys.get(typeface);
+    }
+
+    /**
+     * @param key 字体的key
+     * @return 字体加载完成前使用的占位字体
+     */
+    public Typeface getPlaceholder(String key) {
+        return get(systemKey(null, getStyle(key)));
+    }
+
+    private static String getPath(String key, String scheme) {
+        int end = key.lastIndexOf('#');
+        return key.substring(scheme.length(), end < scheme.length() ? key.length() : end);
+    }
+
+    private static int getStyle(String key) {
+        int index = key.lastIndexOf('#');
+        if (index < 0) {
+            return Typeface.NORMAL;
+        }
+        try {
+            return Integer.parseInt(key.substring(index + 1));
+        } catch (NumberFormatException e) {
+            return Typeface.NORMAL;
+        }
+    }
+
+    @Override
+    public String getName(Typeface typeface) {
+        return keyOf(typeface);
+    }
+
+    @Override
+    public Typeface resolve(String name, int style) {
+        return name == null ? get(systemKey(null, style)) : get(name);
+    }
+
+    /**
+     * 字体加载监听器，在主线程回调
+     */
+    public interface OnTypefaceLoadListener {
+        /**
+         * @param key      字体的key
+         * @param typeface 加载完成的字体，加载失败时为null
+         */
+        void onTypefaceLoaded(String key, Typeface typeface);
+    }
+}
@@ -0,0 +1,27 @@
+package com.wurensen.captionlayout;
+
+import android.graphics.Typeface;
+
+/**
+ * 字体与字体名称的转换，用于序列化字幕信息时按名称和样式保存字体
+ */
+public interface TypefaceResolver {
+
+    /**
+     * 只识别系统字体的转换器
+     */
+    TypefaceResolver SYSTEM = new SystemTypefaceResolver();
+
+    /**
+     * @param typeface 字体，不为null
+     * @return 字体名称，返回null时按默认字体保存
+     */
+    String getName(Typeface typeface);
+
+    /**
+     * @param name  字体名称，默认字体时为null
+     * @param style 字体样式，如{@link Typeface#BOLD}
+     * @return 字体
+     */
+    Typeface resolve(String name, int style);
+}
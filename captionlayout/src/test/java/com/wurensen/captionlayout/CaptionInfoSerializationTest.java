@@ -0,0 +1,253 @@
+package com.wurensen.captionlayout;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import android.graphics.Typeface;
+import android.text.Layout;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 字幕信息写入后读回，图片数据从文件读取时只记录位置，访问时才从文件中读取
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class CaptionInfoSerializationTest {
+
+    // 测试中不涉及字体，全部按默认字体处理
+    private static final TypefaceResolver NO_TYPEFACE = new TypefaceResolver() {
+        @Override
+        public String getName(Typeface typeface) {
+            return null;
+        }
+
+        @Override
+        public Typeface resolve(String name, int style) {
+            return null;
+        }
+    };
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void fileBlobsAreReadLazilyFromOffset() throws IOException {
+        byte[] captionBytes = blob(300, 1);
+        byte[] textBytes = blob(120, 2);
+        byte[] intrinsicBytes = blob(500, 3);
+        List<CaptionInfo> infos = new ArrayList<>();
+        infos.add(newImageCaption(captionBytes, intrinsicBytes));
+        infos.add(newTextCaption("字幕\nsubtitle", textBytes));
+        File file = mFolder.newFile("captions.bin");
+        writeToFile(infos, file);
+
+        List<CaptionInfo> read = reader().read(file);
+        assertEquals(2, read.size());
+        ImageCaptionInfo image = (ImageCaptionInfo) read.get(0);
+        TextCaptionInfo text = (TextCaptionInfo) read.get(1);
+        // 读取时不解码，也不把图片数据读进内存
+        assertNull(image.captionBitmap);
+        assertTrue(image.hasCaptionBitmap());
+        assertArrayEquals(captionBytes, image.captionBitmapSource.getBytes());
+        assertArrayEquals(intrinsicBytes, image.intrinsicBitmapSource.getBytes());
+        assertArrayEquals(textBytes, text.captionBitmapSource.getBytes());
+        assertEquals("字幕\nsubtitle", text.text);
+        assertEquals(Layout.Alignment.ALIGN_OPPOSITE, text.textAlignment);
+        assertEquals(2000, text.startTime);
+        assertEquals(5000, text.endTime);
+
+        // 改写文件中的图片数据后读到新内容，说明只保存了数据在文件中的位置
+        byte[] replaced = blob(captionBytes.length, 9);
+        overwrite(file, indexOf(readFile(file), captionBytes), replaced);
+        assertArrayEquals(replaced, image.captionBitmapSource.getBytes());
+        assertArrayEquals(intrinsicBytes, image.intrinsicBitmapSource.getBytes());
+    }
+
+    @Test
+    public void streamBlobsAreKeptInMemory() throws IOException {
+        byte[] captionBytes = blob(64, 4);
+        List<CaptionInfo> infos = new ArrayList<>();
+        infos.add(newTextCaption("stream", captionBytes));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer().write(infos, out);
+
+        List<CaptionInfo> read = reader().read(new ByteArrayInputStream(out.toByteArray()));
+        assertArrayEquals(captionBytes, read.get(0).captionBitmapSource.getBytes());
+        assertEquals("stream", ((TextCaptionInfo) read.get(0)).text);
+    }
+
+    @Test
+    public void textLongerThanModifiedUtfLimit() throws IOException {
+        // 每个汉字3字节，超过writeUTF的65535字节上限
+        char[] chars = new char[30000];
+        Arrays.fill(chars, '字');
+        String longText = new String(chars) + "\nend";
+        List<CaptionInfo> infos = new ArrayList<>();
+        infos.add(newTextCaption(longText, blob(16, 5)));
+        File file = mFolder.newFile("long.bin");
+        writeToFile(infos, file);
+
+        TextCaptionInfo text = (TextCaptionInfo) reader().read(file).get(0);
+        assertEquals(longText, text.text);
+        assertEquals(Layout.Alignment.ALIGN_OPPOSITE, text.textAlignment);
+    }
+
+    @Test
+    public void readsVersion3Text() throws IOException {
+        byte[] captionBytes = blob(32, 6);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.writeInt(CaptionInfoFormat.MAGIC);
+        data.writeShort(CaptionInfoFormat.VERSION_TYPEFACE_KEY);
+        data.writeInt(1);
+        data.writeByte(CaptionInfoFormat.TYPE_TEXT);
+        data.writeFloat(30);
+        data.writeFloat(0.25f);
+        data.writeFloat(0.75f);
+        data.writeInt(200);
+        data.writeInt(100);
+        data.writeLong(0);
+        data.writeLong(Long.MAX_VALUE);
+        data.writeInt(captionBytes.length);
+        data.write(captionBytes);
+        data.writeUTF("旧版本");
+        data.writeFloat(42);
+        data.writeInt(0xffff0000);
+        data.writeInt(0xff00ff00);
+        data.writeUTF("");
+        data.writeByte(Typeface.NORMAL);
+        data.writeUTF(Layout.Alignment.ALIGN_NORMAL.name());
+        data.writeInt(12);
+        data.writeUTF("key");
+        data.flush();
+        File file = mFolder.newFile("v3.bin");
+        overwrite(file, 0, bytes.toByteArray());
+
+        TextCaptionInfo text = (TextCaptionInfo) reader().read(file).get(0);
+        assertEquals("旧版本", text.text);
+        assertEquals(42, text.textSize, 0);
+        assertEquals(0xffff0000, text.textColor);
+        assertEquals(Layout.Alignment.ALIGN_NORMAL, text.textAlignment);
+        assertEquals(12, text.textPadding);
+        assertEquals("key", text.textTypefaceKey);
+        assertArrayEquals(captionBytes, text.captionBitmapSource.getBytes());
+    }
+
+    @Test
+    public void skipsBitmapsWhenDisabled() throws IOException {
+        List<CaptionInfo> infos = new ArrayList<>();
+        infos.add(newImageCaption(blob(40, 7), blob(40, 8)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer().setWriteCaptionBitmap(false).setWriteIntrinsicBitmap(false).write(infos, out);
+
+        ImageCaptionInfo image =
+            (ImageCaptionInfo) reader().read(new ByteArrayInputStream(out.toByteArray())).get(0);
+        assertFalse(image.hasCaptionBitmap());
+        assertNull(image.intrinsicBitmapSource);
+    }
+
+    private static CaptionInfoWriter writer() {
+        return new CaptionInfoWriter().setTypefaceResolver(NO_TYPEFACE);
+    }
+
+    private static CaptionInfoReader reader() {
+        return new CaptionInfoReader().setTypefaceResolver(NO_TYPEFACE);
+    }
+
+    // 未解码的图片直接复制原数据，不需要真正的PNG
+    private static TextCaptionInfo newTextCaption(String text, byte[] captionBytes) {
+        TextCaptionInfo info = new TextCaptionInfo();
+        info.degree = 15;
+        info.relativeCenterX = 0.5f;
+        info.relativeCenterY = 0.8f;
+        info.width = 400;
+        info.height = 120;
+        info.startTime = 2000;
+        info.endTime = 5000;
+        info.captionBitmapSource = new EncodedBitmap(captionBytes);
+        info.text = text;
+        info.textSize = 48;
+        info.textAlignment = Layout.Alignment.ALIGN_OPPOSITE;
+        return info;
+    }
+
+    private static ImageCaptionInfo newImageCaption(byte[] captionBytes, byte[] intrinsicBytes) {
+        ImageCaptionInfo info = new ImageCaptionInfo();
+        info.width = 240;
+        info.height = 240;
+        info.captionBitmapSource = new EncodedBitmap(captionBytes);
+        info.intrinsicBitmapSource = new EncodedBitmap(intrinsicBytes);
+        return info;
+    }
+
+    private static byte[] blob(int length, int seed) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (i * 31 + seed * 17);
+        }
+        return bytes;
+    }
+
+    private static void writeToFile(List<CaptionInfo> infos, File file) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            writer().write(infos, out);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            raf.readFully(bytes);
+        } finally {
+            raf.close();
+        }
+        return bytes;
+    }
+
+    private static void overwrite(File file, long offset, byte[] bytes) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(offset);
+            raf.write(bytes);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static int indexOf(byte[] data, byte[] target) {
+        outer:
+        for (int i = 0; i + target.length <= data.length; i++) {
+            for (int j = 0; j < target.length; j++) {
+                if (data[i + j] != target[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        throw new AssertionError("blob not found");
+    }
+}
@@ -0,0 +1,160 @@
+package com.wurensen.captionlayout;
+
+import java.util.ArrayList;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.RectF;
+import android.os.SystemClock;
+import android.util.TypedValue;
+import android.view.MotionEvent;
+import android.view.View;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 字幕平移、旋转后只刷新变化前后所在的区域，区域包含四角图标
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class CaptionInvalidateTest {
+
+    private static final int WIDTH = 1080, HEIGHT = 1920;
+    private static final int ICON_SIZE = 80;
+    private static final float DELTA = 0.01f;
+
+    private RecordingLayout mLayout;
+    private FlexibleCaptionView mCaption;
+    private long mDownTime;
+
+    @Before
+    public void setUp() {
+        Context context = RuntimeEnvironment.application;
+        mLayout = new RecordingLayout(context);
+        mLayout.setBatchRenderEnabled(true);
+        Bitmap icon = Bitmap.createBitmap(20, 20, Bitmap.Config.ARGB_8888);
+        mCaption = FlexibleCaptionView.Builder.create(context)
+            .text("dirty rect")
+            .textSize(TypedValue.COMPLEX_UNIT_PX, 60)
+            .icon(icon, icon, icon)
+            .iconSize(TypedValue.COMPLEX_UNIT_PX, ICON_SIZE)
+            .build();
+        mLayout.addCaptionView(mCaption);
+        mCaption.setFocus(true);
+        mLayout.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+            View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        mLayout.layout(0, 0, WIDTH, HEIGHT);
+        // 第一次绘制时计算字幕位置
+        mLayout.draw(new Canvas(Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888)));
+        assertTrue(mCaption.isCaptionPrepared());
+        mLayout.mDirtyRects.clear();
+    }
+
+    @Test
+    public void moveInvalidatesOldAndNewBounds() {
+        RectF before = getCaptionBounds();
+        CaptionRenderState state = mCaption.getRenderState();
+        touch(MotionEvent.ACTION_DOWN, state.centerX, state.centerY);
+        touch(MotionEvent.ACTION_MOVE, state.centerX + 100, state.centerY + 50);
+        CaptionFrameScheduler.getInstance().runPendingFrame();
+
+        RectF after = getCaptionBounds();
+        assertEquals(100, after.left - before.left, DELTA);
+        assertEquals(50, after.top - before.top, DELTA);
+        assertDirty(before, after);
+    }
+
+    @Test
+    public void rotateInvalidatesRotatedBounds() {
+        RectF before = getCaptionBounds();
+        CaptionRenderState state = mCaption.getRenderState();
+        // 拖动右下角图标绕中心转30度，半径不变
+        float radiusX = state.borderWidth / 2, radiusY = state.borderHeight / 2;
+        double radius = Math.hypot(radiusX, radiusY);
+        double angle = Math.atan2(radiusY, radiusX) + Math.toRadians(30);
+        touch(MotionEvent.ACTION_DOWN, state.centerX + radiusX, state.centerY + radiusY);
+        touch(MotionEvent.ACTION_MOVE, state.centerX + (float) (radius * Math.cos(angle)),
+            state.centerY + (float) (radius * Math.sin(angle)));
+        CaptionFrameScheduler.getInstance().runPendingFrame();
+
+        assertEquals(30, mCaption.getRenderState().degree, 0.1f);
+        RectF after = getCaptionBounds();
+        // 旋转后的外接矩形比摆正时高
+        assertTrue(after.height() > before.height());
+        assertDirty(before, after);
+    }
+
+    @Test
+    public void dirtyRectIncludesCornerIcons() {
+        CaptionRenderState state = mCaption.getRenderState();
+        touch(MotionEvent.ACTION_DOWN, state.centerX, state.centerY);
+        touch(MotionEvent.ACTION_MOVE, state.centerX - 10, state.centerY);
+        CaptionFrameScheduler.getInstance().runPendingFrame();
+
+        assertEquals(1, mLayout.mDirtyRects.size());
+        RectF dirty = mLayout.mDirtyRects.get(0);
+        CaptionRenderState moved = mCaption.getRenderState();
+        // 图标以边框顶点为中心，刷新区域向外延伸半个图标
+        float halfIcon = ICON_SIZE / 2f;
+        assertEquals(moved.centerX - moved.borderWidth / 2 - halfIcon, dirty.left, DELTA);
+        assertEquals(state.centerX + state.borderWidth / 2 + halfIcon, dirty.right, DELTA);
+        assertEquals(state.centerY - state.borderHeight / 2 - halfIcon, dirty.top, DELTA);
+        assertEquals(state.centerY + state.borderHeight / 2 + halfIcon, dirty.bottom, DELTA);
+    }
+
+    private void assertDirty(RectF before, RectF after) {
+        assertEquals(1, mLayout.mDirtyRects.size());
+        RectF expected = new RectF(before);
+        expected.union(after);
+        RectF dirty = mLayout.mDirtyRects.get(0);
+        assertEquals(expected.left, dirty.left, DELTA);
+        assertEquals(expected.top, dirty.top, DELTA);
+        assertEquals(expected.right, dirty.right, DELTA);
+        assertEquals(expected.bottom, dirty.bottom, DELTA);
+        // 只刷新字幕附近，而不是整个容器
+        assertTrue(dirty.width() < WIDTH && dirty.height() < HEIGHT);
+    }
+
+    private RectF getCaptionBounds() {
+        RectF bounds = new RectF();
+        mCaption.getCaptionBounds(bounds);
+        return bounds;
+    }
+
+    private void touch(int action, float x, float y) {
+        long now = SystemClock.uptimeMillis();
+        if (action == MotionEvent.ACTION_DOWN) {
+            mDownTime = now;
+        }
+        MotionEvent event = MotionEvent.obtain(mDownTime, now, action, x, y, 0);
+        mLayout.dispatchTouchEvent(event);
+        event.recycle();
+    }
+
+    /**
+     * 记录批量渲染时字幕请求刷新的区域
+     */
+    static class RecordingLayout extends CaptionLayout {
+
+        final ArrayList<RectF> mDirtyRects = new ArrayList<>();
+
+        RecordingLayout(Context context) {
+            super(context);
+        }
+
+        @Override
+        void invalidateCaptionRegion(FlexibleCaptionView view, RectF dirty) {
+            mDirtyRects.add(new RectF(dirty));
+            super.invalidateCaptionRegion(view, dirty);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.wurensen.captionlayout;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.util.TypedValue;
+import android.view.View;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 添加时就不在当前时间内的字幕从未绘制过，导出时按需计算位置信息
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class CaptionTimeExportTest {
+
+    private static final int WIDTH = 1080, HEIGHT = 1920;
+
+    private CaptionLayout mLayout;
+    private FlexibleCaptionView mShown, mHidden;
+
+    @Before
+    public void setUp() {
+        Context context = RuntimeEnvironment.application;
+        mLayout = new CaptionLayout(context);
+        mShown = FlexibleCaptionView.Builder.create(context)
+            .text("shown")
+            .textSize(TypedValue.COMPLEX_UNIT_PX, 60)
+            .timeRange(0, 1000)
+            .build();
+        mHidden = FlexibleCaptionView.Builder.create(context)
+            .text("hidden\nlater")
+            .textSize(TypedValue.COMPLEX_UNIT_PX, 60)
+            .timeRange(5000, 6000)
+            .build();
+        mLayout.addCaptionView(mShown);
+        mLayout.addCaptionView(mHidden);
+        mLayout.setCurrentTime(500);
+        mLayout.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+            View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        mLayout.layout(0, 0, WIDTH, HEIGHT);
+        mLayout.draw(new Canvas(Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888)));
+        assertTrue(mHidden.isTimeHidden());
+        assertTrue(mShown.isCaptionPrepared());
+        assertFalse(mHidden.isCaptionPrepared());
+    }
+
+    @Test
+    public void renderStateOfUndrawnCaption() {
+        CaptionRenderState state = mHidden.getRenderState();
+        assertTrue(mHidden.isCaptionPrepared());
+        assertEquals("hidden\nlater", state.text.toString());
+        assertTrue(state.borderWidth > 0);
+        assertTrue(state.borderHeight > 0);
+        assertEquals(WIDTH / 2f, state.centerX, 0.01f);
+        assertEquals(HEIGHT / 2f, state.centerY, 0.01f);
+    }
+
+    @Test
+    public void findAllCaptionInfosIncludesTimeHidden() {
+        List<CaptionInfo> infos = mLayout.findAllCaptionInfos(1f);
+        assertEquals(2, infos.size());
+        assertHiddenExported(infos.get(1));
+    }
+
+    @Test
+    public void findAllCaptionInfosAsyncIncludesTimeHidden() throws InterruptedException, ExecutionException {
+        List<CaptionInfo> infos = mLayout.findAllCaptionInfosAsync(1f, null).get();
+        assertEquals(2, infos.size());
+        assertHiddenExported(infos.get(1));
+    }
+
+    @Test
+    public void overlayIncludesCaptionShownWithoutDraw() {
+        mLayout.setCurrentTime(5500);
+        assertFalse(mHidden.isCaptionPrepared());
+        // 显示后还没有绘制就导出
+        CaptionOverlay overlay = mLayout.exportOverlay(WIDTH, HEIGHT);
+        assertTrue(mHidden.isCaptionPrepared());
+        assertFalse(overlay.dirtyBounds.isEmpty());
+        assertTrue(overlay.dirtyBounds.contains(WIDTH / 2, HEIGHT / 2));
+    }
+
+    private static void assertHiddenExported(CaptionInfo info) {
+        assertTrue(info instanceof TextCaptionInfo);
+        assertEquals("hidden\nlater", ((TextCaptionInfo) info).text);
+        assertEquals(5000, info.startTime);
+        assertEquals(6000, info.endTime);
+        assertTrue(info.width > 0);
+        assertTrue(info.height > 0);
+        assertEquals(info.width, info.captionBitmap.getWidth());
+    }
+}
@@ -0,0 +1,223 @@
+package com.wurensen.captionlayout;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.util.TypedValue;
+import android.view.InputDevice;
+import android.view.MotionEvent;
+import android.view.View;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 记录真实手势后回放两次，相同的轨迹回放到相同的初始状态应该得到相等的结果，并且每个事件都有耗时
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class TouchTraceReplayerTest {
+
+    private static final int WIDTH = 1080, HEIGHT = 1920;
+
+    private final CaptionRenderState mInitial = getState(createLayout());
+    private final float mCenterX = mInitial.centerX, mCenterY = mInitial.centerY;
+    private long mDownTime;
+
+    @Test
+    public void dragReplaysDeterministically() throws IOException {
+        TouchTrace trace = record(new Gesture() {
+            @Override
+            public void perform(CaptionLayout layout) {
+                dispatch(layout, MotionEvent.ACTION_DOWN, 0, mCenterX, mCenterY);
+                for (int i = 1; i <= 5; i++) {
+                    // 每个事件带两个历史采样
+                    dispatch(layout, MotionEvent.ACTION_MOVE, i * 16,
+                        new float[]{mCenterX + i * 12 - 8, mCenterY + i * 6 - 4},
+                        new float[]{mCenterX + i * 12 - 4, mCenterY + i * 6 - 2},
+                        new float[]{mCenterX + i * 12, mCenterY + i * 6});
+                }
+                dispatch(layout, MotionEvent.ACTION_UP, 100, mCenterX + 60, mCenterY + 30);
+            }
+        });
+        assertEquals(7, trace.getEventCount());
+
+        CaptionRenderState state = replayTwice(trace);
+        assertTrue(state.centerX > mCenterX);
+        assertTrue(state.centerY > mCenterY);
+        assertEquals(mInitial.borderWidth, state.borderWidth, 0.01f);
+    }
+
+    @Test
+    public void pinchReplaysDeterministically() throws IOException {
+        TouchTrace trace = record(new Gesture() {
+            @Override
+            public void perform(CaptionLayout layout) {
+                // 两指从中心两侧对称向外拉开，只缩放不旋转
+                dispatch(layout, MotionEvent.ACTION_DOWN, 0, mCenterX - 40, mCenterY);
+                dispatch(layout, pointerAction(MotionEvent.ACTION_POINTER_DOWN, 1), 10,
+                    new float[]{mCenterX - 40, mCenterY, mCenterX + 40, mCenterY});
+                for (int i = 1; i <= 6; i++) {
+                    float half = 40 + i * 10;
+                    dispatch(layout, MotionEvent.ACTION_MOVE, 10 + i * 16,
+                        new float[]{mCenterX - half + 5, mCenterY, mCenterX + half - 5, mCenterY},
+                        new float[]{mCenterX - half, mCenterY, mCenterX + half, mCenterY});
+                }
+                dispatch(layout, pointerAction(MotionEvent.ACTION_POINTER_UP, 1), 120,
+                    new float[]{mCenterX - 100, mCenterY, mCenterX + 100, mCenterY});
+                dispatch(layout, MotionEvent.ACTION_UP, 130, mCenterX - 100, mCenterY);
+            }
+        });
+
+        CaptionRenderState state = replayTwice(trace);
+        assertTrue(state.borderWidth > mInitial.borderWidth);
+        assertEquals(mInitial.degree, state.degree, 0.1f);
+    }
+
+    @Test
+    public void twoPointerRotationThenDragReplaysDeterministically() throws IOException {
+        TouchTrace trace = record(new Gesture() {
+            @Override
+            public void perform(CaptionLayout layout) {
+                // 两指绕中心旋转，第一个点抬起后剩下的点继续拖动
+                dispatch(layout, MotionEvent.ACTION_DOWN, 0, mCenterX - 50, mCenterY);
+                dispatch(layout, pointerAction(MotionEvent.ACTION_POINTER_DOWN, 1), 8,
+                    new float[]{mCenterX - 50, mCenterY, mCenterX + 50, mCenterY});
+                for (int i = 1; i <= 5; i++) {
+                    double radians = Math.toRadians(i * 4);
+                    float dx = (float) (50 * Math.cos(radians));
+                    float dy = (float) (50 * Math.sin(radians));
+                    dispatch(layout, MotionEvent.ACTION_MOVE, 8 + i * 16,
+                        new float[]{mCenterX - dx, mCenterY - dy, mCenterX + dx, mCenterY + dy});
+                }
+                float dx = (float) (50 * Math.cos(Math.toRadians(20)));
+                float dy = (float) (50 * Math.sin(Math.toRadians(20)));
+                dispatch(layout, pointerAction(MotionEvent.ACTION_POINTER_UP, 0), 100,
+                    new float[]{mCenterX - dx, mCenterY - dy, mCenterX + dx, mCenterY + dy});
+                for (int i = 1; i <= 3; i++) {
+                    dispatch(layout, MotionEvent.ACTION_MOVE, 100 + i * 16, mCenterX + dx,
+                        mCenterY + dy + i * 10);
+                }
+                dispatch(layout, MotionEvent.ACTION_UP, 160, mCenterX + dx, mCenterY + dy + 30);
+            }
+        });
+
+        CaptionRenderState state = replayTwice(trace);
+        assertTrue(Math.abs(state.degree - mInitial.degree) > 10);
+        assertTrue(state.centerY > mCenterY);
+    }
+
+    // 在新的容器上回放两次，比较结果
+    private static CaptionRenderState replayTwice(TouchTrace trace) {
+        TouchTraceReplayer replayer = new TouchTraceReplayer();
+        TouchTraceReplayer.Result first = replayer.replay(createLayout(), trace);
+        TouchTraceReplayer.Result second = replayer.replay(createLayout(), trace);
+        assertEquals(trace.getEventCount(), first.getEventCount());
+        assertEquals(trace.getEventCount(), second.getEventCount());
+        assertEquals(first.getFinalStates(), second.getFinalStates());
+        for (int i = 0; i < first.getEventCount(); i++) {
+            assertTrue("event " + i, first.getEventTimeNanos(i) > 0);
+            assertTrue("event " + i, second.getEventTimeNanos(i) > 0);
+        }
+        assertTrue(first.getTotalInvalidateCount() > 0);
+        assertEquals(first.getTotalInvalidateCount(), second.getTotalInvalidateCount());
+        assertEquals(1, first.getFinalStates().size());
+        return first.getFinalStates().get(0);
+    }
+
+    private static CaptionRenderState getState(CaptionLayout layout) {
+        return ((FlexibleCaptionView) layout.getChildAt(0)).getRenderState();
+    }
+
+    private TouchTrace record(Gesture gesture) throws IOException {
+        CaptionLayout layout = createLayout();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TouchTraceRecorder recorder = new TouchTraceRecorder(out);
+        layout.setTouchTraceRecorder(recorder);
+        gesture.perform(layout);
+        layout.setTouchTraceRecorder(null);
+        recorder.close();
+        TouchTrace trace = TouchTrace.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(recorder.getEventCount(), trace.getEventCount());
+        assertEquals(WIDTH, trace.getViewWidth());
+        assertEquals(HEIGHT, trace.getViewHeight());
+        return trace;
+    }
+
+    // 一个获得焦点的文字字幕，已经完成第一次绘制
+    private static CaptionLayout createLayout() {
+        Context context = RuntimeEnvironment.application;
+        CaptionLayout layout = new CaptionLayout(context);
+        FlexibleCaptionView caption = FlexibleCaptionView.Builder.create(context)
+            .text("touch trace replay")
+            .textSize(TypedValue.COMPLEX_UNIT_PX, 80)
+            .build();
+        layout.addCaptionView(caption);
+        caption.setFocus(true);
+        layout.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+            View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        layout.layout(0, 0, WIDTH, HEIGHT);
+        layout.draw(new Canvas(Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888)));
+        assertTrue(caption.isCaptionPrepared());
+        return layout;
+    }
+
+    private static int pointerAction(int action, int pointerIndex) {
+        return action | (pointerIndex << MotionEvent.ACTION_POINTER_INDEX_SHIFT);
+    }
+
+    private void dispatch(CaptionLayout layout, int action, long time, float x, float y) {
+        dispatch(layout, action, time, new float[]{x, y});
+    }
+
+    // 每个采样按触摸点依次保存x、y，前面的采样成为历史采样
+    private void dispatch(CaptionLayout layout, int action, long time, float[]... samples) {
+        if (action == MotionEvent.ACTION_DOWN) {
+            mDownTime = 1000;
+        }
+        int pointerCount = samples[0].length / 2;
+        MotionEvent.PointerProperties[] properties = new MotionEvent.PointerProperties[pointerCount];
+        MotionEvent.PointerCoords[] coords = new MotionEvent.PointerCoords[pointerCount];
+        for (int i = 0; i < pointerCount; i++) {
+            properties[i] = new MotionEvent.PointerProperties();
+            properties[i].id = i;
+            properties[i].toolType = MotionEvent.TOOL_TYPE_FINGER;
+            coords[i] = new MotionEvent.PointerCoords();
+            coords[i].pressure = 1f;
+            coords[i].size = 1f;
+        }
+        int sampleCount = samples.length;
+        long sampleTime = mDownTime + time - (sampleCount - 1) * 4;
+        setCoords(samples[0], coords);
+        MotionEvent event = MotionEvent.obtain(mDownTime, sampleTime, action, pointerCount, properties, coords, 0, 0,
+            1f, 1f, 0, 0, InputDevice.SOURCE_TOUCHSCREEN, 0);
+        for (int pos = 1; pos < sampleCount; pos++) {
+            setCoords(samples[pos], coords);
+            event.addBatch(sampleTime + pos * 4, coords, 0);
+        }
+        layout.dispatchTouchEvent(event);
+        CaptionFrameScheduler.getInstance().runPendingFrame();
+        event.recycle();
+    }
+
+    private static void setCoords(float[] sample, MotionEvent.PointerCoords[] coords) {
+        for (int i = 0; i < coords.length; i++) {
+            coords[i].x = sample[i * 2];
+            coords[i].y = sample[i * 2 + 1];
+        }
+    }
+
+    private interface Gesture {
+        void perform(CaptionLayout layout);
+    }
+}